@@ -126,6 +126,29 @@ ALTER TABLE FIXFLOW_MAIL
   ADD CONSTRAINT FIXFLOW_MAIL_PK PRIMARY KEY (MAIL_ID)
 ;
 
+CREATE TABLE FIXFLOW_ARCHIVE_CHECKPOINT
+(
+  ARCHIVE_ID              VARCHAR2(64) NOT NULL,
+  PROCESSDEFINITION_KEY   VARCHAR2(512),
+  BEGIN_TIME              TIMESTAMP(6),
+  END_TIME                TIMESTAMP(6),
+  STATUS                  VARCHAR2(64),
+  CHUNK_SIZE              INTEGER,
+  THROTTLE_MILLIS         INTEGER,
+  ARCHIVED_COUNT          INTEGER,
+  CHUNK_COUNT             INTEGER,
+  LAST_PROCESSINSTANCE_ID VARCHAR2(64),
+  LAST_CHUNK_MILLIS       INTEGER,
+  START_TIME              TIMESTAMP(6),
+  UPDATE_TIME             TIMESTAMP(6),
+  ERROR_MESSAGE           VARCHAR2(4000)
+)
+;
+
+ALTER TABLE FIXFLOW_ARCHIVE_CHECKPOINT
+  ADD CONSTRAINT FIXFLOW_ARCHIVE_CHECKPOINT_PK PRIMARY KEY (ARCHIVE_ID)
+;
+
 CREATE TABLE FIXFLOW_RUN_PROCESSINSTANCE
 (
   PROCESSINSTANCE_ID       VARCHAR2(64) NOT NULL,
@@ -355,6 +378,12 @@ COMMENT ON COLUMN FIXFLOW_RUN_TASKIDENTITYLINK.INCLUDE_EXCLUSION
 ALTER TABLE FIXFLOW_RUN_TASKIDENTITYLINK
   ADD CONSTRAINT FIXFLOW_RUN_TASKIDENTITYL_PK PRIMARY KEY (ID)
 ;
+CREATE INDEX RUN_TASKIDLINK_TASK_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (TASKINSTANCE_ID, TYPE)
+;
+CREATE INDEX RUN_TASKIDLINK_GROUP_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (GROUP_TYPE, GROUP_ID, TYPE)
+;
+CREATE INDEX RUN_TASKIDLINK_USER_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (USER_ID, TYPE)
+;
 
 CREATE TABLE FIXFLOW_RUN_TOKEN
 (
@@ -756,6 +785,12 @@ COMMENT ON COLUMN FIXFLOW_HIS_TASKIDENTITYLINK.INCLUDE_EXCLUSION
 ALTER TABLE FIXFLOW_HIS_TASKIDENTITYLINK
   ADD CONSTRAINT FIXFLOW_HIS_TASKIDENTITYL_PK PRIMARY KEY (ID)
 ;
+CREATE INDEX HIS_TASKIDLINK_TASK_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (TASKINSTANCE_ID, TYPE)
+;
+CREATE INDEX HIS_TASKIDLINK_GROUP_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (GROUP_TYPE, GROUP_ID, TYPE)
+;
+CREATE INDEX HIS_TASKIDLINK_USER_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (USER_ID, TYPE)
+;
 
 CREATE TABLE FIXFLOW_HIS_TOKEN
 (
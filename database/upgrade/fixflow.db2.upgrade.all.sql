@@ -0,0 +1,39 @@
+﻿-- 升级已有的数据库,与create目录中的建表脚本保持一致,已执行过的部分不要重复执行
+
+-- 任务分配表的组合索引,用于收件箱候选人、候选组的exists子查询
+CREATE INDEX RUN_TASKIDLINK_TASK_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (TASKINSTANCE_ID, TYPE)
+;
+CREATE INDEX RUN_TASKIDLINK_GROUP_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (GROUP_TYPE, GROUP_ID, TYPE)
+;
+CREATE INDEX RUN_TASKIDLINK_USER_IDX ON FIXFLOW_RUN_TASKIDENTITYLINK (USER_ID, TYPE)
+;
+CREATE INDEX HIS_TASKIDLINK_TASK_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (TASKINSTANCE_ID, TYPE)
+;
+CREATE INDEX HIS_TASKIDLINK_GROUP_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (GROUP_TYPE, GROUP_ID, TYPE)
+;
+CREATE INDEX HIS_TASKIDLINK_USER_IDX ON FIXFLOW_HIS_TASKIDENTITYLINK (USER_ID, TYPE)
+;
+
+-- 后台归档的检查点表
+CREATE TABLE FIXFLOW_ARCHIVE_CHECKPOINT
+(
+  ARCHIVE_ID              VARCHAR(64) NOT NULL,
+  PROCESSDEFINITION_KEY   VARCHAR(512),
+  BEGIN_TIME              TIMESTAMP,
+  END_TIME                TIMESTAMP,
+  STATUS                  VARCHAR(64),
+  CHUNK_SIZE              INTEGER,
+  THROTTLE_MILLIS         INTEGER,
+  ARCHIVED_COUNT          INTEGER,
+  CHUNK_COUNT             INTEGER,
+  LAST_PROCESSINSTANCE_ID VARCHAR(64),
+  LAST_CHUNK_MILLIS       INTEGER,
+  START_TIME              TIMESTAMP,
+  UPDATE_TIME             TIMESTAMP,
+  ERROR_MESSAGE           VARCHAR(4000)
+)
+;
+
+ALTER TABLE FIXFLOW_ARCHIVE_CHECKPOINT
+  ADD CONSTRAINT FIXFLOW_ARCHIVE_CHECKPOINT_PK PRIMARY KEY (ARCHIVE_ID)
+;
@@ -33,6 +33,7 @@ import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.ExternalContent;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.ProcessEngineImpl;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
 import com.founder.fix.fixflow.core.impl.identity.Authentication;
 import com.founder.fix.fixflow.core.model.DeploymentBuilder;
 
@@ -137,4 +138,11 @@ public abstract class AbstractFixFlowTestCase extends TestCase {
 
 	}
 
+	/**
+	 * 语句缓存上执行过的语句数,包括预编译、缓存命中和批量累积的语句
+	 */
+	protected long getStatementCount(StatementCache statementCache) {
+		return statementCache.getPrepareCount() + statementCache.getHitCount() + statementCache.getBatchStatementCount();
+	}
+
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.founder.fix.fixflow.core.ModelService;
+import com.founder.fix.fixflow.core.ProcessEngine;
+import com.founder.fix.fixflow.core.ProcessEngineManagement;
+import com.founder.fix.fixflow.core.TaskService;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.ExternalContent;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.ProcessEngineImpl;
+import com.founder.fix.fixflow.core.impl.identity.Authentication;
+
+/**
+ * 性能基准的基类
+ * <p>
+ * 基准不是测试用例,不继承TestCase,类名也不以Test结尾,普通的测试运行不会执行。
+ * 需要时通过main方法单独运行,结果写入日志。和测试用例一样,结束时回滚所有数据库操作。
+ * @author kenshin
+ *
+ */
+public abstract class AbstractBenchmark {
+
+	protected final Logger log = LoggerFactory.getLogger(getClass());
+
+	protected ProcessEngine processEngine;
+	protected ProcessEngineConfigurationImpl processEngineConfiguration;
+	protected ModelService modelService;
+	protected TaskService taskService;
+
+	/**
+	 * 是否需要流程引擎,不需要的基准不启动引擎
+	 * 
+	 * @return
+	 */
+	protected boolean isEngineRequired() {
+		return true;
+	}
+
+	/**
+	 * 执行基准
+	 */
+	protected abstract void execute() throws Exception;
+
+	public void run() throws Exception {
+		if (!isEngineRequired()) {
+			execute();
+			return;
+		}
+		processEngine = ProcessEngineManagement.getDefaultProcessEngine();
+		ExternalContent externalContent = new ExternalContent();
+		externalContent.setAuthenticatedUserId(Authentication.getSystemId());
+		externalContent.setConnectionManagement("General");
+		processEngine.setExternalContent(externalContent);
+		processEngineConfiguration = ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration();
+		modelService = processEngine.getModelService();
+		taskService = processEngine.getTaskService();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+		try {
+			execute();
+		} finally {
+			processEngine.rollBackConnection();
+			processEngine.contextClose(true, true);
+		}
+	}
+
+	/**
+	 * 每次操作的平均耗时
+	 * 
+	 * @param nanos 总耗时,纳秒
+	 * @param iterations 操作次数
+	 * @return 纳秒/次
+	 */
+	protected static long nanosPerOperation(long nanos, int iterations) {
+		return iterations == 0 ? 0 : nanos / iterations;
+	}
+
+}
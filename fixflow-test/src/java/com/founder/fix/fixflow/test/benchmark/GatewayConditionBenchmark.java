@@ -0,0 +1,127 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.benchmark;
+
+import groovy.lang.Binding;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.scriptlanguage.SimpleExpression;
+import com.founder.fix.fixflow.expand.scriptlanguage.GroovyScriptCache;
+
+/**
+ * 网关条件基准
+ * <p>
+ * 比较每次经过网关的条件执行开销,使用ExclusiveGatewayTest.bpmn和InclusiveGatewayTest.bpmn中的线条件。
+ * 排他网关按顺序执行线条件,第一个满足的条件结束;包容网关每条线的条件都要执行。
+ * Groovy一侧使用编译脚本缓存,与引擎回退时的执行方式一致。
+ * @author kenshin
+ *
+ */
+public class GatewayConditionBenchmark extends AbstractBenchmark {
+
+	/**
+	 * 计时循环次数,可以用系统属性fixflow.benchmark.iterations修改
+	 */
+	private static final int ITERATIONS = Integer.getInteger("fixflow.benchmark.iterations", 200000).intValue();
+
+	private static final String[] EXCLUSIVE_CONDITIONS = { "金额>1000", "金额>=500 && 金额<=1000", "金额<500" };
+
+	private static final String[] INCLUSIVE_CONDITIONS = { "金额>500", "金额>1000", "金额>1500" };
+
+	private static final int[] AMOUNTS = { 300, 700, 1200, 1800 };
+
+	public static void main(String[] args) throws Exception {
+		new GatewayConditionBenchmark().run();
+	}
+
+	protected boolean isEngineRequired() {
+		return false;
+	}
+
+	protected void execute() throws Exception {
+		compareCost("排他网关", EXCLUSIVE_CONDITIONS, true);
+		compareCost("包容网关", INCLUSIVE_CONDITIONS, false);
+	}
+
+	private void compareCost(String name, String[] conditions, boolean firstMatch) {
+		SimpleExpression[] simpleExpressions = new SimpleExpression[conditions.length];
+		for (int i = 0; i < conditions.length; i++) {
+			simpleExpressions[i] = SimpleExpression.parse(conditions[i]);
+			if (simpleExpressions[i] == null) {
+				throw new FixFlowException("条件 " + conditions[i] + " 不是简单表达式");
+			}
+		}
+		GroovyScriptCache scriptCache = new GroovyScriptCache(GroovyScriptCache.DEFAULT_MAX_SIZE);
+
+		// 预热
+		runGroovy(scriptCache, conditions, firstMatch, ITERATIONS / 10);
+		runSimple(simpleExpressions, firstMatch, ITERATIONS / 10);
+
+		long start = System.nanoTime();
+		int groovyCount = runGroovy(scriptCache, conditions, firstMatch, ITERATIONS);
+		long groovyTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int simpleCount = runSimple(simpleExpressions, firstMatch, ITERATIONS);
+		long simpleTime = System.nanoTime() - start;
+
+		if (groovyCount != simpleCount) {
+			throw new FixFlowException(name + "条件的执行结果不一致: " + simpleCount + ", " + groovyCount);
+		}
+		log.info(name + "条件: 简单表达式 {} ns/次, Groovy {} ns/次", nanosPerOperation(simpleTime, ITERATIONS),
+				nanosPerOperation(groovyTime, ITERATIONS));
+	}
+
+	private int runGroovy(GroovyScriptCache scriptCache, String[] conditions, boolean firstMatch, int iterations) {
+		int count = 0;
+		for (int i = 0; i < iterations; i++) {
+			Map<String, Object> variables = new HashMap<String, Object>();
+			variables.put("金额", AMOUNTS[i % AMOUNTS.length]);
+			for (String condition : conditions) {
+				if (Boolean.TRUE.equals(scriptCache.run(condition, new Binding(variables)))) {
+					count++;
+					if (firstMatch) {
+						break;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private int runSimple(SimpleExpression[] simpleExpressions, boolean firstMatch, int iterations) {
+		int count = 0;
+		for (int i = 0; i < iterations; i++) {
+			Map<String, Object> variables = new HashMap<String, Object>();
+			variables.put("金额", AMOUNTS[i % AMOUNTS.length]);
+			for (SimpleExpression simpleExpression : simpleExpressions) {
+				if (Boolean.TRUE.equals(simpleExpression.evaluate(variables))) {
+					count++;
+					if (firstMatch) {
+						break;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.core.runtime.ProcessInstance;
+import com.founder.fix.fixflow.core.task.TaskQuery;
+
+/**
+ * 收件箱查询基准
+ * <p>
+ * 先通过引擎启动一个独占任务和一个共享任务的流程实例作为模板,再把模板任务和分配记录复制成指定数量的未结束任务,
+ * 分给多个用户。计时查询其中一个用户的收件箱第一页,共享和独占任务一起查询。
+ * 所有数据在一个事务中写入,结束时回滚。
+ * @author kenshin
+ *
+ */
+public class InboxQueryBenchmark extends AbstractBenchmark {
+
+	/**
+	 * 未结束任务数,可以用系统属性fixflow.benchmark.inboxTasks修改
+	 */
+	private static final int INBOX_TASKS = Integer.getInteger("fixflow.benchmark.inboxTasks", 1000000).intValue();
+
+	/**
+	 * 任务分给的用户数,可以用系统属性fixflow.benchmark.inboxUsers修改
+	 */
+	private static final int INBOX_USERS = Integer.getInteger("fixflow.benchmark.inboxUsers", 1000).intValue();
+
+	/**
+	 * 计时的查询次数
+	 */
+	private static final int INBOX_QUERIES = Integer.getInteger("fixflow.benchmark.iterations", 100).intValue();
+
+	/**
+	 * 每批写入的任务数
+	 */
+	private static final int SEED_CHUNK = 1000;
+
+	private static final String USER_ID = "1200119390";
+
+	private static final String PROCESS_KEY = "Process_TaskServiceTest";
+
+	private static final String TASK_TABLE = "FIXFLOW_RUN_TASKINSTANCE";
+
+	private static final String LINK_TABLE = "FIXFLOW_RUN_TASKIDENTITYLINK";
+
+	public static void main(String[] args) throws Exception {
+		new InboxQueryBenchmark().run();
+	}
+
+	protected void execute() throws Exception {
+		modelService.createDeployment().name("收件箱查询基准")
+				.addClasspathResource("com/founder/fix/fixflow/test/engine/api/task/TaskServiceTest.bpmn").deploy();
+		// amount<300时为独占任务,否则为共享任务
+		List<String> templateIds = new ArrayList<String>();
+		templateIds.add(startProcessInstance(100));
+		templateIds.add(startProcessInstance(500));
+
+		SqlCommand sqlCommand = new SqlCommand(Context.getDbConnection());
+		List<Map<String, Object>> templateTasks = new ArrayList<Map<String, Object>>();
+		for (String processInstanceId : templateIds) {
+			List<Object> params = new ArrayList<Object>();
+			params.add(processInstanceId);
+			templateTasks.addAll(sqlCommand.queryForList("SELECT * FROM " + TASK_TABLE + " WHERE PROCESSINSTANCE_ID=? AND END_TIME IS NULL", params));
+		}
+		if (templateTasks.isEmpty()) {
+			throw new FixFlowException("模板流程实例没有未结束的任务");
+		}
+		Map<String, List<Map<String, Object>>> templateLinks = new HashMap<String, List<Map<String, Object>>>();
+		for (Map<String, Object> templateTask : templateTasks) {
+			List<Object> params = new ArrayList<Object>();
+			params.add(templateTask.get("TASKINSTANCE_ID"));
+			templateLinks.put((String) templateTask.get("TASKINSTANCE_ID"),
+					sqlCommand.queryForList("SELECT * FROM " + LINK_TABLE + " WHERE TASKINSTANCE_ID=?", params));
+		}
+
+		long start = System.nanoTime();
+		seed(sqlCommand, templateTasks, templateLinks);
+		long seedTime = System.nanoTime() - start;
+
+		long inboxSize = taskService.createTaskQuery().taskCandidateUser(USER_ID).taskAssignee(USER_ID).taskNotEnd().count();
+
+		// 预热
+		queryInbox(INBOX_QUERIES / 10);
+
+		start = System.nanoTime();
+		queryInbox(INBOX_QUERIES);
+		long queryTime = System.nanoTime() - start;
+
+		log.info("收件箱查询: 写入 {} 个任务用时 {} ms", INBOX_TASKS, seedTime / 1000000);
+		log.info("收件箱查询: {} 个未结束任务, 用户收件箱 {} 个任务, 第一页 {} us/次",
+				new Object[] { INBOX_TASKS, inboxSize, nanosPerOperation(queryTime, INBOX_QUERIES) / 1000 });
+	}
+
+	/**
+	 * 轮流复制模板任务,第i个任务分给第i % INBOX_USERS个用户,第0个用户是要查询的用户
+	 */
+	private void seed(SqlCommand sqlCommand, List<Map<String, Object>> templateTasks, Map<String, List<Map<String, Object>>> templateLinks) {
+		for (int chunkStart = 0; chunkStart < INBOX_TASKS; chunkStart += SEED_CHUNK) {
+			int chunkEnd = Math.min(chunkStart + SEED_CHUNK, INBOX_TASKS);
+			List<Map<String, Object>> links = new ArrayList<Map<String, Object>>();
+			sqlCommand.beginBatch();
+			try {
+				// 相同的insert语句连续执行才能合并成一批,先写任务再写分配记录
+				for (int i = chunkStart; i < chunkEnd; i++) {
+					Map<String, Object> templateTask = templateTasks.get(i % templateTasks.size());
+					String userId = i % INBOX_USERS == 0 ? USER_ID : "bench" + (i % INBOX_USERS);
+					String taskId = GuidUtil.CreateGuid();
+					Map<String, Object> task = new HashMap<String, Object>(templateTask);
+					task.put("TASKINSTANCE_ID", taskId);
+					if (task.get("ASSIGNEE") != null) {
+						task.put("ASSIGNEE", userId);
+					}
+					sqlCommand.insert(TASK_TABLE, task);
+					for (Map<String, Object> templateLink : templateLinks.get(templateTask.get("TASKINSTANCE_ID"))) {
+						Map<String, Object> link = new HashMap<String, Object>(templateLink);
+						link.put("ID", GuidUtil.CreateGuid());
+						link.put("TASKINSTANCE_ID", taskId);
+						if (link.get("USER_ID") != null) {
+							link.put("USER_ID", userId);
+						}
+						links.add(link);
+					}
+				}
+				for (Map<String, Object> link : links) {
+					sqlCommand.insert(LINK_TABLE, link);
+				}
+				sqlCommand.endBatch();
+			} catch (RuntimeException e) {
+				sqlCommand.abortBatch();
+				throw e;
+			}
+		}
+	}
+
+	private int queryInbox(int iterations) {
+		int rows = 0;
+		for (int i = 0; i < iterations; i++) {
+			TaskQuery taskQuery = taskService.createTaskQuery();
+			rows += taskQuery.taskCandidateUser(USER_ID).taskAssignee(USER_ID).taskNotEnd().orderByTaskCreateTime().desc().listPage(0, 15).size();
+		}
+		return rows;
+	}
+
+	private String startProcessInstance(int amount) {
+		ExpandTaskCommand expandTaskCommand = new ExpandTaskCommand();
+		expandTaskCommand.setProcessDefinitionKey(PROCESS_KEY);
+		expandTaskCommand.setBusinessKey("BK_InboxQueryBenchmark");
+		expandTaskCommand.setCommandType("startandsubmit");
+		expandTaskCommand.setInitiator(USER_ID);
+		expandTaskCommand.setUserCommandId("HandleCommand_2");
+		Map<String, Object> mapVariables = new HashMap<String, Object>();
+		mapVariables.put("amount", amount);
+		expandTaskCommand.setTransientVariables(mapVariables);
+		ProcessInstance processInstance = (ProcessInstance) taskService.expandTaskComplete(expandTaskCommand, null);
+		return processInstance.getId();
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.Map;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.Result;
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.ResultMap;
+import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
+import com.founder.fix.fixflow.core.impl.util.JavaBeanUtil;
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
+import com.founder.fix.fixflow.test.db.mapping.TaskRowFixture;
+
+/**
+ * 结果映射基准
+ * <p>
+ * 比较每秒映射的行数:编译好的映射计划与原来每行每个字段都查找set方法的方式
+ * @author kenshin
+ *
+ */
+public class ResultMapPlanBenchmark extends AbstractBenchmark {
+
+	/**
+	 * 计时映射的行数,可以用系统属性fixflow.benchmark.rows修改
+	 */
+	private static final int ROWS = Integer.getInteger("fixflow.benchmark.rows", 50000).intValue();
+
+	private ResultMap resultMap;
+
+	public static void main(String[] args) throws Exception {
+		new ResultMapPlanBenchmark().run();
+	}
+
+	protected void execute() throws Exception {
+		resultMap = processEngineConfiguration.getResultMap("taskResultMap");
+
+		// 预热
+		mapWithPlan(ROWS / 10);
+		mapWithReflection(ROWS / 10);
+
+		long start = System.nanoTime();
+		mapWithPlan(ROWS);
+		long planTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		mapWithReflection(ROWS);
+		long reflectionTime = System.nanoTime() - start;
+
+		log.info("任务结果映射: 映射计划 {} 行/秒, 原方式 {} 行/秒", rowsPerSecond(planTime), rowsPerSecond(reflectionTime));
+	}
+
+	private void mapWithPlan(int rows) {
+		for (int i = 0; i < rows; i++) {
+			TaskInstanceEntity taskInstance = new TaskInstanceEntity();
+			taskInstance.persistentInit(resultMap, TaskRowFixture.createRow(i));
+		}
+	}
+
+	/**
+	 * 原来的映射方式:每行加载实体类并为每个字段查找set方法
+	 */
+	private void mapWithReflection(int rows) throws Exception {
+		for (int i = 0; i < rows; i++) {
+			TaskInstanceEntity taskInstance = new TaskInstanceEntity();
+			Map<String, Object> row = TaskRowFixture.createRow(i);
+			Class<?> clazz = Class.forName(resultMap.getType());
+			for (Result result : resultMap.getResult()) {
+				Object dataObj = row.get(result.getColumn());
+				if (dataObj == null) {
+					continue;
+				}
+				Method method = JavaBeanUtil.getSetStringMethod(clazz, result.getProperty(), result.getJdbcType());
+				if (method == null) {
+					continue;
+				}
+				Class<?> parameterType = method.getParameterTypes()[0];
+				if (parameterType.equals(String.class)) {
+					method.invoke(taskInstance, StringUtil.getString(dataObj));
+				} else if (parameterType.equals(Date.class)) {
+					method.invoke(taskInstance, StringUtil.getDate(dataObj));
+				} else if (parameterType.equals(int.class)) {
+					method.invoke(taskInstance, StringUtil.getInt(dataObj));
+				}
+				row.remove(result.getColumn());
+			}
+		}
+	}
+
+	private long rowsPerSecond(long nanos) {
+		return nanos == 0 ? 0 : ROWS * 1000000000L / nanos;
+	}
+
+}
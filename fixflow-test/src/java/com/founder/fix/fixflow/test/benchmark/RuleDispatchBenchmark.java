@@ -0,0 +1,97 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.Rule;
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.db.CompiledRule;
+
+/**
+ * 规则分发基准
+ * <p>
+ * 比较每条语句的规则分发开销:分发表一次查找并复用执行类实例,
+ * 原来的方式分别查找规则和执行类并每次创建实例
+ * @author kenshin
+ *
+ */
+public class RuleDispatchBenchmark extends AbstractBenchmark {
+
+	/**
+	 * 计时循环次数,可以用系统属性fixflow.benchmark.iterations修改
+	 */
+	private static final int ITERATIONS = Integer.getInteger("fixflow.benchmark.iterations", 200000).intValue();
+
+	public static void main(String[] args) throws Exception {
+		new RuleDispatchBenchmark().run();
+	}
+
+	protected void execute() throws Exception {
+		List<String> ruleIds = new ArrayList<String>();
+		for (Rule rule : processEngineConfiguration.getRuleMap().values()) {
+			if (processEngineConfiguration.getRuleClass(rule.getId()) != null) {
+				ruleIds.add(rule.getId());
+			}
+		}
+
+		// 预热
+		dispatchCompiled(ruleIds, ITERATIONS / 10);
+		dispatchLegacy(ruleIds, ITERATIONS / 10);
+
+		long start = System.nanoTime();
+		int compiledCount = dispatchCompiled(ruleIds, ITERATIONS);
+		long compiledTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int legacyCount = dispatchLegacy(ruleIds, ITERATIONS);
+		long legacyTime = System.nanoTime() - start;
+
+		if (compiledCount != legacyCount) {
+			throw new FixFlowException("两种分发方式的结果不一致: " + compiledCount + ", " + legacyCount);
+		}
+
+		log.info("规则分发: 分发表 {} ns/次, 原方式 {} ns/次", nanosPerOperation(compiledTime, ITERATIONS),
+				nanosPerOperation(legacyTime, ITERATIONS));
+	}
+
+	private int dispatchCompiled(List<String> ruleIds, int iterations) throws Exception {
+		int count = 0;
+		for (int i = 0; i < iterations; i++) {
+			CompiledRule compiledRule = processEngineConfiguration.getCompiledRule(ruleIds.get(i % ruleIds.size()));
+			if (compiledRule.getRulesScript() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int dispatchLegacy(List<String> ruleIds, int iterations) throws Exception {
+		int count = 0;
+		for (int i = 0; i < iterations; i++) {
+			Rule rule = processEngineConfiguration.getRule(ruleIds.get(i % ruleIds.size()));
+			Class<?> ruleClass = processEngineConfiguration.getRuleClass(rule.getId());
+			if (ruleClass.newInstance() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.bpmn.gateway;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.scriptlanguage.SimpleExpression;
+
+/**
+ * 网关条件测试,比较简单表达式与Groovy脚本的结果
+ * @author kenshin
+ *
+ */
+public class GatewayConditionTest extends TestCase {
+
+	/**
+	 * ExclusiveGatewayTest.bpmn中的线条件
+	 */
+	private static final String[] EXCLUSIVE_CONDITIONS = { "金额>1000", "金额>=500 && 金额<=1000", "金额<500" };
+
+	/**
+	 * InclusiveGatewayTest.bpmn中的线条件
+	 */
+	private static final String[] INCLUSIVE_CONDITIONS = { "金额>500", "金额>1000", "金额>1500" };
+
+	/**
+	 * 与Groovy比较结果的表达式,包括简单表达式不支持而交给Groovy执行的写法
+	 */
+	private static final String[] EXPRESSIONS = { "amount > 1000 && dept == 'HR'", "amount > 1000 && dept == \"IT\"",
+			"!(amount<=1500) || flag", "big == 1000", "l == big", "d > 2", "d == 2.5", "n == null", "n != null",
+			"null == n", "amount >= 1500", "dept < 'IA'", "true", "false", "amount", "-1 < amount", "amount > -1",
+			"flag && missing", "missing && flag", "!flag || missing", "s == 1500", "list && flag", "n > 1", "010 == 8",
+			"amount == 1500 && (dept != 'X' || missing)", "dept.size() > 1", "a = 1", "1.5e3 > 1", "dept == 'HR'\n",
+			"amount>1000&&dept=='HR'", "flag == true", "flag > false", "2147483648 > amount",
+			"99999999999999999999 > 1" };
+
+	/**
+	 * 简单表达式能执行的,结果与Groovy一致;不能执行的返回null或UNSUPPORTED
+	 */
+	public void testSimpleExpressionMatchesGroovy() {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("amount", 1500);
+		variables.put("dept", "HR");
+		variables.put("d", 2.5d);
+		variables.put("big", new BigDecimal("1000.00"));
+		variables.put("l", 1000L);
+		variables.put("flag", true);
+		variables.put("n", null);
+		variables.put("s", "1500");
+		variables.put("list", new ArrayList<Object>());
+
+		int supported = 0;
+		for (String expression : EXPRESSIONS) {
+			SimpleExpression simpleExpression = SimpleExpression.parse(expression);
+			if (simpleExpression == null) {
+				continue;
+			}
+			Object result = simpleExpression.evaluate(variables);
+			if (result == SimpleExpression.UNSUPPORTED) {
+				continue;
+			}
+			supported++;
+			Object groovyResult = new GroovyShell(new Binding(new HashMap<String, Object>(variables))).evaluate(expression);
+			assertEquals("表达式 " + expression + " 与Groovy结果不一致", String.valueOf(groovyResult), String.valueOf(result));
+		}
+		assertTrue(supported > 0);
+	}
+
+	/**
+	 * 流程定义中的网关条件都由简单表达式执行,不再交给Groovy
+	 */
+	public void testGatewayConditionsSupported() {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("金额", 700);
+		for (String condition : EXCLUSIVE_CONDITIONS) {
+			assertSupported(condition, variables);
+		}
+		for (String condition : INCLUSIVE_CONDITIONS) {
+			assertSupported(condition, variables);
+		}
+		assertEquals(Boolean.FALSE, SimpleExpression.parse(EXCLUSIVE_CONDITIONS[0]).evaluate(variables));
+		assertEquals(Boolean.TRUE, SimpleExpression.parse(EXCLUSIVE_CONDITIONS[1]).evaluate(variables));
+		assertEquals(Boolean.TRUE, SimpleExpression.parse(INCLUSIVE_CONDITIONS[0]).evaluate(variables));
+	}
+
+	/**
+	 * 没有直接提供变量集合的脚本语言按表达式引用的变量名从脚本环境中取值
+	 */
+	public void testVariableNames() {
+		SimpleExpression simpleExpression = SimpleExpression.parse("amount > 1000 && (dept == 'HR' || amount < 10) && !flag");
+		assertEquals(Arrays.asList("amount", "dept", "flag"), simpleExpression.getVariableNames());
+		assertTrue(SimpleExpression.parse("1 < 2 && 'a' == 'a'").getVariableNames().isEmpty());
+	}
+
+	private void assertSupported(String condition, Map<String, Object> variables) {
+		SimpleExpression simpleExpression = SimpleExpression.parse(condition);
+		assertNotNull("条件 " + condition + " 没有解析为简单表达式", simpleExpression);
+		assertTrue("条件 " + condition + " 交给了Groovy执行", simpleExpression.evaluate(variables) != SimpleExpression.UNSUPPORTED);
+	}
+
+}
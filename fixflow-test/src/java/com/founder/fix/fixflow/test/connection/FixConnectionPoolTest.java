@@ -0,0 +1,162 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.db.pool.FixConnectionPool;
+
+/**
+ * 连接池测试,使用H2内存数据库,不依赖流程引擎的数据库配置。
+ * H2由fixflow-expand以optional依赖引入测试工程的类路径
+ */
+public class FixConnectionPoolTest extends TestCase {
+
+	public static final String DRIVER_CLASS_NAME = "org.h2.Driver";
+
+	public static final String URL = "jdbc:h2:mem:fixflowpool;DB_CLOSE_DELAY=-1";
+
+	public static final String VALIDATION_QUERY = "select 1";
+
+	private FixConnectionPool connectionPool;
+
+	protected void setUp() throws Exception {
+		try {
+			Class.forName(DRIVER_CLASS_NAME);
+		} catch (ClassNotFoundException e) {
+			fail("类路径上没有H2数据库驱动,检查fixflow-expand的h2依赖");
+		}
+		connectionPool = new FixConnectionPool("testPool", DRIVER_CLASS_NAME, URL, "sa", "");
+		connectionPool.setValidationQuery(VALIDATION_QUERY);
+	}
+
+	protected void tearDown() throws Exception {
+		connectionPool.close();
+	}
+
+	/**
+	 * 设置minIdle后预先创建空闲连接
+	 */
+	public void testFillMinIdle() throws Exception {
+		connectionPool.setMinIdle(3);
+		connectionPool.fillMinIdle();
+		assertEquals(3, connectionPool.getIdleCount());
+		assertEquals(3, connectionPool.getTotalCount());
+		assertEquals(3, connectionPool.getCreateCount());
+
+		// 借出时优先使用预创建的连接
+		Connection connection = connectionPool.getConnection();
+		assertEquals(3, connectionPool.getCreateCount());
+		connection.close();
+		assertEquals(3, connectionPool.getIdleCount());
+	}
+
+	/**
+	 * 归还的连接回到空闲队列,超过maxIdle的连接被关闭
+	 */
+	public void testReleaseAndMaxIdle() throws Exception {
+		connectionPool.setMaxIdle(1);
+		Connection first = connectionPool.getConnection();
+		Connection second = connectionPool.getConnection();
+		assertEquals(2, connectionPool.getActiveCount());
+		first.close();
+		second.close();
+		assertEquals(0, connectionPool.getActiveCount());
+		assertEquals(1, connectionPool.getIdleCount());
+		assertEquals(1, connectionPool.getTotalCount());
+	}
+
+	/**
+	 * 归还时回滚未提交的事务并恢复自动提交
+	 */
+	public void testReleaseResetsAutoCommit() throws Exception {
+		connectionPool.setMaxIdle(1);
+		Connection connection = connectionPool.getConnection();
+		connection.setAutoCommit(false);
+		connection.close();
+		connection = connectionPool.getConnection();
+		assertTrue(connection.getAutoCommit());
+		connection.close();
+	}
+
+	/**
+	 * 校验失败的空闲连接被丢弃,重新创建连接
+	 */
+	public void testValidationFailure() throws Exception {
+		connectionPool.setValidationInterval(0);
+		connectionPool.getConnection().close();
+		connectionPool.setValidationQuery("select no_such_column from no_such_table");
+		Connection connection = connectionPool.getConnection();
+		assertEquals(1, connectionPool.getValidationFailureCount());
+		assertEquals(2, connectionPool.getCreateCount());
+		connection.close();
+	}
+
+	/**
+	 * 借出超过阈值的连接被记录为泄漏
+	 */
+	public void testLeakDetection() throws Exception {
+		connectionPool.setLeakDetectionThreshold(10);
+		Connection leaked = connectionPool.getConnection();
+		Thread.sleep(50);
+		Connection connection = connectionPool.getConnection();
+		assertEquals(1, connectionPool.getLeakCount());
+		connection.close();
+		leaked.close();
+	}
+
+	/**
+	 * 达到maxActive后等待maxWait毫秒超时
+	 */
+	public void testMaxWaitTimeout() throws Exception {
+		connectionPool.setMaxActive(1);
+		connectionPool.setMaxWait(100);
+		Connection connection = connectionPool.getConnection();
+		try {
+			connectionPool.getConnection();
+			fail("连接池已满时应当等待超时");
+		} catch (SQLException e) {
+			assertEquals(1, connectionPool.getTimeoutCount());
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * 关闭后空闲连接立即关闭,借出的连接归还时关闭
+	 */
+	public void testClose() throws Exception {
+		connectionPool.setMinIdle(1);
+		connectionPool.fillMinIdle();
+		Connection connection = connectionPool.getConnection();
+		connectionPool.close();
+		assertEquals(0, connectionPool.getIdleCount());
+		connection.close();
+		assertEquals(0, connectionPool.getTotalCount());
+		try {
+			connectionPool.getConnection();
+			fail("连接池关闭后不能再获取连接");
+		} catch (SQLException e) {
+			// 期望的异常
+		}
+	}
+
+}
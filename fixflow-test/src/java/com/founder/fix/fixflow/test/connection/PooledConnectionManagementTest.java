@@ -0,0 +1,100 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.db.pool.FixConnectionPool;
+import com.founder.fix.fixflow.expand.database.PooledConnectionManagement;
+
+/**
+ * 连接池管理器测试,每个管理器实例(即每个引擎)持有自己的连接池
+ */
+public class PooledConnectionManagementTest extends TestCase {
+
+	private static final String DB_ID = "DB_FIX_BIZ_BASE";
+
+	private TestConnectionManagement first;
+
+	private TestConnectionManagement second;
+
+	protected void setUp() throws Exception {
+		first = new TestConnectionManagement();
+		second = new TestConnectionManagement();
+	}
+
+	protected void tearDown() throws Exception {
+		first.close();
+		second.close();
+	}
+
+	/**
+	 * 相同的数据库编号在不同管理器上对应不同的连接池,同一管理器上复用
+	 */
+	public void testPoolPerManagement() throws Exception {
+		FixConnectionPool firstPool = first.getConnectionPool(DB_ID);
+		FixConnectionPool secondPool = second.getConnectionPool(DB_ID);
+		assertNotSame(firstPool, secondPool);
+		assertSame(firstPool, first.getConnectionPool(DB_ID));
+		assertEquals(1, first.createCount);
+		assertEquals(1, second.createCount);
+	}
+
+	/**
+	 * 关闭一个管理器只关闭它自己的连接池
+	 */
+	public void testCloseOnlyOwnPools() throws Exception {
+		FixConnectionPool firstPool = first.getConnectionPool(DB_ID);
+		FixConnectionPool secondPool = second.getConnectionPool(DB_ID);
+		first.close();
+		try {
+			firstPool.getConnection();
+			fail("关闭后的连接池不能再获取连接");
+		} catch (SQLException e) {
+			// 期望的异常
+		}
+		Connection connection = secondPool.getConnection();
+		connection.close();
+		assertSame(secondPool, second.getConnectionPool(DB_ID));
+
+		// 关闭后再次获取时创建新的连接池
+		FixConnectionPool newPool = first.getConnectionPool(DB_ID);
+		assertNotSame(firstPool, newPool);
+		assertEquals(2, first.createCount);
+	}
+
+	/**
+	 * 连接池直接连H2内存数据库,不读取引擎的数据库配置
+	 */
+	private static class TestConnectionManagement extends PooledConnectionManagement {
+
+		int createCount;
+
+		protected FixConnectionPool createConnectionPool(String dbId) {
+			createCount++;
+			FixConnectionPool connectionPool = new FixConnectionPool(dbId, FixConnectionPoolTest.DRIVER_CLASS_NAME,
+					FixConnectionPoolTest.URL, "sa", "");
+			connectionPool.setValidationQuery(FixConnectionPoolTest.VALIDATION_QUERY);
+			return connectionPool;
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.db.mapping;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.ResultMap;
+import com.founder.fix.fixflow.core.impl.db.ResultMapPlan;
+import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 结果映射测试
+ * @author kenshin
+ *
+ */
+public class ResultMapPlanTest extends AbstractFixFlowTestCase {
+
+	private ResultMap resultMap;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		resultMap = processEngineConfiguration.getResultMap("taskResultMap");
+		assertNotNull(resultMap);
+	}
+
+	/**
+	 * 每个ResultMap只编译一次
+	 */
+	public void testPlanCached() {
+		ResultMapPlan resultMapPlan = ResultMapPlan.getResultMapPlan(resultMap);
+		assertSame(resultMapPlan, ResultMapPlan.getResultMapPlan(resultMap));
+		assertEquals(TaskInstanceEntity.class, resultMapPlan.getEntityClass());
+	}
+
+	/**
+	 * 字段按类型转换后设置到实体上,没有映射的字段作为扩展字段
+	 */
+	public void testApplyRow() {
+		Map<String, Object> row = TaskRowFixture.createRow(1);
+		Timestamp createTime = (Timestamp) row.get("CREATE_TIME");
+
+		TaskInstanceEntity taskInstance = new TaskInstanceEntity();
+		taskInstance.persistentInit(resultMap, row);
+
+		assertEquals("task-1", taskInstance.getId());
+		assertEquals("审批", taskInstance.getName());
+		assertEquals(3, taskInstance.getVersion());
+		assertEquals(50, taskInstance.getPriority());
+		assertEquals(createTime.getTime(), taskInstance.getCreateTime().getTime());
+		// 空值字段不设置
+		assertNull(taskInstance.getEndTime());
+		// 已映射的字段从行数据中移除,剩下的是扩展字段
+		assertFalse(row.containsKey("TASKINSTANCE_ID"));
+		assertEquals("扩展值", taskInstance.getExtensionField("BIZ_EXTRA"));
+	}
+
+}
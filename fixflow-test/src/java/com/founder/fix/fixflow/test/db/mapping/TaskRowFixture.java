@@ -0,0 +1,58 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.db.mapping;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 任务结果映射用的行数据,结果映射测试和结果映射基准共用
+ * @author kenshin
+ *
+ */
+public class TaskRowFixture {
+
+	private TaskRowFixture() {
+	}
+
+	/**
+	 * 按数据库返回的类型构造一行任务数据,END_TIME为空值,BIZ_EXTRA是没有映射的扩展字段
+	 * @param i 行号,用于生成任务编号和流程实例编号
+	 * @return 可修改的行数据
+	 */
+	public static Map<String, Object> createRow(int i) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("TASKINSTANCE_ID", "task-" + i);
+		row.put("NAME", "审批");
+		row.put("PROCESSINSTANCE_ID", "process-" + (i / 10));
+		row.put("PROCESSDEFINITION_KEY", "Process_Test");
+		row.put("VERSION", new BigDecimal(3));
+		row.put("NODE_ID", "UserTask_1");
+		row.put("ASSIGNEE", "admin");
+		row.put("CREATE_TIME", new Timestamp(System.currentTimeMillis()));
+		row.put("START_TIME", new Timestamp(System.currentTimeMillis()));
+		row.put("END_TIME", null);
+		row.put("PRIORITY", "50");
+		row.put("ISSUSPENDED", "false");
+		row.put("BIZ_EXTRA", "扩展值");
+		return row;
+	}
+
+}
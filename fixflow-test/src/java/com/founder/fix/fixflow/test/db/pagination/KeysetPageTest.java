@@ -0,0 +1,87 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.db.pagination;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.KeysetPage;
+
+/**
+ * 游标分页的游标和条件测试,排序字段为空(如DUEDATE、END_TIME)时也能翻页,不依赖数据库
+ */
+public class KeysetPageTest extends TestCase {
+
+	public void testNullValueToken() {
+		KeysetPage page = new KeysetPage("T.DUEDATE asc", "T.TASKINSTANCE_ID", null, 2);
+		page.readLastValues(rows(null, "2"));
+		String token = page.getNextToken(true);
+		assertNotNull(token);
+
+		KeysetPage nextPage = new KeysetPage("T.DUEDATE asc", "T.TASKINSTANCE_ID", token, 2);
+		List<Object> params = new ArrayList<Object>();
+		assertEquals("((DUEDATE IS NULL and TASKINSTANCE_ID > ?))", nextPage.getSeekCondition(params));
+		assertEquals(1, params.size());
+		assertEquals("2", params.get(0));
+	}
+
+	public void testAscendingSeekIncludesNulls() {
+		Timestamp dueDate = new Timestamp(System.currentTimeMillis());
+		KeysetPage page = new KeysetPage("T.DUEDATE asc", "T.TASKINSTANCE_ID", null, 2);
+		page.readLastValues(rows(dueDate, "2"));
+		KeysetPage nextPage = new KeysetPage("T.DUEDATE asc", "T.TASKINSTANCE_ID", page.getNextToken(true), 2);
+		List<Object> params = new ArrayList<Object>();
+		assertEquals("(((DUEDATE > ? or DUEDATE IS NULL)) or (DUEDATE = ? and TASKINSTANCE_ID > ?))", nextPage.getSeekCondition(params));
+		assertEquals(3, params.size());
+		assertEquals(dueDate, params.get(0));
+		assertEquals(dueDate, params.get(1));
+	}
+
+	public void testDescendingSeekAfterNull() {
+		KeysetPage page = new KeysetPage("T.END_TIME desc", "T.PROCESSINSTANCE_ID", null, 2);
+		page.readLastValues(rows("END_TIME", null, "PROCESSINSTANCE_ID", "5"));
+		KeysetPage nextPage = new KeysetPage("T.END_TIME desc", "T.PROCESSINSTANCE_ID", page.getNextToken(true), 2);
+		List<Object> params = new ArrayList<Object>();
+		assertEquals("((END_TIME IS NOT NULL) or (END_TIME IS NULL and PROCESSINSTANCE_ID < ?))", nextPage.getSeekCondition(params));
+		assertEquals(1, params.size());
+	}
+
+	public void testOrderBySqlSortsNullsExplicitly() {
+		KeysetPage page = new KeysetPage("T.DUEDATE desc", "T.TASKINSTANCE_ID", null, 2);
+		assertEquals(" order by CASE WHEN DUEDATE IS NULL THEN 1 ELSE 0 END desc,DUEDATE desc,TASKINSTANCE_ID desc", page.getOrderBySql());
+		assertEquals("DUEDATE desc,TASKINSTANCE_ID desc", page.getColumnOrderBy());
+	}
+
+	private List<Map<String, Object>> rows(Object dueDate, String taskId) {
+		return rows("DUEDATE", dueDate, "TASKINSTANCE_ID", taskId);
+	}
+
+	private List<Map<String, Object>> rows(String column, Object value, String idColumn, String id) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put(column, value);
+		row.put(idColumn, id);
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		rows.add(row);
+		return rows;
+	}
+}
@@ -1,11 +1,16 @@
 package com.founder.fix.fixflow.test.db.pagination;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.expand.database.pagination.MySqlPaginationImpl;
 import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
 
 /**
@@ -42,6 +47,52 @@ public class PaginationTest extends AbstractFixFlowTestCase{
 		
 		
 	}
+
+	/**
+	 * MySQL默认用SQL_CALC_FOUND_ROWS/FOUND_ROWS()取得总行数,兼容MySQL 5.x
+	 */
+	public void testMySqlPaginationWithTotalFoundRows() {
+		MySqlPaginationImpl pagination = new MySqlPaginationImpl();
+		String sql = pagination.getPaginationWithTotalSql("SELECT * FROM FIXFLOW_RUN_TASKINSTANCE T", 1, 15, "*", null);
+		assertTrue(sql.startsWith("(SELECT SQL_CALC_FOUND_ROWS *"));
+		assertTrue(sql.indexOf("over()") < 0);
+		assertTrue(sql.indexOf(Pagination.TOTAL_COLUMN) < 0);
+		assertEquals("SELECT FOUND_ROWS()", pagination.getFoundRowsSql());
+	}
+
+	/**
+	 * MySQL 8.0配置windowFunctions=true后用窗口函数带出总行数,不再使用SQL_CALC_FOUND_ROWS
+	 */
+	public void testMySqlPaginationWithTotal() {
+		MySqlPaginationImpl pagination = new MySqlPaginationImpl();
+		Properties engineProperties = new Properties();
+		engineProperties.setProperty("dataBase.test.windowFunctions", "true");
+		pagination.configure(engineProperties, "dataBase.test.");
+		String sql = pagination.getPaginationWithTotalSql("SELECT * FROM FIXFLOW_RUN_TASKINSTANCE T", 1, 15, "*", null);
+		assertTrue(sql.indexOf("over() as " + Pagination.TOTAL_COLUMN) > 0);
+		assertTrue(sql.indexOf("SQL_CALC_FOUND_ROWS") < 0);
+		assertNull(pagination.getFoundRowsSql());
+	}
+
+	/**
+	 * 读取总行数后每一行都不再有总行数字段
+	 */
+	public void testReadTotalRemovesTotalColumn() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 2; i++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("ID", "t" + i);
+			row.put(Pagination.TOTAL_COLUMN, Long.valueOf(42));
+			rows.add(row);
+		}
+		Page page = new Page(0, 15);
+		page.readTotal(rows);
+		assertEquals(42, page.getTotal());
+		for (Map<String, Object> row : rows) {
+			assertFalse(row.containsKey(Pagination.TOTAL_COLUMN));
+			assertEquals(1, row.size());
+		}
+	}
 	
 
 }
@@ -0,0 +1,133 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.db.pagination;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.Page;
+import com.founder.fix.fixflow.core.impl.db.RunHisQueryExecutor;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
+import com.founder.fix.fixflow.expand.database.pagination.MySqlPaginationImpl;
+import com.founder.fix.fixflow.expand.database.pagination.OraclePaginationImpl;
+import com.founder.fix.fixflow.expand.database.pagination.SqlServerPaginationImpl;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 运行表和归档表分开查询后的归并测试,空值和字符串按数据库方言的顺序归并
+ * @author kenshin
+ *
+ */
+public class RunHisMergeTest extends AbstractFixFlowTestCase {
+
+	private Pagination pagination;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+		pagination = processEngineConfiguration.getDbConfig().getPagination();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		processEngineConfiguration.getDbConfig().setPagination(pagination);
+		super.tearDown();
+	}
+
+	/**
+	 * 运行表的END_TIME都为空,MySQL、SQL Server升序时空值在最前,Oracle在最后
+	 */
+	public void testNullEndTimeOrder() {
+		List<Map<String, Object>> runRows = new ArrayList<Map<String, Object>>();
+		runRows.add(row("r1", "END_TIME", null));
+		runRows.add(row("r2", "END_TIME", null));
+		List<Map<String, Object>> hisRows = new ArrayList<Map<String, Object>>();
+		hisRows.add(row("h1", "END_TIME", new Timestamp(1000L)));
+		hisRows.add(row("h2", "END_TIME", new Timestamp(2000L)));
+
+		processEngineConfiguration.getDbConfig().setPagination(new MySqlPaginationImpl());
+		assertEquals("r1,r2,h1,h2", ids(merge(runRows, hisRows, "T.END_TIME asc")));
+		assertEquals("h2,h1,r1,r2", ids(merge(runRows, reverse(hisRows), "T.END_TIME desc")));
+
+		processEngineConfiguration.getDbConfig().setPagination(new SqlServerPaginationImpl());
+		assertEquals("r1,r2,h1,h2", ids(merge(runRows, hisRows, "T.END_TIME asc")));
+
+		processEngineConfiguration.getDbConfig().setPagination(new OraclePaginationImpl());
+		assertEquals("h1,h2,r1,r2", ids(merge(runRows, hisRows, "T.END_TIME asc")));
+	}
+
+	/**
+	 * MySQL、SQL Server默认排序规则不区分大小写,Oracle按字符编码排序
+	 */
+	public void testStringOrder() {
+		List<Map<String, Object>> hisRows = new ArrayList<Map<String, Object>>();
+		hisRows.add(row("h1", "NAME", "B"));
+
+		processEngineConfiguration.getDbConfig().setPagination(new MySqlPaginationImpl());
+		List<Map<String, Object>> runRows = new ArrayList<Map<String, Object>>();
+		runRows.add(row("r1", "NAME", "a"));
+		runRows.add(row("r2", "NAME", "C"));
+		assertEquals("r1,h1,r2", ids(merge(runRows, hisRows, "T.NAME asc")));
+
+		processEngineConfiguration.getDbConfig().setPagination(new OraclePaginationImpl());
+		runRows = new ArrayList<Map<String, Object>>();
+		runRows.add(row("r2", "NAME", "C"));
+		runRows.add(row("r1", "NAME", "a"));
+		assertEquals("h1,r2,r1", ids(merge(runRows, hisRows, "T.NAME asc")));
+	}
+
+	private List<Map<String, Object>> merge(final List<Map<String, Object>> runRows, final List<Map<String, Object>> hisRows, String orderBy) {
+		return new RunHisQueryExecutor() {
+			protected List<Map<String, Object>> executeQuery(QueryLocation queryLocation, Page page) {
+				return QueryLocation.RUN.equals(queryLocation) ? runRows : hisRows;
+			}
+		}.execute(orderBy, null);
+	}
+
+	private Map<String, Object> row(String id, String column, Object value) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("ID", id);
+		row.put(column, value);
+		return row;
+	}
+
+	private List<Map<String, Object>> reverse(List<Map<String, Object>> rows) {
+		List<Map<String, Object>> reversed = new ArrayList<Map<String, Object>>();
+		for (int i = rows.size() - 1; i >= 0; i--) {
+			reversed.add(rows.get(i));
+		}
+		return reversed;
+	}
+
+	private String ids(List<Map<String, Object>> rows) {
+		StringBuffer sb = new StringBuffer();
+		for (Map<String, Object> row : rows) {
+			if (sb.length() > 0) {
+				sb.append(",");
+			}
+			sb.append(row.get("ID"));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.db.rule;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.Rule;
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.CompiledRule;
+import com.founder.fix.fixflow.core.impl.db.MappingSqlSession;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 规则分发表测试
+ * @author kenshin
+ *
+ */
+public class RuleDispatchTest extends AbstractFixFlowTestCase {
+
+	/**
+	 * 每个规则都编译进分发表,执行类与规则配置一致
+	 */
+	public void testCompiledRuleTable() throws Exception {
+		assertFalse(processEngineConfiguration.getRuleMap().isEmpty());
+		for (Rule rule : processEngineConfiguration.getRuleMap().values()) {
+			CompiledRule compiledRule = processEngineConfiguration.getCompiledRule(rule.getId());
+			assertNotNull("规则 " + rule.getId() + " 没有编译", compiledRule);
+			assertSame(rule, compiledRule.getRule());
+			assertSame(processEngineConfiguration.getRuleClass(rule.getId()), compiledRule.getRuleClass());
+			if (compiledRule.isShared()) {
+				// 无状态的执行类只创建一次
+				assertSame(compiledRule.getRulesScript(), compiledRule.getRulesScript());
+			} else if (compiledRule.getRuleClass() != null) {
+				// 有状态的执行类每次执行创建新实例
+				assertNotSame(compiledRule.getRulesScript(), compiledRule.getRulesScript());
+			}
+		}
+	}
+
+	/**
+	 * 只有final和static字段的类才认为是无状态的,父类的字段同样检查
+	 */
+	public void testStatelessDetection() {
+		assertTrue(CompiledRule.isStateless(StatelessRule.class));
+		assertFalse(CompiledRule.isStateless(StatefulRule.class));
+		assertFalse(CompiledRule.isStateless(InheritedStatefulRule.class));
+	}
+
+	/**
+	 * 未配置的规则直接报告规则编号
+	 */
+	public void testUnknownRule() {
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+		MappingSqlSession mappingSqlSession = new MappingSqlSession(Context.getDbConnection(), Context.getCacheObject());
+		try {
+			mappingSqlSession.selectOne("noSuchRule", null);
+			fail("未配置的规则应当抛出异常");
+		} catch (FixFlowDbException e) {
+			assertTrue(e.getMessage().indexOf("noSuchRule") >= 0);
+		}
+	}
+
+	public static class StatelessRule {
+
+		private static int counter;
+
+		private final String name = "stateless";
+
+		public String toString() {
+			return name + counter;
+		}
+	}
+
+	public static class StatefulRule {
+
+		protected int count;
+	}
+
+	public static class InheritedStatefulRule extends StatefulRule {
+
+		private static final long VERSION = 1L;
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.api.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.bpmn2.BaseElement;
+import org.eclipse.bpmn2.Bpmn2Factory;
+import org.eclipse.bpmn2.Definitions;
+import org.eclipse.bpmn2.FlowElement;
+import org.eclipse.bpmn2.Lane;
+import org.eclipse.bpmn2.SequenceFlow;
+import org.eclipse.bpmn2.SubProcess;
+import org.eclipse.bpmn2.UserTask;
+import org.eclipse.bpmn2.di.BPMNEdge;
+import org.eclipse.bpmn2.di.BPMNShape;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.util.BpmnModelUtil;
+import com.founder.fix.fixflow.core.impl.util.ElementIndex;
+import com.founder.fix.fixflow.core.impl.util.EMFUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+import com.founder.fix.fixflow.test.Deployment;
+
+/**
+ * 元素索引测试
+ * <p>
+ * 同一个流程定义分别在有索引和去掉索引(遍历模型)的情况下查找,两种方式的结果必须相同。
+ * 测试流程包含嵌套的子流程、泳道和重复编号的元素。
+ * 同一编号有多个FlowElement时,getFlowElementsMap保留最后一个,按编号查找返回第一个。
+ * @author kenshin
+ *
+ */
+public class ElementIndexTest extends AbstractFixFlowTestCase {
+
+	private static final String PROCESS_KEY = "ElementIndexTest";
+
+	/** 要比较的类型 */
+	private static final Class<?>[] ELEMENT_CLASSES = { BaseElement.class, FlowElement.class, Lane.class, SubProcess.class, UserTask.class,
+			SequenceFlow.class, BPMNShape.class, BPMNEdge.class };
+
+	/**
+	 * 按编号查找元素、FlowElement、图形、连线以及按类型取全部内容,索引和遍历的结果相同
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/model/ElementIndexTest.bpmn" })
+	public void testIndexMatchesLinearScan() {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		Definitions definitions = processDefinition.getDefinitions();
+		ElementIndex elementIndex = ElementIndex.get(processDefinition);
+		assertNotNull("缓存中的流程定义应该已经建立索引", elementIndex);
+
+		Set<String> ids = new LinkedHashSet<String>();
+		for (BaseElement baseElement : elementIndex.getAll(BaseElement.class)) {
+			if (baseElement.getId() != null) {
+				ids.add(baseElement.getId());
+			}
+		}
+		ids.add("NotExist_1");
+
+		List<Object> indexed = lookup(processDefinition, definitions, ids);
+		Map<String, FlowElement> indexedFlowElements = processDefinition.getFlowElementsMap();
+		List<Object> scanned;
+		Map<String, FlowElement> scannedFlowElements;
+		Resource resource = processDefinition.eResource();
+		resource.eAdapters().remove(elementIndex);
+		try {
+			assertNull(ElementIndex.get(processDefinition));
+			scanned = lookup(processDefinition, definitions, ids);
+			scannedFlowElements = processDefinition.getFlowElementsMap();
+		} finally {
+			resource.eAdapters().add(elementIndex);
+		}
+
+		assertEquals(scanned.size(), indexed.size());
+		for (int i = 0; i < scanned.size(); i++) {
+			Object expected = scanned.get(i);
+			Object actual = indexed.get(i);
+			if (expected instanceof List) {
+				assertEquals("第" + i + "项", expected, actual);
+			} else {
+				assertSame("第" + i + "项", expected, actual);
+			}
+		}
+		assertEquals(scannedFlowElements, indexedFlowElements);
+		assertSame(elementIndex, ElementIndex.get(processDefinition));
+	}
+
+	/**
+	 * 嵌套子流程内的元素、泳道以及它们的图形都在索引中,重复的编号返回文档顺序中的第一个
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/model/ElementIndexTest.bpmn" })
+	public void testNestedElementsAndLanes() {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		Definitions definitions = processDefinition.getDefinitions();
+		assertNotNull(ElementIndex.get(processDefinition));
+
+		FlowElement userTask = EMFUtil.findFlowElement("UserTask_2", processDefinition);
+		assertNotNull(userTask);
+		SubProcess subProcess = EMFUtil.findElement("SubProcess_2", processDefinition, SubProcess.class);
+		assertSame(subProcess, userTask.eContainer());
+		assertSame(EMFUtil.findElement("SubProcess_1", processDefinition), subProcess.eContainer());
+		assertSame(userTask, processDefinition.getFlowElement("UserTask_2"));
+
+		Lane lane = EMFUtil.findElement("Lane_3", processDefinition, Lane.class);
+		assertNotNull(lane);
+		assertNull(EMFUtil.findFlowElement("Lane_3", processDefinition));
+		assertNull(EMFUtil.findElement("Lane_3", processDefinition, FlowElement.class));
+		assertEquals(3, EMFUtil.getAll(Lane.class, processDefinition).size());
+
+		assertNotNull(BpmnModelUtil.getBpmnShape(definitions, "Lane_2"));
+		assertNotNull(BpmnModelUtil.getBpmnShape(definitions, "UserTask_2"));
+		assertNotNull(BpmnModelUtil.getBpmnEdge(definitions, "SequenceFlow_7"));
+		assertNull(BpmnModelUtil.getBpmnEdge(definitions, "UserTask_2"));
+
+		// 几个人工任务的表达式使用相同的编号
+		BaseElement expression = EMFUtil.findElement("processInfo.getStartAuthor()", processDefinition);
+		assertNotNull(expression);
+		UserTask firstTask = EMFUtil.findElement("UserTask_1", processDefinition, UserTask.class);
+		assertSame(firstTask, expression.eContainer().eContainer().eContainer());
+	}
+
+	/**
+	 * 重复编号的FlowElement:getFlowElementsMap保留文档顺序中的最后一个,与原来遍历建立的Map一致;
+	 * 按编号查找返回第一个,与遍历查找一致
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/model/ElementIndexTest.bpmn" })
+	public void testDuplicateFlowElementIds() {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		FlowElement original = processDefinition.getFlowElement("UserTask_2");
+		SubProcess subProcess = EMFUtil.findElement("SubProcess_1", processDefinition, SubProcess.class);
+		// 加在外层子流程的最后,文档顺序在原来的UserTask_2之后
+		UserTask duplicate = Bpmn2Factory.eINSTANCE.createUserTask();
+		duplicate.setId("UserTask_2");
+		subProcess.getFlowElements().add(duplicate);
+		try {
+			ElementIndex elementIndex = processDefinition.buildElementIndex();
+			Map<String, FlowElement> indexedFlowElements = processDefinition.getFlowElementsMap();
+			assertSame(duplicate, indexedFlowElements.get("UserTask_2"));
+			assertSame(original, processDefinition.getFlowElement("UserTask_2"));
+			assertSame(original, EMFUtil.findElement("UserTask_2", processDefinition, FlowElement.class));
+
+			Resource resource = processDefinition.eResource();
+			resource.eAdapters().remove(elementIndex);
+			try {
+				assertEquals(processDefinition.getFlowElementsMap(), indexedFlowElements);
+				assertSame(original, processDefinition.getFlowElement("UserTask_2"));
+			} finally {
+				resource.eAdapters().add(elementIndex);
+			}
+		} finally {
+			subProcess.getFlowElements().remove(duplicate);
+			processDefinition.buildElementIndex();
+		}
+		assertSame(original, processDefinition.getFlowElementsMap().get("UserTask_2"));
+	}
+
+	/**
+	 * 按相同的顺序执行全部查找,结果放在一个列表中
+	 */
+	private List<Object> lookup(ProcessDefinitionBehavior processDefinition, Definitions definitions, Set<String> ids) {
+		List<Object> results = new ArrayList<Object>();
+		for (String id : ids) {
+			results.add(EMFUtil.findElement(id, processDefinition));
+			results.add(EMFUtil.findFlowElement(id, processDefinition));
+			for (Class<?> elementClass : ELEMENT_CLASSES) {
+				results.add(EMFUtil.findElement(id, processDefinition, elementClass));
+			}
+			results.add(BpmnModelUtil.getBpmnShape(definitions, id));
+			results.add(BpmnModelUtil.getBpmnEdge(definitions, id));
+		}
+		for (Class<?> elementClass : ELEMENT_CLASSES) {
+			results.add(new ArrayList<Object>(EMFUtil.getAll(elementClass, processDefinition)));
+		}
+		return results;
+	}
+
+	private ProcessDefinitionBehavior getProcessDefinition() {
+		String processDefinitionId = modelService.createProcessDefinitionQuery().processDefinitionKey(PROCESS_KEY).singleResult().getProcessDefinitionId();
+		return modelService.getProcessDefinition(processDefinitionId);
+	}
+
+}
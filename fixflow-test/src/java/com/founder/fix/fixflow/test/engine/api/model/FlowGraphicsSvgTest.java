@@ -0,0 +1,156 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.api.model;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipInputStream;
+
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
+import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowGraphicsSvg;
+import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
+import com.founder.fix.fixflow.core.impl.persistence.deployer.DeploymentCache;
+import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
+import com.founder.fix.fixflow.core.model.DeploymentBuilder;
+import com.founder.fix.fixflow.core.runtime.ProcessInstance;
+import com.founder.fix.fixflow.core.task.TaskInstance;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+import com.founder.fix.fixflow.test.Deployment;
+
+/**
+ * 流程图缓存测试
+ * <p>
+ * 组件模板只解析一次,渲染好的流程图按流程定义编号缓存,ETag由内容计算,实例高亮层叠加在缓存的流程图上。
+ * @author kenshin
+ *
+ */
+public class FlowGraphicsSvgTest extends AbstractFixFlowTestCase {
+
+	private static final String PROCESS_KEY = "Process_TaskServiceTest";
+
+	private static final String SVG_END = "</svg>";
+
+	/**
+	 * 同一个模板路径返回同一份解析结果
+	 */
+	public void testComponentTemplateCache() throws Exception {
+		String template = FlowSvgUtil.getComponentTemplate("/svgcomponent/task.xml");
+		assertNotNull(template);
+		assertSame(template, FlowSvgUtil.getComponentTemplate("/svgcomponent/task.xml"));
+	}
+
+	/**
+	 * 第二次获取流程图命中缓存,移除缓存后重新渲染的内容和ETag不变
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceTest.bpmn" })
+	public void testFlowGraphicsSvgCache() {
+		String processDefinitionId = getProcessDefinitionId();
+		DeploymentCache deploymentCache = processEngineConfiguration.getDeploymentCache();
+
+		String svg = modelService.getFlowGraphicsSvg(processDefinitionId);
+		FlowGraphicsSvg flowGraphicsSvg = deploymentCache.findFlowGraphicsSvg(processDefinitionId);
+		assertNotNull(flowGraphicsSvg);
+		assertSame(svg, modelService.getFlowGraphicsSvg(processDefinitionId));
+		String eTag = modelService.getFlowGraphicsSvgETag(processDefinitionId);
+		assertEquals(flowGraphicsSvg.getETag(), eTag);
+
+		deploymentCache.removeProcessDefinition(processDefinitionId);
+		assertNull(deploymentCache.findFlowGraphicsSvg(processDefinitionId));
+		String renderedAgain = modelService.getFlowGraphicsSvg(processDefinitionId);
+		assertNotSame(svg, renderedAgain);
+		assertEquals(svg, renderedAgain);
+		assertEquals(eTag, modelService.getFlowGraphicsSvgETag(processDefinitionId));
+	}
+
+	/**
+	 * 更新发布后缓存的流程图失效,新内容的ETag不同
+	 */
+	public void testFlowGraphicsSvgRedeploy() {
+		deployZip("com/founder/fix/fixflow/test/engine/api/model/Process_TaskServiceTest.zip", null);
+		ProcessDefinitionBehavior processDefinition = modelService.createProcessDefinitionQuery().processDefinitionKey(PROCESS_KEY).singleResult();
+		String processDefinitionId = processDefinition.getProcessDefinitionId();
+		String eTag = modelService.getFlowGraphicsSvgETag(processDefinitionId);
+		assertNotNull(processEngineConfiguration.getDeploymentCache().findFlowGraphicsSvg(processDefinitionId));
+
+		deployZip("com/founder/fix/fixflow/test/engine/api/model/Process_TaskServiceTest_new.zip", processDefinition.getDeploymentId());
+		assertNull(processEngineConfiguration.getDeploymentCache().findFlowGraphicsSvg(processDefinitionId));
+		assertFalse(eTag.equals(modelService.getFlowGraphicsSvgETag(processDefinitionId)));
+	}
+
+	/**
+	 * 高亮层插在&lt;/svg&gt;之前,只包含有位置的节点
+	 */
+	public void testOverlay() {
+		Map<String, float[]> nodeBounds = new HashMap<String, float[]>();
+		nodeBounds.put("UserTask_1", new float[] { 10, 20, 100, 80 });
+		FlowGraphicsSvg flowGraphicsSvg = new FlowGraphicsSvg("p1", "<svg><rect/></svg>", nodeBounds);
+		List<String> nodeIds = new ArrayList<String>();
+		assertSame(flowGraphicsSvg.getSvg(), flowGraphicsSvg.overlay(nodeIds));
+
+		nodeIds.add("UserTask_1");
+		nodeIds.add("NoShape_1");
+		assertEquals("<svg><rect/><g class=\"highlight\" fill=\"none\" stroke=\"#ff0000\" stroke-width=\"3\">"
+				+ "<rect id=\"highlight_UserTask_1\" x=\"10.0\" y=\"20.0\" width=\"100.0\" height=\"80.0\" rx=\"5\" ry=\"5\"/></g></svg>",
+				flowGraphicsSvg.overlay(nodeIds));
+		// 叠加不修改缓存的流程图
+		assertEquals("<svg><rect/></svg>", flowGraphicsSvg.getSvg());
+	}
+
+	/**
+	 * 流程实例的流程图在缓存的流程图末尾加上当前节点的高亮层
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceTest.bpmn" })
+	public void testProcessInstanceFlowGraphicsSvg() {
+		ExpandTaskCommand expandTaskCommand = new ExpandTaskCommand();
+		expandTaskCommand.setProcessDefinitionKey(PROCESS_KEY);
+		expandTaskCommand.setBusinessKey("BK_testFlowGraphicsSvg");
+		expandTaskCommand.setCommandType("startandsubmit");
+		expandTaskCommand.setInitiator("1200119390");
+		expandTaskCommand.setUserCommandId("HandleCommand_2");
+		ProcessInstance processInstance = (ProcessInstance) taskService.expandTaskComplete(expandTaskCommand, null);
+		TaskInstance taskInstance = taskService.createTaskQuery().processInstanceId(processInstance.getId()).taskNotEnd().singleResult();
+		assertNotNull(taskInstance);
+
+		String svg = modelService.getFlowGraphicsSvg(getProcessDefinitionId());
+		String instanceSvg = modelService.getProcessInstanceFlowGraphicsSvg(processInstance.getId());
+		int end = svg.lastIndexOf(SVG_END);
+		assertTrue(instanceSvg.startsWith(svg.substring(0, end)));
+		assertTrue(instanceSvg.endsWith(svg.substring(end)));
+		String highlight = instanceSvg.substring(end, instanceSvg.length() - (svg.length() - end));
+		assertTrue(highlight.startsWith("<g class=\"highlight\""));
+		assertTrue(highlight.indexOf("id=\"highlight_" + taskInstance.getNodeId() + "\"") > 0);
+	}
+
+	private String getProcessDefinitionId() {
+		return modelService.createProcessDefinitionQuery().processDefinitionKey(PROCESS_KEY).singleResult().getProcessDefinitionId();
+	}
+
+	private void deployZip(String zipPath, String updateDeploymentId) {
+		DeploymentBuilder deploymentBuilder = modelService.createDeployment().name("测试名称");
+		InputStream inputStream = ReflectUtil.getResourceAsStream(zipPath);
+		deploymentBuilder.addZipInputStream(new ZipInputStream(inputStream));
+		if (updateDeploymentId != null) {
+			deploymentBuilder.updateDeploymentId(updateDeploymentId);
+		}
+		assertNotNull(deploymentBuilder.deploy().getId());
+	}
+}
@@ -21,7 +21,13 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+import com.founder.fix.fixflow.core.impl.cmd.ArchiveChunkCmd;
+import com.founder.fix.fixflow.core.impl.cmd.StartArchiveCmd;
 import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
+import com.founder.fix.fixflow.core.impl.persistence.instance.HistoryPersistence;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
 import com.founder.fix.fixflow.core.runtime.ProcessInstance;
 import com.founder.fix.fixflow.core.runtime.ProcessInstanceQuery;
 import com.founder.fix.fixflow.core.runtime.Token;
@@ -491,4 +497,137 @@ public class HistoryServiceTest extends AbstractFixFlowTestCase {
 		//验证历史表中有2条
 		assertEquals(2, processInstances.size());
 	}
+	
+	/**
+	 * 测试分批归档:每批把流程实例、任务、令牌移到历史表并从运行表删除,
+	 * 不足一批的最后一批把检查点置为完成
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceNewTest.bpmn"})
+	public void testArchiveChunks(){
+		List<String> processInstanceIds = new ArrayList<String>();
+		for(int i = 0; i<5;i++){
+			processInstanceIds.add(startAndCompleteProcess());
+		}
+		//未结束的流程实例不归档
+		String runningProcessInstanceId = startProcess();
+		
+		//每批2个,5个结束的流程实例分3批归档
+		StartArchiveCmd startArchiveCmd = new StartArchiveCmd("TaskServiceNewTest", null, null, 2, 0);
+		processEngineConfiguration.getCommandExecutor().execute(startArchiveCmd);
+		String archiveId = startArchiveCmd.getArchiveId();
+		
+		ArchiveCheckpoint archiveCheckpoint = processEngineConfiguration.getCommandExecutor().execute(new ArchiveChunkCmd(archiveId));
+		assertEquals(ArchiveCheckpoint.STATUS_RUNNING, archiveCheckpoint.getStatus());
+		assertEquals(1, archiveCheckpoint.getChunkCount());
+		assertEquals(2, archiveCheckpoint.getArchivedCount());
+		//第一批移到历史表
+		assertEquals(4, runtimeService.createProcessInstanceQuery().processDefinitionKey("TaskServiceNewTest").list().size());
+		assertEquals(2, runtimeService.createProcessInstanceQuery().processDefinitionKey("TaskServiceNewTest").his().list().size());
+		
+		archiveCheckpoint = processEngineConfiguration.getCommandExecutor().execute(new ArchiveChunkCmd(archiveId));
+		assertEquals(ArchiveCheckpoint.STATUS_RUNNING, archiveCheckpoint.getStatus());
+		assertEquals(2, archiveCheckpoint.getChunkCount());
+		assertEquals(4, archiveCheckpoint.getArchivedCount());
+		
+		//最后一批只有1个,检查点完成
+		archiveCheckpoint = processEngineConfiguration.getCommandExecutor().execute(new ArchiveChunkCmd(archiveId));
+		assertEquals(ArchiveCheckpoint.STATUS_COMPLETED, archiveCheckpoint.getStatus());
+		assertEquals(3, archiveCheckpoint.getChunkCount());
+		assertEquals(5, archiveCheckpoint.getArchivedCount());
+		ArchiveCheckpoint storedCheckpoint = historyService.getArchiveCheckpoint(archiveId);
+		assertEquals(ArchiveCheckpoint.STATUS_COMPLETED, storedCheckpoint.getStatus());
+		assertEquals(5, storedCheckpoint.getArchivedCount());
+		
+		//完成后再执行不再归档
+		archiveCheckpoint = processEngineConfiguration.getCommandExecutor().execute(new ArchiveChunkCmd(archiveId));
+		assertEquals(3, archiveCheckpoint.getChunkCount());
+		
+		//运行表只剩未结束的流程实例
+		List<ProcessInstance> processInstances = runtimeService.createProcessInstanceQuery().processDefinitionKey("TaskServiceNewTest").run().list();
+		assertEquals(1, processInstances.size());
+		assertEquals(runningProcessInstanceId, processInstances.get(0).getId());
+		assertEquals(5, runtimeService.createProcessInstanceQuery().processDefinitionKey("TaskServiceNewTest").his().list().size());
+		
+		for(String processInstanceId : processInstanceIds){
+			//任务和令牌移到历史表
+			assertEquals(0, taskService.createTaskQuery().processInstanceId(processInstanceId).run().list().size());
+			List<TaskInstance> taskInstances = taskService.createTaskQuery().processInstanceId(processInstanceId).his().list();
+			assertEquals(4, taskInstances.size());
+			assertNotNull(taskInstances.get(0).getArchiveTime());
+			assertEquals(0, runtimeService.createTokenQuery().processInstanceId(processInstanceId).run().list().size());
+			assertEquals(1, runtimeService.createTokenQuery().processInstanceId(processInstanceId).his().list().size());
+		}
+		assertEquals(0, taskService.createTaskQuery().processInstanceId(runningProcessInstanceId).his().list().size());
+	}
+	
+	/**
+	 * 启动流程并停在第一个任务
+	 * @return 流程实例编号
+	 */
+	private String startProcess(){
+		ExpandTaskCommand expandTaskCommand = new ExpandTaskCommand();
+		expandTaskCommand.setProcessDefinitionKey("TaskServiceNewTest");
+		expandTaskCommand.setBusinessKey("BK_testStartProcessInstanceByKey");
+		expandTaskCommand.setCommandType("startandsubmit");
+		expandTaskCommand.setInitiator("1200119390");
+		expandTaskCommand.setUserCommandId("HandleCommand_2");
+		ProcessInstance processInstance = (ProcessInstance)taskService.expandTaskComplete(expandTaskCommand, null);
+		assertNotNull(processInstance.getId());
+		return processInstance.getId();
+	}
+	
+	/**
+	 * 启动流程并处理第一个任务使流程结束
+	 * @return 流程实例编号
+	 */
+	private String startAndCompleteProcess(){
+		String processInstanceId = startProcess();
+		TaskInstance taskInstance = taskService.createTaskQuery().taskAssignee("1200119390").processInstanceId(processInstanceId).taskNotEnd().list().get(0);
+		ExpandTaskCommand expandTaskCommandGeneral=new ExpandTaskCommand();
+		expandTaskCommandGeneral.setCommandType("general");
+		expandTaskCommandGeneral.setUserCommandId("HandleCommand_2");
+		expandTaskCommandGeneral.setTaskId(taskInstance.getId());
+		taskService.expandTaskComplete(expandTaskCommandGeneral, null);
+		return processInstanceId;
+	}
+	
+	/**
+	 * 测试归档进度更新只写游标和计数,不覆盖同时写入的停止状态
+	 */
+	public void testArchiveProgressKeepsStoppedStatus(){
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+		HistoryPersistence historyPersistence = new HistoryPersistence(Context.getDbConnection());
+		//创建运行中的检查点
+		ArchiveCheckpoint archiveCheckpoint = new ArchiveCheckpoint();
+		archiveCheckpoint.setId(GuidUtil.CreateGuid());
+		archiveCheckpoint.setChunkSize(10);
+		archiveCheckpoint.setStatus(ArchiveCheckpoint.STATUS_RUNNING);
+		archiveCheckpoint.setStartTime(new Date());
+		archiveCheckpoint.setUpdateTime(new Date());
+		historyPersistence.insertArchiveCheckpoint(archiveCheckpoint);
+		
+		//运行中的检查点可以更新进度
+		archiveCheckpoint.setArchivedCount(10);
+		archiveCheckpoint.setChunkCount(1);
+		archiveCheckpoint.setLastProcessInstanceId("pi_10");
+		assertEquals(1, historyPersistence.updateArchiveProgress(archiveCheckpoint));
+		
+		//另一个事务停止归档
+		ArchiveCheckpoint stoppedCheckpoint = historyPersistence.selectArchiveCheckpointById(archiveCheckpoint.getId());
+		assertEquals(10, stoppedCheckpoint.getArchivedCount());
+		stoppedCheckpoint.setStatus(ArchiveCheckpoint.STATUS_STOPPED);
+		stoppedCheckpoint.setUpdateTime(new Date());
+		assertEquals(1, historyPersistence.updateArchiveStatus(stoppedCheckpoint));
+		
+		//归档线程还拿着停止前读到的检查点,进度更新不生效
+		archiveCheckpoint.setArchivedCount(20);
+		archiveCheckpoint.setChunkCount(2);
+		archiveCheckpoint.setLastProcessInstanceId("pi_20");
+		assertEquals(0, historyPersistence.updateArchiveProgress(archiveCheckpoint));
+		
+		ArchiveCheckpoint result = historyPersistence.selectArchiveCheckpointById(archiveCheckpoint.getId());
+		assertEquals(ArchiveCheckpoint.STATUS_STOPPED, result.getStatus());
+		assertEquals(10, result.getArchivedCount());
+		assertEquals("pi_10", result.getLastProcessInstanceId());
+	}
 }
@@ -0,0 +1,222 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.api.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.identity.GroupTo;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.core.runtime.ProcessInstance;
+import com.founder.fix.fixflow.core.task.TaskInstance;
+import com.founder.fix.fixflow.core.task.TaskQuery;
+import com.founder.fix.fixflow.expand.rulescript.select.TaskQueryScript;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+import com.founder.fix.fixflow.test.Deployment;
+
+/**
+ * 任务候选组查询测试
+ * <p>
+ * 候选条件使用exists子查询,候选组合并为按组类型的IN列表,IN列表长度补齐到2的幂。
+ * @author kenshin
+ *
+ */
+public class TaskQueryCandidateGroupTest extends AbstractFixFlowTestCase {
+
+	private static final String USER_ID = "1200119390";
+
+	private static final String PROCESS_KEY = "Process_TaskServiceTest";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+	}
+
+	/**
+	 * 同一类型的组合并为一个IN列表,长度补齐到2的幂,补齐的位置重复最后一个组编号
+	 */
+	public void testCandidateGroupSqlPadding() {
+		List<GroupTo> groups = new ArrayList<GroupTo>();
+		groups.add(new GroupTo("r1", "role"));
+		groups.add(new GroupTo("d1", "dept"));
+		groups.add(new GroupTo("r2", "role"));
+		groups.add(new GroupTo("r3", "role"));
+		// 重复的组只出现一次
+		groups.add(new GroupTo("r1", "role"));
+		List<Object> params = new ArrayList<Object>();
+		String sql = new CandidateGroupSqlScript().candidateGroupSql(groups, params);
+
+		assertEquals(" ((I.GROUP_TYPE =? and I.GROUP_ID in (?,?,?,?)) or (I.GROUP_TYPE =? and I.GROUP_ID in (?)) )", sql);
+		Object[] expected = { "role", "r1", "r2", "r3", "r3", "dept", "d1" };
+		assertEquals(expected.length, params.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], params.get(i));
+		}
+	}
+
+	/**
+	 * 组数量在同一个2的幂区间内时生成的语句相同,可以复用语句缓存和执行计划
+	 */
+	public void testCandidateGroupSqlReuse() {
+		Set<String> statements = new HashSet<String>();
+		for (int count = 5; count <= 8; count++) {
+			statements.add(new CandidateGroupSqlScript().candidateGroupSql(createGroups(count, "role"), new ArrayList<Object>()));
+		}
+		assertEquals(1, statements.size());
+
+		// 1到600个组只生成少数几种语句
+		statements.clear();
+		for (int count = 1; count <= 600; count++) {
+			statements.add(new CandidateGroupSqlScript().candidateGroupSql(createGroups(count, "role"), new ArrayList<Object>()));
+		}
+		assertTrue("语句种类过多: " + statements.size(), statements.size() <= 18);
+	}
+
+	/**
+	 * 超过512个组时拆成多个IN列表
+	 */
+	public void testCandidateGroupSqlSplit() {
+		List<Object> params = new ArrayList<Object>();
+		String sql = new CandidateGroupSqlScript().candidateGroupSql(createGroups(600, "role"), params);
+		assertEquals(2, countOf(sql, "I.GROUP_ID in ("));
+		// 512个组加上补齐到128的第二个列表,每个列表前有一个组类型参数
+		assertEquals(1 + 512 + 1 + 128, params.size());
+		assertEquals("role", params.get(513));
+		assertEquals("g599", params.get(params.size() - 1));
+	}
+
+	/**
+	 * 按候选组查询共享任务,任务有多条分配记录时结果也不重复,数量与count一致
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceTest.bpmn" })
+	public void testCandidateGroupQuery() {
+		startProcessInstances(5, 300);
+		TaskQuery taskQuery = taskService.createTaskQuery();
+		List<TaskInstance> sharedTasks = taskQuery.taskCandidateUser(USER_ID).processDefinitionKey(PROCESS_KEY).taskNotEnd().list();
+		assertEquals(5, sharedTasks.size());
+
+		// 给其中三个任务增加候选组,第一个任务再增加一条同一用户的候选记录
+		SqlCommand sqlCommand = new SqlCommand(Context.getDbConnection());
+		for (int i = 0; i < 3; i++) {
+			insertCandidateLink(sqlCommand, sharedTasks.get(i).getId(), null, "testGroup", "role");
+		}
+		insertCandidateLink(sqlCommand, sharedTasks.get(0).getId(), USER_ID, null, null);
+
+		taskQuery = taskService.createTaskQuery();
+		List<TaskInstance> groupTasks = taskQuery.taskCandidateGroup(new GroupTo("testGroup", "role")).processDefinitionKey(PROCESS_KEY)
+				.taskNotEnd().list();
+		assertEquals(3, groupTasks.size());
+		assertEquals(3, taskService.createTaskQuery().taskCandidateGroup(new GroupTo("testGroup", "role")).processDefinitionKey(PROCESS_KEY)
+				.taskNotEnd().count());
+		assertEquals(0, taskService.createTaskQuery().taskCandidateGroup(new GroupTo("testGroup", "dept")).processDefinitionKey(PROCESS_KEY)
+				.taskNotEnd().count());
+
+		// exists子查询不会因为多条分配记录产生重复行
+		List<TaskInstance> candidateTasks = taskService.createTaskQuery().taskCandidateUser(USER_ID).processDefinitionKey(PROCESS_KEY)
+				.taskNotEnd().list();
+		assertEquals(5, candidateTasks.size());
+		assertEquals(5, taskIds(candidateTasks).size());
+		assertEquals(5, taskService.createTaskQuery().taskCandidateUser(USER_ID).processDefinitionKey(PROCESS_KEY).taskNotEnd().count());
+	}
+
+	/**
+	 * 收件箱查询:共享和独占任务一起查询,分页结果与count一致
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceTest.bpmn" })
+	public void testInboxQuery() {
+		// amount<300时为独占任务,否则为共享任务
+		startProcessInstances(20, 290);
+		assertEquals(20, taskService.createTaskQuery().taskCandidateUser(USER_ID).taskAssignee(USER_ID).processDefinitionKey(PROCESS_KEY)
+				.taskNotEnd().count());
+		List<TaskInstance> inbox = taskService.createTaskQuery().taskCandidateUser(USER_ID).taskAssignee(USER_ID)
+				.processDefinitionKey(PROCESS_KEY).taskNotEnd().orderByTaskCreateTime().desc().listPage(0, 15);
+		assertEquals(15, inbox.size());
+		assertEquals(15, taskIds(inbox).size());
+	}
+
+	private void startProcessInstances(int count, int firstAmount) {
+		for (int i = 0; i < count; i++) {
+			ExpandTaskCommand expandTaskCommand = new ExpandTaskCommand();
+			expandTaskCommand.setProcessDefinitionKey(PROCESS_KEY);
+			expandTaskCommand.setBusinessKey("BK_testCandidateGroup");
+			expandTaskCommand.setCommandType("startandsubmit");
+			expandTaskCommand.setInitiator(USER_ID);
+			expandTaskCommand.setUserCommandId("HandleCommand_2");
+			Map<String, Object> mapVariables = new HashMap<String, Object>();
+			mapVariables.put("amount", firstAmount + i);
+			expandTaskCommand.setTransientVariables(mapVariables);
+			ProcessInstance processInstance = (ProcessInstance) taskService.expandTaskComplete(expandTaskCommand, null);
+			assertNotNull(processInstance.getId());
+		}
+	}
+
+	private void insertCandidateLink(SqlCommand sqlCommand, String taskId, String userId, String groupId, String groupType) {
+		Map<String, Object> link = new HashMap<String, Object>();
+		link.put("ID", GuidUtil.CreateGuid());
+		link.put("TYPE", "candidate");
+		link.put("USER_ID", userId);
+		link.put("GROUP_ID", groupId);
+		link.put("GROUP_TYPE", groupType);
+		link.put("TASKINSTANCE_ID", taskId);
+		link.put("INCLUDE_EXCLUSION", "INCLUDE");
+		sqlCommand.insert("FIXFLOW_RUN_TASKIDENTITYLINK", link);
+	}
+
+	private static Set<String> taskIds(List<TaskInstance> taskInstances) {
+		Set<String> taskIds = new HashSet<String>();
+		for (TaskInstance taskInstance : taskInstances) {
+			taskIds.add(taskInstance.getId());
+		}
+		return taskIds;
+	}
+
+	private static List<GroupTo> createGroups(int count, String groupType) {
+		List<GroupTo> groups = new ArrayList<GroupTo>();
+		for (int i = 0; i < count; i++) {
+			groups.add(new GroupTo("g" + i, groupType));
+		}
+		return groups;
+	}
+
+	private static int countOf(String text, String part) {
+		int count = 0;
+		for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 公开候选组条件的生成方法
+	 */
+	private static class CandidateGroupSqlScript extends TaskQueryScript {
+
+		public String candidateGroupSql(List<GroupTo> candidateGroups, List<Object> objectParamWhere) {
+			return super.candidateGroupSql(candidateGroups, objectParamWhere);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import java.io.InputStream;
+import java.util.zip.ZipInputStream;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.persistence.deployer.DeploymentCache;
+import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
+import com.founder.fix.fixflow.core.model.DeploymentBuilder;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 流程定义缓存测试
+ * <p>
+ * 缓存中的流程定义按编号和按KEY取最新版本都不访问数据库;更新部署后缓存的定义失效,发布新版本后最新版本索引失效。
+ * @author kenshin
+ *
+ */
+public class DeploymentCacheTest extends AbstractFixFlowTestCase {
+
+	private static final String PROCESS_KEY = "Process_TaskServiceTest";
+
+	private static final String PROCESS_ZIP = "com/founder/fix/fixflow/test/engine/api/model/Process_TaskServiceTest.zip";
+
+	private static final String PROCESS_NEW_ZIP = "com/founder/fix/fixflow/test/engine/api/model/Process_TaskServiceTest_new.zip";
+
+	/**
+	 * 已缓存的流程定义直接返回同一个对象,不执行任何语句
+	 */
+	public void testCachedDefinitionWithoutDbRead() {
+		deployZip(PROCESS_ZIP, null);
+		final String processDefinitionId = getLatestProcessDefinition().getProcessDefinitionId();
+		final DeploymentCache deploymentCache = processEngineConfiguration.getDeploymentCache();
+		final ProcessDefinitionBehavior processDefinition = modelService.getProcessDefinition(processDefinitionId);
+		assertSame(processDefinition, deploymentCache.getProcessDefinitionCache().get(processDefinitionId));
+
+		processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+			public Void execute(CommandContext commandContext) {
+				StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+				long statementCount = getStatementCount(statementCache);
+				assertSame(processDefinition, deploymentCache.findDeployedProcessDefinitionById(processDefinitionId));
+				assertSame(processDefinition, commandContext.getProcessDefinitionManager().findLatestProcessDefinitionById(processDefinitionId));
+				// 最新版本索引在上面的getLatestProcessDefinition中已经建立
+				assertSame(processDefinition, deploymentCache.findDeployedLatestProcessDefinitionByKey(PROCESS_KEY));
+				assertEquals(statementCount, getStatementCount(statementCache));
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 更新部署后缓存的流程定义立即失效,再次获取时重新解析;发布新版本后按KEY取到新版本
+	 */
+	public void testRedeployEvictsCachedDefinition() {
+		deployZip(PROCESS_ZIP, null);
+		ProcessDefinitionBehavior processDefinition = getLatestProcessDefinition();
+		String processDefinitionId = processDefinition.getProcessDefinitionId();
+		DeploymentCache deploymentCache = processEngineConfiguration.getDeploymentCache();
+		assertSame(processDefinition, deploymentCache.getProcessDefinitionCache().get(processDefinitionId));
+
+		// 更新部署,流程定义编号不变
+		deployZip(PROCESS_NEW_ZIP, processDefinition.getDeploymentId());
+		assertNull(deploymentCache.getProcessDefinitionCache().get(processDefinitionId));
+		ProcessDefinitionBehavior updatedProcessDefinition = modelService.getProcessDefinition(processDefinitionId);
+		assertNotSame(processDefinition, updatedProcessDefinition);
+		assertEquals(processDefinitionId, updatedProcessDefinition.getProcessDefinitionId());
+		assertSame(updatedProcessDefinition, deploymentCache.getProcessDefinitionCache().get(processDefinitionId));
+		assertSame(updatedProcessDefinition, getLatestProcessDefinition());
+
+		// 发布新版本,最新版本索引不再指向旧版本
+		deployZip(PROCESS_ZIP, null);
+		ProcessDefinitionBehavior newVersion = getLatestProcessDefinition();
+		assertFalse(processDefinitionId.equals(newVersion.getProcessDefinitionId()));
+		assertEquals(updatedProcessDefinition.getVersion() + 1, newVersion.getVersion());
+		// 旧版本仍然在缓存中,按编号获取时不受影响
+		assertSame(updatedProcessDefinition, modelService.getProcessDefinition(processDefinitionId));
+	}
+
+	/**
+	 * 通过流程定义缓存按KEY取最新版本
+	 */
+	private ProcessDefinitionBehavior getLatestProcessDefinition() {
+		return processEngineConfiguration.getCommandExecutor().execute(new Command<ProcessDefinitionBehavior>() {
+			public ProcessDefinitionBehavior execute(CommandContext commandContext) {
+				return processEngineConfiguration.getDeploymentCache().findDeployedLatestProcessDefinitionByKey(PROCESS_KEY);
+			}
+		});
+	}
+
+	private void deployZip(String zipPath, String updateDeploymentId) {
+		DeploymentBuilder deploymentBuilder = modelService.createDeployment().name("测试名称");
+		InputStream inputStream = ReflectUtil.getResourceAsStream(zipPath);
+		deploymentBuilder.addZipInputStream(new ZipInputStream(inputStream));
+		if (updateDeploymentId != null) {
+			deploymentBuilder.updateDeploymentId(updateDeploymentId);
+		}
+		assertNotNull(deploymentBuilder.deploy().getId());
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+import com.founder.fix.fixflow.test.Deployment;
+
+/**
+ * 命令实体缓存测试,嵌套命令共用外层命令的上下文缓存
+ * @author kenshin
+ *
+ */
+public class EntityCacheTest extends AbstractFixFlowTestCase {
+
+	/**
+	 * 同一命令中重复查询不访问数据库,嵌套命令使用外层命令的缓存,
+	 * 写操作和命令结束清空缓存
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceNewTest.bpmn"})
+	public void testNestedCommandSharesEntityCache() {
+		final String taskId = GuidUtil.CreateGuid();
+		TaskInstanceEntity taskInstanceEntity = new TaskInstanceEntity();
+		taskInstanceEntity.setId(taskId);
+		taskInstanceEntity.setName("name");
+		taskInstanceEntity.setProcessInstanceId("processInstanceId");
+		Context.getCommandContext().getTaskManager().saveTaskInstanceEntity(taskInstanceEntity);
+
+		CommandContext outerContext = processEngineConfiguration.getCommandExecutor().execute(new Command<CommandContext>() {
+			public CommandContext execute(final CommandContext commandContext) {
+				StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+				final TaskInstanceEntity task = commandContext.getTaskManager().findTaskById(taskId);
+				assertNotNull(task);
+				long statementCount = getStatementCount(statementCache);
+				// 同一命令中再次查询直接返回已加载的实体
+				assertSame(task, commandContext.getTaskManager().findTaskById(taskId));
+				assertEquals(statementCount, getStatementCount(statementCache));
+
+				// 嵌套命令有自己的上下文,共用外层命令的实体缓存
+				CommandContext innerContext = processEngineConfiguration.getCommandExecutor().execute(new Command<CommandContext>() {
+					public CommandContext execute(CommandContext innerCommandContext) {
+						assertNotSame(commandContext, innerCommandContext);
+						assertSame(innerCommandContext, Context.getCommandContext());
+						assertSame(commandContext.getEntityCache(), innerCommandContext.getEntityCache());
+						assertSame(task, innerCommandContext.getTaskManager().findTaskById(taskId));
+						return innerCommandContext;
+					}
+				});
+				assertEquals(statementCount, getStatementCount(statementCache));
+				// 嵌套命令结束后恢复外层上下文,不清空外层的缓存
+				assertTrue(innerContext.isClosed());
+				assertSame(commandContext, Context.getCommandContext());
+				assertFalse(commandContext.isClosed());
+				assertSame(task, commandContext.getCachedEntity(TaskInstanceEntity.class, taskId));
+
+				// 写操作清空缓存,之后重新从数据库查询
+				task.setName("changed");
+				commandContext.getTaskManager().saveTaskInstanceEntity(task);
+				assertNull(commandContext.getCachedEntity(TaskInstanceEntity.class, taskId));
+				TaskInstanceEntity reloadedTask = commandContext.getTaskManager().findTaskById(taskId);
+				assertNotSame(task, reloadedTask);
+				assertEquals("changed", reloadedTask.getName());
+				assertSame(reloadedTask, commandContext.getCachedEntity(TaskInstanceEntity.class, taskId));
+				return commandContext;
+			}
+		});
+
+		// 命令结束后缓存清空,结束的上下文不再返回缓存的实体
+		assertTrue(outerContext.isClosed());
+		assertTrue(outerContext.getEntityCache().isEmpty());
+		assertNull(outerContext.getCachedEntity(TaskInstanceEntity.class, taskId));
+
+		Context.getCommandContext().getTaskManager().deleteTaskById(taskId, true);
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.expand.scriptlanguage.GroovyScriptCache;
+
+/**
+ * Groovy编译脚本缓存测试,不需要数据库
+ * @author kenshin
+ *
+ */
+public class GroovyScriptCacheTest extends TestCase {
+
+	/**
+	 * 同一个脚本命中缓存,不再编译
+	 */
+	public void testScriptClassCached() {
+		GroovyScriptCache scriptCache = new GroovyScriptCache(10);
+		Binding binding = new Binding();
+		binding.setVariable("amount", Integer.valueOf(300));
+		assertEquals(Boolean.TRUE, scriptCache.run("amount > 200", binding));
+		assertEquals(Boolean.TRUE, scriptCache.run("amount > 200", binding));
+		assertEquals(1, scriptCache.getCompileCount());
+	}
+
+	/**
+	 * 多个线程同时第一次执行同一个脚本时只编译一次,得到同一个脚本类
+	 */
+	public void testConcurrentCompileOnce() throws Exception {
+		final GroovyScriptCache scriptCache = new GroovyScriptCache(10);
+		final int threadCount = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final AtomicReference<Class<? extends Script>> firstClass = new AtomicReference<Class<? extends Script>>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int i = 0; i < threadCount; i++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						Class<? extends Script> scriptClass = scriptCache.getScriptClass("def total = 0\nfor (i in 1..10) { total += i }\ntotal");
+						if (!firstClass.compareAndSet(null, scriptClass) && firstClass.get() != scriptClass) {
+							failure.set(new AssertionError("不同线程得到了不同的脚本类"));
+						}
+					} catch (Throwable e) {
+						failure.set(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		assertNull(failure.get());
+		assertEquals(1, scriptCache.getCompileCount());
+	}
+
+	/**
+	 * 编译失败的脚本抛出编译异常,之后可以重新编译
+	 */
+	public void testCompileFailure() {
+		GroovyScriptCache scriptCache = new GroovyScriptCache(10);
+		for (int i = 0; i < 2; i++) {
+			try {
+				scriptCache.getScriptClass("amount >");
+				fail();
+			} catch (RuntimeException e) {
+				// 语法错误
+			}
+		}
+		assertEquals(0, scriptCache.getCompileCount());
+	}
+}
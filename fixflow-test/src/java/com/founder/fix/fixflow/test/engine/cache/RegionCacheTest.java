@@ -0,0 +1,123 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.cache.CacheRegion;
+import com.founder.fix.fixflow.core.impl.cache.RegionCacheImpl;
+
+/**
+ * 区域缓存测试,不需要数据库
+ * @author kenshin
+ *
+ */
+public class RegionCacheTest extends TestCase {
+
+	/**
+	 * 写入超出容量时淘汰条目,区域大小不超过容量
+	 */
+	public void testCapacityEviction() {
+		CacheRegion cacheRegion = new CacheRegion("test", 100, 0);
+		for (int i = 0; i < 250; i++) {
+			cacheRegion.put("key" + i, Integer.valueOf(i));
+			assertTrue(cacheRegion.getSize() <= 100);
+		}
+		assertEquals(100, cacheRegion.getSize());
+		assertEquals(150, cacheRegion.getEvictionCount());
+	}
+
+	/**
+	 * 被访问过的条目晋升到保护段,先淘汰没有被访问过的条目
+	 */
+	public void testReferencedEntriesSurvive() {
+		CacheRegion cacheRegion = new CacheRegion("test", 10, 0);
+		for (int i = 0; i < 10; i++) {
+			cacheRegion.put("key" + i, Integer.valueOf(i));
+		}
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cacheRegion.get("key" + i));
+		}
+		for (int i = 10; i < 15; i++) {
+			cacheRegion.put("key" + i, Integer.valueOf(i));
+		}
+		assertEquals(10, cacheRegion.getSize());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(Integer.valueOf(i), cacheRegion.get("key" + i));
+		}
+	}
+
+	/**
+	 * 超过存活时间的条目读取时失效并计入过期数
+	 */
+	public void testTimeToLive() throws Exception {
+		CacheRegion cacheRegion = new CacheRegion("test", 100, 50);
+		cacheRegion.put("key", "value");
+		assertEquals("value", cacheRegion.get("key"));
+		Thread.sleep(100);
+		assertNull(cacheRegion.get("key"));
+		assertEquals(1, cacheRegion.getExpirationCount());
+		assertEquals(0, cacheRegion.getSize());
+		assertEquals(1, cacheRegion.getHitCount());
+		assertEquals(1, cacheRegion.getMissCount());
+	}
+
+	/**
+	 * 存活时间为0的条目不过期
+	 */
+	public void testNoTimeToLive() throws Exception {
+		CacheRegion cacheRegion = new CacheRegion("test", 100, 0);
+		cacheRegion.put("key", "value");
+		Thread.sleep(20);
+		assertEquals("value", cacheRegion.get("key"));
+		assertEquals(0, cacheRegion.getExpirationCount());
+	}
+
+	/**
+	 * 区域的容量和存活时间取自引擎参数,没有配置或格式错误时保持默认值
+	 */
+	public void testConfigure() {
+		ProcessEngineConfigurationImpl processEngineConfiguration = new ProcessEngineConfigurationImpl();
+		processEngineConfiguration.getEngineProperties().setProperty("cache.region.user.maxSize", "50");
+		processEngineConfiguration.getEngineProperties().setProperty("cache.region.user.ttlMinutes", "2");
+		processEngineConfiguration.getEngineProperties().setProperty("cache.region.group.maxSize", "abc");
+		RegionCacheImpl regionCache = new RegionCacheImpl();
+		int groupMaxSize = regionCache.getRegion(RegionCacheImpl.REGION_GROUP).getMaxSize();
+		regionCache.configure(processEngineConfiguration);
+
+		CacheRegion userRegion = regionCache.getRegion(RegionCacheImpl.REGION_USER);
+		assertEquals(50, userRegion.getMaxSize());
+		assertEquals(2 * 60 * 1000L, userRegion.getTimeToLive());
+		assertEquals(groupMaxSize, regionCache.getRegion(RegionCacheImpl.REGION_GROUP).getMaxSize());
+	}
+
+	/**
+	 * 缓存键按前缀分到各自的区域
+	 */
+	public void testRegionByKey() {
+		RegionCacheImpl regionCache = new RegionCacheImpl();
+		regionCache.putCacheData("user_1", "u");
+		regionCache.putCacheData("ProcessInstance_1", "p");
+		assertEquals(1, regionCache.getRegion(RegionCacheImpl.REGION_USER).getSize());
+		assertEquals(1, regionCache.getRegion(RegionCacheImpl.REGION_PROCESS_INSTANCE).getSize());
+		assertEquals("u", regionCache.getCacheData("user_1"));
+		regionCache.removeCacheData("user_1");
+		assertNull(regionCache.getCacheData("user_1"));
+	}
+}
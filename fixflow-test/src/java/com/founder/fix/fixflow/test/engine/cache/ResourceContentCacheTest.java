@@ -0,0 +1,194 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContentCache;
+
+/**
+ * 部署资源内容缓存测试,不需要数据库
+ * @author kenshin
+ *
+ */
+public class ResourceContentCacheTest extends TestCase {
+
+	private File spillDirectory;
+
+	private ResourceContentCache resourceContentCache;
+
+	protected void setUp() throws Exception {
+		spillDirectory = File.createTempFile("fixflow-resource-test", "");
+		spillDirectory.delete();
+		spillDirectory.mkdir();
+		resourceContentCache = createCache();
+	}
+
+	protected void tearDown() throws Exception {
+		resourceContentCache.close();
+		File[] files = spillDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		spillDirectory.delete();
+	}
+
+	/**
+	 * 不超过spillThreshold的内容放在内存中,超过的内容写入本缓存自己的磁盘目录
+	 */
+	public void testSpillToDisk() throws Exception {
+		byte[] small = createBytes(10, 1);
+		byte[] large = createBytes(100, 2);
+		ResourceContent smallContent = put("d1", "small.png", small);
+		ResourceContent largeContent = put("d1", "large.png", large);
+
+		assertTrue(smallContent.isInMemory());
+		assertFalse(largeContent.isInMemory());
+		File cacheDirectory = resourceContentCache.getCacheDirectory();
+		assertEquals(spillDirectory, cacheDirectory.getParentFile());
+		assertEquals(cacheDirectory, largeContent.getFile().getParentFile());
+		assertTrue(largeContent.getFile().exists());
+		assertTrue(Arrays.equals(large, read(largeContent)));
+		assertSame(largeContent, resourceContentCache.getResourceContent("d1", "large.png"));
+	}
+
+	/**
+	 * 内存已满时较小的内容同样写入磁盘
+	 */
+	public void testSpillWhenMemoryFull() throws Exception {
+		resourceContentCache.setMaxMemorySize(15);
+		ResourceContent first = put("d1", "first.png", createBytes(10, 1));
+		ResourceContent second = put("d1", "second.png", createBytes(10, 2));
+		assertTrue(first.isInMemory());
+		assertFalse(second.isInMemory());
+		assertTrue(Arrays.equals(createBytes(10, 2), read(second)));
+	}
+
+	/**
+	 * 磁盘总量超出maxDiskSize时淘汰最久没有访问的内容并删除文件
+	 */
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		resourceContentCache.setMaxDiskSize(250);
+		ResourceContent first = put("d1", "first.png", createBytes(100, 1));
+		Thread.sleep(20);
+		ResourceContent second = put("d1", "second.png", createBytes(100, 2));
+		Thread.sleep(20);
+		// 访问过的内容不会先被淘汰
+		assertSame(first, resourceContentCache.getResourceContent("d1", "first.png"));
+		Thread.sleep(20);
+		ResourceContent third = put("d1", "third.png", createBytes(100, 3));
+
+		assertNull(resourceContentCache.getResourceContent("d1", "second.png"));
+		assertTrue(second.isReleased());
+		assertFalse(second.getFile().exists());
+		assertSame(first, resourceContentCache.getResourceContent("d1", "first.png"));
+		assertSame(third, resourceContentCache.getResourceContent("d1", "third.png"));
+		assertTrue(first.getFile().exists());
+		assertTrue(third.getFile().exists());
+	}
+
+	/**
+	 * 内容被释放时打开着的流可以继续读完,最后一个流关闭后删除文件;
+	 * 释放以后再打开流返回null,调用者重新从数据库读取
+	 */
+	public void testReleaseWhileStreamOpen() throws Exception {
+		byte[] bytes = createBytes(100, 1);
+		ResourceContent content = put("d1", "diagram.png", bytes);
+		InputStream in = content.openStream();
+		File file = content.getFile();
+
+		resourceContentCache.removeDeployment("d1");
+		assertTrue(content.isReleased());
+		assertNull(resourceContentCache.getResourceContent("d1", "diagram.png"));
+		assertTrue(file.exists());
+		// 还有流打开时文件仍在,可以再打开
+		readAndClose(content.openStream());
+		assertTrue(file.exists());
+
+		assertTrue(Arrays.equals(bytes, readAndClose(in)));
+		assertFalse(file.exists());
+		assertNull(content.openStream());
+	}
+
+	/**
+	 * 共用spillDirectory的两个缓存各自使用自己的目录,关闭一个缓存不会删除另一个缓存的文件
+	 */
+	public void testSharedSpillDirectory() throws Exception {
+		ResourceContentCache otherCache = createCache();
+		try {
+			ResourceContent content = put("d1", "diagram.png", createBytes(100, 1));
+			ResourceContent otherContent = otherCache.putResourceContent("d1", "diagram.png", new ByteArrayInputStream(createBytes(100, 1)));
+			assertFalse(resourceContentCache.getCacheDirectory().equals(otherCache.getCacheDirectory()));
+
+			resourceContentCache.close();
+			assertFalse(content.getFile().exists());
+			assertTrue(otherContent.getFile().exists());
+			assertTrue(Arrays.equals(createBytes(100, 1), read(otherContent)));
+		} finally {
+			otherCache.close();
+		}
+	}
+
+	private ResourceContentCache createCache() {
+		ResourceContentCache cache = new ResourceContentCache();
+		cache.setSpillDirectory(spillDirectory);
+		cache.setSpillThreshold(16);
+		return cache;
+	}
+
+	private ResourceContent put(String deploymentId, String resourceName, byte[] bytes) {
+		return resourceContentCache.putResourceContent(deploymentId, resourceName, new ByteArrayInputStream(bytes));
+	}
+
+	private byte[] createBytes(int length, int seed) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i * 31 + seed);
+		}
+		return bytes;
+	}
+
+	private byte[] read(ResourceContent content) throws IOException {
+		return readAndClose(content.openStream());
+	}
+
+	private byte[] readAndClose(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[32];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 预编译语句缓存测试
+ * <p>
+ * 同一连接上的SqlCommand共用一个语句缓存,相同的SQL只预编译一次,每次执行重新绑定参数;
+ * Context.removeStatementCache()在连接关闭之前关闭缓存的语句,之后SqlCommand不再使用被移除的缓存。
+ * @author kenshin
+ *
+ */
+public class StatementCacheTest extends AbstractFixFlowTestCase {
+
+	private static final String QUERY_SQL = "SELECT VARIABLE_KEY FROM FIXFLOW_RUN_VARIABLE WHERE TASKINSTANCE_ID=?";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+	}
+
+	/**
+	 * 同一连接上的多个SqlCommand重复执行相同的SQL时使用同一条预编译语句,参数按每次执行重新绑定
+	 */
+	public void testStatementReusedPerConnection() {
+		Connection connection = Context.getDbConnection();
+		StatementCache statementCache = Context.getStatementCache(connection);
+		assertNotNull(statementCache);
+		assertSame(statementCache, Context.getStatementCache(Context.getDbConnection()));
+
+		String firstTaskId = GuidUtil.CreateGuid();
+		String secondTaskId = GuidUtil.CreateGuid();
+		SqlCommand sqlCommand = new SqlCommand(connection);
+		insertVariable(sqlCommand, firstTaskId, "firstVariable");
+		insertVariable(sqlCommand, secondTaskId, "secondVariable");
+
+		long prepareCount = statementCache.getPrepareCount();
+		long hitCount = statementCache.getHitCount();
+		List<Map<String, Object>> firstRows = sqlCommand.queryForList(QUERY_SQL, parameters(firstTaskId));
+		assertEquals(prepareCount + 1, statementCache.getPrepareCount());
+		assertEquals(hitCount, statementCache.getHitCount());
+		assertEquals(1, firstRows.size());
+		assertEquals("firstVariable", firstRows.get(0).get("VARIABLE_KEY"));
+
+		// 另一个SqlCommand使用同一连接的缓存,命中缓存时参数重新绑定
+		List<Map<String, Object>> secondRows = new SqlCommand(connection).queryForList(QUERY_SQL, parameters(secondTaskId));
+		assertEquals(prepareCount + 1, statementCache.getPrepareCount());
+		assertEquals(hitCount + 1, statementCache.getHitCount());
+		assertEquals(1, secondRows.size());
+		assertEquals("secondVariable", secondRows.get(0).get("VARIABLE_KEY"));
+		assertEquals(0, sqlCommand.queryForList(QUERY_SQL, parameters(GuidUtil.CreateGuid())).size());
+		assertEquals(prepareCount + 1, statementCache.getPrepareCount());
+	}
+
+	/**
+	 * 移除语句缓存时关闭缓存的语句,连接保持打开,之后的使用重新建立缓存
+	 */
+	public void testRemoveStatementCacheClosesStatements() throws Exception {
+		Connection connection = Context.getDbConnection();
+		StatementCache statementCache = Context.getStatementCache(connection);
+		new SqlCommand(connection).queryForList(QUERY_SQL, parameters(GuidUtil.CreateGuid()));
+		PreparedStatement statement = statementCache.prepareStatement(QUERY_SQL);
+		assertFalse(statement.isClosed());
+		assertTrue(statementCache.getSize() > 0);
+
+		Context.removeStatementCache();
+		assertTrue(statement.isClosed());
+		assertEquals(0, statementCache.getSize());
+		assertFalse(connection.isClosed());
+		assertNull(Context.getStatementCache(connection));
+
+		// 连接再次交给引擎时建立新的缓存
+		StatementCache newStatementCache = Context.getStatementCache(Context.getDbConnection());
+		assertNotNull(newStatementCache);
+		assertNotSame(statementCache, newStatementCache);
+	}
+
+	/**
+	 * 语句缓存移除前创建的SqlCommand不再向已移除的缓存中预编译语句,
+	 * 连接重新建立缓存后使用新的缓存
+	 */
+	public void testCommandOutlivesRemovedStatementCache() {
+		Connection connection = Context.getDbConnection();
+		StatementCache statementCache = Context.getStatementCache(connection);
+		SqlCommand sqlCommand = new SqlCommand(connection);
+		sqlCommand.queryForList(QUERY_SQL, parameters(GuidUtil.CreateGuid()));
+		long prepareCount = statementCache.getPrepareCount();
+
+		Context.removeStatementCache(connection);
+		sqlCommand.queryForList(QUERY_SQL, parameters(GuidUtil.CreateGuid()));
+		sqlCommand.beginBatch();
+		insertVariable(sqlCommand, GuidUtil.CreateGuid(), "uncachedVariable");
+		sqlCommand.endBatch();
+		assertEquals(prepareCount, statementCache.getPrepareCount());
+		assertEquals(0, statementCache.getSize());
+		assertEquals(0, statementCache.getBatchStatementCount());
+
+		StatementCache newStatementCache = Context.getStatementCache(Context.getDbConnection());
+		assertNotSame(statementCache, newStatementCache);
+		sqlCommand.queryForList(QUERY_SQL, parameters(GuidUtil.CreateGuid()));
+		assertEquals(1, newStatementCache.getPrepareCount());
+		assertEquals(0, statementCache.getSize());
+	}
+
+	private void insertVariable(SqlCommand sqlCommand, String taskInstanceId, String variableKey) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("VARIABLE_KEY", variableKey);
+		row.put("TASKINSTANCE_ID", taskInstanceId);
+		sqlCommand.insert("FIXFLOW_RUN_VARIABLE", row);
+	}
+
+	private List<Object> parameters(Object value) {
+		List<Object> data = new ArrayList<Object>();
+		data.add(value);
+		return data;
+	}
+
+}
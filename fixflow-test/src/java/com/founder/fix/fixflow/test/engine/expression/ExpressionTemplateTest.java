@@ -0,0 +1,209 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.expression;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.bpmn2.FormalExpression;
+
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.DataVariableBehavior;
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ScriptTaskBehavior;
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.SequenceFlowBehavior;
+import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.AbstractScriptLanguageMgmt;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+import com.founder.fix.fixflow.test.Deployment;
+
+/**
+ * 表达式模板测试
+ * <p>
+ * 模板解析出的变量编号、替换后的脚本和要计算的数据变量与原来每次执行时的解析结果一致;
+ * 线条条件的模板在加载流程定义时编译,执行时复用;表达式文本修改后重新编译。
+ * @author kenshin
+ *
+ */
+public class ExpressionTemplateTest extends AbstractFixFlowTestCase {
+
+	private static final String PROCESS_KEY = "ProcessVariablesTest";
+
+	/** 带条件的线条,条件引用了数据变量${tranVariable} */
+	private static final String[] CONDITION_FLOW_IDS = { "SequenceFlow_6", "SequenceFlow_7" };
+
+	/**
+	 * 模板的解析结果与原来的getDataVariableList、getExpressionAll、dataVariableCalculate一致
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/runtime/ProcessVariablesTest.bpmn" })
+	public void testTemplateMatchesLegacyParsing() {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		List<String> expressions = new ArrayList<String>();
+		for (String flowId : CONDITION_FLOW_IDS) {
+			expressions.add(getConditionBody(processDefinition, flowId));
+		}
+		expressions.add("${variable}=\"持久化变量\";\r\n${tranVariable}=\"瞬态变量\";\r\n${queryVariable}=\"查询变量1\";");
+		expressions.add("${variable} == ${variable} && ${tranVariable} != null");
+		expressions.add("${unknownVariable} > 1");
+		expressions.add("\"没有变量\"");
+
+		for (String expression : expressions) {
+			ExpressionTemplate expressionTemplate = ExpressionTemplate.compile(expression, processDefinition);
+			List<String> dataVariableIds = AbstractScriptLanguageMgmt.getDataVariableList(expression);
+			assertEquals(expression, dataVariableIds, expressionTemplate.getDataVariableIds());
+			assertEquals(expression, AbstractScriptLanguageMgmt.getExpressionAll(expression), expressionTemplate.getScriptText());
+			for (String dataVariableId : dataVariableIds) {
+				assertEquals(expression, getLegacyDataVariableBehaviors(processDefinition, dataVariableId),
+						expressionTemplate.getDataVariableBehaviors(dataVariableId));
+			}
+		}
+
+		ExpressionTemplate expressionTemplate = ExpressionTemplate.compile("${variable} == ${variable} && ${tranVariable} != null", processDefinition);
+		assertEquals(Arrays.asList("variable", "variable", "tranVariable"), expressionTemplate.getDataVariableIds());
+		assertEquals("variable == variable && tranVariable != null", expressionTemplate.getScriptText());
+		// 引用任何变量时都要计算查询变量
+		assertEquals(Arrays.asList("tranVariable", "queryVariable"), getIds(expressionTemplate.getDataVariableBehaviors("tranVariable")));
+		expressionTemplate = ExpressionTemplate.compile("${unknownVariable} > 1", processDefinition);
+		assertEquals(Arrays.asList("queryVariable"), getIds(expressionTemplate.getDataVariableBehaviors("unknownVariable")));
+	}
+
+	/**
+	 * 加载流程定义时编译线条条件的模板,执行流程时复用同一个模板
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/runtime/ProcessVariablesTest.bpmn" })
+	public void testTemplatesCompiledOnceAndReused() throws Exception {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		List<ExpressionTemplate> templates = new ArrayList<ExpressionTemplate>();
+		for (String flowId : CONDITION_FLOW_IDS) {
+			// 没有调用getConditionExpressionTemplate之前模板已经存在
+			ExpressionTemplate expressionTemplate = getCachedConditionTemplate(processDefinition, flowId);
+			assertNotNull(flowId, expressionTemplate);
+			assertTrue(expressionTemplate.isTemplateOf(getConditionBody(processDefinition, flowId)));
+			templates.add(expressionTemplate);
+		}
+
+		// 两次经过排他网关计算线条条件
+		startAndSubmit();
+		startAndSubmit();
+
+		assertSame(processDefinition, getProcessDefinition());
+		for (int i = 0; i < CONDITION_FLOW_IDS.length; i++) {
+			SequenceFlowBehavior sequenceFlow = getSequenceFlow(processDefinition, CONDITION_FLOW_IDS[i]);
+			assertSame(templates.get(i), getCachedConditionTemplate(processDefinition, CONDITION_FLOW_IDS[i]));
+			assertSame(templates.get(i), sequenceFlow.getConditionExpressionTemplate(processDefinition));
+		}
+	}
+
+	/**
+	 * 表达式文本修改后缓存的模板不再使用,重新编译
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/runtime/ProcessVariablesTest.bpmn" })
+	public void testChangedExpressionNotServedStaleTemplate() {
+		ProcessDefinitionBehavior processDefinition = getProcessDefinition();
+		SequenceFlowBehavior sequenceFlow = getSequenceFlow(processDefinition, CONDITION_FLOW_IDS[0]);
+		FormalExpression conditionExpression = (FormalExpression) sequenceFlow.getConditionExpression();
+		String body = conditionExpression.getBody();
+		ExpressionTemplate expressionTemplate = sequenceFlow.getConditionExpressionTemplate(processDefinition);
+		try {
+			conditionExpression.setBody("${variable} == \"默认值\"");
+			ExpressionTemplate changedTemplate = sequenceFlow.getConditionExpressionTemplate(processDefinition);
+			assertNotSame(expressionTemplate, changedTemplate);
+			assertTrue(changedTemplate.isTemplateOf("${variable} == \"默认值\""));
+			assertFalse(changedTemplate.isTemplateOf(body));
+			assertEquals(Arrays.asList("variable"), changedTemplate.getDataVariableIds());
+			assertEquals("variable == \"默认值\"", changedTemplate.getScriptText());
+			assertSame(changedTemplate, sequenceFlow.getConditionExpressionTemplate(processDefinition));
+		} finally {
+			conditionExpression.setBody(body);
+		}
+		ExpressionTemplate restoredTemplate = sequenceFlow.getConditionExpressionTemplate(processDefinition);
+		assertTrue(restoredTemplate.isTemplateOf(body));
+		assertEquals(expressionTemplate.getScriptText(), restoredTemplate.getScriptText());
+
+		// 脚本任务的模板同样按脚本文本判断
+		ScriptTaskBehavior scriptTask = new ScriptTaskBehavior();
+		scriptTask.setScript("${variable}");
+		ExpressionTemplate scriptTemplate = scriptTask.getScriptTemplate(processDefinition);
+		assertSame(scriptTemplate, scriptTask.getScriptTemplate(processDefinition));
+		scriptTask.setScript("${tranVariable}");
+		assertEquals(Arrays.asList("tranVariable"), scriptTask.getScriptTemplate(processDefinition).getDataVariableIds());
+
+		assertTrue(ExpressionTemplate.compile(null, processDefinition).isTemplateOf(null));
+		assertFalse(ExpressionTemplate.compile(null, processDefinition).isTemplateOf(""));
+		assertFalse(ExpressionTemplate.compile("", processDefinition).isTemplateOf(null));
+	}
+
+	/**
+	 * 原来dataVariableCalculate中选择数据变量定义的规则:编号相同的变量和所有查询变量
+	 */
+	private List<DataVariableBehavior> getLegacyDataVariableBehaviors(ProcessDefinitionBehavior processDefinition, String expressionId) {
+		List<DataVariableBehavior> dataVariableBehaviors = new ArrayList<DataVariableBehavior>();
+		for (DataVariableBehavior dataVariableBehavior : processDefinition.getDataVariableMgmtDefinition().getDataVariableBehaviorsByProcess()) {
+			if (dataVariableBehavior.getId().equals(expressionId)) {
+				dataVariableBehaviors.add(dataVariableBehavior);
+			} else if (dataVariableBehavior.getBizType() != null && dataVariableBehavior.getBizType().equals(DataVariableEntity.QUERY_DATA_KEY)) {
+				dataVariableBehaviors.add(dataVariableBehavior);
+			}
+		}
+		return dataVariableBehaviors;
+	}
+
+	private List<String> getIds(List<DataVariableBehavior> dataVariableBehaviors) {
+		List<String> ids = new ArrayList<String>();
+		for (DataVariableBehavior dataVariableBehavior : dataVariableBehaviors) {
+			ids.add(dataVariableBehavior.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * 直接读取线条上缓存的模板,不触发编译
+	 */
+	private ExpressionTemplate getCachedConditionTemplate(ProcessDefinitionBehavior processDefinition, String flowId) throws Exception {
+		Field field = SequenceFlowBehavior.class.getDeclaredField("conditionExpressionTemplate");
+		field.setAccessible(true);
+		return (ExpressionTemplate) field.get(getSequenceFlow(processDefinition, flowId));
+	}
+
+	private SequenceFlowBehavior getSequenceFlow(ProcessDefinitionBehavior processDefinition, String flowId) {
+		return (SequenceFlowBehavior) processDefinition.getFlowElement(flowId);
+	}
+
+	private String getConditionBody(ProcessDefinitionBehavior processDefinition, String flowId) {
+		return ((FormalExpression) getSequenceFlow(processDefinition, flowId).getConditionExpression()).getBody();
+	}
+
+	private void startAndSubmit() {
+		ExpandTaskCommand expandTaskCommand = new ExpandTaskCommand();
+		expandTaskCommand.setProcessDefinitionKey(PROCESS_KEY);
+		expandTaskCommand.setBusinessKey("BK_ExpressionTemplateTest");
+		expandTaskCommand.setCommandType("startandsubmit");
+		expandTaskCommand.setInitiator("1200119390");
+		expandTaskCommand.setUserCommandId("HandleCommand_2");
+		assertNotNull(taskService.expandTaskComplete(expandTaskCommand, null));
+	}
+
+	private ProcessDefinitionBehavior getProcessDefinition() {
+		String processDefinitionId = modelService.createProcessDefinitionQuery().processDefinitionKey(PROCESS_KEY).singleResult().getProcessDefinitionId();
+		return modelService.getProcessDefinition(processDefinitionId);
+	}
+
+}
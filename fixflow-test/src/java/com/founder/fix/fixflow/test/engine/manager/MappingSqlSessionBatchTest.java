@@ -0,0 +1,166 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.MappingSqlSession;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 会话批量写入测试
+ * <p>
+ * beginBatch之后连续的相同insert、update语句合并为一批发送,SQL变化或endBatch时发送;
+ * 批量发送失败时命令出错,回滚后这一批的数据都不存在。驱动不支持批量执行时跳过。
+ * @author kenshin
+ *
+ */
+public class MappingSqlSessionBatchTest extends AbstractFixFlowTestCase {
+
+	private static final int TASK_COUNT = 3;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+	}
+
+	/**
+	 * 三条insert合并为一批,SQL切换为update时发送,三条update在endBatch时作为第二批发送
+	 */
+	public void testInsertsAndUpdatesGroupedIntoBatches() {
+		final List<TaskInstanceEntity> taskInstances = createTaskInstances(TASK_COUNT);
+		Boolean batched = processEngineConfiguration.getCommandExecutor().execute(new Command<Boolean>() {
+			public Boolean execute(CommandContext commandContext) {
+				StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+				MappingSqlSession mappingSqlSession = commandContext.getMappingSqlSession();
+				mappingSqlSession.beginBatch();
+				if (!statementCache.isBatching()) {
+					mappingSqlSession.abortBatch();
+					return false;
+				}
+				long executeCount = statementCache.getBatchExecuteCount();
+				long statementCount = statementCache.getBatchStatementCount();
+				try {
+					commandContext.getTaskManager().insertTaskInstances(taskInstances);
+					// insert语句累积在一批中,还没有发送
+					assertTrue(statementCache.hasPendingBatch());
+					assertEquals(executeCount, statementCache.getBatchExecuteCount());
+					assertEquals(statementCount + TASK_COUNT, statementCache.getBatchStatementCount());
+
+					for (TaskInstanceEntity taskInstance : taskInstances) {
+						taskInstance.setName("changed");
+						commandContext.getTaskManager().update("updateTaskInstance", taskInstance);
+					}
+					// 第一条update发送了insert批,update累积为第二批
+					assertEquals(executeCount + 1, statementCache.getBatchExecuteCount());
+					assertTrue(statementCache.hasPendingBatch());
+					mappingSqlSession.endBatch();
+				} catch (RuntimeException e) {
+					mappingSqlSession.abortBatch();
+					throw e;
+				}
+				assertFalse(statementCache.hasPendingBatch());
+				assertFalse(statementCache.isBatching());
+				assertEquals(executeCount + 2, statementCache.getBatchExecuteCount());
+				assertEquals(statementCount + TASK_COUNT * 2, statementCache.getBatchStatementCount());
+				return true;
+			}
+		});
+		if (!batched) {
+			return;
+		}
+
+		for (TaskInstanceEntity taskInstance : taskInstances) {
+			TaskInstanceEntity loadedTask = findTask(taskInstance.getId());
+			assertNotNull(loadedTask);
+			assertEquals("changed", loadedTask.getName());
+		}
+	}
+
+	/**
+	 * 批中有重复主键时endBatch出错,丢弃批量状态,回滚后这一批的任务都不存在,连接可以继续使用
+	 */
+	public void testFailedBatchRollsBack() {
+		final List<TaskInstanceEntity> taskInstances = createTaskInstances(TASK_COUNT);
+		// 最后一个任务和第一个任务主键相同,发送时才会出错
+		taskInstances.get(TASK_COUNT - 1).setId(taskInstances.get(0).getId());
+		final StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+		final boolean[] batched = new boolean[1];
+		try {
+			processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+				public Void execute(CommandContext commandContext) {
+					MappingSqlSession mappingSqlSession = commandContext.getMappingSqlSession();
+					mappingSqlSession.beginBatch();
+					batched[0] = statementCache.isBatching();
+					try {
+						commandContext.getTaskManager().insertTaskInstances(taskInstances);
+						mappingSqlSession.endBatch();
+					} catch (RuntimeException e) {
+						mappingSqlSession.abortBatch();
+						throw e;
+					}
+					return null;
+				}
+			});
+			fail("重复主键应该执行出错");
+		} catch (FixFlowException e) {
+			// 预期的错误
+		}
+		if (!batched[0]) {
+			return;
+		}
+		assertFalse(statementCache.isBatching());
+		assertFalse(statementCache.hasPendingBatch());
+
+		processEngine.rollBackConnection();
+		for (TaskInstanceEntity taskInstance : taskInstances) {
+			assertNull(findTask(taskInstance.getId()));
+		}
+	}
+
+	private List<TaskInstanceEntity> createTaskInstances(int count) {
+		List<TaskInstanceEntity> taskInstances = new ArrayList<TaskInstanceEntity>();
+		for (int i = 0; i < count; i++) {
+			TaskInstanceEntity taskInstance = new TaskInstanceEntity();
+			taskInstance.setId(GuidUtil.CreateGuid());
+			taskInstance.setName("name");
+			taskInstance.setProcessInstanceId("processInstanceId");
+			taskInstance.setNodeId("nodeId");
+			taskInstances.add(taskInstance);
+		}
+		return taskInstances;
+	}
+
+	private TaskInstanceEntity findTask(final String taskId) {
+		return processEngineConfiguration.getCommandExecutor().execute(new Command<TaskInstanceEntity>() {
+			public TaskInstanceEntity execute(CommandContext commandContext) {
+				return commandContext.getTaskManager().findTaskById(taskId);
+			}
+		});
+	}
+
+}
@@ -19,11 +19,17 @@ package com.founder.fix.fixflow.test.engine.manager;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.persistence.TaskManager;
+import com.founder.fix.fixflow.core.impl.task.IdentityLinkEntity;
 import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
 import com.founder.fix.fixflow.core.impl.util.GuidUtil;
 import com.founder.fix.fixflow.core.task.DelegationState;
+import com.founder.fix.fixflow.core.task.IncludeExclusion;
 import com.founder.fix.fixflow.core.task.TaskInstanceType;
 import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
 import com.founder.fix.fixflow.test.Deployment;
@@ -186,4 +192,44 @@ public class TaskManagerTest extends AbstractFixFlowTestCase{
 		assertEquals(taskId, taskInstanceEntity2.getId());
 	}
 
+	/**
+	 * 从数据库加载后没有修改的任务和候选人保存时不执行任何语句,修改一个候选人只更新这一行
+	 */
+	@Deployment(resources = { "com/founder/fix/fixflow/test/engine/api/task/TaskServiceNewTest.bpmn"})
+	public void testSaveUnchangedIdentityLinks(){
+		String taskId = GuidUtil.CreateGuid();
+		TaskManager taskManager = Context.getCommandContext().getTaskManager();
+		//创建带两个候选人的任务实例
+		TaskInstanceEntity taskInstanceEntity = new TaskInstanceEntity();
+		taskInstanceEntity.setId(taskId);
+		taskInstanceEntity.setProcessInstanceId("processInstanceId");
+		taskInstanceEntity.addCandidateUser("user1", IncludeExclusion.INCLUDE);
+		taskInstanceEntity.addCandidateUser("user2", IncludeExclusion.INCLUDE);
+		taskManager.saveTaskInstanceEntity(taskInstanceEntity);
+		
+		//重新加载任务和候选人,任务加载后记录快照,候选人由findIdentityLinksByTaskId记录快照
+		TaskInstanceEntity taskInstanceEntity2 = taskManager.findTaskById(taskId);
+		taskInstanceEntity2.snapshotPersistentState();
+		List<IdentityLinkEntity> identityLinks = taskInstanceEntity2.getTaskIdentityLinkEntitys();
+		assertEquals(2, identityLinks.size());
+		List<TaskInstanceEntity> taskInstances = new ArrayList<TaskInstanceEntity>();
+		taskInstances.add(taskInstanceEntity2);
+		
+		StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+		assertNotNull(statementCache);
+		long statementCount = getStatementCount(statementCache);
+		//没有修改时不执行任何语句
+		taskManager.saveTaskInstanceEntities(taskInstances);
+		assertEquals(statementCount, getStatementCount(statementCache));
+		
+		//只修改一个候选人时只更新这一行
+		identityLinks.get(0).setUserId("user3");
+		taskManager.saveTaskInstanceEntities(taskInstances);
+		assertEquals(statementCount + 1, getStatementCount(statementCache));
+		taskManager.saveTaskInstanceEntities(taskInstances);
+		assertEquals(statementCount + 1, getStatementCount(statementCache));
+		
+		taskManager.deleteTaskById(taskId, true);
+	}
+
 }
@@ -0,0 +1,83 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.variable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 以前保存的变量数据的读取测试
+ * <p>
+ * 以前的变量VARIABLE_CLASSNAME中是java类名,VARIABLE_VALUE中是java序列化数据,
+ * 直接写入这样的数据,再通过VariableManager.queryVariable读取。
+ * @author kenshin
+ *
+ */
+public class LegacyVariableTest extends AbstractFixFlowTestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+	}
+
+	public void testReadLegacyVariables() throws Exception {
+		String taskInstanceId = GuidUtil.CreateGuid();
+		HashMap<String, Object> mapValue = new HashMap<String, Object>();
+		mapValue.put("amount", Integer.valueOf(1500));
+		mapValue.put("dept", "HR");
+
+		SqlCommand sqlCommand = new SqlCommand(Context.getDbConnection());
+		insertLegacyVariable(sqlCommand, taskInstanceId, "mapVariable", mapValue);
+		insertLegacyVariable(sqlCommand, taskInstanceId, "stringVariable", "以前的变量");
+		insertLegacyVariable(sqlCommand, taskInstanceId, "nullVariable", null);
+
+		// TaskService.getVariables通过QueryVariablesCmd执行VariableManager.queryVariable,只按任务编号查询时流程实例编号为空
+		Map<String, Object> variables = taskService.getVariables(taskInstanceId);
+		assertEquals(3, variables.size());
+		assertEquals(mapValue, variables.get("mapVariable"));
+		assertEquals("以前的变量", variables.get("stringVariable"));
+		assertTrue(variables.containsKey("nullVariable"));
+		assertNull(variables.get("nullVariable"));
+	}
+
+	private void insertLegacyVariable(SqlCommand sqlCommand, String taskInstanceId, String variableKey, Object value) throws Exception {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("VARIABLE_KEY", variableKey);
+		row.put("VARIABLE_VALUE", value == null ? null : serialize(value));
+		row.put("VARIABLE_CLASSNAME", value == null ? null : value.getClass().getCanonicalName());
+		row.put("TASKINSTANCE_ID", taskInstanceId);
+		sqlCommand.insert("FIXFLOW_RUN_VARIABLE", row);
+	}
+
+	private static byte[] serialize(Object value) throws Exception {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(byteOut);
+		out.writeObject(value);
+		out.close();
+		return byteOut.toByteArray();
+	}
+
+}
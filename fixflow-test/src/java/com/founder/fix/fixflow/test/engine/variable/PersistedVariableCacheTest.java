@@ -0,0 +1,93 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.variable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableMgmtInstance;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 流程实例持久化变量的批量加载测试
+ * <p>
+ * 表达式用到的多个持久化变量合并为一次查询,同一命令中查询过的变量(包括不存在的变量)不再查询,
+ * 期间有写操作时重新查询。
+ * @author kenshin
+ *
+ */
+public class PersistedVariableCacheTest extends AbstractFixFlowTestCase {
+
+	public void testLoadPersistedVariables() {
+		final String processInstanceId = GuidUtil.CreateGuid();
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("variableA", "a");
+		variables.put("variableB", "b");
+		runtimeService.setProcessInstanceVariables(processInstanceId, variables);
+
+		final ProcessInstanceEntity processInstance = new ProcessInstanceEntity();
+		processInstance.setId(processInstanceId);
+		final DataVariableMgmtInstance dataVariableMgmtInstance = processInstance.getDataVariableMgmtInstance();
+
+		processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+			public Void execute(CommandContext commandContext) {
+				StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+				long statementCount = getStatementCount(statementCache);
+				dataVariableMgmtInstance.loadPersistedVariables(Arrays.asList("variableA", "variableB", "variableC"));
+				// 三个变量名合并为一次 IN (...) 查询
+				assertEquals(statementCount + 1, getStatementCount(statementCache));
+
+				// 查询过的变量同一命令中不再查询,数据库中不存在的变量同样记住
+				assertTrue(dataVariableMgmtInstance.hasPersistedVariable("variableA"));
+				assertEquals("a", dataVariableMgmtInstance.getPersistedVariable("variableA"));
+				assertEquals("b", dataVariableMgmtInstance.getPersistedVariable("variableB"));
+				assertFalse(dataVariableMgmtInstance.hasPersistedVariable("variableC"));
+				dataVariableMgmtInstance.loadPersistedVariables(Arrays.asList("variableA", "variableC"));
+				assertEquals(statementCount + 1, getStatementCount(statementCache));
+
+				// 嵌套命令保存了之前不存在的变量,记住的结果失效,再次使用时重新查询
+				runtimeService.setProcessInstanceVariable(processInstanceId, "variableC", "c");
+				statementCount = getStatementCount(statementCache);
+				assertTrue(dataVariableMgmtInstance.hasPersistedVariable("variableC"));
+				assertEquals("c", dataVariableMgmtInstance.getPersistedVariable("variableC"));
+				assertEquals("a", dataVariableMgmtInstance.getPersistedVariable("variableA"));
+				assertEquals(statementCount + 1, getStatementCount(statementCache));
+				return null;
+			}
+		});
+
+		// 新的命令不使用上一个命令的结果
+		processEngineConfiguration.getCommandExecutor().execute(new Command<Void>() {
+			public Void execute(CommandContext commandContext) {
+				StatementCache statementCache = Context.getStatementCache(Context.getDbConnection());
+				long statementCount = getStatementCount(statementCache);
+				assertEquals("c", dataVariableMgmtInstance.getPersistedVariable("variableC"));
+				assertEquals(statementCount + 1, getStatementCount(statementCache));
+				return null;
+			}
+		});
+	}
+
+}
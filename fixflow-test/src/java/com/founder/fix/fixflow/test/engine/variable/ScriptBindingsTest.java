@@ -0,0 +1,128 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.variable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
+import com.founder.fix.fixflow.core.scriptlanguage.AbstractScriptLanguageMgmt;
+import com.founder.fix.fixflow.expand.scriptlanguage.BeanShellScriptLanguageMgmtImpl;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 带变量的脚本执行测试,每次执行使用自己的变量,不写入线程的GroovyShell
+ * @author kenshin
+ *
+ */
+public class ScriptBindingsTest extends AbstractFixFlowTestCase {
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+	}
+
+	/**
+	 * 嵌套执行时内层的变量不影响外层,外层的变量也不传给内层
+	 */
+	@SuppressWarnings("unchecked")
+	public void testNestedBindingsDoNotLeak() {
+		Map<String, Object> bindings = new HashMap<String, Object>();
+		bindings.put("x", 1);
+		bindings.put("z", "outer");
+		String scriptText = "def inner = com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt.execute('y = x * 10\\n[y, binding.hasVariable(\\'z\\')]', [x: 2])\n"
+				+ "[x, inner, binding.hasVariable('y')]";
+		List<Object> result = (List<Object>) ExpressionMgmt.execute(scriptText, bindings);
+		// 外层的x没有被内层覆盖
+		assertEquals(1, result.get(0));
+		List<Object> inner = (List<Object>) result.get(1);
+		assertEquals(20, inner.get(0));
+		// 内层看不到外层的z
+		assertEquals(Boolean.FALSE, inner.get(1));
+		// 外层看不到内层赋值的y
+		assertEquals(Boolean.FALSE, result.get(2));
+		// 调用者传入的变量没有被修改
+		assertEquals(2, bindings.size());
+		assertEquals(1, bindings.get("x"));
+
+		// 脚本中赋值的变量不会带到下一次执行
+		ExpressionMgmt.execute("y = 5", bindings);
+		assertEquals(Boolean.FALSE, ExpressionMgmt.execute("binding.hasVariable('y')", bindings));
+		assertFalse(bindings.containsKey("y"));
+	}
+
+	/**
+	 * 全局变量对每次执行可见,脚本中对全局变量赋值只影响本次执行
+	 */
+	public void testGlobalVariablesReadOnly() {
+		Map<String, Object> noBindings = new HashMap<String, Object>();
+		Map<String, Object> globalVariables = processEngineConfiguration.getScriptGlobalVariables();
+		Object bizData = globalVariables.get("bizData");
+		assertSame(processEngineConfiguration, ExpressionMgmt.execute("sysRulesConfig", noBindings));
+		assertSame(bizData, ExpressionMgmt.execute("bizData", noBindings));
+
+		assertEquals("changed", ExpressionMgmt.execute("sysRulesConfig = null\nbizData = 'changed'\nbizData", noBindings));
+		assertSame(processEngineConfiguration, ExpressionMgmt.execute("sysRulesConfig", noBindings));
+		assertSame(bizData, ExpressionMgmt.execute("bizData", noBindings));
+		assertSame(processEngineConfiguration, globalVariables.get("sysRulesConfig"));
+		assertSame(bizData, globalVariables.get("bizData"));
+
+		try {
+			globalVariables.put("bizData", "changed");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// 全局变量不能修改
+		}
+	}
+
+	/**
+	 * 线程GroovyShell上设置的变量(如processInfo、数据变量)在带变量的执行和业务规则中不可见,
+	 * 需要的值要作为变量传入
+	 */
+	public void testShellVariablesNotVisible() {
+		ExpressionMgmt.setVariable("processInfo", "shellValue");
+		assertEquals("shellValue", ExpressionMgmt.getVariable("processInfo"));
+		assertEquals(Boolean.FALSE, ExpressionMgmt.execute("binding.hasVariable('processInfo')", new HashMap<String, Object>()));
+
+		Map<String, Object> bindings = new HashMap<String, Object>();
+		bindings.put("processInfo", "bindingValue");
+		assertEquals("bindingValue", ExpressionMgmt.execute("processInfo", bindings));
+		// 线程上的变量不受影响
+		assertEquals("shellValue", ExpressionMgmt.getVariable("processInfo"));
+	}
+
+	/**
+	 * 没有独立绑定的脚本语言使用默认实现:执行后还原原有变量,移除原来没有的变量,变量为null时按没有变量执行
+	 */
+	public void testDefaultBindingsRestoreVariables() {
+		AbstractScriptLanguageMgmt scriptLanguageMgmt = new BeanShellScriptLanguageMgmtImpl().init();
+		scriptLanguageMgmt.setVariable("x", 1);
+		Map<String, Object> bindings = new HashMap<String, Object>();
+		bindings.put("x", 2);
+		bindings.put("y", 3);
+		assertEquals(5, scriptLanguageMgmt.execute("x + y", bindings));
+		assertEquals(1, scriptLanguageMgmt.getVariable("x"));
+		assertFalse(scriptLanguageMgmt.hasVariable("y"));
+
+		Map<String, Object> noBindings = null;
+		assertEquals(1, scriptLanguageMgmt.execute("x", noBindings));
+		scriptLanguageMgmt.close();
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.variable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.founder.fix.fixflow.core.impl.datavariable.BinaryVariableCodec;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.datavariable.JsonVariableCodec;
+import com.founder.fix.fixflow.core.impl.datavariable.SerializableVariableCodec;
+import com.founder.fix.fixflow.core.impl.datavariable.VariableCodecRegistry;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+import com.founder.fix.fixflow.expand.rulescript.entity.VariablePersistentDbMap;
+
+/**
+ * 变量编码器测试
+ * @author kenshin
+ *
+ */
+public class VariableCodecTest extends TestCase {
+
+	private VariableCodecRegistry variableCodecRegistry;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		variableCodecRegistry = new VariableCodecRegistry();
+	}
+
+	/**
+	 * 二进制编码器支持的每种类型还原后类型和值都不变
+	 */
+	public void testBinaryRoundTrip() {
+		Timestamp timestamp = new Timestamp(1380000000123L);
+		timestamp.setNanos(123456789);
+		Object[] values = { null, "字符串", Integer.valueOf(-7), Long.valueOf(1L << 40), Double.valueOf(2.5d), Float.valueOf(1.25f),
+				Short.valueOf((short) 3), Byte.valueOf((byte) -1), Boolean.TRUE, Character.valueOf('字'), new BigDecimal("1000.00"),
+				new BigInteger("123456789012345678901234567890"), new Date(1380000000000L), new java.sql.Date(1380000000000L), timestamp };
+		BinaryVariableCodec codec = new BinaryVariableCodec();
+		for (Object value : values) {
+			assertTrue(String.valueOf(value), codec.canEncode(value));
+			Object decoded = codec.decode(codec.encode(value));
+			assertEquals(String.valueOf(value), value, decoded);
+			if (value != null) {
+				assertEquals(value.getClass(), decoded.getClass());
+			}
+		}
+		byte[] bytes = { 0, 1, -128, 127 };
+		assertTrue(Arrays.equals(bytes, (byte[]) codec.decode(codec.encode(bytes))));
+		// BigDecimal的精度保持不变
+		assertEquals("1000.00", codec.decode(codec.encode(new BigDecimal("1000.00"))).toString());
+	}
+
+	/**
+	 * 嵌套的集合还原后集合类型、顺序和元素类型不变
+	 */
+	public void testBinaryNestedCollections() {
+		LinkedList<Object> linkedList = new LinkedList<Object>();
+		linkedList.add(Long.valueOf(1));
+		linkedList.add(null);
+		TreeMap<String, Object> treeMap = new TreeMap<String, Object>();
+		treeMap.put("b", new BigDecimal("5"));
+		treeMap.put("a", linkedList);
+		LinkedHashMap<Object, Object> linkedHashMap = new LinkedHashMap<Object, Object>();
+		linkedHashMap.put("z", treeMap);
+		linkedHashMap.put(Integer.valueOf(1), "一");
+		HashMap<String, Object> hashMap = new HashMap<String, Object>();
+		hashMap.put("map", linkedHashMap);
+		ArrayList<Object> value = new ArrayList<Object>();
+		value.add(hashMap);
+		value.add(new Date(1380000000000L));
+
+		BinaryVariableCodec codec = new BinaryVariableCodec();
+		assertTrue(codec.canEncode(value));
+		Object decoded = codec.decode(codec.encode(value));
+		assertEquals(value, decoded);
+		assertEquals(ArrayList.class, decoded.getClass());
+		Map<?, ?> decodedHashMap = (Map<?, ?>) ((List<?>) decoded).get(0);
+		assertEquals(HashMap.class, decodedHashMap.getClass());
+		Map<?, ?> decodedLinkedHashMap = (Map<?, ?>) decodedHashMap.get("map");
+		assertEquals(LinkedHashMap.class, decodedLinkedHashMap.getClass());
+		assertEquals(Arrays.asList("z", Integer.valueOf(1)), new ArrayList<Object>(decodedLinkedHashMap.keySet()));
+		Map<?, ?> decodedTreeMap = (Map<?, ?>) decodedLinkedHashMap.get("z");
+		assertEquals(TreeMap.class, decodedTreeMap.getClass());
+		assertEquals(LinkedList.class, decodedTreeMap.get("a").getClass());
+		assertEquals(new BigDecimal("5"), decodedTreeMap.get("b"));
+	}
+
+	/**
+	 * 二进制编码器不支持的类型和自定义比较器的TreeMap交给其它编码器
+	 */
+	public void testBinaryRejectsUnsupported() {
+		BinaryVariableCodec codec = new BinaryVariableCodec();
+		List<Object> list = new ArrayList<Object>();
+		list.add(new StringBuilder("x"));
+		assertFalse(codec.canEncode(list));
+		assertFalse(codec.canEncode(new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER)));
+		assertFalse(codec.canEncode(Arrays.asList("a")));
+	}
+
+	/**
+	 * JavaBean增加和删除属性后,以前保存的值仍然可以读取,删除的属性忽略,增加的属性为默认值
+	 */
+	public void testJsonBeanGainsAndLosesProperties() throws Exception {
+		BeanVersionOne bean = new BeanVersionOne();
+		bean.setName("审批单");
+		bean.setAmount(new BigDecimal("5"));
+		bean.setRemoved("删除的属性");
+		List<Object> items = new ArrayList<Object>();
+		items.add("a");
+		items.add(Integer.valueOf(2));
+		bean.setItems(items);
+
+		JsonVariableCodec codec = new JsonVariableCodec();
+		assertTrue(codec.canEncode(bean));
+		String json = new String(codec.encode(bean), "UTF-8");
+		String renamed = json.replace(BeanVersionOne.class.getName(), BeanVersionTwo.class.getName());
+
+		BeanVersionTwo decoded = (BeanVersionTwo) codec.decode(renamed.getBytes("UTF-8"));
+		assertEquals("审批单", decoded.getName());
+		assertEquals(new BigDecimal("5"), decoded.getAmount());
+		assertEquals(items, decoded.getItems());
+		assertNull(decoded.getAdded());
+
+		BeanVersionOne sameVersion = (BeanVersionOne) codec.decode(json.getBytes("UTF-8"));
+		assertEquals("删除的属性", sameVersion.getRemoved());
+		assertEquals("5", sameVersion.getAmount().toString());
+	}
+
+	/**
+	 * List和Map中的BigDecimal经过JSON后类型会改变,这样的JavaBean不用JSON编码
+	 */
+	public void testJsonRejectsBigDecimalInCollections() {
+		BeanVersionOne bean = new BeanVersionOne();
+		List<Object> items = new ArrayList<Object>();
+		items.add(new BigDecimal("5"));
+		bean.setItems(items);
+		assertFalse(new JsonVariableCodec().canEncode(bean));
+
+		VariableCodec codec = variableCodecRegistry.getCodec(bean);
+		assertEquals(SerializableVariableCodec.TYPE_TAG, codec.getTypeTag());
+		BeanVersionOne decoded = (BeanVersionOne) variableCodecRegistry.decode(variableCodecRegistry.getTypeName(codec), codec.encode(bean));
+		assertEquals(BigDecimal.class, decoded.getItems().get(0).getClass());
+	}
+
+	/**
+	 * List和Map属性的实际类型不是ArrayList、HashMap或LinkedHashMap时经过JSON会改变类型,
+	 * 这样的JavaBean交给Java序列化,还原后集合类型和TreeMap的排序不变
+	 */
+	public void testJsonRejectsOtherCollectionClasses() {
+		JsonVariableCodec jsonCodec = new JsonVariableCodec();
+		CollectionBean bean = new CollectionBean();
+		bean.setItems(new ArrayList<Object>(Arrays.asList("a", "b")));
+		LinkedHashMap<String, Object> attributes = new LinkedHashMap<String, Object>();
+		attributes.put("z", "1");
+		attributes.put("a", "2");
+		bean.setAttributes(attributes);
+		assertTrue(jsonCodec.canEncode(bean));
+		CollectionBean decoded = (CollectionBean) jsonCodec.decode(jsonCodec.encode(bean));
+		assertEquals(ArrayList.class, decoded.getItems().getClass());
+		assertEquals(Arrays.asList("z", "a"), new ArrayList<String>(decoded.getAttributes().keySet()));
+
+		bean.setItems(new LinkedList<Object>(Arrays.asList("a", "b")));
+		assertFalse(jsonCodec.canEncode(bean));
+		assertEquals(LinkedList.class, roundTrip(bean).getItems().getClass());
+
+		List<Object> nested = new ArrayList<Object>();
+		nested.add(new LinkedList<Object>(Arrays.asList("a")));
+		bean.setItems(nested);
+		assertFalse(jsonCodec.canEncode(bean));
+
+		bean.setItems(null);
+		TreeMap<String, Object> treeMap = new TreeMap<String, Object>();
+		treeMap.put("b", "2");
+		treeMap.put("a", "1");
+		bean.setAttributes(treeMap);
+		assertFalse(jsonCodec.canEncode(bean));
+		CollectionBean decodedTreeMap = roundTrip(bean);
+		assertEquals(TreeMap.class, decodedTreeMap.getAttributes().getClass());
+		assertEquals(treeMap, decodedTreeMap.getAttributes());
+
+		bean.setAttributes(Collections.unmodifiableMap(attributes));
+		assertFalse(jsonCodec.canEncode(bean));
+		assertEquals(bean.getAttributes().getClass(), roundTrip(bean).getAttributes().getClass());
+	}
+
+	private CollectionBean roundTrip(CollectionBean bean) {
+		VariableCodec codec = variableCodecRegistry.getCodec(bean);
+		assertEquals(SerializableVariableCodec.TYPE_TAG, codec.getTypeTag());
+		return (CollectionBean) variableCodecRegistry.decode(variableCodecRegistry.getTypeName(codec), codec.encode(bean));
+	}
+
+	/**
+	 * 按顺序选择编码器,VARIABLE_CLASSNAME中保存编码器的类型标识
+	 */
+	public void testRegistrySelectsCodec() {
+		assertEquals(BinaryVariableCodec.TYPE_TAG, variableCodecRegistry.getCodec("x").getTypeTag());
+		assertEquals(JsonVariableCodec.TYPE_TAG, variableCodecRegistry.getCodec(new BeanVersionOne()).getTypeTag());
+		assertEquals(SerializableVariableCodec.TYPE_TAG, variableCodecRegistry.getCodec(new StringBuilder("x")).getTypeTag());
+		assertEquals("#" + BinaryVariableCodec.TYPE_TAG, variableCodecRegistry.getTypeName(variableCodecRegistry.getCodec("x")));
+		assertNull(variableCodecRegistry.findCodec(new Object()));
+	}
+
+	/**
+	 * 以前保存的变量:VARIABLE_CLASSNAME是java类名,VARIABLE_VALUE是java序列化数据
+	 */
+	public void testLegacyVariable() throws Exception {
+		HashMap<String, Object> value = new HashMap<String, Object>();
+		value.put("amount", Integer.valueOf(1500));
+
+		DataVariableEntity dataVariableEntity = new DataVariableEntity();
+		dataVariableEntity.setVariableClassName(value.getClass().getCanonicalName());
+		dataVariableEntity.setVariableValue(serialize(value));
+		assertEquals(value, dataVariableEntity.getVariableObject(variableCodecRegistry));
+		assertEquals(value, variableCodecRegistry.decode(null, serialize(value)));
+	}
+
+	/**
+	 * 不可变的值解码一次后复用,可变的值每次返回新的对象,修改返回值不影响变量
+	 */
+	@SuppressWarnings("unchecked")
+	public void testDecodedValueCaching() throws Exception {
+		DataVariableEntity stringVariable = new DataVariableEntity();
+		stringVariable.setVariableClassName(String.class.getCanonicalName());
+		stringVariable.setVariableValue(serialize("value"));
+		assertSame(stringVariable.getVariableObject(variableCodecRegistry), stringVariable.getVariableObject(variableCodecRegistry));
+
+		HashMap<String, Object> value = new HashMap<String, Object>();
+		value.put("amount", Integer.valueOf(1500));
+		DataVariableEntity mapVariable = new DataVariableEntity();
+		mapVariable.setVariableClassName(value.getClass().getCanonicalName());
+		mapVariable.setVariableValue(serialize(value));
+		Map<String, Object> decoded = (Map<String, Object>) mapVariable.getVariableObject(variableCodecRegistry);
+		decoded.put("amount", Integer.valueOf(0));
+		assertNotSame(decoded, mapVariable.getVariableObject(variableCodecRegistry));
+		assertEquals(value, mapVariable.getVariableObject(variableCodecRegistry));
+	}
+
+	/**
+	 * 不能序列化的值与以前一样保存为空值,VARIABLE_CLASSNAME中是java类名,不会让命令失败
+	 */
+	public void testUnencodableValueStoredAsNull() {
+		DataVariableEntity dataVariableEntity = new DataVariableEntity();
+		dataVariableEntity.setVariableKey("unencodable");
+		dataVariableEntity.setExpressionValue(new Object());
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> dbMap = (Map<String, Object>) new VariablePersistentDbMap().execute(dataVariableEntity, null, null);
+		assertNull(dbMap.get("VARIABLE_VALUE"));
+		assertEquals("java.lang.Object", dbMap.get("VARIABLE_CLASSNAME"));
+
+		DataVariableEntity loaded = new DataVariableEntity();
+		loaded.setVariableClassName((String) dbMap.get("VARIABLE_CLASSNAME"));
+		loaded.setVariableValue((byte[]) dbMap.get("VARIABLE_VALUE"));
+		assertNull(loaded.getVariableObject(variableCodecRegistry));
+	}
+
+	private static byte[] serialize(Object value) throws Exception {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(byteOut);
+		out.writeObject(value);
+		out.close();
+		return byteOut.toByteArray();
+	}
+
+	public static class BeanVersionOne implements java.io.Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+
+		private BigDecimal amount;
+
+		private String removed;
+
+		private List<Object> items;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		public String getRemoved() {
+			return removed;
+		}
+
+		public void setRemoved(String removed) {
+			this.removed = removed;
+		}
+
+		public List<Object> getItems() {
+			return items;
+		}
+
+		public void setItems(List<Object> items) {
+			this.items = items;
+		}
+	}
+
+	public static class BeanVersionTwo {
+
+		private String name;
+
+		private BigDecimal amount;
+
+		private String added;
+
+		private List<Object> items;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		public String getAdded() {
+			return added;
+		}
+
+		public void setAdded(String added) {
+			this.added = added;
+		}
+
+		public List<Object> getItems() {
+			return items;
+		}
+
+		public void setItems(List<Object> items) {
+			this.items = items;
+		}
+	}
+
+	public static class CollectionBean implements java.io.Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Object> items;
+
+		private Map<String, Object> attributes;
+
+		public List<Object> getItems() {
+			return items;
+		}
+
+		public void setItems(List<Object> items) {
+			this.items = items;
+		}
+
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, Object> attributes) {
+			this.attributes = attributes;
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.test.engine.worktime;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.expand.worktime.WorkCalendar;
+import com.founder.fix.fixflow.expand.worktime.WorkTimeImpl;
+import com.founder.fix.fixflow.test.AbstractFixFlowTestCase;
+
+/**
+ * 工作日历测试
+ * <p>
+ * 使用2099年的日期和单独的规则编号,不影响日历表中已有的数据,测试结束后回滚。
+ * @author kenshin
+ *
+ */
+public class WorkCalendarTest extends AbstractFixFlowTestCase {
+
+	private static final String RULE_ID = "WorkCalendarTest";
+
+	private static final String CHECK_INTERVAL_PROPERTY = "workCalendar.checkInterval";
+
+	private SqlCommand sqlCommand;
+
+	private String checkInterval;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Context.setProcessEngineConfiguration(processEngineConfiguration);
+		checkInterval = processEngineConfiguration.getEngineProperties().getProperty(CHECK_INTERVAL_PROPERTY);
+		sqlCommand = new SqlCommand(Context.getDbConnection());
+		sqlCommand.delete("FIXFLOW_WORKDATE_DETAIL", " RULE_ID=?", new Object[] { RULE_ID });
+		insertWorkDay("2099-03-02");
+		insertWorkDay("2099-03-03");
+		insertWorkDay("2099-03-06");
+		WorkCalendar.invalidate();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (checkInterval == null) {
+			processEngineConfiguration.getEngineProperties().remove(CHECK_INTERVAL_PROPERTY);
+		} else {
+			processEngineConfiguration.getEngineProperties().setProperty(CHECK_INTERVAL_PROPERTY, checkInterval);
+		}
+		WorkCalendar.invalidate();
+		super.tearDown();
+	}
+
+	/**
+	 * 工作日的零点也是工作日,isWorkDate只判断日期
+	 */
+	public void testIsWorkDateIgnoresTime() throws Exception {
+		WorkTimeImpl workTime = new WorkTimeImpl();
+		assertTrue(workTime.isWorkDate(parse("2099-03-02 00:00:00")));
+		assertTrue(workTime.isWorkDate(parse("2099-03-02 23:59:59")));
+		assertFalse(workTime.isWorkDate(parse("2099-03-04 10:00:00")));
+	}
+
+	/**
+	 * 工作日换到另一天(行数、最早最晚日期和分钟数都不变)也能在检查时发现
+	 */
+	public void testWorkDaySwapIsDetected() throws Exception {
+		processEngineConfiguration.getEngineProperties().setProperty(CHECK_INTERVAL_PROPERTY, "0");
+		assertTrue(getWorkCalendar().isWorkDay(parse("2099-03-03 00:00:00")));
+
+		moveWorkDay("2099-03-03", "2099-03-05");
+
+		WorkCalendar workCalendar = getWorkCalendar();
+		assertFalse(workCalendar.isWorkDay(parse("2099-03-03 00:00:00")));
+		assertTrue(workCalendar.isWorkDay(parse("2099-03-05 00:00:00")));
+	}
+
+	/**
+	 * 只修改上下班时间,工作分钟数不变
+	 */
+	public void testWorkHoursChangeIsDetected() throws Exception {
+		processEngineConfiguration.getEngineProperties().setProperty(CHECK_INTERVAL_PROPERTY, "0");
+		assertTrue(getWorkCalendar().isWorkTime(parse("2099-03-02 09:30:00")));
+
+		Map<String, Object> data = new HashMap<String, Object>();
+		data.put("BEGIN_DATE", "10:00");
+		data.put("END_DATE", "13:00");
+		sqlCommand.update("FIXFLOW_WORKDATE_DETAIL", data, " RULE_ID=? and COMMOM_DATE=? and AM_PM=?", new Object[] { RULE_ID, "2099-03-02",
+				"AM" });
+
+		WorkCalendar workCalendar = getWorkCalendar();
+		assertFalse(workCalendar.isWorkTime(parse("2099-03-02 09:30:00")));
+		assertTrue(workCalendar.isWorkTime(parse("2099-03-02 10:30:00")));
+	}
+
+	/**
+	 * 检查间隔内修改日历表后调用invalidate立即生效
+	 */
+	public void testInvalidate() throws Exception {
+		processEngineConfiguration.getEngineProperties().setProperty(CHECK_INTERVAL_PROPERTY, "3600000");
+		assertTrue(getWorkCalendar().isWorkDay(parse("2099-03-03 00:00:00")));
+
+		moveWorkDay("2099-03-03", "2099-03-05");
+		assertTrue(getWorkCalendar().isWorkDay(parse("2099-03-03 00:00:00")));
+
+		WorkCalendar.invalidate();
+		assertFalse(getWorkCalendar().isWorkDay(parse("2099-03-03 00:00:00")));
+	}
+
+	/**
+	 * 上下班时间没有补零时按时间排序,不按字符串排序("13:00"排在"9:00"之前)
+	 */
+	public void testUnpaddedWorkHours() throws Exception {
+		insertDetail("2099-03-09", "AM", "9:00", "12:00", 180);
+		insertDetail("2099-03-09", "PM", "13:00", "17:00", 240);
+		WorkCalendar.invalidate();
+
+		WorkCalendar workCalendar = getWorkCalendar();
+		assertTrue(workCalendar.isWorkTime(parse("2099-03-09 09:30:00")));
+		assertFalse(workCalendar.isWorkTime(parse("2099-03-09 12:30:00")));
+		assertEquals(parse("2099-03-09 14:00:00"), workCalendar.addWorkTime(parse("2099-03-09 00:00:00"), 0, 4 * 3600));
+	}
+
+	private WorkCalendar getWorkCalendar() {
+		return WorkCalendar.getInstance(sqlCommand);
+	}
+
+	private void insertWorkDay(String day) {
+		insertDetail(day, "AM", "09:00", "12:00", 180);
+		insertDetail(day, "PM", "13:00", "17:00", 240);
+	}
+
+	private void insertDetail(String day, String amPm, String begin, String end, int minutes) {
+		Map<String, Object> detail = new HashMap<String, Object>();
+		detail.put("RULE_ID", RULE_ID);
+		detail.put("COMMOM_DATE", day);
+		detail.put("BEGIN_DATE", begin);
+		detail.put("END_DATE", end);
+		detail.put("AM_PM", amPm);
+		detail.put("IS_WORK", 1);
+		detail.put("MINUTES", minutes);
+		sqlCommand.insert("FIXFLOW_WORKDATE_DETAIL", detail);
+	}
+
+	private void moveWorkDay(String fromDay, String toDay) {
+		Map<String, Object> data = new HashMap<String, Object>();
+		data.put("COMMOM_DATE", toDay);
+		sqlCommand.update("FIXFLOW_WORKDATE_DETAIL", data, " RULE_ID=? and COMMOM_DATE=?", new Object[] { RULE_ID, fromDay });
+	}
+
+	private Date parse(String date) throws Exception {
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(date);
+	}
+}
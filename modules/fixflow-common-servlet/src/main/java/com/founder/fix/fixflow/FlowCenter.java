@@ -37,6 +37,8 @@ import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.service.FlowCenterService;
 import com.founder.fix.fixflow.service.FlowIdentityService;
@@ -200,13 +202,40 @@ public class FlowCenter extends HttpServlet {
 				filter.putAll(pageResult);
 				request.setAttribute("result", filter);
 			} else if (action.equals("getFlowGraph")) {
-				InputStream is = getFlowCenter().getFlowGraph(filter);
+				// 流程图内容不变时ETag不变,浏览器带着相同的ETag请求时直接返回304
+				// ETag和图片流取自同一份内容,只读取一次
+				ResourceContent content = getFlowCenter().getFlowGraphContent(filter);
+				String eTag = content == null ? null : content.getETag();
+				if (eTag != null && eTag.equals(request.getHeader("If-None-Match"))) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+				InputStream is = content == null ? null : content.openStream();
+				// 内容在取得以后被缓存淘汰时重新读取,缓存中已经没有这份内容,会从数据库读取
+				for (int retry = 0; content != null && is == null && retry < 3; retry++) {
+					content = getFlowCenter().getFlowGraphContent(filter);
+					is = content == null ? null : content.openStream();
+				}
+				if (content != null && is == null) {
+					throw new FixFlowException("流程图图片在读取过程中反复被缓存淘汰");
+				}
+				eTag = content == null ? null : content.getETag();
+				if (eTag != null) {
+					response.setHeader("ETag", eTag);
+					response.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+				}
 				out = response.getOutputStream();
 				response.setContentType("application/octet-stream;charset=UTF-8");
 				byte[] buff = new byte[2048];
 				int size = 0;
-				while (is != null && (size = is.read(buff)) != -1) {
-					out.write(buff, 0, size);
+				try {
+					while (is != null && (size = is.read(buff)) != -1) {
+						out.write(buff, 0, size);
+					}
+				} finally {
+					if (is != null) {
+						is.close();
+					}
 				}
 			} else if (action.equals("getUserInfo")) {
 				rd = request.getRequestDispatcher("/fixflow/common/userInfo.jsp");
@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.runtime.ProcessInstance;
 
 /**
@@ -240,6 +241,16 @@ public interface FlowCenterService {
 	  */
 	public InputStream getFlowGraph(Map<String,Object> filter) throws SQLException;
 	
+	/**
+	  * getFlowGraphContent
+	  * @Title: getFlowGraphContent
+	  * @Description: 获取某流程流程图的内容,ETag和图片流取自同一份内容,用于HTTP条件请求
+	  * @param filter 与getFlowGraph相同
+	  * @return 流程图内容,没有流程图时返回null
+	  * @throws SQLException
+	  */
+	public ResourceContent getFlowGraphContent(Map<String,Object> filter) throws SQLException;
+	
 	/**
 	  * getUserInfo
 	
@@ -44,6 +44,7 @@ import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.TaskCommandInst;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.UserTaskBehavior;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.command.ExpandTaskCommand;
 import com.founder.fix.fixflow.core.impl.identity.GroupDefinition;
 import com.founder.fix.fixflow.core.impl.identity.GroupTo;
@@ -51,6 +52,7 @@ import com.founder.fix.fixflow.core.impl.identity.UserTo;
 import com.founder.fix.fixflow.core.impl.task.QueryExpandTo;
 import com.founder.fix.fixflow.core.impl.util.DateUtil;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
+import com.founder.fix.fixflow.core.query.PageResult;
 import com.founder.fix.fixflow.core.runtime.ProcessInstance;
 import com.founder.fix.fixflow.core.runtime.ProcessInstanceQuery;
 import com.founder.fix.fixflow.core.runtime.ProcessInstanceType;
@@ -186,8 +188,9 @@ public class FlowCenterServiceImpl extends CommonServiceImpl implements FlowCent
 			queryExpandTo.setWhereSql(whereSql);
 			tq.queryExpandTo(queryExpandTo);
 			
-			List<TaskInstance> lts = tq.orderByTaskCreateTime().desc().listPagination(pageIndex, rowNum);
-			Long count = tq.count();
+			PageResult<TaskInstance> pageResult = tq.orderByTaskCreateTime().desc().listPageWithTotal(pageIndex, rowNum);
+			List<TaskInstance> lts = pageResult.getRows();
+			Long count = pageResult.getTotal();
 			List<Map<String,Object>> instanceMaps = new ArrayList<Map<String,Object>>();
 			
 			Pagination page = new Pagination(pageIndex,rowNum);
@@ -368,7 +371,8 @@ public class FlowCenterServiceImpl extends CommonServiceImpl implements FlowCent
 				processInstanceQuery.startTimeAfter(datee);
 			
 			
-			List<ProcessInstance> processInstances = processInstanceQuery.listPagination(pageIndex, rowNum);
+			PageResult<ProcessInstance> pageResult = processInstanceQuery.listPageWithTotal(pageIndex, rowNum);
+			List<ProcessInstance> processInstances = pageResult.getRows();
 			
 			List<Map<String,Object>> instanceMaps = new ArrayList<Map<String,Object>>();
 			for(ProcessInstance tmp: processInstances){
@@ -387,7 +391,7 @@ public class FlowCenterServiceImpl extends CommonServiceImpl implements FlowCent
 				}
 				instanceMaps.add(persistentState);
 			}
-			Long count = processInstanceQuery.count();
+			Long count = pageResult.getTotal();
 			Pagination page = new Pagination(pageIndex,rowNum);
 			page.setTotal(count.intValue());
 			resultMap.put("dataList", instanceMaps);
@@ -473,9 +477,10 @@ public class FlowCenterServiceImpl extends CommonServiceImpl implements FlowCent
 					tq.taskParticipants(userId);
 			}
 			tq.his();
-			instances = tq.listPagination(pageIndex, rowNum);
+			PageResult<ProcessInstance> pageResult = tq.listPageWithTotal(pageIndex, rowNum);
+			instances = pageResult.getRows();
 
-			Long count = tq.count();
+			Long count = pageResult.getTotal();
 			List<Map<String,Object>> instanceMaps = new ArrayList<Map<String,Object>>();
 			Pagination page = new Pagination(pageIndex,rowNum);
 			page.setTotal(count.intValue());
@@ -614,6 +619,26 @@ public class FlowCenterServiceImpl extends CommonServiceImpl implements FlowCent
 		return result;
 	}
 	
+	public ResourceContent getFlowGraphContent(Map<String,Object> filter) throws SQLException{
+		String processDefinitionId = StringUtil.getString(filter.get("processDefinitionId"));
+		String processDefinitionKey = StringUtil.getString(filter.get("processDefinitionKey"));
+		ResourceContent result = null;
+		
+		String userId = (String) filter.get("userId");
+		ProcessEngine engine = getProcessEngine(userId);
+		
+		try{
+			if(StringUtil.isNotEmpty(processDefinitionId))
+				result = engine.getModelService().getFlowGraphicsImgContent(processDefinitionId, null);
+			else
+				result = engine.getModelService().getFlowGraphicsImgContent(null, processDefinitionKey);
+		}finally{
+			closeProcessEngine();
+		}
+		
+		return result;
+	}
+	
 	public Map<String,Object> getUserInfo(Map<String,Object> filter) throws SQLException, IOException{
 		Map<String,Object> result= new HashMap<String,Object>();
 		UserTo user = null;
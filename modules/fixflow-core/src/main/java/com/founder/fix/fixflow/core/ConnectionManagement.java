@@ -20,6 +20,7 @@ package com.founder.fix.fixflow.core;
 import java.sql.Connection;
 
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.db.FixConnectionResult;
 
 /**
@@ -34,6 +35,11 @@ public abstract class ConnectionManagement {
 
 	public static String defaultDataBaseId = FIXDATABASEID;
 
+	/**
+	 * 创建这个数据库管理器的引擎配置,每个引擎有自己的数据库管理器实例
+	 */
+	protected ProcessEngineConfigurationImpl processEngineConfiguration;
+
 	public static ConnectionManagement INSTANCE() {
 
 		ProcessEngine processEngine = ProcessEngineManagement.getDefaultProcessEngine();
@@ -82,4 +88,19 @@ public abstract class ConnectionManagement {
 	 */
 	public abstract void setFixConnection(String dbId, Connection connection);
 
+	/**
+	 * 引擎关闭时调用,释放连接池等资源。默认没有需要释放的资源
+	 */
+	public void close() {
+
+	}
+
+	public ProcessEngineConfigurationImpl getProcessEngineConfiguration() {
+		return processEngineConfiguration;
+	}
+
+	public void setProcessEngineConfiguration(ProcessEngineConfigurationImpl processEngineConfiguration) {
+		this.processEngineConfiguration = processEngineConfiguration;
+	}
+
 }
@@ -20,6 +20,8 @@ package com.founder.fix.fixflow.core;
 import java.util.Date;
 import java.util.List;
 
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+
 public interface HistoryService extends ProcessService{
 
 	/**
@@ -57,4 +59,35 @@ public interface HistoryService extends ProcessService{
 	 */
 	public boolean archiveAll();
 	
+	/**
+	 * 在引擎的归档线程池中分批归档已经结束的流程实例,每批单独提交事务
+	 * @param processDefinitionKey 流程定义key,可为null
+	 * @param begin 结束时间的开始范围，可为null
+	 * @param end 结束时间的结束范围，可为null
+	 * @param chunkSize 每批归档的流程实例数
+	 * @param throttleMillis 两批之间的间隔(毫秒)
+	 * @return 归档检查点编号
+	 */
+	public String startArchive(String processDefinitionKey, Date begin, Date end, int chunkSize, long throttleMillis);
+	
+	/**
+	 * 从检查点继续归档(停止、失败或进程崩溃后)
+	 * @param archiveId 归档检查点编号
+	 * @return 该归档已经在运行时返回false
+	 */
+	public boolean resumeArchive(String archiveId);
+	
+	/**
+	 * 停止归档,当前批完成后停止
+	 * @param archiveId 归档检查点编号
+	 */
+	public void stopArchive(String archiveId);
+	
+	/**
+	 * 获取归档进度
+	 * @param archiveId 归档检查点编号
+	 * @return
+	 */
+	public ArchiveCheckpoint getArchiveCheckpoint(String archiveId);
+	
 }
@@ -24,6 +24,7 @@ import java.util.zip.ZipInputStream;
 
 
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.persistence.definition.DeploymentEntity;
 import com.founder.fix.fixflow.core.impl.persistence.definition.ResourceEntity;
 import com.founder.fix.fixflow.core.model.DeploymentBuilder;
@@ -103,6 +104,20 @@ public interface ModelService extends ProcessService{
 	 */
 	String getFlowGraphicsSvgByDefKey(String processDefinitionKey);
 	
+	/**
+	 * 获取流程图(SVG格式)的ETag,流程图内容不变时ETag不变
+	 * @param processDefinitionId 流程定义编号
+	 * @return ETag
+	 */
+	String getFlowGraphicsSvgETag(String processDefinitionId);
+	
+	/**
+	 * 获取流程实例的流程图(SVG格式),当前节点高亮显示
+	 * @param processInstanceId 流程实例编号
+	 * @return 流程图
+	 */
+	String getProcessInstanceFlowGraphicsSvg(String processInstanceId);
+	
 	
 	/**
 	 * 获取流程定义的默认表单
@@ -212,6 +227,14 @@ public interface ModelService extends ProcessService{
 	 */
 	InputStream GetFlowGraphicsImgStreamByDefKey(String processDefinitionKey);
 	
+	/**
+	 * 获取流程图图片内容,ETag(图片内容不变时不变)和图片流从同一份内容取得
+	 * @param processDefinitionId 流程唯一编号,为空时使用processDefinitionKey
+	 * @param processDefinitionKey 流程编号
+	 * @return 图片内容,流程图图片不存在时返回null
+	 */
+	ResourceContent getFlowGraphicsImgContent(String processDefinitionId, String processDefinitionKey);
+	
 	/**
 	 * 通过zip文件发布流程
 	 * @param path zip文件路径
@@ -0,0 +1,168 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.db.pagination;
+
+import java.util.Properties;
+
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
+
+/**
+ * 分页方言的基类,带总行数分页和游标分页提供默认实现。
+ * 自定义方言直接实现{@link Pagination}也可以使用,引擎通过本类的静态方法按默认方式处理。
+ */
+public abstract class AbstractPagination implements Pagination {
+
+	/**
+	 * 读取引擎参数(engine.properties)中本数据库的方言参数
+	 * @param engineProperties 引擎参数
+	 * @param propertyPrefix 参数前缀,如dataBase.DB_FIX_BIZ_BASE.
+	 */
+	public void configure(Properties engineProperties, String propertyPrefix) {
+
+	}
+
+	/**
+	 * 获取带总行数的分页Sql语句,每一行的{@link #TOTAL_COLUMN}字段是分页前的总行数(窗口函数count(*) over())
+	 * @param sql 数据结果集SQl语句
+	 * @param firstResult 开始行
+	 * @param maxResults 结束行
+	 * @param fields 需要显示的字段
+	 * @param orderBy 分页排序
+	 * @return 不支持时返回null,由调用者单独查询总行数
+	 */
+	public String getPaginationWithTotalSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return null;
+	}
+
+	/**
+	 * 带总行数的分页语句执行后,在同一连接上取得总行数的语句(如MySQL的FOUND_ROWS())
+	 * @return 总行数已在{@link #TOTAL_COLUMN}字段中时返回null
+	 */
+	public String getFoundRowsSql() {
+		return null;
+	}
+
+	/**
+	 * 获取游标(keyset)分页的Sql语句,不使用开始行,只取游标条件之后排序靠前的若干行。
+	 * 默认把游标条件包在外层查询上,再用{@link #getPaginationSql}取前maxResults行
+	 * @param sql 数据结果集SQl语句
+	 * @param seekCondition 游标条件,字段不带表别名,为空时查询第一页
+	 * @param maxResults 取得的行数
+	 * @param fields 需要显示的字段
+	 * @param orderBy 分页排序
+	 * @return
+	 */
+	public String getKeysetPaginationSql(String sql, String seekCondition, int maxResults, String fields, String orderBy) {
+		return defaultKeysetPaginationSql(this, sql, seekCondition, maxResults, fields, orderBy);
+	}
+
+	/**
+	 * 升序排序时空值是否排在最前(MySQL、SQL Server),否则空值按最大值排在升序的最后(Oracle、DB2)
+	 * @return
+	 */
+	public boolean isNullsFirst() {
+		return false;
+	}
+
+	/**
+	 * 按数据库默认的排序规则比较字符串,在内存中归并数据库排好序的结果时使用。
+	 * 默认按字符编码比较(Oracle、DB2默认的二进制排序)
+	 * @param value1
+	 * @param value2
+	 * @return
+	 */
+	public int compareString(String value1, String value2) {
+		return value1.compareTo(value2);
+	}
+
+	/**
+	 * 不区分大小写、忽略末尾空格比较字符串(MySQL、SQL Server默认排序规则)
+	 */
+	protected static int compareIgnoreCasePadSpace(String value1, String value2) {
+		return String.CASE_INSENSITIVE_ORDER.compare(trimTrailing(value1), trimTrailing(value2));
+	}
+
+	private static String trimTrailing(String value) {
+		int length = value.length();
+		while (length > 0 && value.charAt(length - 1) == ' ') {
+			length--;
+		}
+		return value.substring(0, length);
+	}
+
+	/**
+	 * 升序时空值是否排在最前,方言不是{@link AbstractPagination}时按Oracle的规则(空值最大)
+	 */
+	public static boolean nullsFirst(Pagination pagination) {
+		if (pagination instanceof AbstractPagination) {
+			return ((AbstractPagination) pagination).isNullsFirst();
+		}
+		return false;
+	}
+
+	/**
+	 * 按数据库的排序规则比较字符串,方言不是{@link AbstractPagination}时按字符编码比较
+	 */
+	public static int stringOrder(Pagination pagination, String value1, String value2) {
+		if (pagination instanceof AbstractPagination) {
+			return ((AbstractPagination) pagination).compareString(value1, value2);
+		}
+		return value1.compareTo(value2);
+	}
+
+	/**
+	 * 带总行数的分页语句,方言不是{@link AbstractPagination}时返回null
+	 */
+	public static String paginationWithTotalSql(Pagination pagination, String sql, int firstResult, int maxResults, String fields,
+			String orderBy) {
+		if (pagination instanceof AbstractPagination) {
+			return ((AbstractPagination) pagination).getPaginationWithTotalSql(sql, firstResult, maxResults, fields, orderBy);
+		}
+		return null;
+	}
+
+	/**
+	 * 带总行数的分页语句执行后取得总行数的语句,没有时返回null
+	 */
+	public static String foundRowsSql(Pagination pagination) {
+		if (pagination instanceof AbstractPagination) {
+			return ((AbstractPagination) pagination).getFoundRowsSql();
+		}
+		return null;
+	}
+
+	/**
+	 * 游标分页语句,方言不是{@link AbstractPagination}时使用默认方式
+	 */
+	public static String keysetPaginationSql(Pagination pagination, String sql, String seekCondition, int maxResults, String fields,
+			String orderBy) {
+		if (pagination instanceof AbstractPagination) {
+			return ((AbstractPagination) pagination).getKeysetPaginationSql(sql, seekCondition, maxResults, fields, orderBy);
+		}
+		return defaultKeysetPaginationSql(pagination, sql, seekCondition, maxResults, fields, orderBy);
+	}
+
+	private static String defaultKeysetPaginationSql(Pagination pagination, String sql, String seekCondition, int maxResults,
+			String fields, String orderBy) {
+		if (StringUtil.isNotEmpty(seekCondition)) {
+			sql = "SELECT K.* FROM (" + sql + ") K WHERE " + seekCondition;
+		}
+		return pagination.getPaginationSql(sql, 1, maxResults, fields, orderBy);
+	}
+
+}
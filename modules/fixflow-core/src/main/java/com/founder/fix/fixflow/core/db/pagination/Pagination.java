@@ -24,6 +24,11 @@ package com.founder.fix.fixflow.core.db.pagination;
  */
 public interface Pagination {
 	
+	/**
+	 * 带总行数的分页语句中总行数字段的名称,见{@link AbstractPagination#getPaginationWithTotalSql}
+	 */
+	String TOTAL_COLUMN = "TOTAL_";
+	
 	/**
 	 * 获取分页的Sql语句
 	 * @param sql 数据结果集SQl语句
@@ -26,6 +26,7 @@ import com.founder.fix.fixflow.core.impl.interceptor.Command;
 import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
 import com.founder.fix.fixflow.core.impl.interceptor.CommandExecutor;
 import com.founder.fix.fixflow.core.impl.task.QueryExpandTo;
+import com.founder.fix.fixflow.core.query.PageResult;
 import com.founder.fix.fixflow.core.query.Query;
 import com.founder.fix.fixflow.core.query.QueryProperty;
 
@@ -40,7 +41,7 @@ public abstract class AbstractQuery<T extends Query<?, ?>, U> implements Command
 	public static final String SORTORDER_DESC = "desc";
 
 	private static enum ResultType {
-		LIST, LIST_PAGE, SINGLE_RESULT, COUNT
+		LIST, LIST_PAGE, LIST_PAGE_TOTAL, LIST_PAGE_HAS_MORE, LIST_PAGE_AFTER, SINGLE_RESULT, COUNT
 	}
 
 	protected CommandExecutor commandExecutor;
@@ -49,6 +50,7 @@ public abstract class AbstractQuery<T extends Query<?, ?>, U> implements Command
 
 	protected int firstResult;
 	protected int maxResults;
+	protected String continuationToken;
 	protected ResultType resultType;
 	
 	protected QueryExpandTo queryExpandTo;
@@ -160,6 +162,39 @@ public abstract class AbstractQuery<T extends Query<?, ?>, U> implements Command
 		return executeList(Context.getCommandContext(), new Page(firstResult, maxResults));
 	}
 
+	@SuppressWarnings("unchecked")
+	public PageResult<U> listPageWithTotal(int pageNum, int rowNum) {
+		this.firstResult = pageNum*rowNum-rowNum+1;
+		this.maxResults = pageNum*rowNum;
+		this.resultType = ResultType.LIST_PAGE_TOTAL;
+		if (commandExecutor != null) {
+			return (PageResult<U>) commandExecutor.execute(this);
+		}
+		return executeListPageWithTotal(Context.getCommandContext());
+	}
+
+	@SuppressWarnings("unchecked")
+	public PageResult<U> listPageWithHasMore(int pageNum, int rowNum) {
+		this.firstResult = pageNum*rowNum-rowNum+1;
+		this.maxResults = pageNum*rowNum;
+		this.resultType = ResultType.LIST_PAGE_HAS_MORE;
+		if (commandExecutor != null) {
+			return (PageResult<U>) commandExecutor.execute(this);
+		}
+		return executeListPageWithHasMore(Context.getCommandContext());
+	}
+
+	@SuppressWarnings("unchecked")
+	public PageResult<U> listPageAfter(String continuationToken, int rowNum) {
+		this.continuationToken = continuationToken;
+		this.maxResults = rowNum;
+		this.resultType = ResultType.LIST_PAGE_AFTER;
+		if (commandExecutor != null) {
+			return (PageResult<U>) commandExecutor.execute(this);
+		}
+		return executeListPageAfter(Context.getCommandContext());
+	}
+
 	public long count() {
 		this.resultType = ResultType.COUNT;
 		if (commandExecutor != null) {
@@ -175,6 +210,12 @@ public abstract class AbstractQuery<T extends Query<?, ?>, U> implements Command
 			return executeSingleResult(commandContext);
 		} else if (resultType == ResultType.LIST_PAGE) {
 			return executeList(commandContext, new Page(firstResult, maxResults));
+		} else if (resultType == ResultType.LIST_PAGE_TOTAL) {
+			return executeListPageWithTotal(commandContext);
+		} else if (resultType == ResultType.LIST_PAGE_HAS_MORE) {
+			return executeListPageWithHasMore(commandContext);
+		} else if (resultType == ResultType.LIST_PAGE_AFTER) {
+			return executeListPageAfter(commandContext);
 		} else {
 			return executeCount(commandContext);
 		}
@@ -185,6 +226,81 @@ public abstract class AbstractQuery<T extends Query<?, ?>, U> implements Command
 
 	public abstract List<U> executeList(CommandContext commandContext, Page page);
 
+	/**
+	 * 在同一个命令中查询分页数据和总行数
+	 * <p>
+	 * 查询语句取得了总行数(窗口函数)或当前页不满时不再单独查询总行数。
+	 * @param commandContext
+	 * @return
+	 */
+	protected PageResult<U> executeListPageWithTotal(CommandContext commandContext) {
+		Page page = new Page(firstResult, maxResults, true);
+		List<U> rows = executeList(commandContext, page);
+		if (rows == null) {
+			rows = new ArrayList<U>();
+		}
+		long total = page.getTotal();
+		if (total < 0) {
+			int pageSize = maxResults - firstResult + 1;
+			if (rows.size() > 0 && rows.size() < pageSize) {
+				total = firstResult - 1 + rows.size();
+			} else if (rows.isEmpty() && firstResult <= 1) {
+				total = 0;
+			} else {
+				total = executeCount(commandContext);
+			}
+		}
+		return new PageResult<U>(rows, total, firstResult - 1 + rows.size() < total);
+	}
+
+	/**
+	 * 多查询一行判断是否还有数据,不查询总行数
+	 * @param commandContext
+	 * @return
+	 */
+	protected PageResult<U> executeListPageWithHasMore(CommandContext commandContext) {
+		List<U> rows = executeList(commandContext, new Page(firstResult, maxResults + 1));
+		if (rows == null) {
+			rows = new ArrayList<U>();
+		}
+		int pageSize = maxResults - firstResult + 1;
+		boolean hasMore = rows.size() > pageSize;
+		if (hasMore) {
+			rows = new ArrayList<U>(rows.subList(0, pageSize));
+		}
+		return new PageResult<U>(rows, -1, hasMore);
+	}
+
+	/**
+	 * 游标分页查询,多查询一行判断是否还有数据
+	 * @param commandContext
+	 * @return
+	 */
+	protected PageResult<U> executeListPageAfter(CommandContext commandContext) {
+		String idColumn = getKeysetIdColumn();
+		if (idColumn == null) {
+			throw new FixFlowException(getClass().getName() + " 不支持游标分页");
+		}
+		KeysetPage page = new KeysetPage(orderBy, idColumn, continuationToken, maxResults);
+		List<U> rows = executeList(commandContext, page);
+		if (rows == null) {
+			rows = new ArrayList<U>();
+		}
+		boolean hasMore = rows.size() > maxResults;
+		if (hasMore) {
+			rows = new ArrayList<U>(rows.subList(0, maxResults));
+		}
+		return new PageResult<U>(rows, hasMore, page.getNextToken(hasMore));
+	}
+
+	/**
+	 * 游标分页使用的主键字段(带表别名),查询脚本支持{@link KeysetPage}的查询需要重写此方法
+	 * @return 不支持游标分页时返回null
+	 */
+	protected String getKeysetIdColumn() {
+		return null;
+	}
+
 	public U executeSingleResult(CommandContext commandContext) {
 		List<U> results = executeList(commandContext, null);
 		if (results.size() == 1) {
@@ -18,7 +18,10 @@
 package com.founder.fix.fixflow.core.impl;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
@@ -27,6 +30,7 @@ import com.founder.fix.bpmn2extensions.coreconfig.ScriptLanguageConfig;
 import com.founder.fix.fixflow.core.ConnectionManagement;
 import com.founder.fix.fixflow.core.impl.cache.CacheObject;
 import com.founder.fix.fixflow.core.impl.db.FixConnectionResult;
+import com.founder.fix.fixflow.core.impl.db.StatementCache;
 import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
 import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
 import com.founder.fix.fixflow.core.scriptlanguage.AbstractScriptLanguageMgmt;
@@ -51,6 +55,44 @@ public class Context {
 
 	protected static ThreadLocal<Stack<String>> connectionManagementDefault = new ThreadLocal<Stack<String>>();
 
+	// 引擎管理的连接上的预编译语句缓存
+	protected static ThreadLocal<Map<Connection, StatementCache>> statementCacheThreadLocal = new ThreadLocal<Map<Connection, StatementCache>>();
+
+	protected static ThreadLocal<List<Runnable>> commitListenerThreadLocal = new ThreadLocal<List<Runnable>>();
+
+	/**
+	 * 登记事务提交后要执行的操作,通常是让共享缓存失效
+	 * @param listener 提交后执行的操作
+	 */
+	public static void addCommitListener(Runnable listener) {
+		List<Runnable> listeners = commitListenerThreadLocal.get();
+		if (listeners == null) {
+			listeners = new ArrayList<Runnable>();
+			commitListenerThreadLocal.set(listeners);
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * 事务提交后执行并移除已登记的操作
+	 */
+	public static void fireCommitListeners() {
+		List<Runnable> listeners = commitListenerThreadLocal.get();
+		commitListenerThreadLocal.remove();
+		if (listeners != null) {
+			for (Runnable listener : listeners) {
+				listener.run();
+			}
+		}
+	}
+
+	/**
+	 * 事务回滚时丢弃已登记的操作
+	 */
+	public static void removeCommitListeners() {
+		commitListenerThreadLocal.remove();
+	}
+
 	public static void setConnectionManagementDefault(String cmId) {
 		getStack(connectionManagementDefault).push(cmId);
 	}
@@ -182,7 +224,7 @@ public class Context {
 
 			fixConnectionResult.openConnection();
 
-			return fixConnectionResult.getConnection();
+			return registerStatementCache(fixConnectionResult.getConnection());
 
 		}
 
@@ -198,7 +240,7 @@ public class Context {
 
 			fixConnectionResult.openConnection();
 
-			return fixConnectionResult.getConnection();
+			return registerStatementCache(fixConnectionResult.getConnection());
 		} else {
 
 			FixConnectionResult fixConnectionResult = connMap.get(dbId);
@@ -211,18 +253,71 @@ public class Context {
 
 				fixConnectionResultObj.openConnection();
 
-				return fixConnectionResultObj.getConnection();
+				return registerStatementCache(fixConnectionResultObj.getConnection());
 
 			} else {
 
 				// fixConnectionResult.openConnection();
 
-				return fixConnectionResult.getConnection();
+				return registerStatementCache(fixConnectionResult.getConnection());
 			}
 		}
 
 	}
 
+	/**
+	 * 为交给引擎使用的连接创建语句缓存,缓存在contextClose时关闭
+	 * @param connection 数据库连接
+	 * @return 传入的连接
+	 */
+	protected static Connection registerStatementCache(Connection connection) {
+		if (connection == null) {
+			return null;
+		}
+		Map<Connection, StatementCache> statementCacheMap = statementCacheThreadLocal.get();
+		if (statementCacheMap == null) {
+			statementCacheMap = new IdentityHashMap<Connection, StatementCache>();
+			statementCacheThreadLocal.set(statementCacheMap);
+		}
+		if (!statementCacheMap.containsKey(connection)) {
+			statementCacheMap.put(connection, new StatementCache(connection));
+		}
+		return connection;
+	}
+
+	/**
+	 * 获取连接上的语句缓存
+	 * @param connection 数据库连接
+	 * @return 不是引擎管理的连接时返回null
+	 */
+	public static StatementCache getStatementCache(Connection connection) {
+		Map<Connection, StatementCache> statementCacheMap = statementCacheThreadLocal.get();
+		if (statementCacheMap == null || connection == null) {
+			return null;
+		}
+		return statementCacheMap.get(connection);
+	}
+
+	public static void removeStatementCache(Connection connection) {
+		Map<Connection, StatementCache> statementCacheMap = statementCacheThreadLocal.get();
+		if (statementCacheMap != null && connection != null) {
+			StatementCache statementCache = statementCacheMap.remove(connection);
+			if (statementCache != null) {
+				statementCache.close();
+			}
+		}
+	}
+
+	public static void removeStatementCache() {
+		Map<Connection, StatementCache> statementCacheMap = statementCacheThreadLocal.get();
+		if (statementCacheMap != null) {
+			for (StatementCache statementCache : statementCacheMap.values()) {
+				statementCache.close();
+			}
+		}
+		statementCacheThreadLocal.remove();
+	}
+
 	public static Map<String, FixConnectionResult> getDbConnectionMap() {
 
 		Stack<Map<String, FixConnectionResult>> stack = getStack(dbConnectionThreadLocal);
@@ -291,6 +386,17 @@ public class Context {
 		getStack(commandContextThreadLocal).clear();
 	}
 
+	/**
+	 * 命令结束时移除它的上下文,恢复外层命令的上下文
+	 * @param commandContext 结束的命令上下文,不在栈顶时不做处理
+	 */
+	public static void removeCommandContext(CommandContext commandContext) {
+		Stack<CommandContext> stack = getStack(commandContextThreadLocal);
+		if (!stack.isEmpty() && stack.peek() == commandContext) {
+			stack.pop();
+		}
+	}
+
 	public static void removeAbstractScriptLanguageMgmt() {
 
 		Stack<AbstractScriptLanguageMgmt> abstractScriptLanguageMgmts = getStack(abstractScriptLanguageMgmtThreadLocal);
@@ -22,10 +22,19 @@ import java.util.Date;
 import java.util.List;
 
 import com.founder.fix.fixflow.core.HistoryService;
+import com.founder.fix.fixflow.core.ProcessEngine;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+import com.founder.fix.fixflow.core.impl.archive.Archiver;
 import com.founder.fix.fixflow.core.impl.cmd.ArchiveCmd;
+import com.founder.fix.fixflow.core.impl.cmd.GetArchiveCheckpointCmd;
+import com.founder.fix.fixflow.core.impl.cmd.StartArchiveCmd;
+import com.founder.fix.fixflow.core.impl.cmd.UpdateArchiveStatusCmd;
 
 public class HistoryServiceImpl extends ServiceImpl implements HistoryService {
 
+	/** 本服务所属的引擎,后台归档在这个引擎上执行 */
+	protected ProcessEngine processEngine;
+
 	public boolean archiveByProcessInstanceId(String processinstanceId) {
 		List<String> processInstanceIds = new ArrayList<String>();
 		processInstanceIds.add(processinstanceId);
@@ -47,5 +56,32 @@ public class HistoryServiceImpl extends ServiceImpl implements HistoryService {
 	public boolean archiveAll() {
 		return commandExecutor.execute(new ArchiveCmd(null, null, null, null, true));
 	}
+	
+	public String startArchive(String processDefinitionKey, Date begin, Date end, int chunkSize, long throttleMillis) {
+		StartArchiveCmd startArchiveCmd = new StartArchiveCmd(processDefinitionKey, begin, end, chunkSize, throttleMillis);
+		Archiver.submit(processEngine, startArchiveCmd.getArchiveId(), startArchiveCmd);
+		return startArchiveCmd.getArchiveId();
+	}
+	
+	public boolean resumeArchive(String archiveId) {
+		return Archiver.submit(processEngine, archiveId,
+				new UpdateArchiveStatusCmd(archiveId, ArchiveCheckpoint.STATUS_RUNNING, null));
+	}
+	
+	public void stopArchive(String archiveId) {
+		commandExecutor.execute(new UpdateArchiveStatusCmd(archiveId, ArchiveCheckpoint.STATUS_STOPPED, null));
+	}
+	
+	public ArchiveCheckpoint getArchiveCheckpoint(String archiveId) {
+		return commandExecutor.execute(new GetArchiveCheckpointCmd(archiveId));
+	}
+
+	public ProcessEngine getProcessEngine() {
+		return processEngine;
+	}
+
+	public void setProcessEngine(ProcessEngine processEngine) {
+		this.processEngine = processEngine;
+	}
 
 }
@@ -0,0 +1,308 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+
+/**
+ * 游标(keyset)分页
+ * <p>
+ * 不使用开始行,而是以上一页最后一行的排序字段值作为游标,查询排序在游标之后的数据,
+ * 翻到很深的页时数据库也不需要扫描并丢弃前面所有的行。
+ * 排序字段最后总是加上主键字段,保证顺序唯一。
+ * 排序字段的空值按最大值处理(升序在最后,降序在最前),排序语句和游标条件都显式处理空值,不依赖数据库的默认规则。
+ * 
+ * @author kenshin
+ */
+public class KeysetPage extends Page {
+
+	private static final String TOKEN_SEPARATOR = "\u0000";
+
+	/** 排序字段(不带表别名) */
+	protected List<String> columns = new ArrayList<String>();
+
+	/** 排序字段是否降序 */
+	protected List<Boolean> descendings = new ArrayList<Boolean>();
+
+	/** 主键字段(不带表别名),值不会为空 */
+	protected String idName;
+
+	/** 上一页最后一行的排序字段值,为null时查询第一页 */
+	protected Object[] afterValues;
+
+	/** 每页显示行数,实际多查询一行用来判断是否还有数据 */
+	protected int pageSize;
+
+	/** 当前页最后一行的排序字段值 */
+	protected Object[] lastValues;
+
+	/**
+	 * @param orderBy 查询的排序语句,例如 T.CREATE_TIME desc, T.NAME asc
+	 * @param idColumn 主键字段,例如 T.TASKINSTANCE_ID
+	 * @param continuationToken 上一页返回的游标,为空时查询第一页
+	 * @param pageSize 每页显示行数
+	 */
+	public KeysetPage(String orderBy, String idColumn, String continuationToken, int pageSize) {
+		super(1, pageSize + 1);
+		this.pageSize = pageSize;
+		boolean lastDescending = false;
+		boolean idOrdered = false;
+		idName = stripAlias(idColumn);
+		if (orderBy != null) {
+			for (String orderByObj : orderBy.split(",")) {
+				String[] parts = orderByObj.trim().split("\\s+");
+				String column = stripAlias(parts[0]);
+				lastDescending = parts.length > 1 && parts[1].equalsIgnoreCase(AbstractQuery.SORTORDER_DESC);
+				columns.add(column);
+				descendings.add(lastDescending);
+				if (column.equalsIgnoreCase(idName)) {
+					idOrdered = true;
+				}
+			}
+		}
+		if (!idOrdered) {
+			columns.add(idName);
+			descendings.add(lastDescending);
+		}
+		if (continuationToken != null && continuationToken.length() > 0) {
+			afterValues = decodeToken(continuationToken);
+		}
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * 排序字段和方向,不处理空值,例如 "CREATE_TIME desc,TASKINSTANCE_ID desc"
+	 */
+	public String getColumnOrderBy() {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				sb.append(",");
+			}
+			sb.append(columns.get(i)).append(descendings.get(i) ? " desc" : " asc");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 分页排序语句,字段不带表别名,可能为空的字段先按是否为空排序
+	 * @return 例如 " order by CASE WHEN DUEDATE IS NULL THEN 1 ELSE 0 END desc,DUEDATE desc,TASKINSTANCE_ID desc"
+	 */
+	public String getOrderBySql() {
+		StringBuffer sb = new StringBuffer(" order by ");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				sb.append(",");
+			}
+			String direction = descendings.get(i) ? " desc" : " asc";
+			if (!columns.get(i).equalsIgnoreCase(idName)) {
+				sb.append("CASE WHEN ").append(columns.get(i)).append(" IS NULL THEN 1 ELSE 0 END").append(direction).append(",");
+			}
+			sb.append(columns.get(i)).append(direction);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 游标条件,例如 (CREATE_TIME &lt; ? or (CREATE_TIME = ? and TASKINSTANCE_ID &lt; ?)),
+	 * 游标值为空的字段用IS NULL比较
+	 * @param params 条件参数,按顺序追加到此列表
+	 * @return 第一页时返回null
+	 */
+	public String getSeekCondition(List<Object> params) {
+		if (afterValues == null) {
+			return null;
+		}
+		StringBuffer sb = new StringBuffer("(");
+		boolean first = true;
+		for (int i = 0; i < columns.size(); i++) {
+			String after = getAfterCondition(i);
+			if (after == null) {
+				continue;
+			}
+			if (!first) {
+				sb.append(" or ");
+			}
+			first = false;
+			sb.append("(");
+			for (int j = 0; j < i; j++) {
+				if (afterValues[j] == null) {
+					sb.append(columns.get(j)).append(" IS NULL and ");
+				} else {
+					sb.append(columns.get(j)).append(" = ? and ");
+					params.add(afterValues[j]);
+				}
+			}
+			sb.append(after);
+			if (afterValues[i] != null) {
+				params.add(afterValues[i]);
+			}
+			sb.append(")");
+		}
+		if (first) {
+			// 所有排序字段都为空,主键字段不会为空,不会出现这种情况
+			sb.append("1 = 0");
+		}
+		sb.append(")");
+		return sb.toString();
+	}
+
+	/**
+	 * 第i个排序字段排在游标值之后的条件,空值按最大值处理
+	 * @return 没有排在之后的值时返回null
+	 */
+	private String getAfterCondition(int i) {
+		String column = columns.get(i);
+		if (afterValues[i] == null) {
+			return descendings.get(i) ? column + " IS NOT NULL" : null;
+		}
+		if (descendings.get(i)) {
+			return column + " < ?";
+		}
+		if (column.equalsIgnoreCase(idName)) {
+			return column + " > ?";
+		}
+		return "(" + column + " > ? or " + column + " IS NULL)";
+	}
+
+	/**
+	 * 从查询结果中读取当前页最后一行的排序字段值
+	 * @param rows 查询结果
+	 */
+	public void readLastValues(List<Map<String, Object>> rows) {
+		if (rows == null || rows.isEmpty()) {
+			return;
+		}
+		Map<String, Object> row = rows.get(Math.min(rows.size(), pageSize) - 1);
+		lastValues = new Object[columns.size()];
+		for (int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i);
+			Object value = row.get(column);
+			if (value == null) {
+				value = row.get(column.toUpperCase());
+			}
+			if (value == null) {
+				value = row.get(column.toLowerCase());
+			}
+			lastValues[i] = value;
+		}
+	}
+
+	/**
+	 * 下一页的游标
+	 * @param hasMore 是否还有数据
+	 * @return 没有下一页时返回null
+	 */
+	public String getNextToken(boolean hasMore) {
+		if (!hasMore || lastValues == null) {
+			return null;
+		}
+		return encodeToken(lastValues);
+	}
+
+	/**
+	 * 游标由排序语句和排序字段值组成,排序语句不一致的游标不能使用
+	 */
+	protected String encodeToken(Object[] values) {
+		StringBuffer sb = new StringBuffer(getColumnOrderBy());
+		for (Object value : values) {
+			sb.append(TOKEN_SEPARATOR);
+			if (value == null) {
+				sb.append('u');
+			} else if (value instanceof Timestamp) {
+				sb.append('t').append(((Timestamp) value).getTime()).append('.').append(((Timestamp) value).getNanos());
+			} else if (value instanceof Date) {
+				sb.append('d').append(((Date) value).getTime());
+			} else if (value instanceof Number) {
+				sb.append('n').append(value.toString());
+			} else {
+				sb.append('s').append(value.toString());
+			}
+		}
+		try {
+			byte[] bytes = sb.toString().getBytes("UTF-8");
+			StringBuffer token = new StringBuffer(bytes.length * 2);
+			for (byte b : bytes) {
+				token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return token.toString();
+		} catch (UnsupportedEncodingException e) {
+			throw new FixFlowException("游标编码失败", e);
+		}
+	}
+
+	protected Object[] decodeToken(String token) {
+		String text;
+		try {
+			if (token.length() % 2 != 0) {
+				throw new NumberFormatException(token);
+			}
+			byte[] bytes = new byte[token.length() / 2];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) Integer.parseInt(token.substring(i * 2, i * 2 + 2), 16);
+			}
+			text = new String(bytes, "UTF-8");
+		} catch (Exception e) {
+			throw new FixFlowException("无效的分页游标: " + token, e);
+		}
+		String[] parts = text.split(TOKEN_SEPARATOR, -1);
+		if (!parts[0].equals(getColumnOrderBy()) || parts.length != columns.size() + 1) {
+			throw new FixFlowException("分页游标与查询的排序不一致: " + token);
+		}
+		Object[] values = new Object[columns.size()];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				String part = parts[i + 1];
+				char type = part.charAt(0);
+				String value = part.substring(1);
+				if (type == 'u') {
+					values[i] = null;
+				} else if (type == 't') {
+					int dot = value.indexOf('.');
+					Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, dot)));
+					timestamp.setNanos(Integer.parseInt(value.substring(dot + 1)));
+					values[i] = timestamp;
+				} else if (type == 'd') {
+					values[i] = new Timestamp(Long.parseLong(value));
+				} else if (type == 'n') {
+					values[i] = new BigDecimal(value);
+				} else {
+					values[i] = value;
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new FixFlowException("无效的分页游标: " + token, e);
+		}
+		return values;
+	}
+
+	private static String stripAlias(String column) {
+		return column.substring(column.indexOf(".") + 1).trim();
+	}
+}
@@ -24,6 +24,7 @@ import java.util.zip.ZipInputStream;
 
 import com.founder.fix.fixflow.core.ModelService;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.cmd.DeleteDeploymentCmd;
 import com.founder.fix.fixflow.core.impl.cmd.DeployCmd;
 import com.founder.fix.fixflow.core.impl.cmd.DeploymentByStreamCmd;
@@ -31,9 +32,12 @@ import com.founder.fix.fixflow.core.impl.cmd.DeploymentByZipCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetDefaultFromUriCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetDeploymentEntityCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsElementPositionCmd;
+import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsImgContentCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsImgPathCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsImgStreamCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsSvgCmd;
+import com.founder.fix.fixflow.core.impl.cmd.GetFlowGraphicsSvgETagCmd;
+import com.founder.fix.fixflow.core.impl.cmd.GetProcessInstanceFlowGraphicsSvgCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetModelInternationalizationResourcesCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetProcessDefinitionCmd;
 import com.founder.fix.fixflow.core.impl.cmd.GetProcessDefinitionGroupKeyCmd;
@@ -136,6 +140,14 @@ public class ModelServiceImpl extends ServiceImpl implements ModelService {
 	public String getFlowGraphicsSvgByDefKey(String processDefinitionKey) {
 		return commandExecutor.execute(new GetFlowGraphicsSvgCmd(null,processDefinitionKey));
 	}
+	
+	public String getFlowGraphicsSvgETag(String processDefinitionId) {
+		return commandExecutor.execute(new GetFlowGraphicsSvgETagCmd(processDefinitionId,null));
+	}
+	
+	public String getProcessInstanceFlowGraphicsSvg(String processInstanceId) {
+		return commandExecutor.execute(new GetProcessInstanceFlowGraphicsSvgCmd(processInstanceId));
+	}
 
 	
 	public String GetFlowGraphicsImgPath(String processDefinitionId) {
@@ -173,6 +185,10 @@ public class ModelServiceImpl extends ServiceImpl implements ModelService {
 		return commandExecutor.execute(new GetFlowGraphicsImgStreamCmd(null,processDefinitionKey));
 	}
 	
+	public ResourceContent getFlowGraphicsImgContent(String processDefinitionId, String processDefinitionKey) {
+		return commandExecutor.execute(new GetFlowGraphicsImgContentCmd(processDefinitionId,processDefinitionKey));
+	}
+	
 	public String deploymentByZip(String path){
 		InputStream inputStream = ReflectUtil.getResourceAsStream(path);
 		if(inputStream == null){
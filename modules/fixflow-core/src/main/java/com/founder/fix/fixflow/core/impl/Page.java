@@ -17,6 +17,13 @@
  */
 package com.founder.fix.fixflow.core.impl;
 
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
+import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
 /**
  * 
@@ -27,12 +34,21 @@ public class Page {
   
   protected int firstResult;
   protected int maxResults;
+  /** 是否在分页查询的同时取得总行数 */
+  protected boolean totalRequired;
+  /** 分页前的总行数,-1表示查询语句没有取得总行数 */
+  protected long total = -1;
   
   public Page(int firstResult, int maxResults) {
     this.firstResult = firstResult;
     this.maxResults = maxResults;
   }
   
+  public Page(int firstResult, int maxResults, boolean totalRequired) {
+    this(firstResult, maxResults);
+    this.totalRequired = totalRequired;
+  }
+  
   public int getFirstResult() {
     return firstResult;
   }
@@ -40,4 +56,60 @@ public class Page {
   public int getMaxResults() {
     return maxResults;
   }
+
+  public boolean isTotalRequired() {
+    return totalRequired;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public void setTotal(long total) {
+    this.total = total;
+  }
+
+  /**
+   * 从带总行数的分页语句结果中读取总行数,并从每一行中去掉总行数字段,避免它被当作实体的扩展字段
+   * @param rows 查询结果
+   */
+  public void readTotal(List<Map<String, Object>> rows) {
+    if (rows == null || rows.isEmpty()) {
+      return;
+    }
+    Map<String, Object> row = rows.get(0);
+    Object totalObject = row.get(Pagination.TOTAL_COLUMN);
+    if (totalObject == null) {
+      totalObject = row.get(Pagination.TOTAL_COLUMN.toLowerCase());
+    }
+    if (totalObject instanceof Number) {
+      total = ((Number) totalObject).longValue();
+    } else if (totalObject != null) {
+      total = Long.parseLong(StringUtil.getString(totalObject));
+    }
+    for (Map<String, Object> dataRow : rows) {
+      dataRow.remove(Pagination.TOTAL_COLUMN);
+      dataRow.remove(Pagination.TOTAL_COLUMN.toLowerCase());
+    }
+  }
+
+  /**
+   * 读取总行数,方言用单独的语句返回总行数时(如MySQL的FOUND_ROWS())在同一连接上查询
+   * @param rows 查询结果
+   * @param sqlCommand 执行分页语句的sqlCommand
+   * @param pagination 数据库方言
+   */
+  public void readTotal(List<Map<String, Object>> rows, SqlCommand sqlCommand, Pagination pagination) {
+    String foundRowsSql = AbstractPagination.foundRowsSql(pagination);
+    if (foundRowsSql == null) {
+      readTotal(rows);
+      return;
+    }
+    Object totalObject = sqlCommand.queryForValue(foundRowsSql);
+    if (totalObject instanceof Number) {
+      total = ((Number) totalObject).longValue();
+    } else if (totalObject != null) {
+      total = Long.parseLong(StringUtil.getString(totalObject));
+    }
+  }
 }
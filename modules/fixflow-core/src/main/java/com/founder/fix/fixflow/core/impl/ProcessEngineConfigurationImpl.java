@@ -24,6 +24,7 @@ import java.net.URL;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -101,13 +102,20 @@ import com.founder.fix.fixflow.core.ScheduleService;
 import com.founder.fix.fixflow.core.TaskService;
 import com.founder.fix.fixflow.core.cache.CacheHandler;
 import com.founder.fix.fixflow.core.database.DataBaseTableEnum;
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.exception.ExceptionResourceCore;
 import com.founder.fix.fixflow.core.exception.FixFlowClassLoadingException;
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.archive.Archiver;
 import com.founder.fix.fixflow.core.impl.cache.CacheImpl;
+import com.founder.fix.fixflow.core.impl.cache.RegionCacheImpl;
+import com.founder.fix.fixflow.core.impl.datavariable.VariableCodecRegistry;
+import com.founder.fix.fixflow.core.impl.db.CompiledRule;
 import com.founder.fix.fixflow.core.impl.db.DbConfig;
 import com.founder.fix.fixflow.core.impl.db.DbType;
+import com.founder.fix.fixflow.core.impl.db.ResultMapPlan;
 import com.founder.fix.fixflow.core.impl.filter.AbstractCommandFilter;
 import com.founder.fix.fixflow.core.impl.identity.AbstractAuthentication;
 import com.founder.fix.fixflow.core.impl.identity.GroupDefinition;
@@ -124,12 +132,14 @@ import com.founder.fix.fixflow.core.impl.persistence.deployer.DeploymentCache;
 import com.founder.fix.fixflow.core.impl.processversion.FixFlowVersion;
 import com.founder.fix.fixflow.core.impl.threadpool.FixThreadPoolExecutor;
 import com.founder.fix.fixflow.core.impl.util.QuartzUtil;
+import com.founder.fix.fixflow.core.impl.util.QueryTableUtil;
 import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 import com.founder.fix.fixflow.core.internationalization.ExceptionCode;
 import com.founder.fix.fixflow.core.internationalization.FixFlowResources;
 import com.founder.fix.fixflow.core.variable.BizData;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
 
 public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 
@@ -137,6 +147,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	protected CommandExecutor commandExecutor;
 	protected CommandContextFactory commandContextFactory;
 	protected CacheHandler cacheHandler;
+	protected VariableCodecRegistry variableCodecRegistry;
 	protected DeploymentCache deploymentCache;
 	protected List<GroupDefinition> groupDefinitions;
 	protected UserDefinition userDefinition;
@@ -188,6 +199,8 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 
 	protected Map<String, Class<?>> expandClassMap=new HashMap<String, Class<?>>();
 
+	protected Map<String, Object> scriptGlobalVariables;
+
 	
 
 	protected SchedulerFactory schedulerFactory;
@@ -215,6 +228,16 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	protected Map<String, Rule> ruleMap = new HashMap<String, Rule>();
 	
 	protected Map<String, Class<?>> ruleClassMap=new HashMap<String, Class<?>>();
+	
+	/**
+	 * 启动时编译好的规则分发表,只读
+	 */
+	protected Map<String, CompiledRule> compiledRuleMap = Collections.emptyMap();
+
+	/**
+	 * 引擎调优参数(缓存区域、连接池、资源缓存等),从resourcePath中id为engineProperties的属性文件加载
+	 */
+	protected Properties engineProperties = new Properties();
 
 
 
@@ -235,6 +258,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		initRulesConfig();
 		// initSqlMappingFile();
 		initResourcePathConfig();
+		initEngineProperties();
 		initDataVariableConfig();
 		initCommandContextFactory();
 		initCommandExecutors();
@@ -255,6 +279,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		initUserDefinition();
 		initSysMailConfig();
 		initExpandClassConfig();
+		initVariableCodecs();
 		initEventSubscriptionConfig();
 		initMessageSubscription();
 		initScriptLanguageConfig();
@@ -264,6 +289,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		initExpandCmdConfig();
 		initAbstractCommandFilter();
 		initBizData();
+		initScriptGlobalVariables();
 		initPriorityConfig();
 		initAssignPolicyConfig();
 		initThreadPool();
@@ -277,6 +303,8 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	private void initRulesConfig() {
 		// this.rulesConfigs=new ArrayList<RulesConfig>();
 		ruleMap.clear();
+		ResultMapPlan.clearResultMapPlans();
+		QueryTableUtil.clearCache();
 
 		RulesResourceConfig rulesResourceConfig = getFixFlowConfig().getRulesResourceConfig();
 		List<RulesResource> rulesResources = rulesResourceConfig.getRulesResource();
@@ -449,6 +477,18 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 				ruleMap.put(businessRules.getId(), businessRules);
 			}
 		}
+		initCompiledRules();
+	}
+
+	/**
+	 * 将规则表编译成只读的分发表,规则执行时只需要一次查找
+	 */
+	protected void initCompiledRules() {
+		Map<String, CompiledRule> compiledRules = new HashMap<String, CompiledRule>();
+		for (Rule rule : ruleMap.values()) {
+			compiledRules.put(rule.getId(), new CompiledRule(rule, ruleClassMap.get(rule.getId())));
+		}
+		this.compiledRuleMap = Collections.unmodifiableMap(compiledRules);
 	}
 
 	protected ResourcePathConfig resourcePathConfig;
@@ -457,6 +497,68 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		this.resourcePathConfig = getFixFlowConfig().getResourcePathConfig();
 	}
 
+	protected void initEngineProperties() {
+		engineProperties = new Properties();
+		ResourcePath resourcePath = getResourcePath("engineProperties");
+		if (resourcePath == null || StringUtil.isEmpty(resourcePath.getSrc())) {
+			return;
+		}
+		InputStream inputStream = ReflectUtil.getResourceAsStream(resourcePath.getSrc());
+		if (inputStream == null) {
+			log.info("未能从{}加载引擎参数文件,使用默认参数", resourcePath.getSrc());
+			return;
+		}
+		try {
+			engineProperties.load(inputStream);
+		} catch (IOException e) {
+			log.error("引擎参数文件" + resourcePath.getSrc() + "加载失败", e);
+			throw new FixFlowException("引擎参数文件" + resourcePath.getSrc() + "加载失败", e);
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				// 关闭失败不影响已加载的参数
+			}
+		}
+	}
+
+	public Properties getEngineProperties() {
+		return engineProperties;
+	}
+
+	/**
+	 * 获取引擎参数
+	 * @param key 参数名
+	 * @param defaultValue 没有配置时的默认值
+	 * @return
+	 */
+	public String getEngineProperty(String key, String defaultValue) {
+		String value = engineProperties.getProperty(key);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	/**
+	 * 获取数值类型的引擎参数,没有配置或格式错误时返回默认值
+	 * @param key 参数名
+	 * @param defaultValue 默认值
+	 * @return
+	 */
+	public long getEngineProperty(String key, long defaultValue) {
+		String value = getEngineProperty(key, (String) null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			log.warn("引擎参数{}的值{}不是数字,使用默认值{}", new Object[] { key, value, defaultValue });
+			return defaultValue;
+		}
+	}
+
 	private void initDataVariableConfig() {
 		ResourceSet resourceSet = new ResourceSetImpl();
 		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("xml", new XMIResourceFactoryImpl());
@@ -505,10 +607,14 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 					log.error("数据库管理器{}加载失败",connectionManagementInstanceConfigTemp.getId());
 					throw new FixFlowClassLoadingException(ExceptionCode.CLASSLOAD_EXCEPTION_DEFAULT,connectionManagementInstanceConfigTemp.getClassImpl());
 				}
+				connectionManagementDefault.setProcessEngineConfiguration(this);
 				connectionManagementMap.put(connectionManagementInstanceConfigTemp.getId(), connectionManagementDefault);
 			} else {
 				ConnectionManagement connectionManagementOther = (ConnectionManagement) ReflectUtil
 						.instantiate(connectionManagementInstanceConfigTemp.getClassImpl());
+				if (connectionManagementOther != null) {
+					connectionManagementOther.setProcessEngineConfiguration(this);
+				}
 				connectionManagementMap.put(connectionManagementInstanceConfigTemp.getId(), connectionManagementOther);
 			}
 		}
@@ -558,6 +664,10 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
 		FixThreadPoolExecutor executor = new FixThreadPoolExecutor("default", "默认线程池", 1, 1, 1, TimeUnit.DAYS, queue);
 		threadPoolMap.put(executor.getThreadPoolKey(), executor);
+		// 分批归档单独使用一个线程,不占用默认线程池
+		FixThreadPoolExecutor archiveExecutor = new FixThreadPoolExecutor(Archiver.THREAD_POOL_KEY, "归档线程池", 1, 1, 1, TimeUnit.DAYS,
+				new LinkedBlockingQueue<Runnable>());
+		threadPoolMap.put(archiveExecutor.getThreadPoolKey(), archiveExecutor);
 
 	}
 
@@ -632,6 +742,16 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		this.scriptLanguageConfig = fixFlowConfig.getScriptLanguageConfig();
 	}
 
+	/**
+	 * 所有脚本执行共享的只读全局变量
+	 */
+	protected void initScriptGlobalVariables() {
+		Map<String, Object> globalVariables = new HashMap<String, Object>();
+		globalVariables.put("sysRulesConfig", this);
+		globalVariables.put("bizData", bizData);
+		this.scriptGlobalVariables = Collections.unmodifiableMap(globalVariables);
+	}
+
 	protected void initMessageSubscription() {
 
 		if (StringUtil.getBoolean(this.eventSubscriptionConfig.getIsEnable())) {
@@ -851,7 +971,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		try {
 			connection = DriverManager.getConnection(url, user, password);
 		} catch (Exception e) {
-
+			throw new FixFlowDbException("ID为" + dataBase.getId() + "的数据库连接创建失败!", e);
 		}
 
 		return connection;
@@ -895,12 +1015,25 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		 */
 	}
 
+	/**
+	 * 创建数据库方言,并读取引擎参数中dataBase.<id>.开头的方言参数
+	 * @param dataBase
+	 * @return
+	 */
+	protected Pagination createPagination(DataBase dataBase) {
+		Pagination pagination = (Pagination) ReflectUtil.instantiate(dataBase.getPaginationImpl());
+		if (pagination instanceof AbstractPagination) {
+			((AbstractPagination) pagination).configure(engineProperties, "dataBase." + dataBase.getId() + ".");
+		}
+		return pagination;
+	}
+
 	protected void initSqlServerDbConfig() {
 
 		DataBase dataBase = this.selectedDatabase;
 
 		// OraclePaginationImpl
-		Pagination pagination = (Pagination) ReflectUtil.instantiate(dataBase.getPaginationImpl());
+		Pagination pagination = createPagination(dataBase);
 		DbConfig dbConfig = new DbConfig();
 		dbConfig.setDbType(DbType.SQLSERVER);
 		dbConfig.setPagination(pagination);
@@ -918,7 +1051,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 
 		DataBase dataBase = this.selectedDatabase;
 		// OraclePaginationImpl
-		Pagination pagination = (Pagination) ReflectUtil.instantiate(dataBase.getPaginationImpl());
+		Pagination pagination = createPagination(dataBase);
 		DbConfig dbConfig = new DbConfig();
 		dbConfig.setDbType(DbType.ORACLE);
 		dbConfig.setPagination(pagination);
@@ -935,7 +1068,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	protected void initDB2DbConfig() {
 		DataBase dataBase = this.selectedDatabase;
 		// OraclePaginationImpl
-		Pagination pagination = (Pagination) ReflectUtil.instantiate(dataBase.getPaginationImpl());
+		Pagination pagination = createPagination(dataBase);
 		DbConfig dbConfig = new DbConfig();
 		dbConfig.setDbType(DbType.ORACLE);
 		dbConfig.setPagination(pagination);
@@ -952,7 +1085,7 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	protected void initOracleDbConfig() {
 		DataBase dataBase = this.selectedDatabase;
 		// OraclePaginationImpl
-		Pagination pagination = (Pagination) ReflectUtil.instantiate(dataBase.getPaginationImpl());
+		Pagination pagination = createPagination(dataBase);
 		DbConfig dbConfig = new DbConfig();
 		dbConfig.setDbType(DbType.ORACLE);
 		dbConfig.setPagination(pagination);
@@ -1000,8 +1133,28 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		}
 	}
 
+	protected void initVariableCodecs() {
+		// 扩展类配置中classId以VariableCodec开头的类为自定义变量编码器
+		variableCodecRegistry = new VariableCodecRegistry();
+		for (ExpandClass expandClass : expandClassConfig.getExpandClass()) {
+			if (expandClass.getClassId().startsWith("VariableCodec") && StringUtil.isNotEmpty(expandClass.getClassImpl())) {
+				variableCodecRegistry.addCodec((VariableCodec) ReflectUtil.instantiate(expandClass.getClassImpl()));
+			}
+		}
+	}
+
 	protected void initCache() {
-		// 这里以后要改到从conf文件中读取！！！
+		// 扩展类配置中指定了CacheHandler则使用配置的实现,否则使用默认的CacheImpl
+		for (ExpandClass expandClass : fixFlowConfig.getExpandClassConfig().getExpandClass()) {
+			if (expandClass.getClassId().equals("CacheHandler") && StringUtil.isNotEmpty(expandClass.getClassImpl())) {
+				this.cacheHandler = (CacheHandler) ReflectUtil.instantiate(expandClass.getClassImpl());
+				if (this.cacheHandler instanceof RegionCacheImpl) {
+					// 区域容量和存活时间取自引擎参数文件
+					((RegionCacheImpl) this.cacheHandler).configure(this);
+				}
+				return;
+			}
+		}
 		this.cacheHandler = new CacheImpl();
 
 	}
@@ -1029,6 +1182,10 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 			deploymentCache = new DeploymentCache();
 			deploymentCache.setDeployers(deployers);
 		}
+		// 多个引擎共用数据库时定期校验最新版本索引
+		deploymentCache.setLatestVersionCheckInterval(getEngineProperty("deploymentCache.latestVersionCheckMillis", deploymentCache.getLatestVersionCheckInterval()));
+		// 资源内容缓存的内存总量、磁盘总量和磁盘目录取自引擎参数文件
+		deploymentCache.getResourceContentCache().configure(this);
 	}
 
 	public DeploymentCache getDeploymentCache() {
@@ -1132,6 +1289,15 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		return this;
 	}
 
+	public VariableCodecRegistry getVariableCodecRegistry() {
+		return variableCodecRegistry;
+	}
+
+	public ProcessEngineConfigurationImpl setVariableCodecRegistry(VariableCodecRegistry variableCodecRegistry) {
+		this.variableCodecRegistry = variableCodecRegistry;
+		return this;
+	}
+
 	public CacheHandler getCacheHandler() {
 		return cacheHandler;
 	}
@@ -1224,6 +1390,10 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		return bizData;
 	}
 
+	public Map<String, Object> getScriptGlobalVariables() {
+		return scriptGlobalVariables;
+	}
+
 	public PriorityConfig getPriorityConfig() {
 
 		return priorityConfig;
@@ -1261,6 +1431,10 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 		return connectionManagementMap.get(cmId);
 	}
 
+	public Map<String, ConnectionManagement> getConnectionManagementMap() {
+		return connectionManagementMap;
+	}
+
 	public FixFlowConfig getFixFlowConfig() {
 		return fixFlowConfig;
 	}
@@ -1358,6 +1532,10 @@ public class ProcessEngineConfigurationImpl extends ProcessEngineConfiguration {
 	public Class<?> getRuleClass(String id) {
 		return ruleClassMap.get(id);
 	}
+	
+	public CompiledRule getCompiledRule(String ruleId) {
+		return compiledRuleMap.get(ruleId);
+	}
 
 	
 	public Map<String, Class<?>> getExpandClassMap() {
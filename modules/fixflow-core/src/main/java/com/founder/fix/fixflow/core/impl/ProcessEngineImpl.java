@@ -20,6 +20,9 @@ package com.founder.fix.fixflow.core.impl;
 import java.sql.Connection;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.founder.fix.fixflow.core.ConnectionManagement;
 import com.founder.fix.fixflow.core.FormService;
 import com.founder.fix.fixflow.core.HistoryService;
@@ -41,6 +44,8 @@ import com.founder.fix.fixflow.core.impl.threadpool.FixThreadPoolExecutor;
 
 public class ProcessEngineImpl implements ProcessEngine {
 
+	private static Logger log = LoggerFactory.getLogger(ProcessEngineImpl.class);
+
 	protected String name;
 	protected ModelService modelService;
 	protected RuntimeService runtimeService;
@@ -74,6 +79,10 @@ public class ProcessEngineImpl implements ProcessEngine {
 		this.processEngineConfiguration = processEngineConfiguration;
 		this.name = processEngineConfiguration.getProcessEngineName();
 
+		if (historyService instanceof HistoryServiceImpl) {
+			((HistoryServiceImpl) historyService).setProcessEngine(this);
+		}
+
 		ProcessEngineManagement.registerProcessEngine(this);
 
 	}
@@ -171,6 +180,10 @@ public class ProcessEngineImpl implements ProcessEngine {
 
 	public void contextClose() {
 
+		// 语句缓存要在连接关闭之前释放
+		Context.removeStatementCache();
+		// 连接由外部提交时引擎看不到提交,关闭上下文时执行剩下的提交后操作,多失效一次缓存没有影响
+		Context.fireCommitListeners();
 		Context.removeCommandContext();
 		Context.removeProcessEngineConfiguration();
 		Context.removeDbConnection();
@@ -202,6 +215,19 @@ public class ProcessEngineImpl implements ProcessEngine {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		// 调度器关闭失败也要释放连接池
+		Map<String, ConnectionManagement> connectionManagementMap = processEngineConfiguration.getConnectionManagementMap();
+		if (connectionManagementMap != null) {
+			for (ConnectionManagement connectionManagement : connectionManagementMap.values()) {
+				try {
+					connectionManagement.close();
+				} catch (Exception e) {
+					log.error("关闭连接池失败: " + e.getMessage(), e);
+				}
+			}
+		}
+		// 删除资源内容缓存写入磁盘的文件
+		processEngineConfiguration.getDeploymentCache().getResourceContentCache().close();
 		ProcessEngineManagement.unregister(this);
 	}
 
@@ -221,6 +247,7 @@ public class ProcessEngineImpl implements ProcessEngine {
 				}
 			}
 		}
+		Context.removeCommitListeners();
 	}
 
 	public void rollBackConnection(String dataBaseId) {
@@ -243,6 +270,7 @@ public class ProcessEngineImpl implements ProcessEngine {
 				}
 			}
 		}
+		Context.removeCommitListeners();
 	}
 
 	public void commitConnection() {
@@ -261,6 +289,7 @@ public class ProcessEngineImpl implements ProcessEngine {
 				}
 			}
 		}
+		Context.fireCommitListeners();
 	}
 
 	public void commitConnection(String dataBaseId) {
@@ -283,10 +312,13 @@ public class ProcessEngineImpl implements ProcessEngine {
 				}
 			}
 		}
+		Context.fireCommitListeners();
 	}
 
 	public void colseConnection() {
 		// TODO Auto-generated method stub
+		// 语句缓存要在连接关闭之前释放
+		Context.removeStatementCache();
 		Map<String, FixConnectionResult> connectionMap = Context.getDbConnectionMap();
 		if (connectionMap != null) {
 			for (String mapKey : connectionMap.keySet()) {
@@ -312,6 +344,7 @@ public class ProcessEngineImpl implements ProcessEngine {
 					FixConnectionResult connectionobj = connectionMap.get(mapKey);
 					try {
 						if (connectionobj != null) {
+							Context.removeStatementCache(connectionobj.getConnection());
 							connectionobj.colseConnection();
 
 						}
@@ -326,6 +359,10 @@ public class ProcessEngineImpl implements ProcessEngine {
 	}
 
 	public void contextClose(boolean threadLocalContext, boolean connection) {
+		if (connection || threadLocalContext) {
+			// 语句缓存要在连接关闭之前释放
+			Context.removeStatementCache();
+		}
 		if (connection) {
 			Map<String, FixConnectionResult> connectionMap = Context.getDbConnectionMap();
 			if (connectionMap != null) {
@@ -343,6 +380,7 @@ public class ProcessEngineImpl implements ProcessEngine {
 			}
 		}
 		if (threadLocalContext) {
+			Context.fireCommitListeners();
 			Context.removeCommandContext();
 			Context.removeProcessEngineConfiguration();
 			Context.removeDbConnection();
@@ -0,0 +1,272 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.archive;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
+
+/**
+ * 后台分批归档的进度检查点
+ * <p>
+ * 每归档一批流程实例都在同一个事务中更新检查点,进程崩溃后可以从检查点继续归档。
+ * 
+ * @author kenshin
+ */
+public class ArchiveCheckpoint {
+
+	public static final String STATUS_RUNNING = "RUNNING";
+	public static final String STATUS_COMPLETED = "COMPLETED";
+	public static final String STATUS_STOPPED = "STOPPED";
+	public static final String STATUS_FAILED = "FAILED";
+
+	protected String id;
+
+	protected String processDefinitionKey;
+
+	/** 流程实例结束时间的开始范围 */
+	protected Date begin;
+
+	/** 流程实例结束时间的结束范围 */
+	protected Date end;
+
+	protected String status;
+
+	/** 每批归档的流程实例数 */
+	protected int chunkSize;
+
+	/** 两批之间的间隔(毫秒) */
+	protected long throttleMillis;
+
+	/** 已经归档的流程实例数 */
+	protected long archivedCount;
+
+	/** 已经执行的批数 */
+	protected long chunkCount;
+
+	/** 最后一批归档的最后一个流程实例编号 */
+	protected String lastProcessInstanceId;
+
+	/** 最后一批的执行时间(毫秒) */
+	protected long lastChunkMillis;
+
+	protected Date startTime;
+
+	protected Date updateTime;
+
+	protected String errorMessage;
+
+	public ArchiveCheckpoint() {
+	}
+
+	/**
+	 * 归档的查询条件,和{@link com.founder.fix.fixflow.core.impl.persistence.HistoryManager#archiveByPara(Map)}的参数相同
+	 * @return
+	 */
+	public Map<String, Object> getArchiveParameter() {
+		Map<String, Object> paraMap = new HashMap<String, Object>();
+		if (processDefinitionKey != null) {
+			paraMap.put("PROCESSDEFINITION_KEY", processDefinitionKey);
+		}
+		if (begin != null) {
+			paraMap.put("BEGIN", begin);
+		}
+		if (end != null) {
+			paraMap.put("END", end);
+		}
+		if (paraMap.isEmpty()) {
+			paraMap.put("ALL", true);
+		}
+		return paraMap;
+	}
+
+	/**
+	 * 归档速度(流程实例数/秒)
+	 * @return
+	 */
+	public double getThroughput() {
+		if (startTime == null || updateTime == null || updateTime.getTime() <= startTime.getTime()) {
+			return 0;
+		}
+		return archivedCount * 1000.0 / (updateTime.getTime() - startTime.getTime());
+	}
+
+	public boolean isRunning() {
+		return STATUS_RUNNING.equals(status);
+	}
+
+	public Map<String, Object> getPersistentState() {
+		Map<String, Object> objectParam = new HashMap<String, Object>();
+		objectParam.put("ARCHIVE_ID", id);
+		if (processDefinitionKey != null) {
+			objectParam.put("PROCESSDEFINITION_KEY", processDefinitionKey);
+		}
+		if (begin != null) {
+			objectParam.put("BEGIN_TIME", begin);
+		}
+		if (end != null) {
+			objectParam.put("END_TIME", end);
+		}
+		objectParam.put("STATUS", status);
+		objectParam.put("CHUNK_SIZE", chunkSize);
+		objectParam.put("THROTTLE_MILLIS", (int) throttleMillis);
+		objectParam.put("ARCHIVED_COUNT", (int) archivedCount);
+		objectParam.put("CHUNK_COUNT", (int) chunkCount);
+		if (lastProcessInstanceId != null) {
+			objectParam.put("LAST_PROCESSINSTANCE_ID", lastProcessInstanceId);
+		}
+		objectParam.put("LAST_CHUNK_MILLIS", (int) lastChunkMillis);
+		objectParam.put("START_TIME", startTime);
+		objectParam.put("UPDATE_TIME", updateTime);
+		if (errorMessage != null) {
+			objectParam.put("ERROR_MESSAGE", errorMessage.length() > 4000 ? errorMessage.substring(0, 4000) : errorMessage);
+		}
+		return objectParam;
+	}
+
+	public void persistentInit(Map<String, Object> entityMap) {
+		this.id = StringUtil.getString(entityMap.get("ARCHIVE_ID"));
+		this.processDefinitionKey = (String) entityMap.get("PROCESSDEFINITION_KEY");
+		this.begin = StringUtil.getDate(entityMap.get("BEGIN_TIME"));
+		this.end = StringUtil.getDate(entityMap.get("END_TIME"));
+		this.status = StringUtil.getString(entityMap.get("STATUS"));
+		this.chunkSize = StringUtil.getInt(entityMap.get("CHUNK_SIZE"));
+		this.throttleMillis = StringUtil.getInt(entityMap.get("THROTTLE_MILLIS"));
+		this.archivedCount = StringUtil.getInt(entityMap.get("ARCHIVED_COUNT"));
+		this.chunkCount = StringUtil.getInt(entityMap.get("CHUNK_COUNT"));
+		this.lastProcessInstanceId = (String) entityMap.get("LAST_PROCESSINSTANCE_ID");
+		this.lastChunkMillis = StringUtil.getInt(entityMap.get("LAST_CHUNK_MILLIS"));
+		this.startTime = StringUtil.getDate(entityMap.get("START_TIME"));
+		this.updateTime = StringUtil.getDate(entityMap.get("UPDATE_TIME"));
+		this.errorMessage = (String) entityMap.get("ERROR_MESSAGE");
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getProcessDefinitionKey() {
+		return processDefinitionKey;
+	}
+
+	public void setProcessDefinitionKey(String processDefinitionKey) {
+		this.processDefinitionKey = processDefinitionKey;
+	}
+
+	public Date getBegin() {
+		return begin;
+	}
+
+	public void setBegin(Date begin) {
+		this.begin = begin;
+	}
+
+	public Date getEnd() {
+		return end;
+	}
+
+	public void setEnd(Date end) {
+		this.end = end;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public long getThrottleMillis() {
+		return throttleMillis;
+	}
+
+	public void setThrottleMillis(long throttleMillis) {
+		this.throttleMillis = throttleMillis;
+	}
+
+	public long getArchivedCount() {
+		return archivedCount;
+	}
+
+	public void setArchivedCount(long archivedCount) {
+		this.archivedCount = archivedCount;
+	}
+
+	public long getChunkCount() {
+		return chunkCount;
+	}
+
+	public void setChunkCount(long chunkCount) {
+		this.chunkCount = chunkCount;
+	}
+
+	public String getLastProcessInstanceId() {
+		return lastProcessInstanceId;
+	}
+
+	public void setLastProcessInstanceId(String lastProcessInstanceId) {
+		this.lastProcessInstanceId = lastProcessInstanceId;
+	}
+
+	public long getLastChunkMillis() {
+		return lastChunkMillis;
+	}
+
+	public void setLastChunkMillis(long lastChunkMillis) {
+		this.lastChunkMillis = lastChunkMillis;
+	}
+
+	public Date getStartTime() {
+		return startTime;
+	}
+
+	public void setStartTime(Date startTime) {
+		this.startTime = startTime;
+	}
+
+	public Date getUpdateTime() {
+		return updateTime;
+	}
+
+	public void setUpdateTime(Date updateTime) {
+		this.updateTime = updateTime;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public void setErrorMessage(String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.archive;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.founder.fix.fixflow.core.ProcessEngine;
+import com.founder.fix.fixflow.core.impl.ExternalContent;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.cmd.ArchiveChunkCmd;
+import com.founder.fix.fixflow.core.impl.cmd.UpdateArchiveStatusCmd;
+import com.founder.fix.fixflow.core.impl.identity.Authentication;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+
+/**
+ * 后台分批归档
+ * <p>
+ * 在引擎的归档线程池中运行,每批流程实例单独提交事务,批与批之间按检查点的间隔暂停,
+ * 避免一次归档长时间锁住运行表和产生过大的事务日志。检查点不再是运行状态(完成、停止)时结束。
+ * 
+ * @author kenshin
+ */
+public class Archiver implements Runnable {
+
+	/** 引擎线程池中归档线程池的编号 */
+	public static final String THREAD_POOL_KEY = "archive";
+
+	private static Logger log = LoggerFactory.getLogger(Archiver.class);
+
+	/** 当前JVM中正在运行的归档,同一个检查点不会同时运行两次 */
+	private static ConcurrentHashMap<String, Archiver> runningArchivers = new ConcurrentHashMap<String, Archiver>();
+
+	/** 执行归档的引擎 */
+	protected ProcessEngine processEngine;
+
+	protected String archiveId;
+
+	/** 开始归档前在归档线程中执行的命令(创建检查点或把检查点改为运行状态) */
+	protected Command<ArchiveCheckpoint> startCommand;
+
+	public Archiver(ProcessEngine processEngine, String archiveId, Command<ArchiveCheckpoint> startCommand) {
+		this.processEngine = processEngine;
+		this.archiveId = archiveId;
+		this.startCommand = startCommand;
+	}
+
+	/**
+	 * 提交到引擎的归档线程池运行
+	 * @param processEngine 执行归档的引擎
+	 * @param archiveId 归档检查点编号
+	 * @param startCommand 开始归档前执行的命令,检查点在归档线程自己的事务中创建和提交
+	 * @return 同一个检查点已经在运行时返回false
+	 */
+	public static boolean submit(ProcessEngine processEngine, String archiveId, Command<ArchiveCheckpoint> startCommand) {
+		Archiver archiver = new Archiver(processEngine, archiveId, startCommand);
+		if (runningArchivers.putIfAbsent(archiveId, archiver) != null) {
+			return false;
+		}
+		ProcessEngineConfigurationImpl processEngineConfiguration = processEngine.getProcessEngineConfiguration();
+		ThreadPoolExecutor executor = processEngineConfiguration.getThreadPoolMap().get(THREAD_POOL_KEY);
+		if (executor == null) {
+			executor = processEngineConfiguration.getThreadPoolMap().get("default");
+		}
+		try {
+			executor.execute(archiver);
+		} catch (RuntimeException e) {
+			runningArchivers.remove(archiveId);
+			throw e;
+		}
+		return true;
+	}
+
+	public static boolean isRunning(String archiveId) {
+		return runningArchivers.containsKey(archiveId);
+	}
+
+	public void run() {
+		try {
+			if (startCommand != null) {
+				try {
+					execute(processEngine, startCommand);
+				} catch (Exception e) {
+					log.error("归档 " + archiveId + " 启动失败", e);
+					return;
+				}
+			}
+			while (true) {
+				ArchiveCheckpoint archiveCheckpoint;
+				try {
+					archiveCheckpoint = execute(processEngine, new ArchiveChunkCmd(archiveId));
+				} catch (Exception e) {
+					log.error("归档 " + archiveId + " 失败", e);
+					execute(processEngine, new UpdateArchiveStatusCmd(archiveId, ArchiveCheckpoint.STATUS_FAILED, String.valueOf(e.getMessage())));
+					return;
+				}
+				log.info("归档 {} 第{}批完成: 本批用时{}ms, 已归档{}个流程实例, {}个/秒", new Object[] { archiveId, archiveCheckpoint.getChunkCount(),
+						archiveCheckpoint.getLastChunkMillis(), archiveCheckpoint.getArchivedCount(), String.format("%.1f", archiveCheckpoint.getThroughput()) });
+				if (!archiveCheckpoint.isRunning()) {
+					log.info("归档 {} 结束,状态: {}", archiveId, archiveCheckpoint.getStatus());
+					return;
+				}
+				if (archiveCheckpoint.getThrottleMillis() > 0) {
+					try {
+						Thread.sleep(archiveCheckpoint.getThrottleMillis());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		} finally {
+			runningArchivers.remove(archiveId);
+		}
+	}
+
+	/**
+	 * 每个命令使用单独的连接和事务
+	 */
+	protected <T> T execute(ProcessEngine processEngine, Command<T> command) {
+		ExternalContent externalContent = new ExternalContent();
+		externalContent.setAuthenticatedUserId(Authentication.getSystemId());
+		externalContent.setConnectionManagement("General");
+		processEngine.setExternalContent(externalContent);
+		try {
+			T result = processEngine.getProcessEngineConfiguration().getCommandExecutor().execute(command);
+			processEngine.commitConnection();
+			return result;
+		} catch (RuntimeException e) {
+			processEngine.rollBackConnection();
+			throw e;
+		} finally {
+			processEngine.contextClose(true, true);
+		}
+	}
+}
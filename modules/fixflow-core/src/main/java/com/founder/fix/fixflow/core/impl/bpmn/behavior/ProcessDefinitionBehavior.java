@@ -41,6 +41,7 @@ import com.founder.fix.fixflow.core.impl.db.PersistentObject;
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
 import com.founder.fix.fixflow.core.impl.util.EMFUtil;
+import com.founder.fix.fixflow.core.impl.util.ElementIndex;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
 public class ProcessDefinitionBehavior extends ProcessImpl implements PersistentObject {
@@ -233,6 +234,10 @@ public class ProcessDefinitionBehavior extends ProcessImpl implements Persistent
 	 */
 	public Map<String, FlowElement> getFlowElementsMap() {
 
+		ElementIndex elementIndex = ElementIndex.get(this);
+		if (elementIndex != null) {
+			return elementIndex.getFlowElements();
+		}
 		Map<String, FlowElement> flowElementsMap_tmp;
 		flowElementsMap_tmp = new HashMap<String, FlowElement>();
 		if ((flowElements != null)) {
@@ -281,6 +286,29 @@ public class ProcessDefinitionBehavior extends ProcessImpl implements Persistent
 		// return getFlowElementsMap().get(flowElementId);
 	}
 
+	/**
+	 * 建立流程定义文件的元素索引,流程定义部署或放入缓存前调用,
+	 * 之后按编号查找元素({@link #getFlowElement(String)}等)直接使用索引。
+	 * @return 元素索引
+	 */
+	public ElementIndex buildElementIndex() {
+		return ElementIndex.build(this);
+	}
+
+	/**
+	 * 预编译线条条件和脚本任务的表达式模板,需要在数据变量定义加载之后调用,
+	 * 运行时直接使用元素上缓存的模板,不再重复解析表达式。
+	 */
+	public void compileExpressionTemplates() {
+		for (FlowElement flowElement : getFlowElementsMap().values()) {
+			if (flowElement instanceof SequenceFlowBehavior) {
+				((SequenceFlowBehavior) flowElement).getConditionExpressionTemplate(this);
+			} else if (flowElement instanceof ScriptTaskBehavior) {
+				((ScriptTaskBehavior) flowElement).getScriptTemplate(this);
+			}
+		}
+	}
+
 	protected String resourceId;
 
 	public String getResourceId() {
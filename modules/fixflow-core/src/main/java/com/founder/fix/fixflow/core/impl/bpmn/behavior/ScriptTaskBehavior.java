@@ -21,13 +21,32 @@ import org.eclipse.bpmn2.impl.ScriptTaskImpl;
 
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
 
 public class ScriptTaskBehavior extends ScriptTaskImpl {
 	
+	/**
+	 * 脚本的预编译表达式模板
+	 */
+	protected volatile ExpressionTemplate scriptTemplate;
+	
+	/**
+	 * 获取脚本的表达式模板,第一次使用时编译并缓存在任务上
+	 * @param processDefinition 任务所属的流程定义
+	 * @return
+	 */
+	public ExpressionTemplate getScriptTemplate(ProcessDefinitionBehavior processDefinition) {
+		ExpressionTemplate expressionTemplate = this.scriptTemplate;
+		if (expressionTemplate == null || !expressionTemplate.isTemplateOf(this.getScript())) {
+			expressionTemplate = ExpressionTemplate.compile(this.getScript(), processDefinition);
+			this.scriptTemplate = expressionTemplate;
+		}
+		return expressionTemplate;
+	}
 	
 	public void execute(ExecutionContext executionContext) {
 
-		ExpressionMgmt.execute(this.getScript(), executionContext);
+		ExpressionMgmt.execute(getScriptTemplate(executionContext.getProcessDefinition()), executionContext);
 		super.execute(executionContext);
 	}
 
@@ -28,6 +28,7 @@ import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
 
 public class SequenceFlowBehavior extends SequenceFlowImpl {
 	
@@ -58,6 +59,29 @@ public class SequenceFlowBehavior extends SequenceFlowImpl {
 	 * 线条条件处理适配器
 	 */
 	protected DecisionHandler decideAction = null;
+	
+	/**
+	 * 线条条件的预编译表达式模板
+	 */
+	protected volatile ExpressionTemplate conditionExpressionTemplate;
+	
+	/**
+	 * 获取线条条件的表达式模板,第一次使用时编译并缓存在线条上
+	 * @param processDefinition 线条所属的流程定义
+	 * @return 没有条件时返回null
+	 */
+	public ExpressionTemplate getConditionExpressionTemplate(ProcessDefinitionBehavior processDefinition) {
+		if (this.conditionExpression == null) {
+			return null;
+		}
+		String expressionText = ((FormalExpression) conditionExpression).getBody();
+		ExpressionTemplate expressionTemplate = this.conditionExpressionTemplate;
+		if (expressionTemplate == null || !expressionTemplate.isTemplateOf(expressionText)) {
+			expressionTemplate = ExpressionTemplate.compile(expressionText, processDefinition);
+			this.conditionExpressionTemplate = expressionTemplate;
+		}
+		return expressionTemplate;
+	}
 
 	// Function　方法
 	// //////////////////////////////////////////////////////
@@ -90,7 +114,8 @@ public class SequenceFlowBehavior extends SequenceFlowImpl {
 						
 						
 						
-					Object returnValue=ExpressionMgmt.execute(((FormalExpression)conditionExpression).getBody(), executionContext);
+					ExpressionTemplate expressionTemplate = getConditionExpressionTemplate(executionContext.getProcessDefinition());
+					Object returnValue=ExpressionMgmt.execute(expressionTemplate, executionContext);
 					
 					if(returnValue!=null)
 					{
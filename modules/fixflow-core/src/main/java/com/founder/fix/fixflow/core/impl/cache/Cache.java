@@ -17,13 +17,13 @@
  */
 package com.founder.fix.fixflow.core.impl.cache;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
 public class Cache {
 	
-	public static Map<String, Object> fixCacheData = new HashMap<String, Object>();
+	public static Map<String, Object> fixCacheData = new ConcurrentHashMap<String, Object>();
 
 }
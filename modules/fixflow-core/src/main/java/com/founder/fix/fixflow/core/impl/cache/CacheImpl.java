@@ -25,6 +25,10 @@ public class CacheImpl implements CacheHandler {
 	
 	
 	public void putCacheData(String cacheKey, Object obj) {
+		if (obj == null) {
+			Cache.fixCacheData.remove(cacheKey);
+			return;
+		}
 		Cache.fixCacheData.put(cacheKey,obj);
 	}
 
@@ -0,0 +1,253 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界缓存区域
+ * <p>
+ * 读操作无锁,只在条目上打访问标记;写入超出容量时由写线程加锁执行分段LRU淘汰:
+ * 新条目进入试用段,被再次访问过的条目在扫描时晋升到保护段,保护段条目长时间未被访问则降回试用段,
+ * 淘汰只发生在试用段中未被访问的条目上。
+ */
+public class CacheRegion {
+
+	/**
+	 * 保护段占区域容量的比例
+	 */
+	protected static final double PROTECTED_RATIO = 0.8;
+
+	protected String name;
+
+	protected int maxSize;
+
+	/**
+	 * 条目存活时间(毫秒),小于等于0表示不过期
+	 */
+	protected long timeToLive;
+
+	protected ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<String, CacheEntry>();
+
+	protected ReentrantLock evictionLock = new ReentrantLock();
+
+	protected Iterator<CacheEntry> clockHand;
+
+	protected AtomicInteger protectedCount = new AtomicInteger();
+
+	protected AtomicLong hitCount = new AtomicLong();
+
+	protected AtomicLong missCount = new AtomicLong();
+
+	protected AtomicLong evictionCount = new AtomicLong();
+
+	protected AtomicLong expirationCount = new AtomicLong();
+
+	public CacheRegion(String name, int maxSize, long timeToLive) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+	}
+
+	public Object get(String key) {
+		CacheEntry entry = entries.get(key);
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis())) {
+			if (removeEntry(key, entry)) {
+				expirationCount.incrementAndGet();
+			}
+			missCount.incrementAndGet();
+			return null;
+		}
+		entry.referenced = true;
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	public void put(String key, Object value) {
+		if (value == null) {
+			remove(key);
+			return;
+		}
+		long expireTime = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+		CacheEntry oldEntry = entries.put(key, new CacheEntry(key, value, expireTime));
+		if (oldEntry != null && oldEntry.protectedSegment) {
+			protectedCount.decrementAndGet();
+		}
+		if (entries.size() > maxSize) {
+			evict();
+		}
+	}
+
+	public void remove(String key) {
+		CacheEntry entry = entries.remove(key);
+		if (entry != null && entry.protectedSegment) {
+			protectedCount.decrementAndGet();
+		}
+	}
+
+	public void clear() {
+		evictionLock.lock();
+		try {
+			entries.clear();
+			protectedCount.set(0);
+			clockHand = null;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	protected boolean removeEntry(String key, CacheEntry entry) {
+		if (entries.remove(key, entry)) {
+			if (entry.protectedSegment) {
+				protectedCount.decrementAndGet();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 按时钟算法扫描条目直到区域回到容量之内
+	 */
+	protected void evict() {
+		evictionLock.lock();
+		try {
+			int protectedLimit = (int) (maxSize * PROTECTED_RATIO);
+			// 每个条目最多经历 晋升->降级->淘汰 三轮扫描,超出后直接淘汰防止死循环
+			int maxSteps = entries.size() * 3 + 16;
+			long now = System.currentTimeMillis();
+			while (entries.size() > maxSize) {
+				if (clockHand == null || !clockHand.hasNext()) {
+					clockHand = entries.values().iterator();
+					if (!clockHand.hasNext()) {
+						break;
+					}
+				}
+				CacheEntry entry = clockHand.next();
+				if (entry.isExpired(now)) {
+					if (removeEntry(entry.key, entry)) {
+						expirationCount.incrementAndGet();
+					}
+					continue;
+				}
+				if (maxSteps-- > 0) {
+					if (entry.referenced) {
+						entry.referenced = false;
+						if (!entry.protectedSegment && protectedCount.get() < protectedLimit) {
+							entry.protectedSegment = true;
+							protectedCount.incrementAndGet();
+						}
+						continue;
+					}
+					if (entry.protectedSegment) {
+						entry.protectedSegment = false;
+						protectedCount.decrementAndGet();
+						continue;
+					}
+				}
+				if (removeEntry(entry.key, entry)) {
+					evictionCount.incrementAndGet();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public int getSize() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getExpirationCount() {
+		return expirationCount.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+		expirationCount.set(0);
+	}
+
+	public String toString() {
+		return "CacheRegion[" + name + "] size=" + getSize() + "/" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+				+ getEvictionCount() + ", expirations=" + getExpirationCount();
+	}
+
+	protected static class CacheEntry {
+
+		protected final String key;
+
+		protected final Object value;
+
+		protected final long expireTime;
+
+		protected volatile boolean referenced;
+
+		protected volatile boolean protectedSegment;
+
+		protected CacheEntry(String key, Object value, long expireTime) {
+			this.key = key;
+			this.value = value;
+			this.expireTime = expireTime;
+		}
+
+		protected boolean isExpired(long now) {
+			return expireTime > 0 && now >= expireTime;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令执行期间的实体缓存
+ * <p>
+ * 按实体类型和编号保存本次命令已经加载的实体,同一命令中再次读取时直接返回内存中的对象。
+ * 通过会话执行任何写操作都会清空缓存,避免读到写入前的旧数据;缓存只在命令执行期间有效,不跨线程使用。
+ */
+public class EntityCache {
+
+	protected Map<Class<?>, Map<String, Object>> cachedEntities = new HashMap<Class<?>, Map<String, Object>>();
+
+	/**
+	 * 缓存版本,每次清空加一。按命令缓存其它查询结果的地方用它判断期间是否发生过写操作
+	 */
+	protected int version;
+
+	/**
+	 * 获取已加载的实体
+	 * @param entityClass 实体类型
+	 * @param id 实体编号
+	 * @return 没有加载过返回null
+	 */
+	public <T> T getEntity(Class<T> entityClass, String id) {
+		if (id == null) {
+			return null;
+		}
+		Map<String, Object> entities = cachedEntities.get(entityClass);
+		if (entities == null) {
+			return null;
+		}
+		return entityClass.cast(entities.get(id));
+	}
+
+	/**
+	 * 登记已加载的实体
+	 * @param entityClass 实体类型
+	 * @param id 实体编号
+	 * @param entity 实体
+	 */
+	public void putEntity(Class<?> entityClass, String id, Object entity) {
+		if (id == null || entity == null) {
+			return;
+		}
+		Map<String, Object> entities = cachedEntities.get(entityClass);
+		if (entities == null) {
+			entities = new HashMap<String, Object>();
+			cachedEntities.put(entityClass, entities);
+		}
+		entities.put(id, entity);
+	}
+
+	public void removeEntity(Class<?> entityClass, String id) {
+		Map<String, Object> entities = cachedEntities.get(entityClass);
+		if (entities != null) {
+			entities.remove(id);
+		}
+	}
+
+	public boolean isEmpty() {
+		return cachedEntities.isEmpty();
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void clear() {
+		version++;
+		if (!cachedEntities.isEmpty()) {
+			cachedEntities.clear();
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.founder.fix.fixflow.core.cache.CacheHandler;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+
+/**
+ * 按区域划分的有界缓存实现
+ * <p>
+ * 根据缓存键的前缀把数据分到用户、组、组成员关系、流程实例几个区域,每个区域有独立的容量、存活时间和命中统计。
+ * 在fixflowconfig.xml的expandClassConfig中配置classId为CacheHandler的扩展类即可启用。
+ * 区域的容量和存活时间可以在引擎参数文件(resourcePath中的engineProperties)中配置:
+ * <pre>
+ * cache.region.user.maxSize=10000
+ * cache.region.user.ttlMinutes=30
+ * </pre>
+ */
+public class RegionCacheImpl implements CacheHandler {
+
+	public static final String REGION_USER = "user";
+
+	public static final String REGION_GROUP = "group";
+
+	public static final String REGION_GROUP_MEMBERSHIP = "groupMembership";
+
+	public static final String REGION_PROCESS_INSTANCE = "processInstance";
+
+	public static final String REGION_DEFAULT = "default";
+
+	protected static final long MINUTE = 60 * 1000L;
+
+	protected Map<String, CacheRegion> regions = new ConcurrentHashMap<String, CacheRegion>();
+
+	public static final String PROPERTY_PREFIX = "cache.region.";
+
+	public RegionCacheImpl() {
+		addRegion(new CacheRegion(REGION_USER, 10000, 30 * MINUTE));
+		addRegion(new CacheRegion(REGION_GROUP, 5000, 30 * MINUTE));
+		addRegion(new CacheRegion(REGION_GROUP_MEMBERSHIP, 20000, 10 * MINUTE));
+		addRegion(new CacheRegion(REGION_PROCESS_INSTANCE, 2000, 5 * MINUTE));
+		addRegion(new CacheRegion(REGION_DEFAULT, 10000, 30 * MINUTE));
+	}
+
+	/**
+	 * 根据配置调整区域的容量和存活时间,没有配置的区域保持默认值。
+	 * 参数格式为cache.region.区域名.maxSize和cache.region.区域名.ttlMinutes
+	 * @param processEngineConfiguration 引擎配置
+	 */
+	public void configure(ProcessEngineConfigurationImpl processEngineConfiguration) {
+		for (CacheRegion cacheRegion : getRegions()) {
+			String prefix = PROPERTY_PREFIX + cacheRegion.getName() + ".";
+			int maxSize = (int) processEngineConfiguration.getEngineProperty(prefix + "maxSize", cacheRegion.getMaxSize());
+			long timeToLive = processEngineConfiguration.getEngineProperty(prefix + "ttlMinutes", cacheRegion.getTimeToLive() / MINUTE) * MINUTE;
+			if (maxSize != cacheRegion.getMaxSize() || timeToLive != cacheRegion.getTimeToLive()) {
+				addRegion(new CacheRegion(cacheRegion.getName(), maxSize, timeToLive));
+			}
+		}
+	}
+
+	/**
+	 * 添加或替换一个缓存区域,可用来调整默认区域的容量和存活时间
+	 * @param cacheRegion 缓存区域
+	 */
+	public void addRegion(CacheRegion cacheRegion) {
+		regions.put(cacheRegion.getName(), cacheRegion);
+	}
+
+	public CacheRegion getRegion(String regionName) {
+		return regions.get(regionName);
+	}
+
+	public List<CacheRegion> getRegions() {
+		return new ArrayList<CacheRegion>(regions.values());
+	}
+
+	/**
+	 * 根据缓存键确定所属区域
+	 * @param cacheKey 缓存键
+	 * @return 区域名称
+	 */
+	protected String getRegionName(String cacheKey) {
+		if (cacheKey.startsWith("user_")) {
+			return REGION_USER;
+		}
+		if (cacheKey.startsWith("IdentityLink_") || cacheKey.contains("_findGroupMembersByUser_") || cacheKey.contains("_findGroupChildMembers")
+				|| cacheKey.contains("_findUserChildMembers") || cacheKey.contains("_findUserByGroupId_")) {
+			return REGION_GROUP_MEMBERSHIP;
+		}
+		if (cacheKey.contains("_findGroupByGroupId_") || cacheKey.contains("_findParentGroupByGroupId_")) {
+			return REGION_GROUP;
+		}
+		if (cacheKey.startsWith("ProcessInstance_")) {
+			return REGION_PROCESS_INSTANCE;
+		}
+		return REGION_DEFAULT;
+	}
+
+	protected CacheRegion getRegionByKey(String cacheKey) {
+		CacheRegion cacheRegion = regions.get(getRegionName(cacheKey));
+		if (cacheRegion == null) {
+			cacheRegion = regions.get(REGION_DEFAULT);
+		}
+		return cacheRegion;
+	}
+
+	public boolean getIsCopy() {
+		return false;
+	}
+
+	public void putCacheData(String cacheKey, Object obj) {
+		getRegionByKey(cacheKey).put(cacheKey, obj);
+	}
+
+	public void removeCacheData(String cacheKey) {
+		getRegionByKey(cacheKey).remove(cacheKey);
+	}
+
+	public Object getCacheData(String cacheKey) {
+		return getRegionByKey(cacheKey).get(cacheKey);
+	}
+
+	public void cleanCacheData() {
+		for (CacheRegion cacheRegion : regions.values()) {
+			cacheRegion.clear();
+		}
+	}
+
+}
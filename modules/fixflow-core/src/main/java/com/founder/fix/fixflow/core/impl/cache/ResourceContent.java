@@ -0,0 +1,167 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+
+/**
+ * 部署资源的内容
+ * <p>
+ * 内容以SHA-1摘要标识,不可修改;较小的内容保存在内存中,较大的内容可以保存在磁盘文件中。
+ * 磁盘文件在内容被缓存释放并且所有打开的流都关闭以后才删除。
+ */
+public class ResourceContent {
+
+	protected String contentHash;
+
+	protected long length;
+
+	protected byte[] bytes;
+
+	protected File file;
+
+	protected volatile long lastAccess = System.currentTimeMillis();
+
+	protected int openStreams;
+
+	protected boolean released;
+
+	public ResourceContent(String contentHash, byte[] bytes) {
+		this.contentHash = contentHash;
+		this.bytes = bytes;
+		this.length = bytes.length;
+	}
+
+	public ResourceContent(String contentHash, File file) {
+		this.contentHash = contentHash;
+		this.file = file;
+		this.length = file.length();
+	}
+
+	/**
+	 * 打开内容的输入流,每次调用返回新的流,调用者必须关闭。
+	 * 磁盘上的内容在取得以后被缓存淘汰、文件已经删除时返回null,调用者应当重新从数据库读取
+	 * @return 输入流,内容已被释放时为null
+	 */
+	public InputStream openStream() {
+		if (bytes != null) {
+			return new ByteArrayInputStream(bytes);
+		}
+		synchronized (this) {
+			if (released && openStreams == 0) {
+				return null;
+			}
+			InputStream in;
+			try {
+				in = new FileInputStream(file);
+			} catch (FileNotFoundException e) {
+				throw new FixFlowException("资源缓存文件 " + file + " 不存在", e);
+			}
+			openStreams++;
+			return new ContentInputStream(in);
+		}
+	}
+
+	/**
+	 * 缓存不再使用该内容时调用,没有打开的流时立即删除磁盘文件,否则等最后一个流关闭时删除
+	 */
+	public synchronized void release() {
+		released = true;
+		if (file != null && openStreams == 0) {
+			file.delete();
+		}
+	}
+
+	protected synchronized void closeStream() {
+		openStreams--;
+		if (released && openStreams == 0) {
+			file.delete();
+		}
+	}
+
+	public synchronized boolean isReleased() {
+		return released;
+	}
+
+	/**
+	 * 记录最近一次访问时间,磁盘总量超出时先淘汰最久没有访问的内容
+	 */
+	public void touch() {
+		lastAccess = System.currentTimeMillis();
+	}
+
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	public boolean isInMemory() {
+		return bytes != null;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * HTTP条件请求使用的ETag
+	 * @return
+	 */
+	public String getETag() {
+		return "\"" + contentHash + "\"";
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * 磁盘文件的输入流,关闭时通知内容减少打开数,只通知一次
+	 */
+	protected class ContentInputStream extends FilterInputStream {
+
+		protected boolean closed;
+
+		protected ContentInputStream(InputStream in) {
+			super(in);
+		}
+
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				super.close();
+			} finally {
+				closeStream();
+			}
+		}
+	}
+}
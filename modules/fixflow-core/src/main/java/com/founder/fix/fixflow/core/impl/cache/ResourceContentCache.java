@@ -0,0 +1,418 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+
+/**
+ * 部署资源内容缓存
+ * <p>
+ * 部署编号+资源名称映射到内容摘要,内容按摘要保存,相同内容只保存一份。
+ * 不超过spillThreshold的内容放在内存中,内存中的内容总量不超过maxMemorySize;
+ * 超过spillThreshold或者内存已满的内容写入spillDirectory,磁盘上的内容总量不超过maxDiskSize,
+ * 超出时淘汰最久没有访问的内容,被淘汰的内容下次访问时重新从数据库读取。
+ * 部署被更新或删除时需要调用{@link #removeDeployment(String)}。
+ * <p>
+ * spillDirectory未配置时使用系统临时目录下的fixflow-resource目录,每个缓存在其中创建自己的唯一子目录,
+ * 关闭时只删除自己的子目录,同一台机器上的多个引擎可以使用同一个spillDirectory。
+ * 内容被释放时如果还有打开的流,文件等流关闭以后再删除,见{@link ResourceContent#release()}。
+ */
+public class ResourceContentCache {
+
+	protected static final int BUFFER_SIZE = 8192;
+
+	protected Map<String, String> resourceHashes = new ConcurrentHashMap<String, String>();
+
+	protected ConcurrentHashMap<String, ResourceContent> contents = new ConcurrentHashMap<String, ResourceContent>();
+
+	protected AtomicLong memorySize = new AtomicLong();
+
+	protected long maxMemorySize = 32 * 1024 * 1024L;
+
+	protected long spillThreshold = 256 * 1024L;
+
+	protected AtomicLong diskSize = new AtomicLong();
+
+	protected long maxDiskSize = 512 * 1024 * 1024L;
+
+	protected File spillDirectory = getDefaultSpillDirectory();
+
+	/**
+	 * 本缓存在spillDirectory下的唯一子目录,第一次写入磁盘时创建
+	 */
+	protected File cacheDirectory;
+
+	public static final String PROPERTY_PREFIX = "resourceCache.";
+
+	protected static final String SPILL_FILE_PREFIX = "resource";
+
+	protected static final String SPILL_FILE_SUFFIX = ".tmp";
+
+	protected static final String CACHE_DIRECTORY_PREFIX = "cache";
+
+	/**
+	 * 从引擎参数读取内存总量、写入磁盘的阈值、磁盘总量和磁盘目录。
+	 * 参数为resourceCache.maxMemorySize、resourceCache.spillThreshold、resourceCache.maxDiskSize(字节)和resourceCache.spillDirectory
+	 * @param processEngineConfiguration 引擎配置
+	 */
+	public void configure(ProcessEngineConfigurationImpl processEngineConfiguration) {
+		maxMemorySize = processEngineConfiguration.getEngineProperty(PROPERTY_PREFIX + "maxMemorySize", maxMemorySize);
+		spillThreshold = processEngineConfiguration.getEngineProperty(PROPERTY_PREFIX + "spillThreshold", spillThreshold);
+		maxDiskSize = processEngineConfiguration.getEngineProperty(PROPERTY_PREFIX + "maxDiskSize", maxDiskSize);
+		String directory = processEngineConfiguration.getEngineProperty(PROPERTY_PREFIX + "spillDirectory", (String) null);
+		if (directory != null) {
+			setSpillDirectory(new File(directory));
+		}
+	}
+
+	public ResourceContent getResourceContent(String deploymentId, String resourceName) {
+		String contentHash = resourceHashes.get(getResourceKey(deploymentId, resourceName));
+		if (contentHash == null) {
+			return null;
+		}
+		ResourceContent content = contents.get(contentHash);
+		if (content == null || content.isReleased()) {
+			return null;
+		}
+		content.touch();
+		return content;
+	}
+
+	/**
+	 * 读取资源内容并放入缓存,边读边计算摘要,超过spillThreshold时直接写入磁盘文件,
+	 * 内存中最多缓冲spillThreshold字节
+	 * @param deploymentId 部署编号
+	 * @param resourceName 资源名称
+	 * @param in 资源内容,由调用者关闭
+	 * @return 资源内容
+	 */
+	public ResourceContent putResourceContent(String deploymentId, String resourceName, InputStream in) {
+		MessageDigest digest = createDigest();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		File spillFile = null;
+		OutputStream out = buffer;
+		try {
+			byte[] chunk = new byte[BUFFER_SIZE];
+			long size = 0;
+			int read;
+			while ((read = in.read(chunk)) != -1) {
+				digest.update(chunk, 0, read);
+				size += read;
+				if (spillFile == null && size > spillThreshold) {
+					spillFile = createSpillFile();
+					out = new FileOutputStream(spillFile);
+					buffer.writeTo(out);
+					buffer = null;
+				}
+				out.write(chunk, 0, read);
+			}
+			out.close();
+		} catch (IOException e) {
+			closeQuietly(out);
+			if (spillFile != null) {
+				spillFile.delete();
+			}
+			throw new FixFlowException("读取部署资源 " + resourceName + " 失败", e);
+		}
+		String contentHash = toHex(digest.digest());
+		ResourceContent content = contents.get(contentHash);
+		if (content != null) {
+			if (spillFile != null) {
+				spillFile.delete();
+			}
+		} else if (spillFile != null) {
+			content = putFileContent(contentHash, spillFile);
+		} else {
+			byte[] bytes = buffer.toByteArray();
+			if (memorySize.addAndGet(bytes.length) > maxMemorySize) {
+				// 内存已满时同样写入磁盘,保证内容只从数据库读取一次
+				memorySize.addAndGet(-bytes.length);
+				content = putFileContent(contentHash, writeSpillFile(bytes, resourceName));
+			} else {
+				content = new ResourceContent(contentHash, bytes);
+				ResourceContent existing = contents.putIfAbsent(contentHash, content);
+				if (existing != null) {
+					memorySize.addAndGet(-bytes.length);
+					content = existing;
+				}
+			}
+		}
+		resourceHashes.put(getResourceKey(deploymentId, resourceName), contentHash);
+		return content;
+	}
+
+	/**
+	 * 保存磁盘上的内容,文件保留createTempFile生成的唯一名称,
+	 * 这样被淘汰的内容在流关闭前删除文件时不会影响同一摘要重新写入的文件
+	 * @param contentHash 内容摘要
+	 * @param spillFile 已写好的磁盘文件
+	 * @return 资源内容
+	 */
+	protected ResourceContent putFileContent(String contentHash, File spillFile) {
+		ResourceContent content = new ResourceContent(contentHash, spillFile);
+		ResourceContent existing = contents.putIfAbsent(contentHash, content);
+		if (existing != null) {
+			spillFile.delete();
+			return existing;
+		}
+		if (diskSize.addAndGet(content.getLength()) > maxDiskSize) {
+			evictDiskContents(content);
+		}
+		return content;
+	}
+
+	/**
+	 * 磁盘总量超出maxDiskSize时按最近访问时间淘汰磁盘上的内容,刚写入的内容不淘汰
+	 * @param keep 刚写入的内容
+	 */
+	protected void evictDiskContents(ResourceContent keep) {
+		while (diskSize.get() > maxDiskSize) {
+			ResourceContent eldest = null;
+			for (ResourceContent content : contents.values()) {
+				if (content != keep && !content.isInMemory() && (eldest == null || content.getLastAccess() < eldest.getLastAccess())) {
+					eldest = content;
+				}
+			}
+			if (eldest == null) {
+				return;
+			}
+			removeContent(eldest);
+		}
+	}
+
+	/**
+	 * 移除一份内容以及指向它的资源
+	 * @param content 资源内容
+	 */
+	protected void removeContent(ResourceContent content) {
+		if (!contents.remove(content.getContentHash(), content)) {
+			return;
+		}
+		Iterator<String> hashes = resourceHashes.values().iterator();
+		while (hashes.hasNext()) {
+			if (hashes.next().equals(content.getContentHash())) {
+				hashes.remove();
+			}
+		}
+		release(content);
+	}
+
+	protected File writeSpillFile(byte[] bytes, String resourceName) {
+		File spillFile = null;
+		OutputStream out = null;
+		try {
+			spillFile = createSpillFile();
+			out = new FileOutputStream(spillFile);
+			out.write(bytes);
+			out.close();
+			return spillFile;
+		} catch (IOException e) {
+			if (out != null) {
+				closeQuietly(out);
+			}
+			if (spillFile != null) {
+				spillFile.delete();
+			}
+			throw new FixFlowException("写入部署资源 " + resourceName + " 的缓存文件失败", e);
+		}
+	}
+
+	protected File createSpillFile() throws IOException {
+		return File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, ensureCacheDirectory());
+	}
+
+	/**
+	 * 获取本缓存的磁盘目录,第一次调用时在spillDirectory下创建唯一名称的子目录,
+	 * 其他引擎的缓存不会使用这个目录
+	 * @return
+	 * @throws IOException
+	 */
+	protected synchronized File ensureCacheDirectory() throws IOException {
+		if (cacheDirectory == null) {
+			spillDirectory.mkdirs();
+			File directory = File.createTempFile(CACHE_DIRECTORY_PREFIX, "", spillDirectory);
+			if (!directory.delete() || !directory.mkdir()) {
+				throw new IOException("无法创建资源缓存目录 " + directory);
+			}
+			cacheDirectory = directory;
+		}
+		return cacheDirectory;
+	}
+
+	/**
+	 * 默认磁盘目录,系统临时目录下的fixflow-resource
+	 * @return
+	 */
+	protected File getDefaultSpillDirectory() {
+		return new File(System.getProperty("java.io.tmpdir"), "fixflow-resource");
+	}
+
+	/**
+	 * 删除本缓存的磁盘目录以及其中由缓存写入的文件,不涉及spillDirectory下其他缓存的目录。
+	 * 仍然打开着的文件在Unix下删除后可以继续读到流关闭,Windows下删除失败的文件和目录在虚拟机退出时再删除
+	 */
+	public synchronized void cleanSpillDirectory() {
+		if (cacheDirectory == null) {
+			return;
+		}
+		File[] files = cacheDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (file.isFile() && name.startsWith(SPILL_FILE_PREFIX) && name.endsWith(SPILL_FILE_SUFFIX) && !file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+		if (!cacheDirectory.delete()) {
+			cacheDirectory.deleteOnExit();
+		}
+		cacheDirectory = null;
+	}
+
+	/**
+	 * 移除部署的全部资源内容
+	 * @param deploymentId 部署编号
+	 */
+	public void removeDeployment(String deploymentId) {
+		String prefix = getResourceKey(deploymentId, "");
+		Iterator<String> keys = resourceHashes.keySet().iterator();
+		while (keys.hasNext()) {
+			if (keys.next().startsWith(prefix)) {
+				keys.remove();
+			}
+		}
+		for (ResourceContent content : contents.values()) {
+			if (!resourceHashes.containsValue(content.getContentHash()) && contents.remove(content.getContentHash(), content)) {
+				release(content);
+			}
+		}
+	}
+
+	public void clear() {
+		resourceHashes.clear();
+		for (ResourceContent content : contents.values()) {
+			if (contents.remove(content.getContentHash(), content)) {
+				release(content);
+			}
+		}
+	}
+
+	/**
+	 * 引擎关闭时释放全部内容并删除本缓存的磁盘目录
+	 */
+	public void close() {
+		clear();
+		cleanSpillDirectory();
+	}
+
+	protected void release(ResourceContent content) {
+		if (content.isInMemory()) {
+			memorySize.addAndGet(-content.getLength());
+		} else {
+			diskSize.addAndGet(-content.getLength());
+		}
+		content.release();
+	}
+
+	protected String getResourceKey(String deploymentId, String resourceName) {
+		return deploymentId + "/" + resourceName;
+	}
+
+	protected MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new FixFlowException("不支持SHA-1摘要算法", e);
+		}
+	}
+
+	protected static String toHex(byte[] digest) {
+		StringBuffer hex = new StringBuffer(digest.length * 2);
+		for (byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	protected static void closeQuietly(OutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// 已经在处理读取失败
+		}
+	}
+
+	public long getMaxMemorySize() {
+		return maxMemorySize;
+	}
+
+	public void setMaxMemorySize(long maxMemorySize) {
+		this.maxMemorySize = maxMemorySize;
+	}
+
+	public long getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	public void setSpillThreshold(long spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
+	public long getMaxDiskSize() {
+		return maxDiskSize;
+	}
+
+	public void setMaxDiskSize(long maxDiskSize) {
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	public File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * 本缓存实际写入文件的目录,还没有内容写入磁盘时为空
+	 * @return
+	 */
+	public synchronized File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * 设置大资源的磁盘缓存目录,为空时使用系统临时目录;缓存在其中创建自己的子目录
+	 * @param spillDirectory
+	 */
+	public void setSpillDirectory(File spillDirectory) {
+		this.spillDirectory = spillDirectory == null ? getDefaultSpillDirectory() : spillDirectory;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cmd;
+
+import java.util.Date;
+import java.util.List;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.persistence.HistoryManager;
+
+/**
+ * 归档一批流程实例,并在同一个事务中更新检查点的进度
+ * 
+ * @author kenshin
+ */
+public class ArchiveChunkCmd implements Command<ArchiveCheckpoint> {
+
+	protected String archiveId;
+
+	public ArchiveChunkCmd(String archiveId) {
+		this.archiveId = archiveId;
+	}
+
+	public ArchiveCheckpoint execute(CommandContext commandContext) {
+		HistoryManager historyManager = commandContext.getHistoryManager();
+		ArchiveCheckpoint archiveCheckpoint = historyManager.findArchiveCheckpointById(archiveId);
+		if (archiveCheckpoint == null) {
+			throw new FixFlowException("未找到编号为" + archiveId + "的归档检查点");
+		}
+		if (!archiveCheckpoint.isRunning()) {
+			return archiveCheckpoint;
+		}
+		long startMillis = System.currentTimeMillis();
+		List<String> processInstanceIds = historyManager.archiveChunkByPara(archiveCheckpoint.getArchiveParameter(), archiveCheckpoint.getChunkSize());
+		archiveCheckpoint.setLastChunkMillis(System.currentTimeMillis() - startMillis);
+		archiveCheckpoint.setArchivedCount(archiveCheckpoint.getArchivedCount() + processInstanceIds.size());
+		if (!processInstanceIds.isEmpty()) {
+			archiveCheckpoint.setChunkCount(archiveCheckpoint.getChunkCount() + 1);
+			archiveCheckpoint.setLastProcessInstanceId(processInstanceIds.get(processInstanceIds.size() - 1));
+		}
+		if (processInstanceIds.size() < archiveCheckpoint.getChunkSize()) {
+			archiveCheckpoint.setStatus(ArchiveCheckpoint.STATUS_COMPLETED);
+		}
+		archiveCheckpoint.setUpdateTime(new Date());
+		if (!historyManager.updateArchiveProgress(archiveCheckpoint)) {
+			// 本批执行期间归档被停止,回滚本批,检查点保持停止时的进度
+			throw new FixFlowException("归档 " + archiveId + " 已不在运行状态,本批归档回滚");
+		}
+		return archiveCheckpoint;
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cmd;
+
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+
+/**
+ * 获取流程图图片内容,ETag和图片流取自同一份内容,只读取一次
+ */
+public class GetFlowGraphicsImgContentCmd implements Command<ResourceContent> {
+
+	protected String processDefinitionId;
+	
+	protected String processDefinitionKey;
+
+	public GetFlowGraphicsImgContentCmd(String processDefinitionId, String processDefinitionKey) {
+		this.processDefinitionId = processDefinitionId;
+		this.processDefinitionKey = processDefinitionKey;
+	}
+
+	public ResourceContent execute(CommandContext commandContext) {
+		return new GetFlowGraphicsImgStreamCmd(processDefinitionId, processDefinitionKey).getResourceContent(commandContext);
+	}
+
+}
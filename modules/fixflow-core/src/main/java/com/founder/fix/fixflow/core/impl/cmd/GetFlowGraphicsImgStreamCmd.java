@@ -1,13 +1,13 @@
 package com.founder.fix.fixflow.core.impl.cmd;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import com.founder.fix.fixflow.core.exception.FixFlowBizException;
+import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.interceptor.Command;
 import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
-import com.founder.fix.fixflow.core.impl.persistence.definition.ResourceEntity;
 
 public class GetFlowGraphicsImgStreamCmd  implements Command<InputStream> {
 
@@ -19,8 +19,32 @@ public class GetFlowGraphicsImgStreamCmd  implements Command<InputStream> {
 		this.processDefinitionKey=processDefinitionKey;
 	}
 	
+	/**
+	 * 内容被缓存淘汰后重新读取的最多次数
+	 */
+	protected static final int MAX_RELOAD_COUNT = 3;
+
 	public InputStream execute(CommandContext commandContext) {
-		// TODO Auto-generated method stub
+		for (int i = 0; i <= MAX_RELOAD_COUNT; i++) {
+			ResourceContent resourceContent = getResourceContent(commandContext);
+			if (resourceContent == null) {
+				return null;
+			}
+			// 取得内容后被缓存淘汰时打开失败,缓存中已经没有这份内容,重新读取时从数据库读取
+			InputStream in = resourceContent.openStream();
+			if (in != null) {
+				return in;
+			}
+		}
+		throw new FixFlowException("流程图图片在读取过程中反复被缓存淘汰,请增大resourceCache.maxDiskSize");
+	}
+	
+	/**
+	 * 获取流程图图片的内容,内容缓存在部署资源缓存中
+	 * @param commandContext
+	 * @return
+	 */
+	public ResourceContent getResourceContent(CommandContext commandContext) {
 		ProcessDefinitionBehavior processDefinitionBehavior=null;
 		
 		if(this.processDefinitionId!=null&&!this.processDefinitionId.equals("")){
@@ -39,9 +63,7 @@ public class GetFlowGraphicsImgStreamCmd  implements Command<InputStream> {
 		
 		String deploymentId=processDefinitionBehavior.getDeploymentId();
 		String diagramResourceName=processDefinitionBehavior.getDiagramResourceName();
-		ResourceEntity resourceEntity=commandContext.getResourceManager().findResourceByDeploymentIdAndResourceName(deploymentId, diagramResourceName);
-		InputStream inputStream = new ByteArrayInputStream(resourceEntity.getBytes()); 
-		return inputStream;
+		return commandContext.getResourceManager().findResourceContent(deploymentId, diagramResourceName);
 		
 	
 	}
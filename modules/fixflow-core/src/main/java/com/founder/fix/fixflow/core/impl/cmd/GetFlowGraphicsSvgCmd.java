@@ -18,7 +18,9 @@
 package com.founder.fix.fixflow.core.impl.cmd;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.bpmn2.Activity;
 import org.eclipse.bpmn2.Association;
@@ -67,9 +69,11 @@ import org.eclipse.dd.di.DiagramElement;
 import org.eclipse.emf.ecore.impl.BasicEObjectImpl;
 
 import com.founder.fix.fixflow.core.exception.FixFlowBizException;
+import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.DefinitionsBehavior;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.IntermediateCatchEventBehavior;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowGraphicsSvg;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.LoopType;
@@ -107,6 +111,7 @@ import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgTaskTo.TaskType;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgTerminateEndEventTo;
 import com.founder.fix.fixflow.core.impl.interceptor.Command;
 import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.persistence.deployer.DeploymentCache;
 public class GetFlowGraphicsSvgCmd implements Command<String> {
 
 	/**
@@ -127,6 +132,15 @@ public class GetFlowGraphicsSvgCmd implements Command<String> {
 	}
 
 	public String execute(CommandContext commandContext) {
+		return getFlowGraphicsSvg(commandContext).getSvg();
+	}
+	
+	/**
+	 * 获取渲染好的流程图,同一个流程定义只渲染一次
+	 * @param commandContext
+	 * @return
+	 */
+	public FlowGraphicsSvg getFlowGraphicsSvg(CommandContext commandContext) {
 
 		ProcessDefinitionBehavior processDefinitionBehavior=null;
 		
@@ -144,11 +158,18 @@ public class GetFlowGraphicsSvgCmd implements Command<String> {
 			}
 		}
 		
+		DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
+		FlowGraphicsSvg flowGraphicsSvg = deploymentCache.findFlowGraphicsSvg(processDefinitionBehavior.getProcessDefinitionId());
+		if (flowGraphicsSvg != null) {
+			return flowGraphicsSvg;
+		}
+		
 		definitions = processDefinitionBehavior.getDefinitions();
 		
 		List<BPMNDiagram> BPMNDiagramList = definitions.getDiagrams();
 
 		SvgBench svg = new SvgBench();
+		Map<String, float[]> nodeBounds = new HashMap<String, float[]>();
 		float maxX=0;
 		float maxY=0;
 		float minY=0;
@@ -204,6 +225,9 @@ public class GetFlowGraphicsSvgCmd implements Command<String> {
 						continue;
 					}
 					
+					nodeBounds.put(bpmnElement.getId(), new float[] { bpmnShape.getBounds().getX(), bpmnShape.getBounds().getY(),
+							bpmnShape.getBounds().getWidth(), bpmnShape.getBounds().getHeight() });
+					
 				
 					
 					if (bpmnElement instanceof StartEvent) {
@@ -354,7 +378,9 @@ public class GetFlowGraphicsSvgCmd implements Command<String> {
 		svg.setHight(maxY+70);
 		svg.setMhight(minY);
 		svg.setMwidth(minX);
-		return svg.release();
+		flowGraphicsSvg = new FlowGraphicsSvg(processDefinitionBehavior.getProcessDefinitionId(), svg.release(), nodeBounds);
+		deploymentCache.addFlowGraphicsSvg(flowGraphicsSvg);
+		return flowGraphicsSvg;
 
 	}
 	
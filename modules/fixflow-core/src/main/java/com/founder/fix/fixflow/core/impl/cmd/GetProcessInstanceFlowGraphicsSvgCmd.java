@@ -0,0 +1,62 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cmd;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.founder.fix.fixflow.core.exception.FixFlowBizException;
+import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowGraphicsSvg;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
+import com.founder.fix.fixflow.core.impl.runtime.TokenEntity;
+
+/**
+ * 获取流程实例的流程图,在缓存的流程定义流程图上高亮实例的当前节点
+ */
+public class GetProcessInstanceFlowGraphicsSvgCmd implements Command<String> {
+
+	/**
+	 * 流程实例编号
+	 */
+	protected String processInstanceId;
+
+	public GetProcessInstanceFlowGraphicsSvgCmd(String processInstanceId) {
+		this.processInstanceId = processInstanceId;
+	}
+
+	public String execute(CommandContext commandContext) {
+		if (processInstanceId == null || processInstanceId.equals("")) {
+			throw new FixFlowBizException("查询流程图的processInstanceId不能为空!");
+		}
+		ProcessInstanceEntity processInstance = commandContext.getProcessInstanceManager().findProcessInstanceById(processInstanceId);
+		if (processInstance == null) {
+			throw new FixFlowBizException("流程实例 " + processInstanceId + " 不存在!");
+		}
+		FlowGraphicsSvg flowGraphicsSvg = new GetFlowGraphicsSvgCmd(processInstance.getProcessDefinitionId(), null).getFlowGraphicsSvg(commandContext);
+		Set<String> nodeIds = new LinkedHashSet<String>();
+		for (TokenEntity token : commandContext.getTokenManager().findTokensByProcessInstanceIdNotEnd(processInstanceId)) {
+			if (token.getNodeId() != null) {
+				nodeIds.add(token.getNodeId());
+			}
+		}
+		return flowGraphicsSvg.overlay(nodeIds);
+	}
+
+}
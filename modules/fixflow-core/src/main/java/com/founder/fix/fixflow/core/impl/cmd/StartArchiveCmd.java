@@ -0,0 +1,69 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cmd;
+
+import java.util.Date;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+import com.founder.fix.fixflow.core.impl.util.GuidUtil;
+
+/**
+ * 创建后台分批归档的检查点
+ * 
+ * @author kenshin
+ */
+public class StartArchiveCmd implements Command<ArchiveCheckpoint> {
+
+	/** 每批的流程实例编号作为in条件的参数,Oracle的in列表最多1000个 */
+	public static final int MAX_CHUNK_SIZE = 1000;
+
+	protected ArchiveCheckpoint archiveCheckpoint;
+
+	public StartArchiveCmd(String processDefinitionKey, Date begin, Date end, int chunkSize, long throttleMillis) {
+		if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+			throw new FixFlowException("归档参数异常，每批归档数量必须在1到" + MAX_CHUNK_SIZE + "之间");
+		}
+		if (throttleMillis < 0) {
+			throw new FixFlowException("归档参数异常，每批归档间隔不能小于0");
+		}
+		archiveCheckpoint = new ArchiveCheckpoint();
+		archiveCheckpoint.setId(GuidUtil.CreateGuid());
+		archiveCheckpoint.setProcessDefinitionKey(processDefinitionKey);
+		archiveCheckpoint.setBegin(begin);
+		archiveCheckpoint.setEnd(end);
+		archiveCheckpoint.setChunkSize(chunkSize);
+		archiveCheckpoint.setThrottleMillis(throttleMillis);
+		archiveCheckpoint.setStatus(ArchiveCheckpoint.STATUS_RUNNING);
+	}
+
+	public ArchiveCheckpoint execute(CommandContext commandContext) {
+		Date now = new Date();
+		archiveCheckpoint.setStartTime(now);
+		archiveCheckpoint.setUpdateTime(now);
+		commandContext.getHistoryManager().insertArchiveCheckpoint(archiveCheckpoint);
+		return archiveCheckpoint;
+	}
+
+	public String getArchiveId() {
+		return archiveCheckpoint.getId();
+	}
+
+}
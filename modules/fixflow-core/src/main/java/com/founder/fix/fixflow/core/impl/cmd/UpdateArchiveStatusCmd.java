@@ -0,0 +1,63 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.cmd;
+
+import java.util.Date;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+import com.founder.fix.fixflow.core.impl.interceptor.Command;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
+
+/**
+ * 修改归档检查点的状态(停止、继续、失败)
+ * 
+ * @author kenshin
+ */
+public class UpdateArchiveStatusCmd implements Command<ArchiveCheckpoint> {
+
+	protected String archiveId;
+	protected String status;
+	protected String errorMessage;
+
+	public UpdateArchiveStatusCmd(String archiveId, String status, String errorMessage) {
+		this.archiveId = archiveId;
+		this.status = status;
+		this.errorMessage = errorMessage;
+	}
+
+	public ArchiveCheckpoint execute(CommandContext commandContext) {
+		ArchiveCheckpoint archiveCheckpoint = commandContext.getHistoryManager().findArchiveCheckpointById(archiveId);
+		if (archiveCheckpoint == null) {
+			throw new FixFlowException("未找到编号为" + archiveId + "的归档检查点");
+		}
+		if (ArchiveCheckpoint.STATUS_COMPLETED.equals(archiveCheckpoint.getStatus())) {
+			return archiveCheckpoint;
+		}
+		if (ArchiveCheckpoint.STATUS_FAILED.equals(status) && !archiveCheckpoint.isRunning()) {
+			// 已经停止的归档,归档线程的失败(如停止后回滚的一批)不覆盖停止状态
+			return archiveCheckpoint;
+		}
+		archiveCheckpoint.setStatus(status);
+		archiveCheckpoint.setErrorMessage(errorMessage);
+		archiveCheckpoint.setUpdateTime(new Date());
+		commandContext.getHistoryManager().updateArchiveStatus(archiveCheckpoint);
+		return archiveCheckpoint;
+	}
+
+}
@@ -20,6 +20,8 @@ package com.founder.fix.fixflow.core.impl.connector;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.founder.fix.bpmn2extensions.fixflow.ConnectorParameterInputs;
 import com.founder.fix.bpmn2extensions.fixflow.ConnectorParameterOutputs;
@@ -28,6 +30,7 @@ import com.founder.fix.fixflow.core.exception.FixFlowConnectorException;
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
 
 
 public class ConnectorInstanceBehavior {
@@ -52,6 +55,26 @@ public class ConnectorInstanceBehavior {
 
 	protected String skipExpression;
 	
+	/**
+	 * 连接器中表达式的预编译模板,按表达式文本缓存
+	 */
+	protected Map<String, ExpressionTemplate> expressionTemplates = new ConcurrentHashMap<String, ExpressionTemplate>();
+	
+	/**
+	 * 获取表达式模板,第一次使用时编译并缓存在连接器上
+	 * @param expressionText 表达式文本
+	 * @param executionContext 流程上下文
+	 * @return
+	 */
+	protected ExpressionTemplate getExpressionTemplate(String expressionText, ExecutionContext executionContext) {
+		ExpressionTemplate expressionTemplate = expressionTemplates.get(expressionText);
+		if (expressionTemplate == null) {
+			expressionTemplate = ExpressionTemplate.compile(expressionText, executionContext.getProcessDefinition());
+			expressionTemplates.put(expressionText, expressionTemplate);
+		}
+		return expressionTemplate;
+	}
+	
 	
 	
 	public String getConnectorId() {
@@ -176,7 +199,7 @@ public class ConnectorInstanceBehavior {
 			
 			
 			if(this.timeExpression!=null&&!this.timeExpression.equals("")){
-				Object timeExpressionObj=ExpressionMgmt.execute(this.timeExpression, executionContext);
+				Object timeExpressionObj=ExpressionMgmt.execute(getExpressionTemplate(this.timeExpression, executionContext), executionContext);
 				if(StringUtil.getBoolean(timeExpressionObj)){
 					return ;
 				}
@@ -211,7 +234,7 @@ public class ConnectorInstanceBehavior {
 					String scriptString=connectorParameterInputs.getExpression().getValue();
 					if(scriptString!=null){
 						Object arg[] = new Object[1];
-						arg[0] =ExpressionMgmt.execute(scriptString, executionContext);
+						arg[0] =ExpressionMgmt.execute(getExpressionTemplate(scriptString, executionContext), executionContext);
 						m.invoke(connectorInstance, arg);
 					}
 				}
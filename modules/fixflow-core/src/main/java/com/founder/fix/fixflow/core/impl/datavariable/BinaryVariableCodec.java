@@ -0,0 +1,293 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.datavariable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+
+/**
+ * 内置的二进制变量编码器
+ * <p>
+ * 支持null、字符串、基本类型的包装类、BigDecimal、BigInteger、日期、字节数组,
+ * 以及由这些值组成的ArrayList、LinkedList、HashMap、LinkedHashMap和TreeMap(自然顺序),
+ * 每个值以一个字节的类型开头,不写入类描述信息。
+ */
+public class BinaryVariableCodec implements VariableCodec {
+
+	public static final String TYPE_TAG = "bin";
+
+	/** 集合嵌套的最大层数,超过时不使用本编码器 */
+	protected static final int MAX_DEPTH = 32;
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_INTEGER = 2;
+	private static final byte TYPE_LONG = 3;
+	private static final byte TYPE_DOUBLE = 4;
+	private static final byte TYPE_FLOAT = 5;
+	private static final byte TYPE_SHORT = 6;
+	private static final byte TYPE_BYTE = 7;
+	private static final byte TYPE_BOOLEAN = 8;
+	private static final byte TYPE_CHARACTER = 9;
+	private static final byte TYPE_BIG_DECIMAL = 10;
+	private static final byte TYPE_BIG_INTEGER = 11;
+	private static final byte TYPE_DATE = 12;
+	private static final byte TYPE_SQL_DATE = 13;
+	private static final byte TYPE_TIMESTAMP = 14;
+	private static final byte TYPE_BYTES = 15;
+	private static final byte TYPE_ARRAY_LIST = 16;
+	private static final byte TYPE_LINKED_LIST = 17;
+	private static final byte TYPE_HASH_MAP = 18;
+	private static final byte TYPE_LINKED_HASH_MAP = 19;
+	private static final byte TYPE_TREE_MAP = 20;
+
+	public String getTypeTag() {
+		return TYPE_TAG;
+	}
+
+	public boolean canEncode(Object value) {
+		return canEncode(value, 0);
+	}
+
+	protected boolean canEncode(Object value, int depth) {
+		if (value == null) {
+			return true;
+		}
+		Class<?> valueClass = value.getClass();
+		if (valueClass == String.class || valueClass == Integer.class || valueClass == Long.class || valueClass == Double.class
+				|| valueClass == Float.class || valueClass == Short.class || valueClass == Byte.class || valueClass == Boolean.class
+				|| valueClass == Character.class || valueClass == BigDecimal.class || valueClass == BigInteger.class
+				|| valueClass == Date.class || valueClass == java.sql.Date.class || valueClass == Timestamp.class
+				|| valueClass == byte[].class) {
+			return true;
+		}
+		if (depth >= MAX_DEPTH) {
+			return false;
+		}
+		if (valueClass == ArrayList.class || valueClass == LinkedList.class) {
+			for (Object element : (List<?>) value) {
+				if (!canEncode(element, depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (valueClass == HashMap.class || valueClass == LinkedHashMap.class
+				|| (valueClass == TreeMap.class && ((TreeMap<?, ?>) value).comparator() == null)) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!canEncode(entry.getKey(), depth + 1) || !canEncode(entry.getValue(), depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	public byte[] encode(Object value) {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(byteOut);
+		try {
+			writeValue(out, value);
+			out.flush();
+		} catch (IOException e) {
+			throw new FixFlowException("变量编码失败", e);
+		}
+		return byteOut.toByteArray();
+	}
+
+	public Object decode(byte[] bytes) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return readValue(in);
+		} catch (IOException e) {
+			throw new FixFlowException("变量解码失败", e);
+		}
+	}
+
+	protected void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeBytes(out, ((String) value).getBytes("UTF-8"));
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TYPE_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TYPE_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Character) {
+			out.writeByte(TYPE_CHARACTER);
+			out.writeChar((Character) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(TYPE_BIG_DECIMAL);
+			writeBytes(out, value.toString().getBytes("UTF-8"));
+		} else if (value instanceof BigInteger) {
+			out.writeByte(TYPE_BIG_INTEGER);
+			writeBytes(out, ((BigInteger) value).toByteArray());
+		} else if (value instanceof Timestamp) {
+			out.writeByte(TYPE_TIMESTAMP);
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (value instanceof java.sql.Date) {
+			out.writeByte(TYPE_SQL_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof Date) {
+			out.writeByte(TYPE_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof byte[]) {
+			out.writeByte(TYPE_BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(value instanceof LinkedList ? TYPE_LINKED_LIST : TYPE_ARRAY_LIST);
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			if (value instanceof TreeMap) {
+				out.writeByte(TYPE_TREE_MAP);
+			} else if (value instanceof LinkedHashMap) {
+				out.writeByte(TYPE_LINKED_HASH_MAP);
+			} else {
+				out.writeByte(TYPE_HASH_MAP);
+			}
+			out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		} else {
+			throw new FixFlowException("二进制变量编码器不支持类型 " + value.getClass().getName());
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return new String(readBytes(in), "UTF-8");
+		case TYPE_INTEGER:
+			return in.readInt();
+		case TYPE_LONG:
+			return in.readLong();
+		case TYPE_DOUBLE:
+			return in.readDouble();
+		case TYPE_FLOAT:
+			return in.readFloat();
+		case TYPE_SHORT:
+			return in.readShort();
+		case TYPE_BYTE:
+			return in.readByte();
+		case TYPE_BOOLEAN:
+			return in.readBoolean();
+		case TYPE_CHARACTER:
+			return in.readChar();
+		case TYPE_BIG_DECIMAL:
+			return new BigDecimal(new String(readBytes(in), "UTF-8"));
+		case TYPE_BIG_INTEGER:
+			return new BigInteger(readBytes(in));
+		case TYPE_DATE:
+			return new Date(in.readLong());
+		case TYPE_SQL_DATE:
+			return new java.sql.Date(in.readLong());
+		case TYPE_TIMESTAMP:
+			Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case TYPE_BYTES:
+			return readBytes(in);
+		case TYPE_ARRAY_LIST:
+		case TYPE_LINKED_LIST:
+			int listSize = in.readInt();
+			List list = type == TYPE_LINKED_LIST ? new LinkedList() : new ArrayList(listSize);
+			for (int i = 0; i < listSize; i++) {
+				list.add(readValue(in));
+			}
+			return list;
+		case TYPE_HASH_MAP:
+		case TYPE_LINKED_HASH_MAP:
+		case TYPE_TREE_MAP:
+			int mapSize = in.readInt();
+			Map map;
+			if (type == TYPE_TREE_MAP) {
+				map = new TreeMap();
+			} else if (type == TYPE_LINKED_HASH_MAP) {
+				map = new LinkedHashMap(mapSize * 4 / 3 + 1);
+			} else {
+				map = new HashMap(mapSize * 4 / 3 + 1);
+			}
+			for (int i = 0; i < mapSize; i++) {
+				Object key = readValue(in);
+				map.put(key, readValue(in));
+			}
+			return map;
+		default:
+			throw new FixFlowException("无法识别的变量类型 " + type);
+		}
+	}
+
+	private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
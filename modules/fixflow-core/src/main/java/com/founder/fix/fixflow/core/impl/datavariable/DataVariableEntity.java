@@ -25,14 +25,16 @@ import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
-import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.DataVariableBehavior;
-import com.founder.fix.fixflow.core.impl.command.QueryVariablesCommand;
 import com.founder.fix.fixflow.core.impl.db.AbstractPersistentObject;
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
@@ -60,6 +62,15 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 
 	public static final String RULE_VARIABLE_CLONE = "variableClone";
 
+	private static final VariableCodecRegistry DEFAULT_CODEC_REGISTRY = new VariableCodecRegistry();
+
+	/**
+	 * 解码后可以缓存的不可变类型
+	 */
+	private static final Set<Class<?>> IMMUTABLE_CLASSES = new HashSet<Class<?>>(Arrays.<Class<?>> asList(String.class, Boolean.class,
+			Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigDecimal.class,
+			BigInteger.class));
+
 
 	// 需要持久化的字段 //////////////////////////////////////////////////////////
 	
@@ -84,6 +95,11 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 	protected boolean isPersistence;
 	
 	protected Date archiveTime;
+
+	/** 解码后的变量值,只缓存不可变的值 */
+	protected transient Object variableObject;
+
+	protected transient boolean variableObjectDecoded;
 	
 	// get set //////////////////////////////////////////////////////////
 	
@@ -117,14 +133,31 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 		return variableValue;
 	}
 	
+	/**
+	 * 按VARIABLE_CLASSNAME中的类型标识解码变量值
+	 * <p>
+	 * 字符串、数字、布尔值等不可变的值第一次访问时解码并缓存,之后返回同一个对象;
+	 * 集合、日期、自定义对象等可变的值每次重新解码,调用者修改返回的对象不会影响这个变量。
+	 */
 	public Object getVariableObject() {
-		
-		
-		return bytesToObject(variableValue);
+		return getVariableObject(getVariableCodecRegistry());
+	}
+
+	public Object getVariableObject(VariableCodecRegistry variableCodecRegistry) {
+		if (variableObjectDecoded) {
+			return variableObject;
+		}
+		Object value = variableCodecRegistry.decode(variableClassName, variableValue);
+		if (value == null || IMMUTABLE_CLASSES.contains(value.getClass())) {
+			variableObject = value;
+			variableObjectDecoded = true;
+		}
+		return value;
 	}
 
 	public void setVariableValue(byte[] variableValue) {
 		this.variableValue = variableValue;
+		this.variableObjectDecoded = false;
 	}
 
 	public String getVariableClassName() {
@@ -133,6 +166,7 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 
 	public void setVariableClassName(String variableClassName) {
 		this.variableClassName = variableClassName;
+		this.variableObjectDecoded = false;
 	}
 
 	public String getTaskInstanceId() {
@@ -247,21 +281,13 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 		// 对于需要持久化的数据变量的处理
 		if (this.isPersistence()) {
 
-			String processInstanceId = this.dataVariableMgmtInstance.getProcessInstance().getId();
-			List<String> variableNames = new ArrayList<String>();
+			// 通过流程实例的变量缓存读取,同一命令中的多个变量只查询一次数据库
 			String variableName = this.dataVariableBehavior.getId();
-			variableNames.add(variableName);
-			
-			QueryVariablesCommand queryVariablesCommand=new QueryVariablesCommand();
-			queryVariablesCommand.setVariableNames(variableNames);
-			queryVariablesCommand.setProcessInstanceId(processInstanceId);
-
-		
 
-			Map<String, Object> returnMap = Context.getCommandContext().getVariableManager().queryVariable(queryVariablesCommand);
-			if (returnMap != null && returnMap.containsKey(variableName)) {
+			if (this.dataVariableMgmtInstance.hasPersistedVariable(variableName)) {
 				this.setAdd(false);
-				ExpressionMgmt.setVariable(getId(), returnMap.get(variableName));
+				ExpressionMgmt.setVariable(getId(), this.dataVariableMgmtInstance.getPersistedVariable(variableName));
+				this.snapshotPersistentState();
 
 			} else {
 				Object object = null;
@@ -305,8 +331,19 @@ public class DataVariableEntity extends AbstractPersistentObject<DataVariableEnt
 		// TODO Auto-generated method stub
 		return RULE_GET_VARIABLE_PERSISTENT_STATE;
 	}
-	
-	
+
+
+	/**
+	 * 流程引擎配置的变量编码器注册表,引擎未初始化时使用内置编码器
+	 */
+	public static VariableCodecRegistry getVariableCodecRegistry() {
+		ProcessEngineConfigurationImpl processEngineConfiguration = Context.getProcessEngineConfiguration();
+		if (processEngineConfiguration != null && processEngineConfiguration.getVariableCodecRegistry() != null) {
+			return processEngineConfiguration.getVariableCodecRegistry();
+		}
+		return DEFAULT_CODEC_REGISTRY;
+	}
+
 	/**
 	 * byte[] to long
 	 * 
@@ -19,9 +19,16 @@ package com.founder.fix.fixflow.core.impl.datavariable;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.DataVariableBehavior;
+import com.founder.fix.fixflow.core.impl.cache.EntityCache;
+import com.founder.fix.fixflow.core.impl.command.QueryVariablesCommand;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
 
 
@@ -46,6 +53,32 @@ public class DataVariableMgmtInstance implements Serializable {
 	
 	protected List<DataVariableEntity> dataVariableEntities=new ArrayList<DataVariableEntity>();
 	
+	/**
+	 * 单次IN查询最多携带的变量名数量,超过则分批查询
+	 */
+	protected static final int MAX_VARIABLE_NAMES_PER_QUERY = 500;
+	
+	/**
+	 * 当前命令中已从数据库取回的持久化变量,值在第一次取值时才解码
+	 */
+	protected transient LazyVariableMap persistedVariables;
+	
+	/**
+	 * 当前命令中已经查询过的变量名(包括数据库中不存在的变量)
+	 */
+	protected transient Set<String> queriedVariableNames;
+	
+	/**
+	 * 缓存所属的命令实体缓存,嵌套命令共用外层命令的实体缓存,因此也共用这里的结果;命令变化后缓存失效
+	 */
+	protected transient EntityCache persistedEntityCache;
+	
+	/**
+	 * 查询时实体缓存的版本,之后有写操作(包括嵌套命令中保存变量)时缓存失效,
+	 * 已经记下的"不存在"的变量会重新查询
+	 */
+	protected transient int persistedEntityCacheVersion;
+	
 	public List<DataVariableEntity> getDataVariableEntities() {
 		return dataVariableEntities;
 	}
@@ -82,6 +115,69 @@ public class DataVariableMgmtInstance implements Serializable {
 	public ProcessInstanceEntity getProcessInstance() {
 		return processInstance;
 	}
+	
+	/**
+	 * 批量加载持久化变量,只查询本次命令中尚未查询过的变量名,
+	 * 多个变量名合并为一次 VARIABLE_KEY IN (...) 查询。
+	 * 上次查询以后通过会话执行过写操作时重新查询
+	 * @param variableNames 需要用到的变量名
+	 */
+	public void loadPersistedVariables(Collection<String> variableNames) {
+		
+		CommandContext commandContext = Context.getCommandContext();
+		EntityCache entityCache = commandContext.getEntityCache();
+		if (persistedVariables == null || persistedEntityCache != entityCache || persistedEntityCacheVersion != entityCache.getVersion()) {
+			persistedVariables = new LazyVariableMap(DataVariableEntity.getVariableCodecRegistry());
+			queriedVariableNames = new HashSet<String>();
+			persistedEntityCache = entityCache;
+			persistedEntityCacheVersion = entityCache.getVersion();
+		}
+		
+		List<String> pendingNames = new ArrayList<String>();
+		for (String variableName : variableNames) {
+			if (!queriedVariableNames.contains(variableName) && !pendingNames.contains(variableName)) {
+				pendingNames.add(variableName);
+			}
+		}
+		
+		for (int i = 0; i < pendingNames.size(); i += MAX_VARIABLE_NAMES_PER_QUERY) {
+			List<String> batchNames = new ArrayList<String>(pendingNames.subList(i, Math.min(i + MAX_VARIABLE_NAMES_PER_QUERY, pendingNames.size())));
+			
+			QueryVariablesCommand queryVariablesCommand = new QueryVariablesCommand();
+			queryVariablesCommand.setVariableNames(batchNames);
+			queryVariablesCommand.setProcessInstanceId(processInstance.getId());
+			
+			List<DataVariableEntity> dataVariableEntities = commandContext.getVariableManager().selectVariableByQuery(queryVariablesCommand);
+			for (DataVariableEntity dataVariableEntity : dataVariableEntities) {
+				persistedVariables.putVariable(dataVariableEntity);
+			}
+			queriedVariableNames.addAll(batchNames);
+		}
+	}
+	
+	/**
+	 * 判断数据库中是否已经存在这个持久化变量
+	 * @param variableName 变量名
+	 * @return
+	 */
+	public boolean hasPersistedVariable(String variableName) {
+		List<String> variableNames = new ArrayList<String>();
+		variableNames.add(variableName);
+		loadPersistedVariables(variableNames);
+		return persistedVariables.containsKey(variableName);
+	}
+	
+	/**
+	 * 获取数据库中持久化变量的值,同一命令中只查询和解码一次
+	 * @param variableName 变量名
+	 * @return
+	 */
+	public Object getPersistedVariable(String variableName) {
+		List<String> variableNames = new ArrayList<String>();
+		variableNames.add(variableName);
+		loadPersistedVariables(variableNames);
+		return persistedVariables.get(variableName);
+	}
 
 
 
@@ -0,0 +1,372 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.datavariable;
+
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurper;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+
+/**
+ * 内置的JSON变量编码器,用于普通的JavaBean(POJO)
+ * <p>
+ * 只编码能无损还原的JavaBean:公共类,有公共无参构造函数,所有字段都有对应的get/set方法,
+ * 属性类型为字符串、基本类型及其包装类、BigDecimal、BigInteger、Date、枚举、List、Map或同样满足条件的JavaBean,
+ * List和Map的实际类型只能是ArrayList、HashMap或LinkedHashMap,
+ * 其中只能是字符串、Integer、Boolean、null以及由它们组成的List和键为字符串的Map。
+ * BigDecimal在集合中经过JSON后会变成Integer或其它数字类型,所以不能出现在List和Map中,JavaBean的BigDecimal属性按字符串保存。
+ * 类名保存在JSON的@class属性中,类增加或删除属性后仍然可以读取。
+ */
+public class JsonVariableCodec implements VariableCodec {
+
+	public static final String TYPE_TAG = "json";
+
+	protected static final String CLASS_PROPERTY = "@class";
+
+	protected static final int MAX_DEPTH = 32;
+
+	/** 类的可编码属性,不能编码的类对应空Map */
+	protected final Map<Class<?>, Map<String, PropertyDescriptor>> beanProperties = new ConcurrentHashMap<Class<?>, Map<String, PropertyDescriptor>>();
+
+	public String getTypeTag() {
+		return TYPE_TAG;
+	}
+
+	public boolean canEncode(Object value) {
+		if (value == null || !isJsonBean(value.getClass())) {
+			return false;
+		}
+		try {
+			return isJsonSafe(value, 0);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public byte[] encode(Object value) {
+		Map<String, Object> jsonMap = toJsonMap(value, 0);
+		Map<String, Object> rootMap = new LinkedHashMap<String, Object>();
+		rootMap.put(CLASS_PROPERTY, value.getClass().getName());
+		rootMap.putAll(jsonMap);
+		try {
+			return JsonOutput.toJson(rootMap).getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new FixFlowException("变量编码失败", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public Object decode(byte[] bytes) {
+		Map<String, Object> rootMap;
+		try {
+			rootMap = (Map<String, Object>) new JsonSlurper().parseText(new String(bytes, "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new FixFlowException("变量解码失败", e);
+		}
+		String className = (String) rootMap.get(CLASS_PROPERTY);
+		Class<?> beanClass = ReflectUtil.loadClass(className);
+		if (beanClass == null) {
+			throw new FixFlowException("变量解码失败,找不到类 " + className);
+		}
+		return fromJsonMap(rootMap, beanClass);
+	}
+
+	/**
+	 * 类是否能用JSON无损编码,结果按类缓存
+	 */
+	protected boolean isJsonBean(Class<?> beanClass) {
+		return !getBeanProperties(beanClass, new HashSet<Class<?>>()).isEmpty();
+	}
+
+	protected Map<String, PropertyDescriptor> getBeanProperties(Class<?> beanClass, Set<Class<?>> checking) {
+		Map<String, PropertyDescriptor> properties = beanProperties.get(beanClass);
+		if (properties != null) {
+			return properties;
+		}
+		// 类型引用自身时按可编码处理,实际的对象引用环在编码时由深度限制
+		if (!checking.add(beanClass)) {
+			return null;
+		}
+		properties = introspect(beanClass, checking);
+		checking.remove(beanClass);
+		beanProperties.put(beanClass, properties);
+		return properties;
+	}
+
+	protected Map<String, PropertyDescriptor> introspect(Class<?> beanClass, Set<Class<?>> checking) {
+		Map<String, PropertyDescriptor> empty = new HashMap<String, PropertyDescriptor>();
+		int modifiers = beanClass.getModifiers();
+		if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers) || beanClass.isInterface() || beanClass.isEnum()
+				|| beanClass.isArray() || beanClass.getName().startsWith("java.") || beanClass.getName().startsWith("javax.")
+				|| (beanClass.getEnclosingClass() != null && !Modifier.isStatic(modifiers))) {
+			return empty;
+		}
+		try {
+			beanClass.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return empty;
+		}
+		BeanInfo beanInfo;
+		try {
+			beanInfo = Introspector.getBeanInfo(beanClass, Object.class);
+		} catch (IntrospectionException e) {
+			return empty;
+		}
+		Map<String, PropertyDescriptor> properties = new LinkedHashMap<String, PropertyDescriptor>();
+		for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+			if (propertyDescriptor.getReadMethod() == null) {
+				continue;
+			}
+			if (propertyDescriptor.getWriteMethod() == null || !isSupportedType(propertyDescriptor.getPropertyType(), checking)) {
+				return empty;
+			}
+			properties.put(propertyDescriptor.getName(), propertyDescriptor);
+		}
+		// 没有get/set方法的字段无法还原
+		for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				int fieldModifiers = field.getModifiers();
+				if (Modifier.isStatic(fieldModifiers) || Modifier.isTransient(fieldModifiers) || field.isSynthetic()) {
+					continue;
+				}
+				if (!properties.containsKey(field.getName())) {
+					return empty;
+				}
+			}
+		}
+		return properties;
+	}
+
+	protected boolean isSupportedType(Class<?> type, Set<Class<?>> checking) {
+		if (type.isPrimitive() || type == String.class || type == Integer.class || type == Long.class || type == Double.class
+				|| type == Float.class || type == Short.class || type == Byte.class || type == Boolean.class || type == Character.class
+				|| type == BigDecimal.class || type == BigInteger.class || type == Date.class || type.isEnum()) {
+			return true;
+		}
+		if (type == List.class || type == ArrayList.class || type == Map.class || type == HashMap.class || type == LinkedHashMap.class) {
+			return true;
+		}
+		Map<String, PropertyDescriptor> properties = getBeanProperties(type, checking);
+		return properties == null || !properties.isEmpty();
+	}
+
+	/**
+	 * 属性值是否都能还原,List和Map本身以及其中的值经过JSON后类型不变
+	 */
+	protected boolean isJsonSafe(Object bean, int depth) throws Exception {
+		if (depth >= MAX_DEPTH) {
+			return false;
+		}
+		for (PropertyDescriptor propertyDescriptor : beanProperties.get(bean.getClass()).values()) {
+			Object value = propertyDescriptor.getReadMethod().invoke(bean);
+			if (value == null) {
+				continue;
+			}
+			if (value instanceof List || value instanceof Map) {
+				if (!isJsonNative(value, depth + 1)) {
+					return false;
+				}
+			} else if (value instanceof Date) {
+				if (value.getClass() != Date.class) {
+					return false;
+				}
+			} else if (!(value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+					|| value instanceof Enum)) {
+				// 属性值为JavaBean,子类的属性无法还原
+				Class<?> type = propertyDescriptor.getPropertyType();
+				if (value.getClass() != type || !isJsonBean(type) || !isJsonSafe(value, depth + 1)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	protected boolean isJsonNative(Object value, int depth) {
+		if (value == null || value instanceof String || value instanceof Integer || value instanceof Boolean) {
+			return true;
+		}
+		if (depth >= MAX_DEPTH) {
+			return false;
+		}
+		// 只接受还原后类型不变的集合,LinkedList、TreeMap、不可修改的集合等交给Java序列化
+		Class<?> valueClass = value.getClass();
+		if (valueClass == ArrayList.class) {
+			for (Object element : (List<?>) value) {
+				if (!isJsonNative(element, depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (valueClass == HashMap.class || valueClass == LinkedHashMap.class) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!(entry.getKey() instanceof String) || !isJsonNative(entry.getValue(), depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	protected Map<String, Object> toJsonMap(Object bean, int depth) {
+		if (depth >= MAX_DEPTH) {
+			throw new FixFlowException("变量编码失败,对象嵌套层数过多 " + bean.getClass().getName());
+		}
+		Map<String, Object> jsonMap = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, PropertyDescriptor> entry : beanProperties.get(bean.getClass()).entrySet()) {
+			Object value;
+			try {
+				value = entry.getValue().getReadMethod().invoke(bean);
+			} catch (Exception e) {
+				throw new FixFlowException("变量编码失败,无法读取属性 " + entry.getKey(), e);
+			}
+			jsonMap.put(entry.getKey(), toJsonValue(value, depth));
+		}
+		return jsonMap;
+	}
+
+	protected Object toJsonValue(Object value, int depth) {
+		if (value == null || value instanceof String || value instanceof Boolean || value instanceof List || value instanceof Map) {
+			return value;
+		}
+		if (value instanceof BigDecimal || value instanceof BigInteger || value instanceof Character) {
+			return value.toString();
+		}
+		if (value instanceof Number) {
+			return value;
+		}
+		if (value instanceof Date) {
+			return ((Date) value).getTime();
+		}
+		if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		}
+		return toJsonMap(value, depth + 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Object fromJsonMap(Map<String, Object> jsonMap, Class<?> beanClass) {
+		Map<String, PropertyDescriptor> properties = beanProperties.get(beanClass);
+		if (properties == null) {
+			isJsonBean(beanClass);
+			properties = beanProperties.get(beanClass);
+		}
+		if (properties == null || properties.isEmpty()) {
+			throw new FixFlowException("变量解码失败,类 " + beanClass.getName() + " 不能从JSON还原");
+		}
+		Object bean = ReflectUtil.instantiate(beanClass.getName());
+		for (Map.Entry<String, Object> entry : jsonMap.entrySet()) {
+			PropertyDescriptor propertyDescriptor = properties.get(entry.getKey());
+			// 类删除的属性忽略
+			if (propertyDescriptor == null || entry.getValue() == null) {
+				continue;
+			}
+			Method writeMethod = propertyDescriptor.getWriteMethod();
+			Class<?> type = propertyDescriptor.getPropertyType();
+			Object value = entry.getValue();
+			Object propertyValue;
+			if (type == String.class) {
+				propertyValue = value.toString();
+			} else if (type == int.class || type == Integer.class) {
+				propertyValue = ((Number) value).intValue();
+			} else if (type == long.class || type == Long.class) {
+				propertyValue = ((Number) value).longValue();
+			} else if (type == double.class || type == Double.class) {
+				propertyValue = ((Number) value).doubleValue();
+			} else if (type == float.class || type == Float.class) {
+				propertyValue = ((Number) value).floatValue();
+			} else if (type == short.class || type == Short.class) {
+				propertyValue = ((Number) value).shortValue();
+			} else if (type == byte.class || type == Byte.class) {
+				propertyValue = ((Number) value).byteValue();
+			} else if (type == boolean.class || type == Boolean.class) {
+				propertyValue = value;
+			} else if (type == char.class || type == Character.class) {
+				propertyValue = value.toString().charAt(0);
+			} else if (type == BigDecimal.class) {
+				propertyValue = new BigDecimal(value.toString());
+			} else if (type == BigInteger.class) {
+				propertyValue = new BigInteger(value.toString());
+			} else if (type == Date.class) {
+				propertyValue = new Date(((Number) value).longValue());
+			} else if (type.isEnum()) {
+				propertyValue = Enum.valueOf(type.asSubclass(Enum.class), value.toString());
+			} else if (type == HashMap.class) {
+				propertyValue = new HashMap<Object, Object>((Map<Object, Object>) copyJsonValue(value));
+			} else if (List.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+				propertyValue = copyJsonValue(value);
+			} else {
+				propertyValue = fromJsonMap((Map<String, Object>) value, type);
+			}
+			try {
+				writeMethod.invoke(bean, propertyValue);
+			} catch (Exception e) {
+				throw new FixFlowException("变量解码失败,无法设置属性 " + entry.getKey(), e);
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * JSON解析出的List和Map复制为ArrayList和LinkedHashMap
+	 */
+	protected Object copyJsonValue(Object value) {
+		if (value instanceof List) {
+			List<Object> list = new ArrayList<Object>();
+			for (Object element : (List<?>) value) {
+				list.add(copyJsonValue(element));
+			}
+			return list;
+		}
+		if (value instanceof Map) {
+			Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(entry.getKey(), copyJsonValue(entry.getValue()));
+			}
+			return map;
+		}
+		if (value instanceof Long && ((Long) value).longValue() == ((Long) value).intValue()) {
+			return ((Long) value).intValue();
+		}
+		return value;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.datavariable;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 从数据库查询出的变量,值在第一次访问时才解码
+ * <p>
+ * 只取部分变量的调用者不需要为其它变量付出解码的开销。
+ * 序列化时全部解码并替换为普通的HashMap。
+ */
+public class LazyVariableMap extends AbstractMap<String, Object> implements Serializable {
+
+	private static final long serialVersionUID = 2741405113437861247L;
+
+	/** 值为未解码的Undecoded或已解码的变量值 */
+	protected final Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+	protected final transient VariableCodecRegistry variableCodecRegistry;
+
+	public LazyVariableMap(VariableCodecRegistry variableCodecRegistry) {
+		this.variableCodecRegistry = variableCodecRegistry;
+	}
+
+	/**
+	 * 加入一个未解码的变量
+	 */
+	public void putVariable(DataVariableEntity dataVariableEntity) {
+		values.put(dataVariableEntity.getVariableKey(), new Undecoded(dataVariableEntity));
+	}
+
+	protected Object decode(Map.Entry<String, Object> entry) {
+		Object value = entry.getValue();
+		if (value instanceof Undecoded) {
+			value = ((Undecoded) value).dataVariableEntity.getVariableObject(variableCodecRegistry);
+			entry.setValue(value);
+		}
+		return value;
+	}
+
+	public Object get(Object key) {
+		Object value = values.get(key);
+		if (value instanceof Undecoded) {
+			value = ((Undecoded) value).dataVariableEntity.getVariableObject(variableCodecRegistry);
+			values.put((String) key, value);
+		}
+		return value;
+	}
+
+	public boolean containsKey(Object key) {
+		return values.containsKey(key);
+	}
+
+	public Object put(String key, Object value) {
+		Object oldValue = get(key);
+		values.put(key, value);
+		return oldValue;
+	}
+
+	public Object remove(Object key) {
+		Object oldValue = get(key);
+		values.remove(key);
+		return oldValue;
+	}
+
+	public void clear() {
+		values.clear();
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public Set<String> keySet() {
+		return values.keySet();
+	}
+
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				final Iterator<Map.Entry<String, Object>> iterator = values.entrySet().iterator();
+				return new Iterator<Map.Entry<String, Object>>() {
+
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					public Map.Entry<String, Object> next() {
+						return new LazyEntry(iterator.next());
+					}
+
+					public void remove() {
+						iterator.remove();
+					}
+				};
+			}
+
+			public int size() {
+				return values.size();
+			}
+		};
+	}
+
+	/**
+	 * 取值时才解码的Entry
+	 */
+	protected class LazyEntry implements Map.Entry<String, Object> {
+
+		protected final Map.Entry<String, Object> entry;
+
+		protected LazyEntry(Map.Entry<String, Object> entry) {
+			this.entry = entry;
+		}
+
+		public String getKey() {
+			return entry.getKey();
+		}
+
+		public Object getValue() {
+			return decode(entry);
+		}
+
+		public Object setValue(Object value) {
+			Object oldValue = decode(entry);
+			entry.setValue(value);
+			return oldValue;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+			Object value = getValue();
+			return getKey().equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+		}
+
+		public int hashCode() {
+			Object value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+	}
+
+	private Object writeReplace() {
+		return new HashMap<String, Object>(this);
+	}
+
+	/**
+	 * 未解码的变量
+	 */
+	private static final class Undecoded {
+
+		final DataVariableEntity dataVariableEntity;
+
+		Undecoded(DataVariableEntity dataVariableEntity) {
+			this.dataVariableEntity = dataVariableEntity;
+		}
+	}
+}
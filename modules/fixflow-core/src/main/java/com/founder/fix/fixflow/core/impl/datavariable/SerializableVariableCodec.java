@@ -0,0 +1,46 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.datavariable;
+
+import java.io.Serializable;
+
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+
+/**
+ * java序列化变量编码器,其它编码器都不能编码时使用,也用来读取没有类型标识的历史数据
+ */
+public class SerializableVariableCodec implements VariableCodec {
+
+	public static final String TYPE_TAG = "java";
+
+	public String getTypeTag() {
+		return TYPE_TAG;
+	}
+
+	public boolean canEncode(Object value) {
+		return value == null || value instanceof Serializable;
+	}
+
+	public byte[] encode(Object value) {
+		return DataVariableEntity.ObjectToBytes(value);
+	}
+
+	public Object decode(byte[] bytes) {
+		return DataVariableEntity.bytesToObject(bytes);
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.datavariable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+
+/**
+ * 变量编码器注册表
+ * <p>
+ * 编码时按顺序使用第一个能编码该值的编码器,自定义编码器在内置编码器之前,
+ * 内置编码器的顺序为二进制、JSON、java序列化。
+ * VARIABLE_CLASSNAME中保存"#"加编码器的类型标识,不以"#"开头的是以前保存的java类名,值为java序列化数据。
+ * 没有编码器能保存的值与以前一样保存为空值,VARIABLE_CLASSNAME中是java类名。
+ */
+public class VariableCodecRegistry {
+
+	public static final String TAG_PREFIX = "#";
+
+	protected final List<VariableCodec> codecs = new CopyOnWriteArrayList<VariableCodec>();
+
+	protected final Map<String, VariableCodec> codecsByTag = new ConcurrentHashMap<String, VariableCodec>();
+
+	/** 已注册的自定义编码器个数,新的自定义编码器插在它们之后 */
+	protected int customCodecCount;
+
+	protected final VariableCodec legacyCodec = new SerializableVariableCodec();
+
+	public VariableCodecRegistry() {
+		registerCodec(new BinaryVariableCodec());
+		registerCodec(new JsonVariableCodec());
+		registerCodec(legacyCodec);
+	}
+
+	private void registerCodec(VariableCodec codec) {
+		codecs.add(codec);
+		codecsByTag.put(codec.getTypeTag(), codec);
+	}
+
+	/**
+	 * 注册自定义编码器,优先于内置编码器和之前注册的自定义编码器之后
+	 * @param codec 编码器
+	 */
+	public synchronized void addCodec(VariableCodec codec) {
+		String typeTag = codec.getTypeTag();
+		if (typeTag == null || typeTag.length() == 0 || typeTag.length() > 30) {
+			throw new FixFlowException("变量编码器 " + codec.getClass().getName() + " 的类型标识不能为空且长度不能超过30");
+		}
+		VariableCodec oldCodec = codecsByTag.get(typeTag);
+		if (oldCodec != null) {
+			throw new FixFlowException("变量编码器类型标识 " + typeTag + " 已被 " + oldCodec.getClass().getName() + " 使用");
+		}
+		codecs.add(customCodecCount++, codec);
+		codecsByTag.put(typeTag, codec);
+	}
+
+	/**
+	 * 选择编码器
+	 * @param value 变量值
+	 * @return 第一个能编码该值的编码器
+	 */
+	public VariableCodec getCodec(Object value) {
+		VariableCodec codec = findCodec(value);
+		if (codec != null) {
+			return codec;
+		}
+		throw new FixFlowException("没有能保存类型为 " + value.getClass().getName() + " 的变量的编码器");
+	}
+
+	/**
+	 * 查找编码器
+	 * @param value 变量值
+	 * @return 第一个能编码该值的编码器,没有时返回null
+	 */
+	public VariableCodec findCodec(Object value) {
+		for (VariableCodec codec : codecs) {
+			if (codec.canEncode(value)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 保存在VARIABLE_CLASSNAME中的类型标识
+	 */
+	public String getTypeName(VariableCodec codec) {
+		return TAG_PREFIX + codec.getTypeTag();
+	}
+
+	/**
+	 * 解码变量值
+	 * @param typeName VARIABLE_CLASSNAME中的值
+	 * @param bytes VARIABLE_VALUE中的值
+	 * @return 变量值
+	 */
+	public Object decode(String typeName, byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		if (typeName == null || !typeName.startsWith(TAG_PREFIX)) {
+			return legacyCodec.decode(bytes);
+		}
+		VariableCodec codec = codecsByTag.get(typeName.substring(TAG_PREFIX.length()));
+		if (codec == null) {
+			throw new FixFlowException("没有类型标识为 " + typeName + " 的变量编码器");
+		}
+		return codec.decode(bytes);
+	}
+}
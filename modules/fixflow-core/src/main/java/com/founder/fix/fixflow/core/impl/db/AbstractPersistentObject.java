@@ -17,18 +17,17 @@
  */
 package com.founder.fix.fixflow.core.impl.db;
 
-import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-import com.founder.fix.bpmn2extensions.sqlmappingconfig.Result;
 import com.founder.fix.bpmn2extensions.sqlmappingconfig.ResultMap;
+import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.Context;
-import com.founder.fix.fixflow.core.impl.util.JavaBeanUtil;
-import com.founder.fix.fixflow.core.impl.util.StringUtil;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.scriptlanguage.AbstractScriptLanguageMgmt;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
 
 
 public abstract class AbstractPersistentObject <T> implements PersistentObject {
@@ -43,6 +42,11 @@ public abstract class AbstractPersistentObject <T> implements PersistentObject {
 	
 	
 	private boolean isAdd=true;
+	
+	/**
+	 * 最近一次从数据库加载或保存时的持久化字段快照
+	 */
+	private transient Map<String, Object> persistentSnapshot;
 
 
 	public boolean isAdd() {
@@ -158,6 +162,22 @@ public abstract class AbstractPersistentObject <T> implements PersistentObject {
 	// 公用方法
 	
 	
+	/**
+	 * 拷贝对象时初始化结果映射和扩展字段,实体字段由各拷贝规则直接赋值
+	 * 
+	 * @param resultMap
+	 *            结果映射
+	 * @param source
+	 *            被拷贝的对象
+	 */
+	public void cloneInit(ResultMap resultMap, AbstractPersistentObject<?> source) {
+
+		this.resultMap=resultMap;
+		// 与从数据库初始化保持一致,源对象的持久化扩展字段作为普通扩展字段带过来
+		extensionFields.putAll(source.getPersistenceExtensionFields());
+
+	}
+
 	/**
 	 * 从数据库初始化对象
 	 * 
@@ -165,70 +185,12 @@ public abstract class AbstractPersistentObject <T> implements PersistentObject {
 	 *            字段Map
 	 * @return
 	 */
-	@SuppressWarnings("rawtypes")
 	public void persistentInit(ResultMap resultMap, Map<String, Object> entityMap) {
 
-		String className = resultMap.getType();
-
 		this.resultMap=resultMap;
 		try {
-			Class clazz = Class.forName(className);
-
-			//Object obj = clazz.newInstance();
-
-			// 获得类的所有属性
-			
-			List<Result> results=resultMap.getResult();
-			
-		
-
-			for (Result result : results) {
-
-				Object dataObj=entityMap.get(result.getColumn());
-				if(dataObj==null){
-					continue;
-				}
-				
-//				PropertyDescriptor pd = new PropertyDescriptor(result.getProperty(), clazz);
-
-				// 获得写方法
-
-//				Method wM = pd.getWriteMethod();
-				Method wM = JavaBeanUtil.getSetStringMethod(clazz, result.getProperty(), result.getJdbcType());
-				
-				if(wM==null){
-					continue;
-				}
-				// 获得读方法
-
-				//Method rM = pd.getReadMethod();
-
-				// 获得方法的参数，因为是标准的set方法，所以只取第一个参数
-
-				Class[] classes = wM.getParameterTypes();
-
-				// 判断参数不为空，则只有一个
-
-				if (classes != null && classes.length == 1) {
-
-					// 判断参数类型
-
-					if (classes[0].equals(String.class)) {
-						wM.invoke(this, StringUtil.getString(dataObj));
-					}else if(classes[0].equals(Date.class)){
-						dataObj = StringUtil.getDate(dataObj);
-						wM.invoke(this, dataObj);
-					}else if(classes[0].equals(int.class)){
-						wM.invoke(this, StringUtil.getInt(dataObj));
-					}else if(classes[0].equals(byte[].class)){
-						wM.invoke(this,(byte[]) dataObj);
-					}
-
-
-				}
-				entityMap.remove(result.getColumn());
-			}
-			
+			// 字段和set方法的对应关系每个ResultMap只解析一次
+			ResultMapPlan.getResultMapPlan(resultMap).apply(this, entityMap);
 			
 			for (String mapKey : entityMap.keySet()) {
 				addExtensionField(mapKey, entityMap.get(mapKey));
@@ -251,14 +213,36 @@ public abstract class AbstractPersistentObject <T> implements PersistentObject {
 	 */
 	public  T  clone(){
 		
-		AbstractScriptLanguageMgmt scriptLanguageMgmt=Context.getAbstractScriptLanguageMgmt();
-		
-		T tObject=(T)scriptLanguageMgmt.executeBusinessRules(getCloneRuleId(), this);
+		T tObject=(T)executeEntityRule(getCloneRuleId());
 	
 		return tObject;
 		
 	}
 	
+	/**
+	 * 执行实体规则,配置了执行类的规则直接调用执行类,否则执行规则脚本
+	 * <p>
+	 * 实体规则只处理对象本身的字段,执行类收到的sqlCommand为null。
+	 * @param ruleId 规则编号
+	 * @return
+	 */
+	protected Object executeEntityRule(String ruleId) {
+		ProcessEngineConfigurationImpl processEngineConfiguration = Context.getProcessEngineConfiguration();
+		CompiledRule compiledRule = processEngineConfiguration.getCompiledRule(ruleId);
+		if (compiledRule != null && compiledRule.getRuleClass() != null) {
+			try {
+				BusinessRulesScript businessRulesScript = (BusinessRulesScript) compiledRule.getRulesScript();
+				return businessRulesScript.execute(this, null, processEngineConfiguration);
+			} catch (FixFlowException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new FixFlowException("执行Rule异常: " + ruleId + " " + e.getMessage(), e);
+			}
+		}
+		AbstractScriptLanguageMgmt scriptLanguageMgmt = Context.getAbstractScriptLanguageMgmt();
+		return scriptLanguageMgmt.executeBusinessRules(ruleId, this);
+	}
+	
 	/**
 	 * 获取能持久化到数据的Map
 	 * 
@@ -273,15 +257,87 @@ public abstract class AbstractPersistentObject <T> implements PersistentObject {
 		return objectParam;
 	}
 
+	/**
+	 * 记录当前持久化字段快照,对象从数据库加载完成后调用
+	 */
+	public void snapshotPersistentState() {
+		this.persistentSnapshot = copyPersistentState(getPersistentDbMap());
+	}
+
+	/**
+	 * 判断对象自上次快照以来是否需要保存,需要保存时同时刷新快照
+	 * <p>
+	 * 新增对象和没有快照的对象总是需要保存。
+	 * @return 需要执行新增或更新返回true
+	 */
+	public boolean updatePersistentSnapshot() {
+		Map<String, Object> persistentDbMap = getPersistentDbMap();
+		boolean changed = isAdd || persistentSnapshot == null || !isPersistentStateEquals(persistentSnapshot, persistentDbMap);
+		if (changed) {
+			this.persistentSnapshot = copyPersistentState(persistentDbMap);
+		}
+		return changed;
+	}
+
+	/**
+	 * 清除持久化字段快照,之后的保存总是执行更新
+	 */
+	public void clearPersistentSnapshot() {
+		this.persistentSnapshot = null;
+	}
+
+	private static Map<String, Object> copyPersistentState(Map<String, Object> persistentDbMap) {
+		Map<String, Object> snapshot = new HashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : persistentDbMap.entrySet()) {
+			Object value = entry.getValue();
+			// 可变对象需要复制,否则原对象被修改后快照也会跟着变化
+			if (value instanceof Date) {
+				value = ((Date) value).clone();
+			} else if (value instanceof byte[]) {
+				value = ((byte[]) value).clone();
+			}
+			snapshot.put(entry.getKey(), value);
+		}
+		return snapshot;
+	}
+
+	private static boolean isPersistentStateEquals(Map<String, Object> snapshot, Map<String, Object> persistentDbMap) {
+		if (snapshot.size() != persistentDbMap.size()) {
+			return false;
+		}
+		for (Map.Entry<String, Object> entry : persistentDbMap.entrySet()) {
+			if (!snapshot.containsKey(entry.getKey())) {
+				return false;
+			}
+			Object oldValue = snapshot.get(entry.getKey());
+			Object newValue = entry.getValue();
+			if (oldValue == null || newValue == null) {
+				if (oldValue != newValue) {
+					return false;
+				}
+			} else if (oldValue instanceof Date && newValue instanceof Date) {
+				// java.sql.Timestamp和java.util.Date之间的equals不对称,按毫秒比较
+				if (((Date) oldValue).getTime() != ((Date) newValue).getTime()) {
+					return false;
+				}
+			} else if (oldValue instanceof byte[] && newValue instanceof byte[]) {
+				if (!Arrays.equals((byte[]) oldValue, (byte[]) newValue)) {
+					return false;
+				}
+			} else if (!oldValue.equals(newValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@SuppressWarnings("unchecked")
 	public Map<String, Object> getPersistentState() {
 
 		
 		Map<String, Object> persistentState =null;
 		
-		AbstractScriptLanguageMgmt scriptLanguageMgmt=Context.getAbstractScriptLanguageMgmt();
-		
-		persistentState=(Map<String, Object>)scriptLanguageMgmt.executeBusinessRules(getPersistentStateRuleId(), this);
+		persistentState=(Map<String, Object>)executeEntityRule(getPersistentStateRuleId());
 
 		
 		return persistentState;
@@ -0,0 +1,110 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.db;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.Rule;
+
+/**
+ * 启动时编译好的规则
+ * <p>
+ * 保存规则定义和规则执行类。执行类没有可变的实例字段时只创建一个共享实例,
+ * 每次执行直接复用;有实例字段的执行类在执行过程中保存状态,仍然每次创建新实例。
+ */
+public class CompiledRule {
+
+	protected final Rule rule;
+
+	protected final Class<?> ruleClass;
+
+	protected final Object sharedRulesScript;
+
+	public CompiledRule(Rule rule, Class<?> ruleClass) {
+		this.rule = rule;
+		this.ruleClass = ruleClass;
+		this.sharedRulesScript = createSharedRulesScript(ruleClass);
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public String getId() {
+		return rule.getId();
+	}
+
+	/**
+	 * 获取规则执行类
+	 * @return 规则只有脚本时返回null
+	 */
+	public Class<?> getRuleClass() {
+		return ruleClass;
+	}
+
+	/**
+	 * 执行类实例是否被共享
+	 * @return
+	 */
+	public boolean isShared() {
+		return sharedRulesScript != null;
+	}
+
+	/**
+	 * 获取规则执行类的实例,无状态的执行类返回共享实例
+	 * @return
+	 * @throws Exception 创建实例失败
+	 */
+	public Object getRulesScript() throws Exception {
+		if (sharedRulesScript != null) {
+			return sharedRulesScript;
+		}
+		return ruleClass.newInstance();
+	}
+
+	private static Object createSharedRulesScript(Class<?> ruleClass) {
+		if (ruleClass == null || !isStateless(ruleClass)) {
+			return null;
+		}
+		try {
+			return ruleClass.newInstance();
+		} catch (Exception e) {
+			// 创建失败时保持原来的行为,执行时再创建并报告错误
+			return null;
+		}
+	}
+
+	/**
+	 * 判断类及其父类是否只有final或static字段
+	 * @param clazz
+	 * @return
+	 */
+	public static boolean isStateless(Class<?> clazz) {
+		for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+}
@@ -19,6 +19,7 @@ package com.founder.fix.fixflow.core.impl.db;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -35,6 +36,7 @@ import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.cache.CacheObject;
+import com.founder.fix.fixflow.core.impl.cache.EntityCache;
 import com.founder.fix.fixflow.core.impl.util.ReflectUtil;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.core.internationalization.ExceptionCode;
@@ -57,16 +59,90 @@ public class MappingSqlSession {
 	AbstractScriptLanguageMgmt scriptLanguageMgmt;
 	ProcessEngineConfigurationImpl processEngineConfiguration;
 	SqlCommand sqlCommand;
+	protected EntityCache entityCache;
 
 	public MappingSqlSession(Connection connection, CacheObject cacheObject) {
 		this.cacheObject = cacheObject;
 		this.connection = connection;
 		scriptLanguageMgmt = Context.getAbstractScriptLanguageMgmt();
 		processEngineConfiguration = Context.getProcessEngineConfiguration();
-		scriptLanguageMgmt.setVariable("sysRulesConfig", processEngineConfiguration);
 		sqlCommand = new SqlCommand(connection);
 	}
 
+	/**
+	 * 规则脚本本次执行使用的变量
+	 * @param parameter 主参数
+	 * @return
+	 */
+	protected Map<String, Object> createRuleBindings(Object parameter) {
+		Map<String, Object> bindings = new HashMap<String, Object>();
+		bindings.put("parameter", parameter);
+		bindings.put("sqlCommand", sqlCommand);
+		return bindings;
+	}
+
+	/**
+	 * 发送还没有发送的批量语句
+	 */
+	public void flush() {
+		sqlCommand.flush();
+	}
+
+	/**
+	 * 写操作会让已加载的实体过期,清空命令的实体缓存
+	 */
+	protected void clearEntityCache() {
+		if (entityCache != null) {
+			entityCache.clear();
+		}
+	}
+
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * 开始批量执行,之后的insert、update规则产生的相同语句合并发送
+	 */
+	public void beginBatch() {
+		sqlCommand.beginBatch();
+	}
+
+	/**
+	 * 结束批量执行并发送剩余语句
+	 */
+	public void endBatch() {
+		sqlCommand.endBatch();
+	}
+
+	/**
+	 * 出错时结束批量执行,丢弃还没有发送的语句
+	 */
+	public void abortBatch() {
+		sqlCommand.abortBatch();
+	}
+
+	/**
+	 * 获取启动时编译好的规则
+	 * @param statement 规则编号
+	 * @return
+	 */
+	protected CompiledRule getCompiledRule(String statement) {
+		CompiledRule compiledRule = processEngineConfiguration.getCompiledRule(statement);
+		if (compiledRule == null) {
+			throw new FixFlowDbException("规则 " + statement + " 未找到!");
+		}
+		return compiledRule;
+	}
+
 	// insert
 	// ///////////////////////////////////////////////////////////////////
 
@@ -76,17 +152,11 @@ public class MappingSqlSession {
 
 		// 将对象设置成非新增模板,再次操作就是更新模式
 		abstractPersistentObject.setAdd(false);
-
-		// 记住之前的 parameter 变量对象,操作完成后还原回去
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-
-		// 设置新的 parameter 对象
-		scriptLanguageMgmt.setVariable("parameter", persistentObject);
-		// 设置数据库操作对象
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
+		clearEntityCache();
 
 		// 获取指定的规则
-		Rule rule = processEngineConfiguration.getRule(statement);
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 		// 获取规则执行的执行类,如果有执行类则优先执行执行类,没有的话执行脚本。
 		String classPath = rule.getClassPath();
 
@@ -94,10 +164,10 @@ public class MappingSqlSession {
 
 			LOG.debug("规则: {} 开始执行,规则执行类为: {}", statement, classPath);
 
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 				try {
-					InsertRulesScript insertRulesScript = (InsertRulesScript) classObj.newInstance();
+					InsertRulesScript insertRulesScript = (InsertRulesScript) compiledRule.getRulesScript();
 					insertRulesScript.execute(persistentObject, sqlCommand, processEngineConfiguration);
 				} catch (Exception e) {
 
@@ -118,7 +188,7 @@ public class MappingSqlSession {
 			if (StringUtil.isNotEmpty(ruleText)) {
 				try {
 
-					scriptLanguageMgmt.execute(rule.getSqlValue());
+					scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(persistentObject));
 
 				} catch (Exception e) {
 
@@ -138,7 +208,6 @@ public class MappingSqlSession {
 
 		}
 
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 	}
 
 	// update
@@ -149,18 +218,16 @@ public class MappingSqlSession {
 		AbstractPersistentObject<?> abstractPersistentObject = (AbstractPersistentObject<?>) persistentObject;
 
 		abstractPersistentObject.setAdd(false);
+		clearEntityCache();
 
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-
-		scriptLanguageMgmt.setVariable("parameter", persistentObject);
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
-		Rule rule = processEngineConfiguration.getRule(statement);
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 		String classPath = rule.getClassPath();
 		if (StringUtil.isNotEmpty(classPath)) {
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 				try {
-					UpdateRulesScript updateRulesScript = (UpdateRulesScript) classObj.newInstance();
+					UpdateRulesScript updateRulesScript = (UpdateRulesScript) compiledRule.getRulesScript();
 					updateRulesScript.execute(persistentObject, sqlCommand, processEngineConfiguration);
 				} catch (Exception e) {
 
@@ -179,7 +246,7 @@ public class MappingSqlSession {
 			if (StringUtil.isNotEmpty(ruleText)) {
 				try {
 
-					scriptLanguageMgmt.execute(rule.getSqlValue());
+					scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(persistentObject));
 
 				} catch (Exception e) {
 
@@ -198,7 +265,6 @@ public class MappingSqlSession {
 			}
 
 		}
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 
 	}
 
@@ -206,17 +272,16 @@ public class MappingSqlSession {
 	// ///////////////////////////////////////////////////////////////////
 
 	public void delete(String statement, Object parameter) {
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-		scriptLanguageMgmt.setVariable("parameter", parameter);
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
-		Rule rule = processEngineConfiguration.getRule(statement);
+		clearEntityCache();
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 		String classPath = rule.getClassPath();
 		if (StringUtil.isNotEmpty(classPath)) {
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 				try {
 
-					DeleteRulesScript deleteRulesScript = (DeleteRulesScript) classObj.newInstance();
+					DeleteRulesScript deleteRulesScript = (DeleteRulesScript) compiledRule.getRulesScript();
 					deleteRulesScript.execute(parameter, sqlCommand, processEngineConfiguration);
 
 				} catch (Exception e) {
@@ -236,7 +301,7 @@ public class MappingSqlSession {
 			if (StringUtil.isNotEmpty(ruleText)) {
 				try {
 
-					scriptLanguageMgmt.execute(rule.getSqlValue());
+					scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(parameter));
 
 				} catch (Exception e) {
 
@@ -254,21 +319,19 @@ public class MappingSqlSession {
 
 			}
 		}
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 	}
 
 	public void delete(String statement, PersistentObject persistentObject) {
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-		scriptLanguageMgmt.setVariable("parameter", persistentObject);
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
-		Rule rule = processEngineConfiguration.getRule(statement);
+		clearEntityCache();
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 
 		String classPath = rule.getClassPath();
 		if (StringUtil.isNotEmpty(classPath)) {
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 				try {
-					DeleteRulesScript deleteRulesScript = (DeleteRulesScript) classObj.newInstance();
+					DeleteRulesScript deleteRulesScript = (DeleteRulesScript) compiledRule.getRulesScript();
 					deleteRulesScript.execute(persistentObject, sqlCommand, processEngineConfiguration);
 				} catch (Exception e) {
 					LOG.error("规则: " + statement + " 执行出错,规则执行类为: " + classPath + ",错误信息: " + e.getMessage(), e);
@@ -285,7 +348,7 @@ public class MappingSqlSession {
 			if (StringUtil.isNotEmpty(ruleText)) {
 				try {
 
-					scriptLanguageMgmt.execute(rule.getSqlValue());
+					scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(persistentObject));
 
 				} catch (Exception e) {
 
@@ -303,7 +366,6 @@ public class MappingSqlSession {
 
 			}
 		}
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 		// scriptLanguageMgmt.execute(rule.getSqlValue());
 	}
 
@@ -329,19 +391,17 @@ public class MappingSqlSession {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public List selectList(String statement, ListQueryParameterObject parameter) {
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-		scriptLanguageMgmt.setVariable("parameter", parameter);
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
-		Rule rule = processEngineConfiguration.getRule(statement);
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 
 		List returnObjList = null;
 
 		String classPath = rule.getClassPath();
 		if (StringUtil.isNotEmpty(classPath)) {
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 				try {
-					SelectRulesScript selectRulesScript = (SelectRulesScript) classObj.newInstance();
+					SelectRulesScript selectRulesScript = (SelectRulesScript) compiledRule.getRulesScript();
 					returnObjList = (List) selectRulesScript.execute(parameter, sqlCommand, processEngineConfiguration);
 
 				} catch (Exception e) {
@@ -362,7 +422,7 @@ public class MappingSqlSession {
 				throw new FixFlowException(ExceptionCode.RULEEXCEPTION_CLASSANDSCRIPTEMPTY, statement);
 			}
 
-			Object returnObj = scriptLanguageMgmt.execute(rule.getSqlValue());
+			Object returnObj = scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(parameter));
 			if (returnObj instanceof SqlQuery) {
 
 				SqlQuery sqlQuery = (SqlQuery) returnObj;
@@ -410,7 +470,6 @@ public class MappingSqlSession {
 						persistentObject.setAdd(false);
 						returnList.add(persistentObject);
 					}
-					scriptLanguageMgmt.setVariable("parameter", parameterOld);
 					return returnList;
 
 				} else {
@@ -420,28 +479,25 @@ public class MappingSqlSession {
 			}
 
 		}
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 		return returnObjList;
 
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public Object selectOne(String statement, Object parameter) {
-		Object parameterOld = scriptLanguageMgmt.getVariable("parameter");
-		scriptLanguageMgmt.setVariable("parameter", parameter);
-		scriptLanguageMgmt.setVariable("sqlCommand", sqlCommand);
-		Rule rule = processEngineConfiguration.getRule(statement);
+		CompiledRule compiledRule = getCompiledRule(statement);
+		Rule rule = compiledRule.getRule();
 
 		Object returnObjList = null;
 
 		String classPath = rule.getClassPath();
 		if (StringUtil.isNotEmpty(classPath)) {
-			Class<?> classObj = processEngineConfiguration.getRuleClass(rule.getId());
+			Class<?> classObj = compiledRule.getRuleClass();
 			if (classObj != null) {
 
 				try {
 
-					Object classObjInstance = classObj.newInstance();
+					Object classObjInstance = compiledRule.getRulesScript();
 
 					if (classObjInstance instanceof SelectRulesScript) {
 						SelectRulesScript selectRulesScript = (SelectRulesScript) classObjInstance;
@@ -460,7 +516,7 @@ public class MappingSqlSession {
 			}
 		} else {
 
-			returnObjList = (Object) scriptLanguageMgmt.execute(rule.getSqlValue());
+			returnObjList = (Object) scriptLanguageMgmt.execute(rule.getSqlValue(), createRuleBindings(parameter));
 
 			if (returnObjList instanceof SqlQuery) {
 
@@ -498,7 +554,6 @@ public class MappingSqlSession {
 		}
 
 		if (returnObjList == null) {
-			scriptLanguageMgmt.setVariable("parameter", parameterOld);
 			return null;
 		}
 		if (returnObjList instanceof List) {
@@ -527,19 +582,16 @@ public class MappingSqlSession {
 
 							persistentObject.persistentInit(resultMap, (Map) listObj.get(0));
 							persistentObject.setAdd(false);
-							scriptLanguageMgmt.setVariable("parameter", parameterOld);
 							return persistentObject;
 						}
 
 					} else {
 						if (returnObjList instanceof Map) {
 							persistentObject.persistentInit(resultMap, (Map) returnObjList);
-							scriptLanguageMgmt.setVariable("parameter", parameterOld);
 							return persistentObject;
 						}
 					}
 
-					scriptLanguageMgmt.setVariable("parameter", parameterOld);
 					return persistentObject;
 
 				} else {
@@ -549,7 +601,6 @@ public class MappingSqlSession {
 			}
 
 		}
-		scriptLanguageMgmt.setVariable("parameter", parameterOld);
 		return returnObjList;
 	}
 
@@ -25,6 +25,7 @@ import com.founder.fix.fixflow.core.exception.FixFlowDbException;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.factory.ProcessObjectFactory;
 import com.founder.fix.fixflow.core.impl.Page;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
 import com.founder.fix.fixflow.core.impl.ProcessDefinitionQueryImpl;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.impl.persistence.definition.DeploymentEntity;
@@ -135,6 +136,17 @@ public class PersistentSession {
 			return resourcePersistence.selectResourceByDeploymentIdAndResourceName(deploymentId,resourceName);
 		}
 		
+		if (statement.equals("selectArchiveCheckpointById")) {
+			HistoryPersistence historyPersistence = ProcessObjectFactory.FACTORYINSTANCE.createHistoryPersistence(connection);
+			return historyPersistence.selectArchiveCheckpointById((String) parameter);
+		}
+		
+		if (statement.equals("selectResourceContentByDeploymentIdAndResourceName")) {
+			ResourcePersistence resourcePersistence = ProcessObjectFactory.FACTORYINSTANCE.createResourcePersistence(connection);
+			Map<String, String> strmap = (Map<String, String>) parameter;
+			return resourcePersistence.selectResourceContentByDeploymentIdAndResourceName(strmap.get("deploymentId"), strmap.get("resourceName"));
+		}
+		
 		if (statement.equals("selectProcessDefinitionByDeploymentAndKey")) {
 			ProcessDefinitionPersistence processDefinitionPersistence = ProcessObjectFactory.FACTORYINSTANCE.createProcessDefinitionPersistence(connection);
 			
@@ -174,6 +186,10 @@ public class PersistentSession {
 			ProcessDefinitionBehavior processDefinition = processDefinitionPersistence.selectLatestProcessDefinitionByKey(parameter.toString());
 			return processDefinition;
 		}
+		if (statement.equals("selectLatestProcessDefinitionVersionByKey")) {
+			ProcessDefinitionPersistence processDefinitionPersistence = ProcessObjectFactory.FACTORYINSTANCE.createProcessDefinitionPersistence(connection);
+			return processDefinitionPersistence.selectLatestProcessDefinitionVersionByKey(parameter.toString());
+		}
 		if (statement.equals("selectProcessDefinitionById")) {
 			ProcessDefinitionPersistence processDefinitionPersistence = ProcessObjectFactory.FACTORYINSTANCE.createProcessDefinitionPersistence(connection);
 			ProcessDefinitionBehavior processDefinition = processDefinitionPersistence.selectProcessDefinitionById(parameter.toString());
@@ -248,6 +264,19 @@ public class PersistentSession {
 			Map<String,Object> paraMap = (Map<String,Object>)parameter;
 			return historyPersistence.archive(paraMap);
 		}
+		if("insertArchiveCheckpoint".equals(execStatement)){
+			HistoryPersistence historyPersistence = ProcessObjectFactory.FACTORYINSTANCE.createHistoryPersistence(connection);
+			historyPersistence.insertArchiveCheckpoint((ArchiveCheckpoint)parameter);
+			return null;
+		}
+		if("updateArchiveProgress".equals(execStatement)){
+			HistoryPersistence historyPersistence = ProcessObjectFactory.FACTORYINSTANCE.createHistoryPersistence(connection);
+			return historyPersistence.updateArchiveProgress((ArchiveCheckpoint)parameter);
+		}
+		if("updateArchiveStatus".equals(execStatement)){
+			HistoryPersistence historyPersistence = ProcessObjectFactory.FACTORYINSTANCE.createHistoryPersistence(connection);
+			return historyPersistence.updateArchiveStatus((ArchiveCheckpoint)parameter);
+		}
 		
 		return null;
 	}
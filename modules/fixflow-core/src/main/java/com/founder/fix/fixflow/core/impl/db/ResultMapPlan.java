@@ -0,0 +1,157 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.db;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.Result;
+import com.founder.fix.bpmn2extensions.sqlmappingconfig.ResultMap;
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
+import com.founder.fix.fixflow.core.impl.util.JavaBeanUtil;
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
+
+/**
+ * 编译好的结果映射
+ * <p>
+ * 每个ResultMap只在第一次使用时加载实体类、查找字段的set方法并确定参数转换方式,
+ * 之后每行数据只需按顺序取值、转换和调用set方法。
+ */
+public class ResultMapPlan {
+
+	protected static final int TYPE_STRING = 0;
+
+	protected static final int TYPE_DATE = 1;
+
+	protected static final int TYPE_INT = 2;
+
+	protected static final int TYPE_BYTES = 3;
+
+	protected static final Map<ResultMap, ResultMapPlan> resultMapPlans = new ConcurrentHashMap<ResultMap, ResultMapPlan>();
+
+	protected final Class<?> entityClass;
+
+	protected final PropertySetter[] propertySetters;
+
+	/**
+	 * 获取结果映射的执行计划,不存在时编译并缓存
+	 * @param resultMap
+	 * @return
+	 */
+	public static ResultMapPlan getResultMapPlan(ResultMap resultMap) {
+		ResultMapPlan resultMapPlan = resultMapPlans.get(resultMap);
+		if (resultMapPlan == null) {
+			// 并发编译同一个ResultMap的结果相同,后放入的覆盖先放入的即可
+			resultMapPlan = new ResultMapPlan(resultMap);
+			resultMapPlans.put(resultMap, resultMapPlan);
+		}
+		return resultMapPlan;
+	}
+
+	/**
+	 * 重新加载映射配置时清空已编译的计划
+	 */
+	public static void clearResultMapPlans() {
+		resultMapPlans.clear();
+	}
+
+	protected ResultMapPlan(ResultMap resultMap) {
+		try {
+			this.entityClass = Class.forName(resultMap.getType());
+		} catch (ClassNotFoundException e) {
+			throw new FixFlowDbException("resultMap: " + resultMap.getId() + " 的类型 " + resultMap.getType() + " 未找到!", e);
+		}
+		List<PropertySetter> setters = new ArrayList<PropertySetter>();
+		for (Result result : resultMap.getResult()) {
+			Method method = JavaBeanUtil.getSetStringMethod(entityClass, result.getProperty(), result.getJdbcType());
+			if (method == null) {
+				// 没有set方法的字段作为扩展字段处理
+				continue;
+			}
+			setters.add(new PropertySetter(result.getColumn(), method));
+		}
+		this.propertySetters = setters.toArray(new PropertySetter[setters.size()]);
+	}
+
+	/**
+	 * 将一行数据设置到实体上,已经设置的字段从行数据中移除,剩下的字段由调用方作为扩展字段处理
+	 * @param entity 实体
+	 * @param entityMap 行数据
+	 * @throws Exception set方法调用失败
+	 */
+	public void apply(Object entity, Map<String, Object> entityMap) throws Exception {
+		for (PropertySetter propertySetter : propertySetters) {
+			Object dataObj = entityMap.get(propertySetter.column);
+			if (dataObj == null) {
+				continue;
+			}
+			propertySetter.set(entity, dataObj);
+			entityMap.remove(propertySetter.column);
+		}
+	}
+
+	public Class<?> getEntityClass() {
+		return entityClass;
+	}
+
+	protected static class PropertySetter {
+
+		protected final String column;
+
+		protected final Method method;
+
+		protected final int type;
+
+		protected PropertySetter(String column, Method method) {
+			this.column = column;
+			this.method = method;
+			Class<?> parameterType = method.getParameterTypes()[0];
+			if (parameterType.equals(Date.class)) {
+				this.type = TYPE_DATE;
+			} else if (parameterType.equals(int.class)) {
+				this.type = TYPE_INT;
+			} else if (parameterType.equals(byte[].class)) {
+				this.type = TYPE_BYTES;
+			} else {
+				this.type = TYPE_STRING;
+			}
+		}
+
+		protected void set(Object entity, Object dataObj) throws Exception {
+			switch (type) {
+			case TYPE_DATE:
+				method.invoke(entity, StringUtil.getDate(dataObj));
+				break;
+			case TYPE_INT:
+				method.invoke(entity, StringUtil.getInt(dataObj));
+				break;
+			case TYPE_BYTES:
+				method.invoke(entity, (Object) dataObj);
+				break;
+			default:
+				method.invoke(entity, StringUtil.getString(dataObj));
+				break;
+			}
+		}
+	}
+
+}
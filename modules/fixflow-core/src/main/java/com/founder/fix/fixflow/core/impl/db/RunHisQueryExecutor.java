@@ -0,0 +1,222 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.db;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
+import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.impl.AbstractQuery;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.KeysetPage;
+import com.founder.fix.fixflow.core.impl.Page;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
+
+/**
+ * 运行表和归档表(RUN_HIS)的分开查询
+ * <p>
+ * 不再把运行表和归档表union all成一个子查询后再过滤、排序和分页,
+ * 而是把同样的查询条件分别在运行表和归档表上执行,每边只取到当前页结束行为止的数据,
+ * 再在内存中按排序语句归并,截取当前页。这样数据库可以在归档表上使用索引和分页。
+ * <p>
+ * 归并时按数据库方言的规则比较:空值在升序时排在最前(MySQL、SQL Server)还是最后(Oracle、DB2),
+ * 字符串按数据库默认的排序规则比较,见{@link AbstractPagination#isNullsFirst()}和{@link AbstractPagination#compareString}。
+ * 游标分页的排序语句显式把空值按最大值排序,归并时也按最大值比较。
+ * 
+ * @author kenshin
+ */
+public abstract class RunHisQueryExecutor {
+
+	/**
+	 * 在一边的表上执行查询
+	 * @param queryLocation RUN或HIS
+	 * @param page 这一边的分页,为null时不分页
+	 * @return 查询结果,已按排序语句排序
+	 */
+	protected abstract List<Map<String, Object>> executeQuery(QueryLocation queryLocation, Page page);
+
+	/**
+	 * 分别查询运行表和归档表并归并结果
+	 * @param orderBy 查询的排序语句,例如 T.CREATE_TIME desc, T.NAME asc,为null时运行表数据在前
+	 * @param page 分页,为null时不分页
+	 * @return 当前页的数据
+	 */
+	public List<Map<String, Object>> execute(String orderBy, Page page) {
+		Page runPage = null;
+		Page hisPage = null;
+		String mergeOrderBy = orderBy;
+		Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
+		boolean nullsFirst = AbstractPagination.nullsFirst(pagination);
+		if (page instanceof KeysetPage) {
+			// 游标条件对两边都适用,两边各取一页加一行
+			runPage = page;
+			hisPage = page;
+			mergeOrderBy = ((KeysetPage) page).getColumnOrderBy();
+			nullsFirst = false;
+		} else if (page != null) {
+			runPage = new Page(1, page.getMaxResults(), page.isTotalRequired());
+			hisPage = new Page(1, page.getMaxResults(), page.isTotalRequired());
+		}
+
+		List<Map<String, Object>> runRows = executeQuery(QueryLocation.RUN, runPage);
+		List<Map<String, Object>> hisRows = executeQuery(QueryLocation.HIS, hisPage);
+		List<Map<String, Object>> rows = merge(runRows, hisRows, new RowComparator(mergeOrderBy, nullsFirst, pagination));
+
+		if (page instanceof KeysetPage) {
+			if (rows.size() > page.getMaxResults()) {
+				rows = new ArrayList<Map<String, Object>>(rows.subList(0, page.getMaxResults()));
+			}
+			((KeysetPage) page).readLastValues(rows);
+		} else if (page != null) {
+			if (page.isTotalRequired() && runPage.getTotal() >= 0 && hisPage.getTotal() >= 0) {
+				page.setTotal(runPage.getTotal() + hisPage.getTotal());
+			}
+			int fromIndex = Math.max(page.getFirstResult() - 1, 0);
+			int toIndex = Math.min(page.getMaxResults(), rows.size());
+			if (fromIndex >= toIndex) {
+				rows = new ArrayList<Map<String, Object>>();
+			} else {
+				rows = new ArrayList<Map<String, Object>>(rows.subList(fromIndex, toIndex));
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 归并两个已排序的结果
+	 */
+	protected List<Map<String, Object>> merge(List<Map<String, Object>> runRows, List<Map<String, Object>> hisRows, RowComparator comparator) {
+		if (runRows == null) {
+			runRows = new ArrayList<Map<String, Object>>();
+		}
+		if (hisRows == null) {
+			hisRows = new ArrayList<Map<String, Object>>();
+		}
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(runRows.size() + hisRows.size());
+		if (comparator.isEmpty()) {
+			rows.addAll(runRows);
+			rows.addAll(hisRows);
+			return rows;
+		}
+		int i = 0;
+		int j = 0;
+		while (i < runRows.size() && j < hisRows.size()) {
+			if (comparator.compare(hisRows.get(j), runRows.get(i)) < 0) {
+				rows.add(hisRows.get(j++));
+			} else {
+				rows.add(runRows.get(i++));
+			}
+		}
+		rows.addAll(runRows.subList(i, runRows.size()));
+		rows.addAll(hisRows.subList(j, hisRows.size()));
+		return rows;
+	}
+
+	/**
+	 * 按排序语句比较两行数据,空值和字符串的顺序与数据库一致
+	 */
+	protected static class RowComparator implements Comparator<Map<String, Object>> {
+
+		protected List<String> columns = new ArrayList<String>();
+
+		protected List<Boolean> descendings = new ArrayList<Boolean>();
+
+		/** 升序时空值排在最前 */
+		protected boolean nullsFirst;
+
+		/** 数据库方言,用来比较字符串 */
+		protected Pagination pagination;
+
+		/**
+		 * @param orderBy 排序语句,为空时不排序
+		 * @param nullsFirst 升序时空值是否排在最前
+		 * @param pagination 数据库方言
+		 */
+		public RowComparator(String orderBy, boolean nullsFirst, Pagination pagination) {
+			this.nullsFirst = nullsFirst;
+			this.pagination = pagination;
+			if (orderBy == null) {
+				return;
+			}
+			for (String orderByObj : orderBy.split(",")) {
+				String[] parts = orderByObj.trim().split("\\s+");
+				if (parts[0].length() == 0) {
+					continue;
+				}
+				columns.add(parts[0].substring(parts[0].indexOf(".") + 1));
+				descendings.add(parts.length > 1 && parts[1].equalsIgnoreCase(AbstractQuery.SORTORDER_DESC));
+			}
+		}
+
+		public boolean isEmpty() {
+			return columns.isEmpty();
+		}
+
+		public int compare(Map<String, Object> row1, Map<String, Object> row2) {
+			for (int i = 0; i < columns.size(); i++) {
+				int result = compareValue(getValue(row1, columns.get(i)), getValue(row2, columns.get(i)));
+				if (result != 0) {
+					return descendings.get(i) ? -result : result;
+				}
+			}
+			return 0;
+		}
+
+		private Object getValue(Map<String, Object> row, String column) {
+			Object value = row.get(column);
+			if (value == null) {
+				value = row.get(column.toUpperCase());
+			}
+			if (value == null) {
+				value = row.get(column.toLowerCase());
+			}
+			return value;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private int compareValue(Object value1, Object value2) {
+			if (value1 == null || value2 == null) {
+				if (value1 == value2) {
+					return 0;
+				}
+				int nullResult = nullsFirst ? -1 : 1;
+				return value1 == null ? nullResult : -nullResult;
+			}
+			if (value1 instanceof String && value2 instanceof String) {
+				return AbstractPagination.stringOrder(pagination, (String) value1, (String) value2);
+			}
+			if (value1 instanceof Number && value2 instanceof Number) {
+				return new BigDecimal(value1.toString()).compareTo(new BigDecimal(value2.toString()));
+			}
+			if (value1 instanceof Date && value2 instanceof Date) {
+				long time1 = ((Date) value1).getTime();
+				long time2 = ((Date) value2).getTime();
+				return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+			}
+			if (value1 instanceof Comparable && value1.getClass().isInstance(value2)) {
+				return ((Comparable) value1).compareTo(value2);
+			}
+			return value1.toString().compareTo(value2.toString());
+		}
+	}
+}
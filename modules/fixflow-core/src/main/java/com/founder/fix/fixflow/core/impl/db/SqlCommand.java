@@ -17,12 +17,14 @@
  */
 package com.founder.fix.fixflow.core.impl.db;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,6 +35,9 @@ import java.util.Map;
 import java.util.Set;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.db.StatementCache.ResultColumn;
+import com.founder.fix.fixflow.core.impl.interceptor.CommandContext;
 import com.founder.fix.fixflow.core.impl.log.LogFactory;
 
 public class SqlCommand {
@@ -67,13 +72,12 @@ public class SqlCommand {
 		PreparedStatement pstmt=null;
 		ResultSet rs=null;
 		try {
-			pstmt = conn.prepareStatement(sql);
+			pstmt = prepareStatement(sql);
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql); 
 			debugLog.debug("参数: " +data); 
 			if (null != data && data.size() > 0) {
 				for (int i = 0; i < data.size(); i++) {
-					data.set(i, transformSqlType(data.get(i)));
-					pstmt.setObject(i + 1, data.get(i));
+					setParameter(pstmt, i + 1, data.get(i));
 				}
 			}
 			rs = pstmt.executeQuery();
@@ -83,17 +87,12 @@ public class SqlCommand {
 
 			}
 		} catch (SQLException e) {
+			removeStatement(sql);
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-				if(rs != null){
-				rs.close();}
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, rs);
 		}
 		return resultStr;
 	}
@@ -122,57 +121,27 @@ public class SqlCommand {
 		ResultSet rs = null;
 		PreparedStatement pstmt=null;
 		try {
-			pstmt = conn.prepareStatement(sql);
+			pstmt = prepareStatement(sql);
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql); 
 			debugLog.debug("参数: " +sql); 
 			if (null != data && data.length > 0) {
 				for (int i = 0; i < data.length; i++) {
-					data[i] = transformSqlType(data[i]);
-
-					if (data[i] == null) {
-						pstmt.setNull(i + 1, Types.VARCHAR);
-					} else {
-						pstmt.setObject(i + 1, data[i]);
-					}
-
-					pstmt.setObject(i + 1, data[i]);
+					setParameter(pstmt, i + 1, data[i]);
 				}
 			}
 			rs = pstmt.executeQuery();
-			ResultSetMetaData rsmd = rs.getMetaData();
 			
 			if (rs.next()) {
-
-				for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-					if (rsmd.getColumnType(i) == 93) {
-						if (rs.getTimestamp(i) != null) {
-							resultMap.put(rsmd.getColumnLabel(i), new Date(rs.getTimestamp(i).getTime()));
-						}
-
-					} else {
-						if (rsmd.getColumnType(i) == 2004) {
-							resultMap.put(rsmd.getColumnLabel(i), rs.getBytes(i));
-
-						} else {
-							resultMap.put(rsmd.getColumnLabel(i), rs.getObject(i));
-						}
-				
-					}
-				}
+				resultMap = readRow(rs, getResultColumns(sql, rs));
 			}
 		} catch (SQLException e) {
+			removeStatement(sql);
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		
 		finally
 		{
-			try {
-				pstmt.close();
-				if(rs != null){
-				rs.close();}
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, rs);
 		}
 		return resultMap;
 	}
@@ -216,57 +185,26 @@ public class SqlCommand {
 		ResultSet rs = null;
 		PreparedStatement pstmt=null;
 		try {
-			pstmt = conn.prepareStatement(sql);
+			pstmt = prepareStatement(sql);
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql);
 			debugLog.debug("参数："+data);
 			if (null != data && data.size() > 0) {
 				for (int i = 0; i < data.size(); i++) {
-
-					Object returnObj = transformSqlType(data.get(i));
-					if (returnObj == null) {
-						pstmt.setNull(i + 1, Types.VARCHAR);
-					} else {
-						data.set(i, returnObj);
-						pstmt.setObject(i + 1, data.get(i));
-					}
-
+					setParameter(pstmt, i + 1, data.get(i));
 				}
 			}
 			rs = pstmt.executeQuery();
-			ResultSetMetaData rsmd = rs.getMetaData();
+			ResultColumn[] resultColumns = getResultColumns(sql, rs);
 			while (rs.next()) {
-				Map<String, Object> row = new HashMap<String, Object>();
-				for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-					if (rsmd.getColumnType(i) == 93) {
-						if (rs.getTimestamp(i) != null) {
-							row.put(rsmd.getColumnLabel(i), new Date(rs.getTimestamp(i).getTime()));
-						}
-
-					} else {
-						if (rsmd.getColumnType(i) == 2004) {
-							row.put(rsmd.getColumnLabel(i), rs.getBytes(i));
-
-						} else {
-							row.put(rsmd.getColumnLabel(i), rs.getObject(i));
-						}
-					}
-
-				}
-				resultList.add(row);
+				resultList.add(readRow(rs, resultColumns));
 			}
 		} catch (SQLException e) {
+			removeStatement(sql);
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-				if(rs != null){
-					rs.close();
-				}
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, rs);
 		}
 		return resultList;
 	}
@@ -282,6 +220,63 @@ public class SqlCommand {
 		return queryForList(sql, null);
 	}
 
+	/**
+	 * 以流的方式读取第一行结果的二进制字段,字段内容不会整体读入内存
+	 * 
+	 * @param sql
+	 * @param data
+	 * @param columnName 二进制字段名
+	 * @param handler 流处理器,在结果集关闭前调用
+	 * @return 处理器的返回值,没有结果或字段为空时返回null
+	 * @throws FixFlowException
+	 */
+	public <T> T queryForBinaryStream(String sql, List<Object> data, String columnName, BinaryStreamHandler<T> handler) throws FixFlowException {
+		ResultSet rs = null;
+		PreparedStatement pstmt=null;
+		try {
+			pstmt = prepareStatement(sql);
+			debugLog.debug("FixFlow引擎数据持久化语句: " +sql);
+			debugLog.debug("参数："+data);
+			if (null != data && data.size() > 0) {
+				for (int i = 0; i < data.size(); i++) {
+					setParameter(pstmt, i + 1, data.get(i));
+				}
+			}
+			rs = pstmt.executeQuery();
+			if (!rs.next()) {
+				return null;
+			}
+			InputStream in = rs.getBinaryStream(columnName);
+			if (in == null) {
+				return null;
+			}
+			try {
+				return handler.handle(in);
+			} finally {
+				try {
+					in.close();
+				} catch (IOException e) {
+					debugLog.debug("关闭二进制字段流失败: " + e.getMessage());
+				}
+			}
+		} catch (SQLException e) {
+			removeStatement(sql);
+			throw new FixFlowException("查询错误：" + e.getMessage(), e);
+		}
+		finally
+		{
+			closeStatement(pstmt, rs);
+		}
+	}
+
+	/**
+	 * 二进制字段流处理器
+	 */
+	public interface BinaryStreamHandler<T> {
+
+		T handle(InputStream in);
+	}
+
 	/**
 	 * 执行查询
 	 * 
@@ -289,8 +284,10 @@ public class SqlCommand {
 	 * @throws DAOException
 	 */
 	public void execute(String sql) throws FixFlowException {
+		clearEntityCache();
 		Statement stmt=null;
 		try {
+			flushBatch();
 			stmt = conn.createStatement();
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql);
 			stmt.execute(sql);
@@ -317,35 +314,25 @@ public class SqlCommand {
 	 * @throws DAOException
 	 */
 	public void execute(String sql, Object[] data) throws FixFlowException {
+		clearEntityCache();
 		PreparedStatement pstmt=null;
 		try {
-			pstmt = conn.prepareStatement(sql);
+			pstmt = prepareStatement(sql);
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql); 
 			debugLog.debug("参数: "+ Arrays.asList(data));
 			if (null != data && data.length > 0) {
 				for (int i = 0; i < data.length; i++) {
-					data[i] = transformSqlType(data[i]);
-
-					Object returnObj = data[i];
-					if (returnObj == null) {
-						pstmt.setNull(i + 1, Types.VARCHAR);
-					} else {
-						pstmt.setObject(i + 1, returnObj);
-					}
-
+					setParameter(pstmt, i + 1, data[i]);
 				}
 			}
 			pstmt.execute();
 		} catch (SQLException e) {
+			removeStatement(sql);
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, null);
 		}
 		
 	}
@@ -360,6 +347,7 @@ public class SqlCommand {
 		ResultSet result = null;
 		Statement stmt=null;
 		try {
+			flushBatch();
 			stmt = conn.createStatement();
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql); 
 			result = stmt.executeQuery(sql);
@@ -391,6 +379,7 @@ public class SqlCommand {
 		ResultSet result = null;
 		PreparedStatement pstmt=null;
 		try {
+			flushBatch();
 			pstmt = conn.prepareStatement(sql);
 			debugLog.debug("FixFlow引擎数据持久化语句: " +sql); 
 			debugLog.debug("参数: "+ Arrays.asList(data));
@@ -429,12 +418,12 @@ public class SqlCommand {
 	 * 
 	 * @param tableName 要插入的数据表的名称
 	 * @param data 数据对象
-	 * @return 影响行数
+	 * @return 影响行数,批量执行时返回Statement.SUCCESS_NO_INFO
 	 * @throws DAOException
 	 */
 	public Integer insert(String tableName, Map<String, Object> data) throws FixFlowException {
 		
-		
+		clearEntityCache();
 		if (data.size() < 1) {
 			throw new FixFlowException("插入错误: 无效的数据输入");
 		}
@@ -464,31 +453,28 @@ public class SqlCommand {
 		try {
 			debugLog.debug("FixFlow引擎数据持久化语句: " +querySql.toString());
 			debugLog.debug("参数: "+ data);
-			pstmt = conn.prepareStatement(querySql.toString());
+			StatementCache statementCache = getStatementCache();
+			boolean batching = statementCache != null && statementCache.isBatching();
+			pstmt = batching ? statementCache.getBatchStatement(querySql.toString()) : prepareStatement(querySql.toString());
 			
 			Object[] keyArray = keys.toArray();
 			for (int i = 0; i < keyArray.length; i++) {
-
-				Object returnObj = transformSqlType(data.get((String) keyArray[i]));
-				if (returnObj == null) {
-					pstmt.setNull(i + 1, Types.VARCHAR);
-				} else {
-					pstmt.setObject(i + 1, returnObj);
-				}
-
+				setParameter(pstmt, i + 1, data.get((String) keyArray[i]));
 			}
 			 
-			affectRow = pstmt.executeUpdate();
+			if (batching) {
+				statementCache.addBatch();
+				affectRow = Statement.SUCCESS_NO_INFO;
+			} else {
+				affectRow = pstmt.executeUpdate();
+			}
 		} catch (SQLException e) {
+			removeStatement(querySql.toString());
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, null);
 		}
 		
 		return affectRow;
@@ -500,10 +486,11 @@ public class SqlCommand {
 	 * @param tableName 要更新的数据表
 	 * @param data 要更新的数据对象
 	 * @param sql Where查询条件子句
-	 * @return 影响行数
+	 * @return 影响行数,批量执行时返回Statement.SUCCESS_NO_INFO
 	 * @throws DAOException
 	 */
 	public Integer update(String tableName, Map<String, Object> data, String sql, Object[] sdata) throws FixFlowException {
+		clearEntityCache();
 		if (data.size() < 1) {
 			throw new FixFlowException("插入错误: 无效的数据输入");
 		}
@@ -529,42 +516,32 @@ public class SqlCommand {
 			debugLog.debug("FixFlow引擎数据持久化语句: " +querySql.toString());
 			debugLog.debug("参数data: "+ data);
 			debugLog.debug("参数sdata: "+ Arrays.asList(sdata));
-			pstmt = conn.prepareStatement(querySql.toString());
+			StatementCache statementCache = getStatementCache();
+			boolean batching = statementCache != null && statementCache.isBatching();
+			pstmt = batching ? statementCache.getBatchStatement(querySql.toString()) : prepareStatement(querySql.toString());
 			Object[] keyArray = keys.toArray();
 			int j = 1;
 			for (int i = 0; i < keyArray.length; i++) {
-
-				Object returnObj = transformSqlType(data.get((String) keyArray[i]));
-				if (returnObj == null) {
-					pstmt.setNull(j++, Types.VARCHAR);
-				} else {
-					pstmt.setObject(j++, returnObj);
-				}
-
+				setParameter(pstmt, j++, data.get((String) keyArray[i]));
 			}
 			if (null != sdata && sdata.length > 0) {
 				for (int i = 0; i < sdata.length; i++) {
-
-					Object returnObj = transformSqlType(sdata[i]);
-					if (returnObj == null) {
-						pstmt.setNull(j++, Types.VARCHAR);
-					} else {
-						pstmt.setObject(j++, returnObj);
-					}
-
+					setParameter(pstmt, j++, sdata[i]);
 				}
 			}
-			affectRow = pstmt.executeUpdate();
+			if (batching) {
+				statementCache.addBatch();
+				affectRow = Statement.SUCCESS_NO_INFO;
+			} else {
+				affectRow = pstmt.executeUpdate();
+			}
 		} catch (SQLException e) {
+			removeStatement(querySql.toString());
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, null);
 		}
 		return affectRow;
 	}
@@ -603,6 +580,7 @@ public class SqlCommand {
 	 * @throws DAOException
 	 */
 	public Integer delete(String tableName, String sql, Object[] data) throws FixFlowException {
+		clearEntityCache();
 		StringBuffer querySql = new StringBuffer("DELETE FROM ");
 		querySql.append(tableName);
 		if (null != sql) {
@@ -614,30 +592,20 @@ public class SqlCommand {
 		try {
 			debugLog.debug("FixFlow引擎数据持久化语句: " +querySql.toString());
 			debugLog.debug("参数: "+ Arrays.asList(data));
-			pstmt = conn.prepareStatement(querySql.toString());
+			pstmt = prepareStatement(querySql.toString());
 			if (data != null) {
 				for (int i = 0; i < data.length; i++) {
-
-					Object returnObj = transformSqlType(data[i]);
-					if (returnObj == null) {
-						pstmt.setNull(i + 1, Types.VARCHAR);
-					} else {
-						pstmt.setObject(i + 1, returnObj);
-					}
-
+					setParameter(pstmt, i + 1, data[i]);
 				}
 			}
 			affectRow = pstmt.executeUpdate();
 		} catch (SQLException e) {
+			removeStatement(querySql.toString());
 			throw new FixFlowException("查询错误：" + e.getMessage(), e);
 		}
 		finally
 		{
-			try {
-				pstmt.close();
-			} catch (SQLException e) {
-				throw new FixFlowException("关闭游标失败",e);
-			}
+			closeStatement(pstmt, null);
 		}
 		return affectRow;
 	}
@@ -686,6 +654,7 @@ public class SqlCommand {
 	 */
 	public void commit() throws FixFlowException {
 		try {
+			flushBatch();
 			conn.commit();
 		} catch (SQLException e) {
 			throw new FixFlowException("事务错误：" + e.getMessage(), e);
@@ -698,13 +667,216 @@ public class SqlCommand {
 	 * @throws DAOException
 	 */
 	public void rollback() throws FixFlowException {
+		StatementCache statementCache = getStatementCache();
 		try {
+			if (statementCache != null) {
+				statementCache.clearBatch();
+			}
 			conn.rollback();
 		} catch (SQLException e) {
 			throw new FixFlowException("事务错误：" + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * 开始批量执行
+	 * <p>
+	 * 之后连续执行的相同insert、update语句通过addBatch累积,执行其它语句或endBatch时统一发送。
+	 * 只对引擎管理的连接生效,驱动不支持批量执行时仍逐条执行。
+	 */
+	public void beginBatch() {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			statementCache.beginBatch();
+		}
+	}
+
+	/**
+	 * 结束批量执行并发送剩余语句
+	 * 
+	 * @throws FixFlowException
+	 */
+	public void endBatch() throws FixFlowException {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			try {
+				statementCache.endBatch();
+			} catch (SQLException e) {
+				throw new FixFlowException("批量执行错误：" + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * 出错时结束批量执行,丢弃还没有发送的语句
+	 */
+	public void abortBatch() {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			statementCache.abortBatch();
+		}
+	}
+
+	/**
+	 * 发送批量执行中还没有发送的语句
+	 * 
+	 * @throws FixFlowException
+	 */
+	public void flush() throws FixFlowException {
+		try {
+			flushBatch();
+		} catch (SQLException e) {
+			throw new FixFlowException("批量执行错误：" + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 写操作会让当前命令已加载的实体过期。规则脚本、持久化类直接使用SqlCommand写入时同样生效,
+	 * 嵌套命令和外层命令共用实体缓存,内层的写入也会清空外层的缓存
+	 */
+	protected void clearEntityCache() {
+		CommandContext commandContext = Context.getCommandContext();
+		if (commandContext != null) {
+			commandContext.getEntityCache().clear();
+		}
+	}
+
+	/**
+	 * 获取连接上的语句缓存,每次使用时查找,语句缓存随连接释放移除后不再向其中预编译语句。
+	 * 引擎管理的连接上才有语句缓存,外部传入的连接每次执行后关闭语句
+	 * 
+	 * @return 没有语句缓存时返回null
+	 */
+	protected StatementCache getStatementCache() {
+		return Context.getStatementCache(conn);
+	}
+
+	protected boolean isBatching() {
+		StatementCache statementCache = getStatementCache();
+		return statementCache != null && statementCache.isBatching();
+	}
+
+	protected void flushBatch() throws SQLException {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			statementCache.flushBatch();
+		}
+	}
+
+	/**
+	 * 获取预编译语句,引擎管理的连接从语句缓存中获取
+	 * 
+	 * @param sql
+	 * @return
+	 * @throws SQLException
+	 */
+	protected PreparedStatement prepareStatement(String sql) throws SQLException {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			// 先发送累积的批量语句,保证执行顺序并能查询到刚写入的数据
+			statementCache.flushBatch();
+			return statementCache.prepareStatement(sql);
+		}
+		return conn.prepareStatement(sql);
+	}
+
+	/**
+	 * 关闭结果集,缓存中的语句保留给下次使用,没有缓存的语句直接关闭
+	 * 
+	 * @param pstmt
+	 * @param rs
+	 */
+	protected void closeStatement(Statement pstmt, ResultSet rs) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+			if (pstmt != null && getStatementCache() == null) {
+				pstmt.close();
+			}
+		} catch (SQLException e) {
+			throw new FixFlowException("关闭游标失败", e);
+		}
+	}
+
+	/**
+	 * 语句执行出错后从缓存中移除,避免复用状态异常的语句
+	 * 
+	 * @param sql
+	 */
+	protected void removeStatement(String sql) {
+		StatementCache statementCache = getStatementCache();
+		if (statementCache != null) {
+			statementCache.removeStatement(sql);
+		}
+	}
+
+	/**
+	 * 设置语句参数,不修改调用方传入的参数集合
+	 * 
+	 * @param pstmt
+	 * @param index 参数位置,从1开始
+	 * @param value 参数值
+	 * @throws SQLException
+	 */
+	protected void setParameter(PreparedStatement pstmt, int index, Object value) throws SQLException {
+		Object sqlValue = transformSqlType(value);
+		if (sqlValue == null) {
+			pstmt.setNull(index, Types.VARCHAR);
+		} else {
+			pstmt.setObject(index, sqlValue);
+		}
+	}
+
+	/**
+	 * 获取结果集的列描述,同一条语句只读取一次元数据
+	 * 
+	 * @param sql
+	 * @param rs
+	 * @return
+	 * @throws SQLException
+	 */
+	protected ResultColumn[] getResultColumns(String sql, ResultSet rs) throws SQLException {
+		StatementCache statementCache = getStatementCache();
+		ResultColumn[] resultColumns = null;
+		if (statementCache != null) {
+			resultColumns = statementCache.getResultColumns(sql);
+		}
+		if (resultColumns == null) {
+			resultColumns = StatementCache.readResultColumns(rs.getMetaData());
+			if (statementCache != null) {
+				statementCache.putResultColumns(sql, resultColumns);
+			}
+		}
+		return resultColumns;
+	}
+
+	/**
+	 * 将结果集当前行转换成Map
+	 * 
+	 * @param rs
+	 * @param resultColumns
+	 * @return
+	 * @throws SQLException
+	 */
+	protected Map<String, Object> readRow(ResultSet rs, ResultColumn[] resultColumns) throws SQLException {
+		Map<String, Object> row = new HashMap<String, Object>(resultColumns.length * 4 / 3 + 1);
+		for (ResultColumn resultColumn : resultColumns) {
+			int i = resultColumn.getIndex();
+			if (resultColumn.getType() == Types.TIMESTAMP) {
+				Timestamp timestamp = rs.getTimestamp(i);
+				if (timestamp != null) {
+					row.put(resultColumn.getLabel(), new Date(timestamp.getTime()));
+				}
+			} else if (resultColumn.getType() == Types.BLOB) {
+				row.put(resultColumn.getLabel(), rs.getBytes(i));
+			} else {
+				row.put(resultColumn.getLabel(), rs.getObject(i));
+			}
+		}
+		return row;
+	}
+
 	/**
 	 * 将Java类型转换为数据库能接受的Sql类型
 	 * 
@@ -0,0 +1,371 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.log.LogFactory;
+
+/**
+ * 单个数据库连接上的预编译语句缓存
+ * <p>
+ * 以SQL文本为键缓存PreparedStatement以及结果集的列描述,同一连接上重复执行的引擎语句只需要预编译一次。
+ * 缓存只在同一线程内使用,由Context在连接交给引擎时创建,在contextClose时关闭。
+ * <p>
+ * 同时维护连接上的批量执行状态:beginBatch之后连续的相同SQL语句通过addBatch累积,
+ * SQL文本变化、执行其它语句、累积数量达到上限或endBatch时统一发送。
+ */
+public class StatementCache {
+
+	private static com.founder.fix.fixflow.core.impl.log.DebugLog debugLog = LogFactory.getDebugLog(StatementCache.class);
+
+	/**
+	 * 每个连接默认最多缓存的语句数量
+	 */
+	public static final int DEFAULT_MAX_SIZE = 64;
+
+	/**
+	 * 每批默认最多累积的语句数量
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	protected Connection connection;
+
+	protected int maxSize;
+
+	protected Map<String, CachedStatement> statements;
+
+	protected long prepareCount;
+
+	protected long hitCount;
+
+	protected int batchSize = DEFAULT_BATCH_SIZE;
+
+	protected int batchDepth;
+
+	protected Boolean batchSupported;
+
+	protected String batchSql;
+
+	protected PreparedStatement batchStatement;
+
+	protected int batchCount;
+
+	protected long batchExecuteCount;
+
+	protected long batchStatementCount;
+
+	public StatementCache(Connection connection) {
+		this(connection, DEFAULT_MAX_SIZE);
+	}
+
+	public StatementCache(Connection connection, int maxSize) {
+		this.connection = connection;
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > StatementCache.this.maxSize) {
+					closeQuietly(eldest.getValue().statement);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 获取SQL对应的预编译语句,缓存中没有时创建
+	 * @param sql SQL文本
+	 * @return 已清空参数的预编译语句
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		CachedStatement cachedStatement = statements.get(sql);
+		if (cachedStatement != null) {
+			hitCount++;
+			cachedStatement.statement.clearParameters();
+			return cachedStatement.statement;
+		}
+		PreparedStatement statement = connection.prepareStatement(sql);
+		prepareCount++;
+		statements.put(sql, new CachedStatement(statement));
+		return statement;
+	}
+
+	/**
+	 * 获取缓存的结果集列描述
+	 * @param sql SQL文本
+	 * @return 没有缓存时返回null
+	 */
+	public ResultColumn[] getResultColumns(String sql) {
+		CachedStatement cachedStatement = statements.get(sql);
+		return cachedStatement == null ? null : cachedStatement.resultColumns;
+	}
+
+	public void putResultColumns(String sql, ResultColumn[] resultColumns) {
+		CachedStatement cachedStatement = statements.get(sql);
+		if (cachedStatement != null) {
+			cachedStatement.resultColumns = resultColumns;
+		}
+	}
+
+	/**
+	 * 移除并关闭一条语句,执行出错后调用,下次使用时重新预编译
+	 * @param sql SQL文本
+	 */
+	public void removeStatement(String sql) {
+		CachedStatement cachedStatement = statements.remove(sql);
+		if (cachedStatement != null) {
+			closeQuietly(cachedStatement.statement);
+		}
+	}
+
+	/**
+	 * 开始批量执行,可以嵌套,最外层endBatch时发送剩余语句
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * 结束批量执行
+	 * @throws SQLException 发送剩余语句出错
+	 */
+	public void endBatch() throws SQLException {
+		if (batchDepth > 0 && --batchDepth == 0) {
+			flushBatch();
+		}
+	}
+
+	/**
+	 * 出错时结束批量执行,丢弃还没有发送的语句
+	 */
+	public void abortBatch() {
+		if (batchDepth > 0 && --batchDepth == 0) {
+			clearBatch();
+		}
+	}
+
+	/**
+	 * 当前是否处于批量执行状态,驱动不支持批量执行时总是返回false
+	 * @return
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0 && isBatchSupported();
+	}
+
+	public boolean hasPendingBatch() {
+		return batchStatement != null;
+	}
+
+	/**
+	 * 获取用于累积批量语句的预编译语句,SQL文本和正在累积的不同时先发送已累积的语句
+	 * @param sql SQL文本
+	 * @return
+	 * @throws SQLException
+	 */
+	public PreparedStatement getBatchStatement(String sql) throws SQLException {
+		if (batchStatement != null && !batchSql.equals(sql)) {
+			flushBatch();
+		}
+		if (batchStatement == null) {
+			batchStatement = prepareStatement(sql);
+			batchSql = sql;
+		}
+		return batchStatement;
+	}
+
+	/**
+	 * 当前语句参数设置完成后调用,累积到上限时发送
+	 * @throws SQLException
+	 */
+	public void addBatch() throws SQLException {
+		batchStatement.addBatch();
+		batchCount++;
+		batchStatementCount++;
+		if (batchCount >= batchSize) {
+			flushBatch();
+		}
+	}
+
+	/**
+	 * 发送已累积的批量语句
+	 * @throws SQLException
+	 */
+	public void flushBatch() throws SQLException {
+		if (batchStatement == null) {
+			return;
+		}
+		PreparedStatement statement = batchStatement;
+		String sql = batchSql;
+		int count = batchCount;
+		batchStatement = null;
+		batchSql = null;
+		batchCount = 0;
+		try {
+			debugLog.debug("批量执行语句: " + sql + " ,数量: " + count);
+			statement.executeBatch();
+			batchExecuteCount++;
+		} catch (SQLException e) {
+			removeStatement(sql);
+			throw e;
+		}
+	}
+
+	protected void clearBatch() {
+		if (batchStatement != null) {
+			try {
+				batchStatement.clearBatch();
+			} catch (SQLException e) {
+				removeStatement(batchSql);
+			}
+		}
+		batchStatement = null;
+		batchSql = null;
+		batchCount = 0;
+	}
+
+	protected boolean isBatchSupported() {
+		if (batchSupported == null) {
+			try {
+				batchSupported = connection.getMetaData().supportsBatchUpdates();
+			} catch (SQLException e) {
+				batchSupported = Boolean.FALSE;
+			}
+			if (!batchSupported) {
+				debugLog.debug("数据库驱动不支持批量执行,语句将逐条执行");
+			}
+		}
+		return batchSupported;
+	}
+
+	/**
+	 * 关闭所有缓存的语句
+	 */
+	public void close() {
+		clearBatch();
+		batchDepth = 0;
+		for (CachedStatement cachedStatement : statements.values()) {
+			closeQuietly(cachedStatement.statement);
+		}
+		statements.clear();
+	}
+
+	public long getPrepareCount() {
+		return prepareCount;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public int getSize() {
+		return statements.size();
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getBatchExecuteCount() {
+		return batchExecuteCount;
+	}
+
+	public long getBatchStatementCount() {
+		return batchStatementCount;
+	}
+
+	protected void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			debugLog.debug("关闭缓存语句失败: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 读取结果集的列描述
+	 * @param resultSetMetaData 结果集元数据
+	 * @return
+	 * @throws SQLException
+	 */
+	public static ResultColumn[] readResultColumns(ResultSetMetaData resultSetMetaData) throws SQLException {
+		int columnCount = resultSetMetaData.getColumnCount();
+		List<ResultColumn> resultColumns = new ArrayList<ResultColumn>(columnCount);
+		for (int i = 1; i <= columnCount; i++) {
+			resultColumns.add(new ResultColumn(i, resultSetMetaData.getColumnLabel(i), resultSetMetaData.getColumnType(i)));
+		}
+		return resultColumns.toArray(new ResultColumn[columnCount]);
+	}
+
+	protected static class CachedStatement {
+
+		protected PreparedStatement statement;
+
+		protected ResultColumn[] resultColumns;
+
+		protected CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+		}
+	}
+
+	/**
+	 * 结果集列描述
+	 */
+	public static class ResultColumn {
+
+		protected final int index;
+
+		protected final String label;
+
+		protected final int type;
+
+		public ResultColumn(int index, String label, int type) {
+			this.index = index;
+			this.label = label;
+			this.type = type;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public int getType() {
+			return type;
+		}
+	}
+
+}
@@ -0,0 +1,601 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.db.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
+
+/**
+ * 引擎内置的有界数据库连接池
+ * <p>
+ * 连接通过代理对象借出,调用close()时回滚未提交的事务并归还到池中。
+ * 支持最小/最大连接数、获取超时、空闲连接校验和连接泄漏检测,并提供池饱和度统计。
+ */
+public class FixConnectionPool {
+
+	private static Logger log = LoggerFactory.getLogger(FixConnectionPool.class);
+
+	/**
+	 * 空闲超过这个时间的连接在借出前需要重新校验(毫秒)
+	 */
+	public static final long DEFAULT_VALIDATION_INTERVAL = 30 * 1000L;
+
+	/**
+	 * 默认连接泄漏检测阈值(毫秒)
+	 */
+	public static final long DEFAULT_LEAK_DETECTION_THRESHOLD = 5 * 60 * 1000L;
+
+	protected String poolName;
+
+	protected String driverClassName;
+
+	protected String url;
+
+	protected String username;
+
+	protected String password;
+
+	protected int minIdle = 0;
+
+	protected int maxIdle = 10;
+
+	protected int maxActive = 20;
+
+	protected long maxWait = 10000;
+
+	protected String validationQuery;
+
+	protected int validationTimeout = 5;
+
+	protected long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+
+	protected long leakDetectionThreshold = DEFAULT_LEAK_DETECTION_THRESHOLD;
+
+	protected final ReentrantLock lock = new ReentrantLock();
+
+	protected final Condition available = lock.newCondition();
+
+	protected final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+
+	protected final Set<PooledConnection> activeConnections = new HashSet<PooledConnection>();
+
+	protected int totalCount;
+
+	protected int waitingCount;
+
+	protected boolean closed;
+
+	protected boolean driverLoaded;
+
+	protected final AtomicLong acquireCount = new AtomicLong();
+
+	protected final AtomicLong waitCount = new AtomicLong();
+
+	protected final AtomicLong timeoutCount = new AtomicLong();
+
+	protected final AtomicLong createCount = new AtomicLong();
+
+	protected final AtomicLong validationFailureCount = new AtomicLong();
+
+	protected final AtomicLong leakCount = new AtomicLong();
+
+	public FixConnectionPool(String poolName, String driverClassName, String url, String username, String password) {
+		this.poolName = poolName;
+		this.driverClassName = driverClassName;
+		this.url = url;
+		this.username = username;
+		this.password = password;
+	}
+
+	/**
+	 * 从池中获取连接,没有可用连接且已达到最大连接数时最多等待maxWait毫秒
+	 * @return 连接代理,close()时归还到池中
+	 * @throws SQLException 超时或创建连接失败
+	 */
+	public Connection getConnection() throws SQLException {
+		acquireCount.incrementAndGet();
+		long deadline = System.currentTimeMillis() + maxWait;
+		checkLeaks();
+		while (true) {
+			PooledConnection pooledConnection = null;
+			boolean create = false;
+			lock.lock();
+			try {
+				if (closed) {
+					throw new SQLException("连接池 " + poolName + " 已经关闭");
+				}
+				if (!idleConnections.isEmpty()) {
+					pooledConnection = idleConnections.removeFirst();
+				} else if (totalCount < maxActive) {
+					totalCount++;
+					create = true;
+				} else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						timeoutCount.incrementAndGet();
+						throw new SQLException("从连接池 " + poolName + " 获取连接超时,等待 " + maxWait + " 毫秒,活动连接数 " + activeConnections.size());
+					}
+					waitCount.incrementAndGet();
+					waitingCount++;
+					try {
+						available.await(remaining, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("等待连接池 " + poolName + " 的连接时线程被中断");
+					} finally {
+						waitingCount--;
+					}
+					continue;
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (create) {
+				try {
+					pooledConnection = new PooledConnection(createPhysicalConnection());
+				} catch (SQLException e) {
+					discard(null);
+					throw e;
+				} catch (RuntimeException e) {
+					discard(null);
+					throw e;
+				}
+				createCount.incrementAndGet();
+			} else if (!validate(pooledConnection)) {
+				validationFailureCount.incrementAndGet();
+				discard(pooledConnection);
+				continue;
+			}
+			return lend(pooledConnection);
+		}
+	}
+
+	protected Connection lend(PooledConnection pooledConnection) {
+		pooledConnection.borrowTime = System.currentTimeMillis();
+		pooledConnection.borrowStackTrace = leakDetectionThreshold > 0 ? new Throwable("连接借出位置") : null;
+		pooledConnection.leakReported = false;
+		pooledConnection.proxy = createProxy(pooledConnection);
+		lock.lock();
+		try {
+			activeConnections.add(pooledConnection);
+		} finally {
+			lock.unlock();
+		}
+		return pooledConnection.proxy;
+	}
+
+	/**
+	 * 归还连接,回滚未提交的事务并恢复自动提交
+	 */
+	protected void release(PooledConnection pooledConnection) {
+		boolean reusable = true;
+		try {
+			Connection connection = pooledConnection.connection;
+			if (connection.isClosed()) {
+				reusable = false;
+			} else if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			log.warn("连接池 {} 归还连接时重置失败,连接将被丢弃: {}", poolName, e.getMessage());
+			reusable = false;
+		}
+		lock.lock();
+		try {
+			activeConnections.remove(pooledConnection);
+			if (reusable && !closed && idleConnections.size() < maxIdle) {
+				pooledConnection.lastUsedTime = System.currentTimeMillis();
+				idleConnections.addFirst(pooledConnection);
+				available.signal();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		discard(pooledConnection);
+		// 坏连接被丢弃后补足最小空闲连接
+		fillMinIdle();
+	}
+
+	/**
+	 * 丢弃一个连接并释放它占用的名额
+	 */
+	protected void discard(PooledConnection pooledConnection) {
+		if (pooledConnection != null) {
+			closeQuietly(pooledConnection.connection);
+		}
+		lock.lock();
+		try {
+			totalCount--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	protected boolean validate(PooledConnection pooledConnection) {
+		if (System.currentTimeMillis() - pooledConnection.lastUsedTime < validationInterval) {
+			return true;
+		}
+		Statement statement = null;
+		try {
+			if (pooledConnection.connection.isClosed()) {
+				return false;
+			}
+			if (validationQuery == null || validationQuery.length() == 0) {
+				return true;
+			}
+			statement = pooledConnection.connection.createStatement();
+			statement.setQueryTimeout(validationTimeout);
+			statement.execute(validationQuery);
+			return true;
+		} catch (SQLException e) {
+			log.warn("连接池 {} 连接校验失败: {}", poolName, e.getMessage());
+			return false;
+		} finally {
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					// 校验语句关闭失败不影响结果
+				}
+			}
+		}
+	}
+
+	protected Connection createPhysicalConnection() throws SQLException {
+		if (!driverLoaded) {
+			try {
+				Class.forName(driverClassName);
+				driverLoaded = true;
+			} catch (ClassNotFoundException e) {
+				throw new FixFlowDbException("连接池 " + poolName + " 的数据库驱动 " + driverClassName + " 未找到", e);
+			}
+		}
+		return DriverManager.getConnection(url, username, password);
+	}
+
+	/**
+	 * 借出时间超过泄漏检测阈值的连接打印借出位置,每个连接每次借出只报告一次
+	 */
+	protected void checkLeaks() {
+		if (leakDetectionThreshold <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<PooledConnection> leakedConnections = new ArrayList<PooledConnection>();
+		lock.lock();
+		try {
+			for (PooledConnection pooledConnection : activeConnections) {
+				if (!pooledConnection.leakReported && now - pooledConnection.borrowTime > leakDetectionThreshold) {
+					pooledConnection.leakReported = true;
+					leakedConnections.add(pooledConnection);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PooledConnection pooledConnection : leakedConnections) {
+			leakCount.incrementAndGet();
+			log.warn("连接池 " + poolName + " 检测到可能泄漏的连接,已借出 " + (now - pooledConnection.borrowTime) + " 毫秒", pooledConnection.borrowStackTrace);
+		}
+	}
+
+	/**
+	 * 预先创建minIdle个空闲连接
+	 */
+	public void fillMinIdle() {
+		while (true) {
+			lock.lock();
+			try {
+				if (closed || idleConnections.size() >= minIdle || totalCount >= maxActive) {
+					return;
+				}
+				totalCount++;
+			} finally {
+				lock.unlock();
+			}
+			PooledConnection pooledConnection;
+			try {
+				pooledConnection = new PooledConnection(createPhysicalConnection());
+				createCount.incrementAndGet();
+			} catch (SQLException e) {
+				discard(null);
+				log.warn("连接池 {} 预创建连接失败: {}", poolName, e.getMessage());
+				return;
+			}
+			lock.lock();
+			try {
+				idleConnections.addLast(pooledConnection);
+				available.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 关闭连接池,空闲连接立即关闭,借出的连接归还时关闭
+	 */
+	public void close() {
+		List<PooledConnection> idleToClose;
+		lock.lock();
+		try {
+			closed = true;
+			idleToClose = new ArrayList<PooledConnection>(idleConnections);
+			idleConnections.clear();
+			totalCount -= idleToClose.size();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (PooledConnection pooledConnection : idleToClose) {
+			closeQuietly(pooledConnection.connection);
+		}
+	}
+
+	protected void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.warn("连接池 {} 关闭连接失败: {}", poolName, e.getMessage());
+		}
+	}
+
+	protected Connection createProxy(PooledConnection pooledConnection) {
+		return (Connection) Proxy.newProxyInstance(FixConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class },
+				new PooledConnectionHandler(pooledConnection));
+	}
+
+	// 统计信息
+	// ///////////////////////////////////////////////////////////////////
+
+	public int getActiveCount() {
+		lock.lock();
+		try {
+			return activeConnections.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getIdleCount() {
+		lock.lock();
+		try {
+			return idleConnections.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getTotalCount() {
+		lock.lock();
+		try {
+			return totalCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 当前等待获取连接的线程数
+	 */
+	public int getWaitingCount() {
+		lock.lock();
+		try {
+			return waitingCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 池饱和度,借出连接数占最大连接数的比例
+	 */
+	public double getSaturation() {
+		return maxActive == 0 ? 0 : (double) getActiveCount() / maxActive;
+	}
+
+	public long getAcquireCount() {
+		return acquireCount.get();
+	}
+
+	public long getWaitCount() {
+		return waitCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	public long getCreateCount() {
+		return createCount.get();
+	}
+
+	public long getValidationFailureCount() {
+		return validationFailureCount.get();
+	}
+
+	public long getLeakCount() {
+		return leakCount.get();
+	}
+
+	public String toString() {
+		return "FixConnectionPool[" + poolName + "] active=" + getActiveCount() + ", idle=" + getIdleCount() + ", max=" + maxActive + ", waiting="
+				+ getWaitingCount() + ", timeouts=" + getTimeoutCount() + ", leaks=" + getLeakCount();
+	}
+
+	// getters and setters
+	// ///////////////////////////////////////////////////////////////////
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	public void setMaxActive(int maxActive) {
+		this.maxActive = maxActive;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	public void setValidationInterval(long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	protected static class PooledConnection {
+
+		protected final Connection connection;
+
+		protected volatile long borrowTime;
+
+		protected volatile long lastUsedTime;
+
+		protected volatile Throwable borrowStackTrace;
+
+		protected volatile boolean leakReported;
+
+		protected Connection proxy;
+
+		protected PooledConnection(Connection connection) {
+			this.connection = connection;
+			this.lastUsedTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 借出连接的代理,每次借出使用新的代理,归还后代理失效
+	 */
+	protected class PooledConnectionHandler implements InvocationHandler {
+
+		protected final PooledConnection pooledConnection;
+
+		protected boolean logicallyClosed;
+
+		protected PooledConnectionHandler(PooledConnection pooledConnection) {
+			this.pooledConnection = pooledConnection;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if ("close".equals(methodName)) {
+				if (!logicallyClosed) {
+					logicallyClosed = true;
+					release(pooledConnection);
+				}
+				return null;
+			}
+			if ("isClosed".equals(methodName)) {
+				return logicallyClosed || pooledConnection.connection.isClosed();
+			}
+			if ("equals".equals(methodName)) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(methodName)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("toString".equals(methodName)) {
+				return "PooledConnection[" + poolName + "] " + pooledConnection.connection;
+			}
+			if (logicallyClosed) {
+				throw new SQLException("连接已经归还到连接池 " + poolName);
+			}
+			try {
+				return method.invoke(pooledConnection.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+
+}
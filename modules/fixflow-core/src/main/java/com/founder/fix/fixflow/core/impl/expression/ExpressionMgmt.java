@@ -24,6 +24,7 @@ import com.founder.fix.bpmn2extensions.sqlmappingconfig.Sql;
 import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
 
 
 
@@ -37,13 +38,14 @@ public class ExpressionMgmt {
 	}
 	
 	public static Object execute(Sql sql,Map<String, Object> variableMap) {
+
+		return Context.getAbstractScriptLanguageMgmt().execute(sql.getSqlValue(), variableMap);
 		
-		
-		for (String variableKey : variableMap.keySet()) {
-			setVariable(variableKey, variableMap.get(variableKey));
-		}
+	}
+	
+	public static Object execute(String scriptText, Map<String, Object> bindings) {
 
-		return Context.getAbstractScriptLanguageMgmt().execute(sql.getSqlValue());
+		return Context.getAbstractScriptLanguageMgmt().execute(scriptText, bindings);
 		
 	}
 
@@ -53,6 +55,12 @@ public class ExpressionMgmt {
 		
 	}
 
+	public static Object execute(ExpressionTemplate expressionTemplate, ExecutionContext executionContext) {
+
+		return Context.getAbstractScriptLanguageMgmt().execute(expressionTemplate, executionContext);
+		
+	}
+
 	public static Object getVariable(String variableName) {
 		return Context.getAbstractScriptLanguageMgmt().getVariable(variableName);
 		
@@ -0,0 +1,114 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.flowgraphics.svg;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+
+/**
+ * 渲染好的流程图
+ * <p>
+ * 流程图只和流程定义有关,按流程定义编号缓存;ETag由SVG内容计算,内容不变时ETag不变。
+ * 实例的当前节点通过{@link #overlay(Collection)}叠加高亮层,不需要重新渲染整张图。
+ */
+public class FlowGraphicsSvg {
+
+	private static final String SVG_END = "</svg>";
+
+	protected String processDefinitionId;
+
+	protected String svg;
+
+	protected String eTag;
+
+	/**
+	 * 节点编号对应的绝对位置 {x, y, width, height}
+	 */
+	protected Map<String, float[]> nodeBounds;
+
+	public FlowGraphicsSvg(String processDefinitionId, String svg, Map<String, float[]> nodeBounds) {
+		this.processDefinitionId = processDefinitionId;
+		this.svg = svg;
+		this.nodeBounds = Collections.unmodifiableMap(new HashMap<String, float[]>(nodeBounds));
+		this.eTag = createETag(svg);
+	}
+
+	/**
+	 * 在流程图上叠加节点高亮层
+	 * @param nodeIds 需要高亮的节点编号
+	 * @return 叠加后的SVG
+	 */
+	public String overlay(Collection<String> nodeIds) {
+		if (nodeIds == null || nodeIds.isEmpty()) {
+			return svg;
+		}
+		int end = svg.lastIndexOf(SVG_END);
+		if (end < 0) {
+			return svg;
+		}
+		StringBuffer highlight = new StringBuffer();
+		highlight.append("<g class=\"highlight\" fill=\"none\" stroke=\"#ff0000\" stroke-width=\"3\">");
+		for (String nodeId : nodeIds) {
+			float[] bounds = nodeBounds.get(nodeId);
+			if (bounds == null) {
+				continue;
+			}
+			highlight.append("<rect id=\"highlight_").append(nodeId).append("\" x=\"").append(bounds[0]).append("\" y=\"").append(bounds[1]).append("\" width=\"").append(bounds[2]).append("\" height=\"").append(bounds[3]).append("\" rx=\"5\" ry=\"5\"/>");
+		}
+		highlight.append("</g>");
+		return new StringBuffer(svg.length() + highlight.length()).append(svg, 0, end).append(highlight).append(svg.substring(end)).toString();
+	}
+
+	private static String createETag(String svg) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(svg.getBytes("UTF-8"));
+			StringBuffer eTag = new StringBuffer("\"");
+			for (byte b : digest) {
+				eTag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return eTag.append("\"").toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new FixFlowException("流程图ETag计算失败", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new FixFlowException("流程图ETag计算失败", e);
+		}
+	}
+
+	public String getProcessDefinitionId() {
+		return processDefinitionId;
+	}
+
+	public String getSvg() {
+		return svg;
+	}
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public Map<String, float[]> getNodeBounds() {
+		return nodeBounds;
+	}
+}
@@ -17,15 +17,70 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg;
 
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.component.ISvgComponent;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
+import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class FlowSvgUtil {
 	
 	@SuppressWarnings("unused")
 	private static String __REGEX_SIGNS = "\\{[^}{]+\\}";
 	
+	/**
+	 * 解析好的组件模板,模板文件只在第一次使用时读取和解析
+	 */
+	private static final Map<String, String> componentTemplates = new ConcurrentHashMap<String, String>();
+	
+	private static final Map<String, String> documentTemplates = new ConcurrentHashMap<String, String>();
+	
+	/**
+	 * 组件没有状态,每个组件类只创建一个实例
+	 */
+	private static final Map<String, ISvgComponent> svgComponents = new ConcurrentHashMap<String, ISvgComponent>();
+	
+	/**
+	 * 获取组件模板的根节点文本
+	 * @param templatePath 模板路径
+	 * @return
+	 * @throws DocumentException
+	 */
+	public static String getComponentTemplate(String templatePath) throws DocumentException {
+		String template = componentTemplates.get(templatePath);
+		if (template == null) {
+			template = readTemplate(templatePath).getRootElement().asXML();
+			componentTemplates.put(templatePath, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * 获取整个模板文档的文本
+	 * @param templatePath 模板路径
+	 * @return
+	 * @throws DocumentException
+	 */
+	public static String getDocumentTemplate(String templatePath) throws DocumentException {
+		String template = documentTemplates.get(templatePath);
+		if (template == null) {
+			template = readTemplate(templatePath).asXML();
+			documentTemplates.put(templatePath, template);
+		}
+		return template;
+	}
+	
+	private static Document readTemplate(String templatePath) throws DocumentException {
+		InputStream in = SvgBench.class.getResourceAsStream(templatePath);
+		return XmlUtil.read(in);
+	}
+	
 	public static String replaceAll(String src,String target,String dist){
         if (src == null || target == null || dist == null) {
             return src;
@@ -69,17 +124,20 @@ public class FlowSvgUtil {
 		String result = null;
 		String compClass = svgTo.getComponentClass();
 		
-		Object obj = null;
-		try {
-			obj = Class.forName(compClass).newInstance();
-		} catch (Exception e) {
-			throw new FixFlowException("",e);
+		ISvgComponent comp = svgComponents.get(compClass);
+		if (comp == null) {
+			Object obj = null;
+			try {
+				obj = Class.forName(compClass).newInstance();
+			} catch (Exception e) {
+				throw new FixFlowException("",e);
+			}
+			if(obj instanceof ISvgComponent)
+				comp = (ISvgComponent)obj;
+			else
+				throw new FixFlowException(compClass+"没有继承自组件类ISvgComponent！");
+			svgComponents.put(compClass, comp);
 		}
-		ISvgComponent comp = null;
-		if(obj instanceof ISvgComponent)
-			comp = (ISvgComponent)obj;
-		else
-			throw new FixFlowException(compClass+"没有继承自组件类ISvgComponent！");
 		
 		result = comp.createComponent(svgTo);
 		
@@ -17,16 +17,13 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgBench {
 	private static String templetePath = "/svgcomponent/svgTemplate.xml";
@@ -43,7 +40,7 @@ public class SvgBench {
 	
 	private static String minwidth ="{minwidth}";
 	
-	private Document doc;
+	private String template;
 
 	private List<String> children = new ArrayList<String>();
 	
@@ -91,8 +88,7 @@ public class SvgBench {
 
 	public SvgBench(){
 		try {
-			InputStream in = SvgBench.class.getResourceAsStream(templetePath);
-			doc = XmlUtil.read(in);
+			template = FlowSvgUtil.getDocumentTemplate(templetePath);
 			
 		} catch (DocumentException e) {
 			throw new FixFlowException("",e);
@@ -108,7 +104,7 @@ public class SvgBench {
 	}
 	
 	public String release(){
-		String document = doc.asXML();
+		String document = template;
 		StringBuffer crep = new StringBuffer();
 		for(String tmp : children){
 			crep.append(tmp);
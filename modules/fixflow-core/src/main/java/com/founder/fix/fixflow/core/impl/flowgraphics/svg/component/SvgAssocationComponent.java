@@ -17,19 +17,15 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 import java.util.List;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgAssocationTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgLineBaseTo.SvgPoint;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgAssocationComponent implements ISvgComponent {
 
@@ -45,9 +41,7 @@ public class SvgAssocationComponent implements ISvgComponent {
 		String result = null;
 		try {
 			SvgAssocationTo assoTo = (SvgAssocationTo)svgTo;
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(comPath);
 			str = FlowSvgUtil.replaceAll(str, id, assoTo.getId());
 			str = FlowSvgUtil.replaceAll(str, text, assoTo.getLabel());
 			List<SvgPoint> pointList = assoTo.getSvgPointList();
@@ -17,19 +17,15 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.LoopType;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgCallActivityTo;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgCallActivityComponent implements ISvgComponent {
 
@@ -62,9 +58,7 @@ public class SvgCallActivityComponent implements ISvgComponent {
 			int loopx = 260;
 			int loopy = 281;
 			SvgCallActivityTo signavio = (SvgCallActivityTo)svgTo;
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(comPath);
 			
 			String loopStd = none;
 			String loopPar = none;
@@ -17,18 +17,14 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgDataObjectReferenceTo;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgDataObjectReferenceComponent implements ISvgComponent {
 
@@ -44,9 +40,7 @@ public class SvgDataObjectReferenceComponent implements ISvgComponent {
 		String result = null;
 		try {
 			SvgDataObjectReferenceTo stevent = (SvgDataObjectReferenceTo)svgTo;
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(comPath);
 			str = FlowSvgUtil.replaceAll(str, local_x, StringUtil.getString(stevent.getX()));
 			str = FlowSvgUtil.replaceAll(str, local_y, StringUtil.getString(stevent.getY()));
 			str = FlowSvgUtil.replaceAll(str, id, stevent.getId());
@@ -17,19 +17,15 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgExclusiveGatewayTo;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgExclusiveGatewayComponent implements ISvgComponent {
 
@@ -39,9 +35,7 @@ public class SvgExclusiveGatewayComponent implements ISvgComponent {
 		String result = null;
 		try {
 			SvgExclusiveGatewayTo sGateTo = (SvgExclusiveGatewayTo)svgTo;
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(comPath);
 			str = FlowSvgUtil.replaceAll(str, local_x, StringUtil.getString(sGateTo.getX()+2));
 			str = FlowSvgUtil.replaceAll(str, local_y, StringUtil.getString(sGateTo.getY()+2));
 			str = FlowSvgUtil.replaceAll(str, id, sGateTo.getId());
@@ -17,23 +17,21 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgLaneTo;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgLaneComponent implements ISvgComponent {
 
 	private static String comPath = "/svgcomponent/lane.xml";
 	
+	private static String comPathH = "/svgcomponent/lane_h.xml";
+	
 
 	private static String text_x="{text_x}";
 	
@@ -44,15 +42,7 @@ public class SvgLaneComponent implements ISvgComponent {
 		try {
 			SvgLaneTo lane = (SvgLaneTo)svgTo;
 			
-			if(lane.isHorizontal()){
-				comPath = "/svgcomponent/lane.xml";
-			}
-			else {
-				comPath = "/svgcomponent/lane_h.xml";
-			}
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(lane.isHorizontal() ? comPath : comPathH);
 			str = FlowSvgUtil.replaceAll(str, local_x, StringUtil.getString(lane.getX()));
 			str = FlowSvgUtil.replaceAll(str, local_y, StringUtil.getString(lane.getY()));
 			str = FlowSvgUtil.replaceAll(str, id, lane.getId());
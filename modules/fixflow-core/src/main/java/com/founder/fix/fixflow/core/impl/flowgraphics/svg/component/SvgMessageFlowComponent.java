@@ -17,21 +17,17 @@
  */
 package com.founder.fix.fixflow.core.impl.flowgraphics.svg.component;
 
-import java.io.InputStream;
 import java.util.List;
 
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.CaclModel;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowSvgUtil;
-import com.founder.fix.fixflow.core.impl.flowgraphics.svg.SvgBench;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgBaseTo;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgLineBaseTo.SvgPoint;
 import com.founder.fix.fixflow.core.impl.flowgraphics.svg.to.SvgMessageFlowTo;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.impl.util.XmlUtil;
 
 public class SvgMessageFlowComponent implements ISvgComponent {
 
@@ -53,9 +49,7 @@ public class SvgMessageFlowComponent implements ISvgComponent {
 		String result = null;
 		try {
 			SvgMessageFlowTo lineTo = (SvgMessageFlowTo)svgTo;
-			InputStream in = SvgBench.class.getResourceAsStream(comPath);
-			Document doc = XmlUtil.read(in);
-			String str = doc.getRootElement().asXML();
+			String str = FlowSvgUtil.getComponentTemplate(comPath);
 			str = FlowSvgUtil.replaceAll(str, id, lineTo.getId());
 			str = FlowSvgUtil.replaceAll(str, text, lineTo.getLabel());
 			List<SvgPoint> pointList = lineTo.getSvgPointList();
@@ -18,12 +18,17 @@
 package com.founder.fix.fixflow.core.impl.interceptor;
 
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.cache.CacheObject;
+import com.founder.fix.fixflow.core.impl.cache.EntityCache;
 import com.founder.fix.fixflow.core.impl.db.DbSqlSession;
 import com.founder.fix.fixflow.core.impl.db.MappingSqlSession;
+import com.founder.fix.fixflow.core.impl.persistence.AbstractManager;
 import com.founder.fix.fixflow.core.impl.persistence.CommentManager;
 import com.founder.fix.fixflow.core.impl.persistence.DeploymentManager;
 import com.founder.fix.fixflow.core.impl.persistence.EventSubscriptionManager;
@@ -46,96 +51,175 @@ public class CommandContext {
 
 	protected ProcessEngineConfigurationImpl processEngineConfigurationImpl;
 
+	/**
+	 * 本次命令使用的管理器,每种管理器只创建一次
+	 */
+	protected Map<Class<?>, AbstractManager> managers = new HashMap<Class<?>, AbstractManager>();
+
+	/**
+	 * 本次命令的会话,每个数据库连接一个
+	 */
+	protected Map<Connection, MappingSqlSession> mappingSqlSessions = new HashMap<Connection, MappingSqlSession>();
+
+	protected Map<Connection, DbSqlSession> dbSqlSessions = new HashMap<Connection, DbSqlSession>();
+
+	/**
+	 * 本次命令已加载的实体
+	 */
+	protected EntityCache entityCache = new EntityCache();
+
+	/**
+	 * 实体缓存是否属于当前命令,嵌套命令借用外层命令的缓存时为false
+	 */
+	protected boolean entityCacheOwner = true;
+
+	protected boolean closed = false;
+
 	public CommandContext(Command<?> command, ProcessEngineConfigurationImpl processEngineConfigurationImpl) {
 		this.command = command;
 		this.processEngineConfigurationImpl = processEngineConfigurationImpl;
 
 	}
 
+	/**
+	 * 在外层命令中执行时共用外层命令的实体缓存,内层命令的写操作同样会让外层已加载的实体过期
+	 * @param parentCommandContext 外层命令
+	 */
+	public void joinCommandContext(CommandContext parentCommandContext) {
+		if (parentCommandContext == null || parentCommandContext == this || parentCommandContext.isClosed()) {
+			return;
+		}
+		this.entityCache = parentCommandContext.getEntityCache();
+		this.entityCacheOwner = false;
+	}
+
+	/**
+	 * 命令正常结束时发送会话中还没有发送的语句
+	 */
+	public void flush() {
+		for (MappingSqlSession mappingSqlSession : mappingSqlSessions.values()) {
+			mappingSqlSession.flush();
+		}
+	}
+
+	/**
+	 * 命令结束,释放会话、管理器和实体缓存
+	 */
+	public void close() {
+		closed = true;
+		for (MappingSqlSession mappingSqlSession : mappingSqlSessions.values()) {
+			mappingSqlSession.abortBatch();
+		}
+		mappingSqlSessions.clear();
+		dbSqlSessions.clear();
+		managers.clear();
+		if (entityCacheOwner) {
+			entityCache.clear();
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <T extends AbstractManager> T getManager(Class<T> managerClass) {
+		AbstractManager manager = managers.get(managerClass);
+		if (manager == null) {
+			try {
+				manager = managerClass.newInstance();
+			} catch (Exception e) {
+				throw new FixFlowException("管理器 " + managerClass.getName() + " 创建失败: " + e.getMessage(), e);
+			}
+			manager.setCommandContext(this);
+			// 命令结束后仍然被使用时不再保留
+			if (!closed) {
+				managers.put(managerClass, manager);
+			}
+		}
+		return (T) manager;
+	}
+
+	/**
+	 * 获取本次命令已加载的实体
+	 * @param entityClass 实体类型
+	 * @param id 实体编号
+	 * @return 没有加载过或命令已经结束时返回null
+	 */
+	public <T> T getCachedEntity(Class<T> entityClass, String id) {
+		if (closed) {
+			return null;
+		}
+		return entityCache.getEntity(entityClass, id);
+	}
+
+	/**
+	 * 登记本次命令加载的实体
+	 * @param entityClass 实体类型
+	 * @param id 实体编号
+	 * @param entity 实体
+	 */
+	public void putCachedEntity(Class<?> entityClass, String id, Object entity) {
+		if (!closed) {
+			entityCache.putEntity(entityClass, id, entity);
+		}
+	}
+
+	public void removeCachedEntity(Class<?> entityClass, String id) {
+		entityCache.removeEntity(entityClass, id);
+	}
+
 	public ProcessEngineConfigurationImpl getProcessEngineConfigurationImpl() {
 		return processEngineConfigurationImpl;
 	}
 
 	public DeploymentManager getDeploymentManager() {
-
-		DeploymentManager deploymentManager = new DeploymentManager();
-		deploymentManager.setCommandContext(this);
-
-		return deploymentManager;
+		return getManager(DeploymentManager.class);
 	}
 
 	public ResourceManager getResourceManager() {
-		ResourceManager resourceManager = new ResourceManager();
-		resourceManager.setCommandContext(this);
-
-		return resourceManager;
+		return getManager(ResourceManager.class);
 	}
 
 	public ProcessDefinitionManager getProcessDefinitionManager() {
-		ProcessDefinitionManager processDefinitionManager = new ProcessDefinitionManager();
-		processDefinitionManager.setCommandContext(this);
-
-		return processDefinitionManager;
+		return getManager(ProcessDefinitionManager.class);
 	}
 
 	public ProcessInstanceManager getProcessInstanceManager() {
-		ProcessInstanceManager processInstanceManager = new ProcessInstanceManager();
-		processInstanceManager.setCommandContext(this);
-
-		return processInstanceManager;
+		return getManager(ProcessInstanceManager.class);
 	}
 
 	public TaskManager getTaskManager() {
-		TaskManager taskManager = new TaskManager();
-		taskManager.setCommandContext(this);
-
-		return taskManager;
+		return getManager(TaskManager.class);
 	}
 
 	public IdentityLinkManager getIdentityLinkManager() {
-		IdentityLinkManager identityLinkManager = new IdentityLinkManager();
-		identityLinkManager.setCommandContext(this);
-
-		return identityLinkManager;
+		return getManager(IdentityLinkManager.class);
 	}
 
 
 	
 	public VariableManager getVariableManager() {
-		VariableManager variableManager = new VariableManager();
-		variableManager.setCommandContext(this);
-
-		return variableManager;
+		return getManager(VariableManager.class);
 	}
 
 	public CommentManager getCommentManager() {
-		CommentManager commentManager = new CommentManager();
-		commentManager.setCommandContext(this);
-
-		return commentManager;
+		return getManager(CommentManager.class);
 	}
 
 	public TokenManager getTokenManager() {
-		TokenManager tokenManager = new TokenManager();
-		tokenManager.setCommandContext(this);
-		return tokenManager;
+		return getManager(TokenManager.class);
 	}
 
 	public EventSubscriptionManager getEventSubscriptionManager() {
-		EventSubscriptionManager eventSubscriptionManager = new EventSubscriptionManager();
-		eventSubscriptionManager.setCommandContext(this);
-		return eventSubscriptionManager;
+		return getManager(EventSubscriptionManager.class);
 	}
 	
 	public HistoryManager getHistoryManager(){
-		HistoryManager historyManager = new HistoryManager();
-		historyManager.setCommandContext(this);
-		return historyManager;
+		return getManager(HistoryManager.class);
 	}
 	public JobManager getJobManager() {
-		JobManager jobManager = new JobManager();
-		jobManager.setCommandContext(this);
-		return jobManager;
+		return getManager(JobManager.class);
 	}
 	
 	
@@ -143,11 +227,32 @@ public class CommandContext {
 	// //////////////////////////////////////////////////////
 
 	public DbSqlSession getDbSqlSession() {
-		return new DbSqlSession(Context.getDbConnection(), Context.getCacheObject());
+		Connection connection = Context.getDbConnection();
+		DbSqlSession dbSqlSession = dbSqlSessions.get(connection);
+		if (dbSqlSession == null) {
+			dbSqlSession = new DbSqlSession(connection, Context.getCacheObject());
+			if (!closed) {
+				dbSqlSessions.put(connection, dbSqlSession);
+			}
+		}
+		return dbSqlSession;
 	}
 	
 	public MappingSqlSession getMappingSqlSession() {
-		return new MappingSqlSession(Context.getDbConnection(), Context.getCacheObject());
+		Connection connection = Context.getDbConnection();
+		MappingSqlSession mappingSqlSession = mappingSqlSessions.get(connection);
+		if (mappingSqlSession == null) {
+			mappingSqlSession = new MappingSqlSession(connection, Context.getCacheObject());
+			if (!closed) {
+				mappingSqlSession.setEntityCache(entityCache);
+				mappingSqlSessions.put(connection, mappingSqlSession);
+			}
+		}
+		return mappingSqlSession;
+	}
+	
+	public EntityCache getEntityCache() {
+		return entityCache;
 	}
 	
 	
@@ -43,13 +43,35 @@ public class CommandContextInterceptor extends CommandInterceptor {
 
   public <T> T execute(Command<T> command) {
     CommandContext context = commandContextFactory.createCommandContext(command);
+    CommandContext parentContext = Context.getCommandContext();
+    boolean nested = parentContext != null && !parentContext.isClosed();
+    if (nested) {
+      context.joinCommandContext(parentContext);
+    } else if (parentContext != null) {
+      // 上一个已经结束的命令留下的上下文,由本次命令替换
+      Context.removeCommandContext(parentContext);
+    }
 
    // try {
       Context.setCommandContext(context);
       Context.setProcessEngineConfiguration(processEngineConfiguration);
       //ConnectionManagement.INSTANCE().getConnection();
       Context.setQuartzTransactionAuto(false);
-      return next.execute(command);
+      try {
+        T result = next.execute(command);
+        context.flush();
+        return result;
+      } finally {
+        try {
+          context.close();
+        } finally {
+          // 嵌套命令结束后恢复外层命令的上下文;最外层命令的上下文保留到contextClose,
+          // 命令返回的实体在命令外延迟加载时仍然可以使用它
+          if (nested) {
+            Context.removeCommandContext(context);
+          }
+        }
+      }
        
     //} catch (Exception e) {
       //context.exception(e);
@@ -26,6 +26,7 @@ import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior
 import com.founder.fix.fixflow.core.impl.model.DeploymentQueryImpl;
 import com.founder.fix.fixflow.core.impl.persistence.definition.DeploymentEntity;
 import com.founder.fix.fixflow.core.impl.persistence.definition.ResourceEntity;
+import com.founder.fix.fixflow.core.impl.persistence.deployer.DeploymentCache;
 import com.founder.fix.fixflow.core.model.Deployment;
 
 
@@ -54,6 +55,7 @@ public class DeploymentManager extends AbstractManager {
 			commandContext.getResourceManager().updateResource(resource);
 		}
 
+		removeDeploymentResources(deployment.getId());
 		Context.getProcessEngineConfiguration().getDeploymentCache().deploy(deployment);
 	}
 
@@ -73,10 +75,26 @@ public class DeploymentManager extends AbstractManager {
 		commandContext.getProcessDefinitionManager().deleteProcessDefinitionsByDeploymentId(deploymentId);
 
 		commandContext.getResourceManager().deleteResourcesByDeploymentId(deploymentId);
+		removeDeploymentResources(deploymentId);
 
 		getDbSqlSession().delete("deleteDeployment", deploymentId);
 	}
 
+	/**
+	 * 部署资源缓存立即失效,事务提交后再失效一次,
+	 * 提交前其他线程读到的旧内容不会留在缓存中
+	 * @param deploymentId 部署编号
+	 */
+	protected void removeDeploymentResources(final String deploymentId) {
+		final DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
+		deploymentCache.removeDeploymentResources(deploymentId);
+		Context.addCommitListener(new Runnable() {
+			public void run() {
+				deploymentCache.removeDeploymentResources(deploymentId);
+			}
+		});
+	}
+
 	public DeploymentEntity findLatestDeploymentByName(String deploymentName) {
 		List<?> list = getDbSqlSession().selectList("selectDeploymentsByName", deploymentName, new Page(0, 1));
 		if (list != null && !list.isEmpty()) {
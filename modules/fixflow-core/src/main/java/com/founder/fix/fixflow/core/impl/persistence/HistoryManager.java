@@ -17,8 +17,11 @@
  */
 package com.founder.fix.fixflow.core.impl.persistence;
 
+import java.util.List;
 import java.util.Map;
 
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
+
 /**
  * 流程归档管理
  * @author Administrator
@@ -30,4 +33,42 @@ public class HistoryManager extends AbstractManager {
 		getMappingSqlSession().selectOne("archiveByPara", paraMap);
 		return true;
 	}
+	
+	/**
+	 * 归档一批流程实例
+	 * @param paraMap 归档条件,和{@link #archiveByPara(Map)}相同
+	 * @param chunkSize 每批最多归档的流程实例数
+	 * @return 本批归档的流程实例编号,按编号升序
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> archiveChunkByPara(Map<String,Object> paraMap, int chunkSize){
+		paraMap.put("CHUNK_SIZE", chunkSize);
+		return (List<String>) getMappingSqlSession().selectOne("archiveByPara", paraMap);
+	}
+	
+	public void insertArchiveCheckpoint(ArchiveCheckpoint archiveCheckpoint){
+		getDbSqlSession().execute("insertArchiveCheckpoint", archiveCheckpoint);
+	}
+	
+	/**
+	 * 更新归档进度(游标和计数),只更新运行中的检查点
+	 * @param archiveCheckpoint
+	 * @return 检查点已不在运行状态(已停止)时返回false
+	 */
+	public boolean updateArchiveProgress(ArchiveCheckpoint archiveCheckpoint){
+		Integer rows = (Integer) getDbSqlSession().execute("updateArchiveProgress", archiveCheckpoint);
+		return rows != null && rows.intValue() != 0;
+	}
+	
+	/**
+	 * 更新归档状态,不修改进度字段
+	 * @param archiveCheckpoint
+	 */
+	public void updateArchiveStatus(ArchiveCheckpoint archiveCheckpoint){
+		getDbSqlSession().execute("updateArchiveStatus", archiveCheckpoint);
+	}
+	
+	public ArchiveCheckpoint findArchiveCheckpointById(String archiveId){
+		return (ArchiveCheckpoint) getDbSqlSession().selectOne("selectArchiveCheckpointById", archiveId);
+	}
 }
@@ -41,9 +41,18 @@ public class IdentityLinkManager extends AbstractManager {
 		//getDbSqlSession().delete("deleteIdentityLink", id);
 	}
 
+	/**
+	 * 查询任务的候选人,加载完成后记录快照,任务保存时只更新发生变化的候选人
+	 * @param taskId 任务编号
+	 * @return 候选人
+	 */
 	@SuppressWarnings("unchecked")
 	public List<IdentityLinkEntity> findIdentityLinksByTaskId(String taskId) {
-		return getMappingSqlSession().selectList("selectIdentityLinksByTask", taskId);
+		List<IdentityLinkEntity> identityLinks = getMappingSqlSession().selectList("selectIdentityLinksByTask", taskId);
+		for (IdentityLinkEntity identityLink : identityLinks) {
+			identityLink.snapshotPersistentState();
+		}
+		return identityLinks;
 	}
 
 
@@ -36,6 +36,15 @@ public class ProcessDefinitionManager extends AbstractManager {
 		return (ProcessDefinitionBehavior) getDbSqlSession().selectOne("selectLatestProcessDefinitionByKey",processDefinitionKey);
 	}
 
+	/**
+	 * 查询流程定义KEY的最大版本号
+	 * @param processDefinitionKey 流程定义KEY
+	 * @return 最大版本号,没有发布过时返回0
+	 */
+	public int findLatestProcessDefinitionVersionByKey(String processDefinitionKey) {
+		return (Integer) getDbSqlSession().selectOne("selectLatestProcessDefinitionVersionByKey", processDefinitionKey);
+	}
+
 	public void deleteProcessDefinitionsByDeploymentId(String deploymentId) {
 		getDbSqlSession().delete("deleteProcessDefinitionsByDeploymentId", deploymentId);
 
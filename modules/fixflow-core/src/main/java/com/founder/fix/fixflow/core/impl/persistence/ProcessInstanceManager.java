@@ -17,6 +17,9 @@
  */
 package com.founder.fix.fixflow.core.impl.persistence;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -28,15 +31,30 @@ import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.db.MappingSqlSession;
+import com.founder.fix.fixflow.core.impl.db.PersistentObject;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceQueryImpl;
 import com.founder.fix.fixflow.core.impl.runtime.TokenEntity;
 import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
-import com.founder.fix.fixflow.core.runtime.Token;
 
 public class ProcessInstanceManager extends AbstractManager {
 
+	/**
+	 * 按对象编号排序,保证并发命令以相同顺序更新数据行
+	 */
+	private static final Comparator<PersistentObject> PERSISTENT_ID_ORDER = new Comparator<PersistentObject>() {
+		public int compare(PersistentObject o1, PersistentObject o2) {
+			String id1 = o1.getId();
+			String id2 = o2.getId();
+			if (id1 == null) {
+				return id2 == null ? 0 : -1;
+			}
+			return id2 == null ? 1 : id1.compareTo(id2);
+		}
+	};
+
 	/**
 	 * 根据流程定义唯一编号删除流程实例
 	 * 
@@ -92,12 +110,18 @@ public class ProcessInstanceManager extends AbstractManager {
 
 		//if (cacheObj == null) {
 
-			ProcessInstanceEntity processInstanceEntity = (ProcessInstanceEntity) getMappingSqlSession().selectOne("findProcessInstanceById",
+			// 同一命令中已经加载过的流程实例直接返回
+			ProcessInstanceEntity processInstanceEntity = getCommandContext().getCachedEntity(ProcessInstanceEntity.class, processInstanceId);
+			if (processInstanceEntity != null) {
+				return processInstanceEntity;
+			}
+			processInstanceEntity = (ProcessInstanceEntity) getMappingSqlSession().selectOne("findProcessInstanceById",
 					processInstanceId);
 			if(processInstanceEntity==null){
 				throw new FixFlowException("查询的流程实例: "+processInstanceId +" 不存在");
 			}
 			initProcessInstance(processInstanceEntity);
+			getCommandContext().putCachedEntity(ProcessInstanceEntity.class, processInstanceId, processInstanceEntity);
 			return processInstanceEntity;
 		//	cacheHandler.putCacheData("ProcessInstance_" + processInstanceId, processInstanceEntity);
 		//	return (ProcessInstanceEntity) getMappingSqlSession().selectOne("findProcessInstanceById", processInstanceId);
@@ -146,6 +170,11 @@ public class ProcessInstanceManager extends AbstractManager {
 			}
 		}
 		
+		// 令牌关系建立完成后记录快照,保存时只更新发生变化的令牌
+		for (TokenEntity tokenEntity : tokenEntities) {
+			tokenEntity.snapshotPersistentState();
+		}
+		
 		List<TaskInstanceEntity> taskInstanceEntities=getCommandContext().getTaskManager().findTaskByProcessInstanceIdNotEnd(rocessInstanceId);
 	
 		for (TaskInstanceEntity taskInstanceEntity : taskInstanceEntities) {
@@ -155,6 +184,7 @@ public class ProcessInstanceManager extends AbstractManager {
 				processInstanceEntity.getTaskMgmtInstance().addTaskInstanceEntity(taskInstanceEntity);
 				
 				taskInstanceEntity.setToken(tokenEntity);
+				taskInstanceEntity.snapshotPersistentState();
 			}
 
 			
@@ -272,40 +302,66 @@ public class ProcessInstanceManager extends AbstractManager {
 		// List<TaskInstanceEntity> taskInstances
 		// =processInstance.getTaskMgmtInstance().getTaskInstanceEntitys();
 
-		// 保存流程实例和令牌
+		// 保存流程实例和令牌,令牌、任务、变量的insert和update语句按表合并批量发送
+		MappingSqlSession mappingSqlSession = getMappingSqlSession();
+		mappingSqlSession.beginBatch();
+		try {
+			saveProcessInstanceEntities(processInstance, taskInstanceEntities);
+			mappingSqlSession.endBatch();
+		} catch (RuntimeException e) {
+			mappingSqlSession.abortBatch();
+			throw e;
+		}
+		// 写操作清空了命令的实体缓存,刚保存的流程实例就是最新状态
+		getCommandContext().putCachedEntity(ProcessInstanceEntity.class, processInstance.getId(), processInstance);
+
+	}
 
+	private void saveProcessInstanceEntities(ProcessInstanceEntity processInstance, List<TaskInstanceEntity> taskInstanceEntities) {
 		if (processInstance.isAdd()) {
 			insert(processInstance);
 
-			for (Token token : processInstance.getTokenList()) {
+			for (TokenEntity token : processInstance.getTokenList()) {
 				commandContext.getTokenManager().insert(token);
+				token.snapshotPersistentState();
 			}
 
+			// 任务行和候选人行分开写入,各自合并成一批
+			commandContext.getTaskManager().insertTaskInstances(taskInstanceEntities);
 			for (TaskInstanceEntity taskInstance : taskInstanceEntities) {
-				commandContext.getTaskManager().insert(taskInstance);
+				taskInstance.snapshotPersistentState();
 			}
 
 		} else {
+			// 流程实例行总是先更新(更新时间每次都会变化),同一实例上的并发命令在这里排队,
+			// 之后的令牌和任务按编号顺序写入,避免不同命令交叉加锁产生死锁
 			update(processInstance);
 
-			for (Token token : processInstance.getTokenList()) {
-				commandContext.getTokenManager().saveToken(token);
+			// 只保存新增的和加载后发生变化的令牌、任务
+			for (TokenEntity token : sortById(processInstance.getTokenList())) {
+				if (token.updatePersistentSnapshot()) {
+					commandContext.getTokenManager().saveToken(token);
+				}
 			}
 
-			for (TaskInstanceEntity taskInstance : taskInstanceEntities) {
-				commandContext.getTaskManager().saveTaskInstanceEntity(taskInstance);
-			}
+			commandContext.getTaskManager().saveTaskInstanceEntities(sortById(taskInstanceEntities));
 		}
 
 		// 存储流程环境变量
-		for (DataVariableEntity dataVariableEntity : processInstance.getDataVariableMgmtInstance().getDataVariableEntities()) {
-			if (dataVariableEntity.isPersistence()) {
+		for (DataVariableEntity dataVariableEntity : sortById(processInstance.getDataVariableMgmtInstance().getDataVariableEntities())) {
+			if (dataVariableEntity.isPersistence() && dataVariableEntity.updatePersistentSnapshot()) {
 				commandContext.getVariableManager().saveVariable(dataVariableEntity);
 			}
 		}
 
 	}
 
+	private static <T extends PersistentObject> List<T> sortById(List<T> persistentObjects) {
+		List<T> sortedObjects = new ArrayList<T>(persistentObjects);
+		Collections.sort(sortedObjects, PERSISTENT_ID_ORDER);
+		return sortedObjects;
+	}
+
 	public void UpdateProcessInstanceBusinessKey(ProcessInstanceEntity processInstance) throws Exception {
 		/**
 		 * 5.1版本修改 getDbSqlSession().save("saveProcessInstance",
@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
 import com.founder.fix.fixflow.core.impl.persistence.definition.ResourceEntity;
 
 
@@ -43,6 +45,23 @@ public class ResourceManager extends AbstractManager {
 		return (ResourceEntity) getDbSqlSession().selectOne("selectResourceByDeploymentIdAndResourceName", params);
 	}
 	
+	/**
+	 * 获取资源内容,优先从资源内容缓存中读取,未命中时以流的方式从数据库读取
+	 * @param deploymentId 部署编号
+	 * @param resourceName 资源名称
+	 * @return 资源内容
+	 */
+	public ResourceContent findResourceContent(String deploymentId, String resourceName) {
+		ResourceContent resourceContent = Context.getProcessEngineConfiguration().getDeploymentCache().getResourceContentCache().getResourceContent(deploymentId, resourceName);
+		if (resourceContent != null) {
+			return resourceContent;
+		}
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("deploymentId", deploymentId);
+		params.put("resourceName", resourceName);
+		return (ResourceContent) getDbSqlSession().selectOne("selectResourceContentByDeploymentIdAndResourceName", params);
+	}
+	
 	public ResourceEntity findResourceByResourceId(String resourceId)
 	{
 		return (ResourceEntity)getDbSqlSession().selectOne("selectResourceByResourceId", resourceId);
@@ -26,6 +26,7 @@ import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.command.QueryVariablesCommand;
 import com.founder.fix.fixflow.core.impl.persistence.AbstractManager;
+import com.founder.fix.fixflow.core.impl.task.IdentityLinkEntity;
 import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
 import com.founder.fix.fixflow.core.impl.task.TaskQueryImpl;
 import com.founder.fix.fixflow.core.task.IdentityLink;
@@ -45,7 +46,13 @@ public class TaskManager extends AbstractManager {
 		if (id == null) {
 			throw new FixFlowException("任务编号不能为空!");
 		}
-		return (TaskInstanceEntity)getMappingSqlSession().selectOne("selectTaskByTaskId", id);
+		// 同一命令中已经加载过的任务直接返回
+		TaskInstanceEntity taskInstanceEntity = getCommandContext().getCachedEntity(TaskInstanceEntity.class, id);
+		if (taskInstanceEntity == null) {
+			taskInstanceEntity = (TaskInstanceEntity) getMappingSqlSession().selectOne("selectTaskByTaskId", id);
+			getCommandContext().putCachedEntity(TaskInstanceEntity.class, id, taskInstanceEntity);
+		}
+		return taskInstanceEntity;
 	}
 
 	/**
@@ -149,6 +156,79 @@ public class TaskManager extends AbstractManager {
 			
 			update(taskInstance);
 		}
+		getCommandContext().putCachedEntity(TaskInstanceEntity.class, taskInstance.getId(), taskInstance);
+	}
+	
+	/**
+	 * 新增一个新流程实例的全部任务,先写全部任务行,再写全部候选人行
+	 * <p>
+	 * 批量执行时每次切换SQL都会发送已累积的语句,任务和候选人交替写入会让任务行无法合并发送。
+	 * @param taskInstances 任务
+	 */
+	public void insertTaskInstances(List<TaskInstanceEntity> taskInstances) {
+		for (TaskInstanceEntity taskInstance : taskInstances) {
+			insert("insertTaskInstance", taskInstance);
+		}
+		IdentityLinkManager identityLinkManager = getCommandContext().getIdentityLinkManager();
+		for (TaskInstanceEntity taskInstance : taskInstances) {
+			for (IdentityLink identityLink : taskInstance.getTaskIdentityLinksNoDB()) {
+				identityLinkManager.saveIdentityLink(identityLink);
+			}
+		}
+	}
+
+	/**
+	 * 保存新增的和加载后发生变化的任务,同样先写任务行再写候选人行
+	 * @param taskInstances 任务,调用者负责排序
+	 */
+	public void saveTaskInstanceEntities(List<TaskInstanceEntity> taskInstances) {
+		CacheHandler cacheHandler = Context.getProcessEngineConfiguration().getCacheHandler();
+		boolean[] changed = new boolean[taskInstances.size()];
+		for (int i = 0; i < changed.length; i++) {
+			TaskInstanceEntity taskInstance = taskInstances.get(i);
+			if (!taskInstance.updatePersistentSnapshot()) {
+				continue;
+			}
+			changed[i] = true;
+			cacheHandler.putCacheData("IdentityLink_" + taskInstance.getId(), null);
+			if (taskInstance.isAdd()) {
+				insert("insertTaskInstance", taskInstance);
+			} else {
+				update("updateTaskInstance", taskInstance);
+			}
+			getCommandContext().putCachedEntity(TaskInstanceEntity.class, taskInstance.getId(), taskInstance);
+		}
+		IdentityLinkManager identityLinkManager = getCommandContext().getIdentityLinkManager();
+		for (int i = 0; i < changed.length; i++) {
+			TaskInstanceEntity taskInstance = taskInstances.get(i);
+			if (changed[i]) {
+				for (IdentityLinkEntity identityLink : taskInstance.getTaskIdentityLinksNoDB()) {
+					if (identityLink.updatePersistentSnapshot()) {
+						identityLinkManager.saveIdentityLink(identityLink);
+					}
+				}
+			} else {
+				saveTaskIdentityLinks(taskInstance);
+			}
+		}
+	}
+
+	/**
+	 * 保存任务的候选人,任务本身没有变化不需要更新时调用
+	 * @param taskInstance
+	 */
+	public void saveTaskIdentityLinks(TaskInstanceEntity taskInstance) {
+		List<IdentityLinkEntity> identityLinks = taskInstance.getTaskIdentityLinksNoDB();
+		if (identityLinks.isEmpty()) {
+			return;
+		}
+		CacheHandler cacheHandler = Context.getProcessEngineConfiguration().getCacheHandler();
+		cacheHandler.putCacheData("IdentityLink_" + taskInstance.getId(), null);
+		for (IdentityLinkEntity identityLink : identityLinks) {
+			if (identityLink.updatePersistentSnapshot()) {
+				getCommandContext().getIdentityLinkManager().saveIdentityLink(identityLink);
+			}
+		}
 	}
 	
 
@@ -19,13 +19,13 @@ package com.founder.fix.fixflow.core.impl.persistence;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.command.QueryVariablesCommand;
 import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.datavariable.LazyVariableMap;
 import com.founder.fix.fixflow.core.impl.db.PersistentObject;
 
 
@@ -92,9 +92,10 @@ public class VariableManager extends AbstractManager {
 	public Map<String, Object> queryVariable(QueryVariablesCommand queryVariablesCommand){
 		
 		List<DataVariableEntity> dataVariableEntities=selectVariableByQuery(queryVariablesCommand);
-		Map<String, Object> dataMap=new HashMap<String, Object>();
+		// 变量值在第一次取值时才解码
+		LazyVariableMap dataMap=new LazyVariableMap(DataVariableEntity.getVariableCodecRegistry());
 		for (DataVariableEntity dataVariableEntity : dataVariableEntities) {
-			dataMap.put(dataVariableEntity.getVariableKey(), dataVariableEntity.getVariableObject());
+			dataMap.putVariable(dataVariableEntity);
 		}
 		
 		return dataMap;
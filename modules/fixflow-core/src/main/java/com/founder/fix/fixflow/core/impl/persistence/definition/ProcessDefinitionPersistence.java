@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.eclipse.bpmn2.Activity;
 import org.eclipse.bpmn2.BaseElement;
@@ -115,6 +116,18 @@ public class ProcessDefinitionPersistence {
 		return processDefinitionBehavior;
 	}
 
+	/**
+	 * 查询流程定义KEY的最大版本号,只读一个聚合值,用来校验缓存的最新版本是否过期
+	 * @param processDefinitionKey 流程定义KEY
+	 * @return 最大版本号,没有发布过时返回0
+	 */
+	public int selectLatestProcessDefinitionVersionByKey(String processDefinitionKey) {
+		String sqlText = "select max(VERSION) from FIXFLOW_DEF_PROCESSDEFINITION where PROCESS_KEY = ?";
+		List<Object> objectParamWhere = new ArrayList<Object>();
+		objectParamWhere.add(processDefinitionKey);
+		return StringUtil.getInt(sqlCommand.queryForValue(sqlText, objectParamWhere));
+	}
+
 	public ProcessDefinitionBehavior selectProcessDefinitionById(String processDefinitionId) {
 		DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
 		ProcessDefinitionBehavior processDefinition = deploymentCache.getProcessDefinitionCache().get(processDefinitionId);
@@ -278,71 +291,86 @@ public class ProcessDefinitionPersistence {
 		return resourceSet;
 	}
 
-	private ProcessDefinitionBehavior getProcessDefinition(Map<String, Object> processDataMap) {
-		String processId = StringUtil.getString(processDataMap.get("PROCESS_ID"));
-		String deploymentId = StringUtil.getString(processDataMap.get("DEPLOYMENT_ID"));
-		String resourceName = StringUtil.getString(processDataMap.get("RESOURCE_NAME"));
-		String processKey = StringUtil.getString(processDataMap.get("PROCESS_KEY"));
+	private ProcessDefinitionBehavior getProcessDefinition(final Map<String, Object> processDataMap) {
+		final String processId = StringUtil.getString(processDataMap.get("PROCESS_ID"));
+		final String deploymentId = StringUtil.getString(processDataMap.get("DEPLOYMENT_ID"));
+		final String resourceName = StringUtil.getString(processDataMap.get("RESOURCE_NAME"));
+		final String processKey = StringUtil.getString(processDataMap.get("PROCESS_KEY"));
 		DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
 		ProcessDefinitionBehavior processDefinition = deploymentCache.getProcessDefinitionCache().get(processId);
 		if (processDefinition == null) {
-			String sqlText = "SELECT BYTES FROM FIXFLOW_DEF_BYTEARRAY WHERE NAME=? and DEPLOYMENT_ID=?";
-			// 构建查询参数
-			List<Object> objectParamWhere = new ArrayList<Object>();
-			objectParamWhere.add(resourceName);
-			objectParamWhere.add(deploymentId);
-			List<Map<String, Object>> dataObj = sqlCommand.queryForList(sqlText, objectParamWhere);
-			Map<String, Object> dataMap = dataObj.get(0);
-			Object bytesObject = dataMap.get("BYTES");
-			if (bytesObject != null) {
-				byte[] bytes = (byte[]) bytesObject;
-				ResourceSet resourceSet = getResourceSet();
-				String fixflowFilePath =  ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration().getNoneTemplateFilePath();
-				URL url = ReflectUtil.getResource(fixflowFilePath);
-				if(url == null){
-					throw new FixFlowClassLoadingException(ExceptionCode.CLASSLOAD_EXCEPTION_FILENOTFOUND,fixflowFilePath);
+			processDefinition = deploymentCache.loadProcessDefinition(processId, new Callable<ProcessDefinitionBehavior>() {
+				public ProcessDefinitionBehavior call() throws Exception {
+					return parseProcessDefinition(processId, deploymentId, resourceName, processKey, processDataMap);
 				}
-				String filePath = url.toString();
-				Resource ddddResource = null;
-				try {
-					if (!filePath.startsWith("jar")) {
-						filePath = java.net.URLDecoder.decode(url.getFile(),"utf-8");
-						ddddResource = resourceSet.createResource(URI.createFileURI(filePath));
-					} else {
-						ddddResource = resourceSet.createResource(URI.createURI(filePath));
-					}
-					ddddResource.load(new ByteArrayInputStream(bytes), null);
-				} catch (Exception e) {
-					throw new FixFlowClassLoadingException(ExceptionCode.CLASSLOAD_EXCEPTION, e);
+			});
+		}
+		return processDefinition;
+	}
+
+	/**
+	 * 从数据库读取流程定义文件并解析为流程定义
+	 */
+	private ProcessDefinitionBehavior parseProcessDefinition(String processId, String deploymentId, String resourceName, String processKey,
+			Map<String, Object> processDataMap) {
+		ProcessDefinitionBehavior processDefinition = null;
+		String sqlText = "SELECT BYTES FROM FIXFLOW_DEF_BYTEARRAY WHERE NAME=? and DEPLOYMENT_ID=?";
+		// 构建查询参数
+		List<Object> objectParamWhere = new ArrayList<Object>();
+		objectParamWhere.add(resourceName);
+		objectParamWhere.add(deploymentId);
+		List<Map<String, Object>> dataObj = sqlCommand.queryForList(sqlText, objectParamWhere);
+		Map<String, Object> dataMap = dataObj.get(0);
+		Object bytesObject = dataMap.get("BYTES");
+		if (bytesObject != null) {
+			byte[] bytes = (byte[]) bytesObject;
+			ResourceSet resourceSet = getResourceSet();
+			String fixflowFilePath =  ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration().getNoneTemplateFilePath();
+			URL url = ReflectUtil.getResource(fixflowFilePath);
+			if(url == null){
+				throw new FixFlowClassLoadingException(ExceptionCode.CLASSLOAD_EXCEPTION_FILENOTFOUND,fixflowFilePath);
+			}
+			String filePath = url.toString();
+			Resource ddddResource = null;
+			try {
+				if (!filePath.startsWith("jar")) {
+					filePath = java.net.URLDecoder.decode(url.getFile(),"utf-8");
+					ddddResource = resourceSet.createResource(URI.createFileURI(filePath));
+				} else {
+					ddddResource = resourceSet.createResource(URI.createURI(filePath));
 				}
-				DefinitionsBehavior definitions = (DefinitionsBehavior) ddddResource.getContents().get(0).eContents().get(0);
-				definitions.setProcessId(processId);
-
-				for (RootElement rootElement : definitions.getRootElements()) {
-					if (rootElement instanceof ProcessDefinitionBehavior) {
-						ProcessDefinitionBehavior processObj = (ProcessDefinitionBehavior) rootElement;
-						if (processObj.getProcessDefinitionKey().equals(processKey)) {
-							processDefinition = (ProcessDefinitionBehavior) rootElement;
-							break;
-						}
+				ddddResource.load(new ByteArrayInputStream(bytes), null);
+			} catch (Exception e) {
+				throw new FixFlowClassLoadingException(ExceptionCode.CLASSLOAD_EXCEPTION, e);
+			}
+			DefinitionsBehavior definitions = (DefinitionsBehavior) ddddResource.getContents().get(0).eContents().get(0);
+			definitions.setProcessId(processId);
+
+			for (RootElement rootElement : definitions.getRootElements()) {
+				if (rootElement instanceof ProcessDefinitionBehavior) {
+					ProcessDefinitionBehavior processObj = (ProcessDefinitionBehavior) rootElement;
+					if (processObj.getProcessDefinitionKey().equals(processKey)) {
+						processDefinition = (ProcessDefinitionBehavior) rootElement;
+						break;
 					}
 				}
-				processDefinition.setDefinitions(definitions);
-				// 加载事件定义.
-				loadEvent(processDefinition);
-				// 加载数据变量
-				loadVariable(processDefinition);
-				// 设置FlowNode元素的子流程
-				loadSubProcess(processDefinition);
-				processDefinition.persistentInit(processDataMap);
-				deploymentCache.addProcessDefinition(processDefinition);
-				return processDefinition;
-
 			}
-			return null;
-		} else {
+			processDefinition.setDefinitions(definitions);
+			// 加载事件定义.
+			loadEvent(processDefinition);
+			// 加载数据变量
+			loadVariable(processDefinition);
+			// 设置FlowNode元素的子流程
+			loadSubProcess(processDefinition);
+			processDefinition.persistentInit(processDataMap);
+			// 建立元素索引,缓存中的流程定义按编号查找元素不再遍历模型
+			processDefinition.buildElementIndex();
+			// 预编译线条条件等表达式模板
+			processDefinition.compileExpressionTemplates();
 			return processDefinition;
+
 		}
+		return null;
 	}
 
 	private void setSubProcess(SubProcess subProcess) {
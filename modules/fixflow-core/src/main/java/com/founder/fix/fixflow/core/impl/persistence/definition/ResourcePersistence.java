@@ -18,14 +18,19 @@
 package com.founder.fix.fixflow.core.impl.persistence.definition;
 
 
+import java.io.InputStream;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContent;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContentCache;
 import com.founder.fix.fixflow.core.impl.db.PersistentObject;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand.BinaryStreamHandler;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
 public class ResourcePersistence {
@@ -157,6 +162,27 @@ public class ResourcePersistence {
 		
 	}
 	
+	/**
+	 * 以流的方式读取资源内容并放入资源内容缓存
+	 * @param deploymentId 部署编号
+	 * @param resourceName 资源名称
+	 * @return 资源内容,资源不存在时返回null
+	 */
+	public ResourceContent selectResourceContentByDeploymentIdAndResourceName(final String deploymentId, final String resourceName) {
+		String sqlText = "SELECT BYTES FROM FIXFLOW_DEF_BYTEARRAY WHERE NAME=? and DEPLOYMENT_ID=?";
+
+		List<Object> objectParamWhere = new ArrayList<Object>();
+		objectParamWhere.add(resourceName);
+		objectParamWhere.add(deploymentId);
+
+		final ResourceContentCache resourceContentCache = Context.getProcessEngineConfiguration().getDeploymentCache().getResourceContentCache();
+		return sqlCommand.queryForBinaryStream(sqlText, objectParamWhere, "BYTES", new BinaryStreamHandler<ResourceContent>() {
+			public ResourceContent handle(InputStream in) {
+				return resourceContentCache.putResourceContent(deploymentId, resourceName, in);
+			}
+		});
+	}
+	
 	public ResourceEntity selectResourceByDeploymentIdAndResourceName(String deploymentId, String resourceName) {
 
 		
@@ -140,6 +140,7 @@ public class BpmnDeployer implements Deployer {
 			}
 		}
 		process.setDefinitions(definitions);
+		process.buildElementIndex();
 
 		process.setResourceName(resourceBpmn.getName());
 		process.setResourceId(resourceBpmn.getId());
@@ -173,7 +174,7 @@ public class BpmnDeployer implements Deployer {
 			//process.setId(persistedProcessDefinition.getId());
 			process.setVersion(persistedProcessDefinition.getVersion());
 			process.setProcessDefinitionId(persistedProcessDefinition.getProcessDefinitionId());
-			Context.getProcessEngineConfiguration().getDeploymentCache().removeProcessDefinition(process.getProcessDefinitionId());
+			removeProcessDefinition(process.getProcessDefinitionId());
 			
 		}else{
 			
@@ -186,6 +187,7 @@ public class BpmnDeployer implements Deployer {
 			process.setProcessDefinitionId(processDefinitionId);
 
 			dbSqlSession.insert("insertProcessDefinition", process);
+			removeLatestProcessDefinition(process.getProcessDefinitionKey());
 		}
 		
 		
@@ -194,6 +196,35 @@ public class BpmnDeployer implements Deployer {
 
 	}
 	
+	/**
+	 * 更新部署时流程定义缓存立即失效,事务提交后再失效一次,
+	 * 提交前其它线程重新加载的旧定义不会留在缓存中
+	 * @param processDefinitionId 流程定义编号
+	 */
+	protected void removeProcessDefinition(final String processDefinitionId) {
+		final DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
+		deploymentCache.removeProcessDefinition(processDefinitionId);
+		Context.addCommitListener(new Runnable() {
+			public void run() {
+				deploymentCache.removeProcessDefinition(processDefinitionId);
+			}
+		});
+	}
+
+	/**
+	 * 发布新版本时最新版本索引立即失效,事务提交后再失效一次
+	 * @param processDefinitionKey 流程定义KEY
+	 */
+	protected void removeLatestProcessDefinition(final String processDefinitionKey) {
+		final DeploymentCache deploymentCache = Context.getProcessEngineConfiguration().getDeploymentCache();
+		deploymentCache.removeLatestProcessDefinition(processDefinitionKey);
+		Context.addCommitListener(new Runnable() {
+			public void run() {
+				deploymentCache.removeLatestProcessDefinition(processDefinitionKey);
+			}
+		});
+	}
+
 	private ResourceSet getResourceSet() {
 		// TODO Auto-generated method stub
 		ResourceSet resourceSet = new ResourceSetImpl();
@@ -19,23 +19,52 @@
 package com.founder.fix.fixflow.core.impl.persistence.deployer;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.cache.CacheRegion;
+import com.founder.fix.fixflow.core.impl.cache.ResourceContentCache;
+import com.founder.fix.fixflow.core.impl.flowgraphics.svg.FlowGraphicsSvg;
+import com.founder.fix.fixflow.core.impl.persistence.ProcessDefinitionManager;
 import com.founder.fix.fixflow.core.impl.persistence.definition.DeploymentEntity;
 
 
 /**
+ * 流程定义缓存
+ * <p>
+ * 按流程定义编号缓存解析后的流程定义,并维护流程定义KEY到最新版本编号的索引。
+ * 发布新版本时索引立即失效,事务提交后再失效一次,提交前其它线程放回的旧版本不会留在索引中。
+ * 多个引擎共用数据库时可以配置latestVersionCheckInterval,索引命中后超过这个间隔(毫秒)再用max(VERSION)校验版本号,
+ * 这样其它引擎发布的新版本最多延迟一个间隔生效;为0时不校验。
+ * 命中缓存时不再访问数据库;并发未命中同一个流程定义时只有一个线程解析,其余线程等待结果。
  * @author kenshin
  */
 public class DeploymentCache {
 
-  protected Map<String, ProcessDefinitionBehavior> processDefinitionCache = new HashMap<String, ProcessDefinitionBehavior>(); 
+  protected Map<String, ProcessDefinitionBehavior> processDefinitionCache = new ConcurrentHashMap<String, ProcessDefinitionBehavior>(); 
+  /** 流程定义KEY到最新版本流程定义编号的索引 */
+  protected Map<String, String> latestProcessDefinitionIdCache = new ConcurrentHashMap<String, String>();
+  /** 最新版本索引上次校验版本号的时间 */
+  protected Map<String, Long> latestVersionCheckTimes = new ConcurrentHashMap<String, Long>();
+  /** 最新版本索引的版本号校验间隔(毫秒),为0时不校验 */
+  protected long latestVersionCheckInterval = 0;
+  /** 正在加载的流程定义,保证同一个流程定义同时只加载一次 */
+  protected ConcurrentHashMap<String, FutureTask<ProcessDefinitionBehavior>> loadingProcessDefinitions = new ConcurrentHashMap<String, FutureTask<ProcessDefinitionBehavior>>();
   protected Map<String, Object> knowledgeBaseCache = new HashMap<String, Object>(); 
+  /** 渲染好的流程图,流程定义不变时流程图不变,所以不设过期时间 */
+  protected CacheRegion flowGraphicsSvgCache = new CacheRegion("flowGraphicsSvg", 500, 0);
+  /** 部署资源内容(流程图图片等) */
+  protected ResourceContentCache resourceContentCache = new ResourceContentCache();
   protected List<Deployer> deployers;
   
   public void deploy(DeploymentEntity deployment) {
@@ -48,7 +77,11 @@ public class DeploymentCache {
     if (processDefinitionId == null) {
       throw new FixFlowException("Invalid process definition id : null");
     }
-    ProcessDefinitionBehavior processDefinition = (ProcessDefinitionBehavior) Context
+    ProcessDefinitionBehavior processDefinition = processDefinitionCache.get(processDefinitionId);
+    if (processDefinition != null) {
+      return processDefinition;
+    }
+    processDefinition = (ProcessDefinitionBehavior) Context
       .getCommandContext()
       .getProcessDefinitionManager()
       .findLatestProcessDefinitionById(processDefinitionId);
@@ -60,17 +93,47 @@ public class DeploymentCache {
   }
 
   public ProcessDefinitionBehavior findDeployedLatestProcessDefinitionByKey(String processDefinitionKey) {
-	  ProcessDefinitionBehavior processDefinition = (ProcessDefinitionBehavior) Context
-      .getCommandContext()
-      .getProcessDefinitionManager()
-      .findLatestProcessDefinitionByKey(processDefinitionKey);
+    ProcessDefinitionManager processDefinitionManager = Context.getCommandContext().getProcessDefinitionManager();
+    String processDefinitionId = latestProcessDefinitionIdCache.get(processDefinitionKey);
+    if (processDefinitionId != null) {
+      ProcessDefinitionBehavior processDefinition = processDefinitionCache.get(processDefinitionId);
+      if (processDefinition != null && isLatestVersion(processDefinitionKey, processDefinition, processDefinitionManager)) {
+        return processDefinition;
+      }
+    }
+	  ProcessDefinitionBehavior processDefinition = processDefinitionManager.findLatestProcessDefinitionByKey(processDefinitionKey);
     if (processDefinition==null) {
       throw new FixFlowException("no processes deployed with key '"+processDefinitionKey+"'");
     }
     processDefinition = resolveProcessDefinition(processDefinition);
+    latestProcessDefinitionIdCache.put(processDefinitionKey, processDefinition.getProcessDefinitionId());
+    latestVersionCheckTimes.put(processDefinitionKey, System.currentTimeMillis());
     return processDefinition;
   }
 
+  /**
+   * 索引中的版本超过校验间隔时用max(VERSION)确认仍是最新版本,其它引擎可能发布了新版本
+   * @param processDefinitionKey 流程定义KEY
+   * @param processDefinition 索引中的流程定义
+   * @param processDefinitionManager
+   * @return 是否仍是最新版本
+   */
+  protected boolean isLatestVersion(String processDefinitionKey, ProcessDefinitionBehavior processDefinition, ProcessDefinitionManager processDefinitionManager) {
+    if (latestVersionCheckInterval <= 0) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    Long checkTime = latestVersionCheckTimes.get(processDefinitionKey);
+    if (checkTime != null && now - checkTime.longValue() < latestVersionCheckInterval) {
+      return true;
+    }
+    if (processDefinition.getVersion() != processDefinitionManager.findLatestProcessDefinitionVersionByKey(processDefinitionKey)) {
+      return false;
+    }
+    latestVersionCheckTimes.put(processDefinitionKey, now);
+    return true;
+  }
+
   protected ProcessDefinitionBehavior resolveProcessDefinition(ProcessDefinitionBehavior processDefinition) {
     String processDefinitionId = processDefinition.getId();
     String deploymentId = processDefinition.getDeploymentId();
@@ -91,16 +154,131 @@ public class DeploymentCache {
     return processDefinition;
   }
 
+  /**
+   * 加载流程定义并放入缓存
+   * <p>
+   * 同一个流程定义编号的并发加载只会执行一次loader,其余线程等待并共享加载结果。
+   * 加载期间流程定义被移除时,加载结果只返回给调用者,不会放入缓存。
+   * @param processDefinitionId 流程定义编号
+   * @param loader 流程定义解析器
+   * @return 流程定义
+   */
+  public ProcessDefinitionBehavior loadProcessDefinition(String processDefinitionId, Callable<ProcessDefinitionBehavior> loader) {
+    ProcessDefinitionBehavior processDefinition = processDefinitionCache.get(processDefinitionId);
+    if (processDefinition != null) {
+      return processDefinition;
+    }
+    FutureTask<ProcessDefinitionBehavior> newTask = new FutureTask<ProcessDefinitionBehavior>(loader);
+    FutureTask<ProcessDefinitionBehavior> task = loadingProcessDefinitions.putIfAbsent(processDefinitionId, newTask);
+    if (task == null) {
+      task = newTask;
+      try {
+        // 加载线程在任务登记前可能刚刚完成加载
+        processDefinition = processDefinitionCache.get(processDefinitionId);
+        if (processDefinition != null) {
+          newTask.cancel(false);
+          return processDefinition;
+        }
+        newTask.run();
+        processDefinition = getLoadResult(processDefinitionId, newTask);
+        if (processDefinition != null && loadingProcessDefinitions.get(processDefinitionId) == newTask) {
+          processDefinitionCache.put(processDefinitionId, processDefinition);
+        }
+        return processDefinition;
+      } finally {
+        loadingProcessDefinitions.remove(processDefinitionId, newTask);
+      }
+    }
+    return getLoadResult(processDefinitionId, task);
+  }
+
+  protected ProcessDefinitionBehavior getLoadResult(String processDefinitionId, FutureTask<ProcessDefinitionBehavior> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FixFlowException("流程定义 " + processDefinitionId + " 加载被中断", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new FixFlowException("流程定义 " + processDefinitionId + " 加载失败", cause);
+    } catch (CancellationException e) {
+      // 其它线程已经放入缓存
+      ProcessDefinitionBehavior processDefinition = processDefinitionCache.get(processDefinitionId);
+      if (processDefinition == null) {
+        throw new FixFlowException("流程定义 " + processDefinitionId + " 加载失败", e);
+      }
+      return processDefinition;
+    }
+  }
+
   public void addProcessDefinition(ProcessDefinitionBehavior processDefinition) {
     processDefinitionCache.put(processDefinition.getProcessDefinitionId(), processDefinition);
   }
 
   public void removeProcessDefinition(String processDefinitionId) {
     processDefinitionCache.remove(processDefinitionId);
+    flowGraphicsSvgCache.remove(processDefinitionId);
+    // 正在进行的加载结果不再放入缓存
+    loadingProcessDefinitions.remove(processDefinitionId);
+    Iterator<Map.Entry<String, String>> latestIds = latestProcessDefinitionIdCache.entrySet().iterator();
+    while (latestIds.hasNext()) {
+      Map.Entry<String, String> latestId = latestIds.next();
+      if (processDefinitionId.equals(latestId.getValue())) {
+        latestIds.remove();
+        latestVersionCheckTimes.remove(latestId.getKey());
+      }
+    }
+  }
+
+  /**
+   * 发布了新版本时清除流程定义KEY的最新版本索引
+   * <p>
+   * 发布事务提交前其它线程仍可能把旧版本重新放入索引,所以发布时还要在事务提交后再调用一次,见BpmnDeployer。
+   * @param processDefinitionKey 流程定义KEY
+   */
+  public void removeLatestProcessDefinition(String processDefinitionKey) {
+    latestProcessDefinitionIdCache.remove(processDefinitionKey);
+    latestVersionCheckTimes.remove(processDefinitionKey);
   }
   
   public void cleanProcessDefinitionCache(){
+	  loadingProcessDefinitions.clear();
+	  latestProcessDefinitionIdCache.clear();
+	  latestVersionCheckTimes.clear();
 	  processDefinitionCache.clear();
+	  flowGraphicsSvgCache.clear();
+	  resourceContentCache.clear();
+  }
+
+  /**
+   * 部署被更新或删除时清除它的资源内容
+   * @param deploymentId 部署编号
+   */
+  public void removeDeploymentResources(String deploymentId) {
+    resourceContentCache.removeDeployment(deploymentId);
+  }
+
+  public FlowGraphicsSvg findFlowGraphicsSvg(String processDefinitionId) {
+    return (FlowGraphicsSvg) flowGraphicsSvgCache.get(processDefinitionId);
+  }
+
+  public void addFlowGraphicsSvg(FlowGraphicsSvg flowGraphicsSvg) {
+    flowGraphicsSvgCache.put(flowGraphicsSvg.getProcessDefinitionId(), flowGraphicsSvg);
+  }
+
+  public long getLatestVersionCheckInterval() {
+    return latestVersionCheckInterval;
+  }
+
+  /**
+   * 设置最新版本索引的版本号校验间隔
+   * @param latestVersionCheckInterval 毫秒,为0时只依靠发布时的失效
+   */
+  public void setLatestVersionCheckInterval(long latestVersionCheckInterval) {
+    this.latestVersionCheckInterval = latestVersionCheckInterval;
   }
 
   public void addKnowledgeBase(String knowledgeBaseId, Object knowledgeBase) {
@@ -129,6 +307,14 @@ public class DeploymentCache {
     this.knowledgeBaseCache = knowledgeBaseCache;
   }
   
+  public ResourceContentCache getResourceContentCache() {
+    return resourceContentCache;
+  }
+  
+  public void setResourceContentCache(ResourceContentCache resourceContentCache) {
+    this.resourceContentCache = resourceContentCache;
+  }
+  
   public List<Deployer> getDeployers() {
     return deployers;
   }
@@ -20,12 +20,14 @@ package com.founder.fix.fixflow.core.impl.persistence.instance;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.archive.ArchiveCheckpoint;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
@@ -96,6 +98,74 @@ public class HistoryPersistence {
 		return true;
 	}
 	
+	/**
+	 * 插入归档检查点
+	 * @param archiveCheckpoint
+	 */
+	public void insertArchiveCheckpoint(ArchiveCheckpoint archiveCheckpoint){
+		sqlCommand.insert("FIXFLOW_ARCHIVE_CHECKPOINT", archiveCheckpoint.getPersistentState());
+	}
+	
+	/**
+	 * 更新归档进度,只写游标和计数字段,本批完成整个归档时同时写完成状态。
+	 * 只更新运行中的检查点,不会覆盖同时停止归档写入的状态
+	 * @param archiveCheckpoint
+	 * @return 更新的行数,检查点已不在运行状态时为0
+	 */
+	public int updateArchiveProgress(ArchiveCheckpoint archiveCheckpoint){
+		Map<String, Object> objectParam = new HashMap<String, Object>();
+		objectParam.put("ARCHIVED_COUNT", (int) archiveCheckpoint.getArchivedCount());
+		objectParam.put("CHUNK_COUNT", (int) archiveCheckpoint.getChunkCount());
+		if (archiveCheckpoint.getLastProcessInstanceId() != null) {
+			objectParam.put("LAST_PROCESSINSTANCE_ID", archiveCheckpoint.getLastProcessInstanceId());
+		}
+		objectParam.put("LAST_CHUNK_MILLIS", (int) archiveCheckpoint.getLastChunkMillis());
+		objectParam.put("UPDATE_TIME", archiveCheckpoint.getUpdateTime());
+		if (ArchiveCheckpoint.STATUS_COMPLETED.equals(archiveCheckpoint.getStatus())) {
+			objectParam.put("STATUS", ArchiveCheckpoint.STATUS_COMPLETED);
+		}
+		Integer rows = sqlCommand.update("FIXFLOW_ARCHIVE_CHECKPOINT", objectParam, "ARCHIVE_ID=? and STATUS=?", new Object[] {
+				archiveCheckpoint.getId(), ArchiveCheckpoint.STATUS_RUNNING });
+		return rows == null ? 0 : rows;
+	}
+	
+	/**
+	 * 更新归档状态,只写状态、错误信息和更新时间,不会覆盖归档线程同时写入的进度。
+	 * 已完成的检查点不再修改
+	 * @param archiveCheckpoint
+	 * @return 更新的行数
+	 */
+	public int updateArchiveStatus(ArchiveCheckpoint archiveCheckpoint){
+		Map<String, Object> objectParam = new HashMap<String, Object>();
+		objectParam.put("STATUS", archiveCheckpoint.getStatus());
+		String errorMessage = archiveCheckpoint.getErrorMessage();
+		if (errorMessage != null && errorMessage.length() > 4000) {
+			errorMessage = errorMessage.substring(0, 4000);
+		}
+		objectParam.put("ERROR_MESSAGE", errorMessage);
+		objectParam.put("UPDATE_TIME", archiveCheckpoint.getUpdateTime());
+		Integer rows = sqlCommand.update("FIXFLOW_ARCHIVE_CHECKPOINT", objectParam, "ARCHIVE_ID=? and STATUS<>?", new Object[] {
+				archiveCheckpoint.getId(), ArchiveCheckpoint.STATUS_COMPLETED });
+		return rows == null ? 0 : rows;
+	}
+	
+	/**
+	 * 查询归档检查点
+	 * @param archiveId
+	 * @return
+	 */
+	public ArchiveCheckpoint selectArchiveCheckpointById(String archiveId){
+		List<Object> objectParamWhere = new ArrayList<Object>();
+		objectParamWhere.add(archiveId);
+		List<Map<String, Object>> dataObj = sqlCommand.queryForList("select * from FIXFLOW_ARCHIVE_CHECKPOINT where ARCHIVE_ID=?", objectParamWhere);
+		if (dataObj.size() == 0) {
+			return null;
+		}
+		ArchiveCheckpoint archiveCheckpoint = new ArchiveCheckpoint();
+		archiveCheckpoint.persistentInit(dataObj.get(0));
+		return archiveCheckpoint;
+	}
+	
 	private String getInsertSqlString(String tableId,String whereSql){
 		
 		Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
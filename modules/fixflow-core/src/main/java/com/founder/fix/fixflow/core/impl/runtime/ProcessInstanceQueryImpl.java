@@ -250,6 +250,10 @@ public class ProcessInstanceQueryImpl extends AbstractQuery<ProcessInstanceQuery
 		return (List)commandContext.getProcessInstanceManager().findProcessInstanceByQueryCriteria(this, page);
 	}
 
+	protected String getKeysetIdColumn() {
+		return ProcessInstanceQueryProperty.PROCESS_INSTANCE_ID.getName();
+	}
+
 	// getters /////////////////////////////////////////////////////////////////
 
 	public boolean getOnlyProcessInstances() {
@@ -477,6 +481,10 @@ public class ProcessInstanceQueryImpl extends AbstractQuery<ProcessInstanceQuery
 		return queryLocation;
 	}
 
+	public void setQueryLocation(QueryLocation queryLocation) {
+		this.queryLocation = queryLocation;
+	}
+
 	public String getIsEnd() {
 		return isEnd;
 	}
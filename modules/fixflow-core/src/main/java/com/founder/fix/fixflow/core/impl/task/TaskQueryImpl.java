@@ -489,6 +489,10 @@ public class TaskQueryImpl extends AbstractQuery<TaskQuery, TaskInstance> implem
 		return commandContext.getTaskManager().findTaskCountByQueryCriteria(this);
 	}
 
+	protected String getKeysetIdColumn() {
+		return TaskQueryProperty.TASK_ID.getName();
+	}
+
 	// getters ////////////////////////////////////////////////////////////////
 
 	public String getName() {
@@ -765,6 +769,10 @@ public class TaskQueryImpl extends AbstractQuery<TaskQuery, TaskInstance> implem
 	public QueryLocation getQueryLocation() {
 		return queryLocation;
 	}
+
+	public void setQueryLocation(QueryLocation queryLocation) {
+		this.queryLocation = queryLocation;
+	}
 	
 	public String getBusinessKeyLike() {
 		return businessKeyLike;
@@ -105,6 +105,10 @@ public class BpmnModelUtil {
 	}
 	
 	public static BPMNShape getBpmnShape(Definitions definitions,String elementId){
+		ElementIndex elementIndex = ElementIndex.get(definitions);
+		if(elementIndex != null){
+			return elementIndex.getShape(elementId);
+		}
 		List<DiagramElement> diagramElements=definitions.getDiagrams().get(0).getPlane().getPlaneElement();
 		for (DiagramElement diagramElement : diagramElements) {
 			if(diagramElement instanceof BPMNShape){
@@ -141,6 +145,10 @@ public class BpmnModelUtil {
 	}
 	
 	public static BPMNEdge getBpmnEdge(Definitions definitions,String elementId){
+		ElementIndex elementIndex = ElementIndex.get(definitions);
+		if(elementIndex != null){
+			return elementIndex.getEdge(elementId);
+		}
 		List<DiagramElement> diagramElements=definitions.getDiagrams().get(0).getPlane().getPlaneElement();
 		for (DiagramElement diagramElement : diagramElements) {
 			if(diagramElement instanceof BPMNEdge){
@@ -37,6 +37,11 @@ public class EMFUtil {
 		if (id == null || id.isEmpty())
 			return null;
 
+		ElementIndex elementIndex = ElementIndex.get(eObject);
+		if (elementIndex != null) {
+			return elementIndex.getElement(id);
+		}
+
 		List<BaseElement> baseElements = getAll(BaseElement.class,eObject);
 
 		for (BaseElement be : baseElements) {
@@ -53,6 +58,11 @@ public class EMFUtil {
 		if (id == null || id.isEmpty())
 			return null;
 
+		ElementIndex elementIndex = ElementIndex.get(eObject);
+		if (elementIndex != null) {
+			return elementIndex.getElement(id, class1);
+		}
+
 		List<BaseElement> baseElements = getAll(BaseElement.class,eObject);
 
 		for (BaseElement be : baseElements) {
@@ -68,6 +78,11 @@ public class EMFUtil {
 		if (id == null || id.isEmpty())
 			return null;
 
+		ElementIndex elementIndex = ElementIndex.get(eObject);
+		if (elementIndex != null) {
+			return elementIndex.getFlowElement(id);
+		}
+
 		List<FlowElement> baseElements = getAll(FlowElement.class,eObject);
 
 		for (FlowElement be : baseElements) {
@@ -89,8 +104,15 @@ public class EMFUtil {
 	}
 
 
+	/**
+	 * 取得定义文件中某个类型的全部内容,建立了元素索引时返回索引中不可修改的列表
+	 */
 	@SuppressWarnings("unchecked")
 	public static <T> List<T> getAll(final Class<T> class1,EObject eObject) {
+		ElementIndex elementIndex = ElementIndex.get(eObject);
+		if (elementIndex != null) {
+			return elementIndex.getAll(class1);
+		}
 		ArrayList<T> l = new ArrayList<T>();
 		TreeIterator<EObject> contents =eObject.eResource().getAllContents();
 		for (; contents.hasNext();) {
@@ -0,0 +1,260 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.impl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.bpmn2.BaseElement;
+import org.eclipse.bpmn2.FlowElement;
+import org.eclipse.bpmn2.di.BPMNEdge;
+import org.eclipse.bpmn2.di.BPMNShape;
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * 流程定义文件的元素索引
+ * <p>
+ * 在流程定义部署或放入缓存时对定义文件(Resource)的全部内容遍历一次,
+ * 建立元素编号到元素的索引(包括子流程、泳道和图形信息),之后按编号查找元素不再遍历整个模型。
+ * 索引以Adapter的形式挂在Resource上,建立后不可修改,模型被修改后需要重新建立。
+ * 
+ * @author kenshin
+ */
+public class ElementIndex extends AdapterImpl {
+
+	/** 定义文件的全部内容,按文档顺序 */
+	protected final List<EObject> contents;
+
+	/** 元素编号对应的元素,同一编号有多个元素时按文档顺序排列 */
+	protected final Map<String, List<BaseElement>> elements;
+
+	/**
+	 * 元素编号对应的FlowElement,同一编号有多个FlowElement时保留文档顺序中的最后一个,
+	 * 与原来遍历全部FlowElement放入Map的结果一致
+	 */
+	protected final Map<String, FlowElement> flowElements;
+
+	/** 元素编号对应的图形 */
+	protected final Map<String, BPMNShape> shapes;
+
+	/** 元素编号对应的连线 */
+	protected final Map<String, BPMNEdge> edges;
+
+	/** 按类型分好的内容,FlowElement和BaseElement在建立索引时分好,其它类型在第一次查找时分好 */
+	protected final ConcurrentHashMap<Class<?>, List<?>> typeContents = new ConcurrentHashMap<Class<?>, List<?>>();
+
+	protected ElementIndex(Resource resource) {
+		List<EObject> contentList = new ArrayList<EObject>();
+		Map<String, List<BaseElement>> elementMap = new HashMap<String, List<BaseElement>>();
+		Map<String, FlowElement> flowElementMap = new LinkedHashMap<String, FlowElement>();
+		List<BPMNShape> shapeList = new ArrayList<BPMNShape>();
+		List<BPMNEdge> edgeList = new ArrayList<BPMNEdge>();
+		List<BaseElement> baseElementList = new ArrayList<BaseElement>();
+		List<FlowElement> flowElementList = new ArrayList<FlowElement>();
+		TreeIterator<EObject> iterator = resource.getAllContents();
+		while (iterator.hasNext()) {
+			EObject eObject = iterator.next();
+			contentList.add(eObject);
+			if (eObject instanceof BaseElement) {
+				baseElementList.add((BaseElement) eObject);
+				String id = ((BaseElement) eObject).getId();
+				if (eObject instanceof FlowElement) {
+					flowElementList.add((FlowElement) eObject);
+					flowElementMap.put(id, (FlowElement) eObject);
+				}
+				if (id != null) {
+					List<BaseElement> elementList = elementMap.get(id);
+					if (elementList == null) {
+						elementList = new ArrayList<BaseElement>(1);
+						elementMap.put(id, elementList);
+					}
+					elementList.add((BaseElement) eObject);
+				}
+			}
+			if (eObject instanceof BPMNShape) {
+				shapeList.add((BPMNShape) eObject);
+			} else if (eObject instanceof BPMNEdge) {
+				edgeList.add((BPMNEdge) eObject);
+			}
+		}
+		for (Map.Entry<String, List<BaseElement>> entry : elementMap.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		Map<String, BPMNShape> shapeMap = new HashMap<String, BPMNShape>();
+		for (BPMNShape shape : shapeList) {
+			String elementId = getReferenceId(shape.getBpmnElement());
+			if (elementId != null && !shapeMap.containsKey(elementId)) {
+				shapeMap.put(elementId, shape);
+			}
+		}
+		Map<String, BPMNEdge> edgeMap = new HashMap<String, BPMNEdge>();
+		for (BPMNEdge edge : edgeList) {
+			String elementId = getReferenceId(edge.getBpmnElement());
+			if (elementId != null && !edgeMap.containsKey(elementId)) {
+				edgeMap.put(elementId, edge);
+			}
+		}
+		this.contents = Collections.unmodifiableList(contentList);
+		this.elements = Collections.unmodifiableMap(elementMap);
+		this.flowElements = Collections.unmodifiableMap(flowElementMap);
+		this.shapes = Collections.unmodifiableMap(shapeMap);
+		this.edges = Collections.unmodifiableMap(edgeMap);
+		typeContents.put(BaseElement.class, Collections.unmodifiableList(baseElementList));
+		typeContents.put(FlowElement.class, Collections.unmodifiableList(flowElementList));
+	}
+
+	/**
+	 * 为元素所在的定义文件建立索引,已有的索引会被替换
+	 * @param eObject 定义文件中的任一元素
+	 * @return 元素不在定义文件中时返回null
+	 */
+	public static ElementIndex build(EObject eObject) {
+		Resource resource = eObject.eResource();
+		if (resource == null) {
+			return null;
+		}
+		synchronized (resource) {
+			Adapter oldIndex = getExisting(resource);
+			if (oldIndex != null) {
+				resource.eAdapters().remove(oldIndex);
+			}
+			ElementIndex index = new ElementIndex(resource);
+			resource.eAdapters().add(index);
+			return index;
+		}
+	}
+
+	/**
+	 * 取得元素所在的定义文件的索引
+	 * @param eObject 定义文件中的任一元素
+	 * @return 没有建立索引时返回null
+	 */
+	public static ElementIndex get(EObject eObject) {
+		if (eObject == null) {
+			return null;
+		}
+		Resource resource = eObject.eResource();
+		if (resource == null) {
+			return null;
+		}
+		return (ElementIndex) getExisting(resource);
+	}
+
+	private static Adapter getExisting(Resource resource) {
+		List<Adapter> adapters = resource.eAdapters();
+		for (int i = 0; i < adapters.size(); i++) {
+			Adapter adapter = adapters.get(i);
+			if (adapter instanceof ElementIndex) {
+				return adapter;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 引用元素的编号,未解析的代理对象取URI中的编号
+	 */
+	private static String getReferenceId(BaseElement baseElement) {
+		if (baseElement == null) {
+			return null;
+		}
+		if (baseElement.getId() != null) {
+			return baseElement.getId();
+		}
+		if (baseElement instanceof InternalEObject && ((InternalEObject) baseElement).eProxyURI() != null) {
+			return ((InternalEObject) baseElement).eProxyURI().fragment();
+		}
+		return null;
+	}
+
+	public boolean isAdapterForType(Object type) {
+		return type == ElementIndex.class;
+	}
+
+	public BaseElement getElement(String id) {
+		List<BaseElement> elementList = elements.get(id);
+		return elementList == null ? null : elementList.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getElement(String id, Class<T> class1) {
+		List<BaseElement> elementList = elements.get(id);
+		if (elementList != null) {
+			for (BaseElement baseElement : elementList) {
+				if (class1.isInstance(baseElement)) {
+					return (T) baseElement;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 同一编号有多个FlowElement时返回文档顺序中的第一个,与遍历查找一致
+	 */
+	public FlowElement getFlowElement(String id) {
+		return getElement(id, FlowElement.class);
+	}
+
+	/**
+	 * @return 全部FlowElement,同一编号保留文档顺序中的最后一个,不可修改
+	 */
+	public Map<String, FlowElement> getFlowElements() {
+		return flowElements;
+	}
+
+	/**
+	 * 取得定义文件中某个类型的全部内容,按文档顺序,同一类型只遍历一次
+	 * @param class1 类型
+	 * @return 不可修改
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getAll(Class<T> class1) {
+		List<T> list = (List<T>) typeContents.get(class1);
+		if (list != null) {
+			return list;
+		}
+		List<T> newList = new ArrayList<T>();
+		for (EObject eObject : contents) {
+			if (class1.isInstance(eObject)) {
+				newList.add((T) eObject);
+			}
+		}
+		list = Collections.unmodifiableList(newList);
+		List<T> existing = (List<T>) typeContents.putIfAbsent(class1, list);
+		return existing == null ? list : existing;
+	}
+
+	public BPMNShape getShape(String elementId) {
+		return shapes.get(elementId);
+	}
+
+	public BPMNEdge getEdge(String elementId) {
+		return edges.get(elementId);
+	}
+}
@@ -17,6 +17,9 @@
  */
 package com.founder.fix.fixflow.core.impl.util;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.founder.fix.bpmn2extensions.sqlmappingconfig.Column;
 import com.founder.fix.bpmn2extensions.sqlmappingconfig.DataBaseTable;
 import com.founder.fix.fixflow.core.ProcessEngineManagement;
@@ -31,6 +34,25 @@ import com.founder.fix.fixflow.core.runtime.QueryLocation;
  */
 public class QueryTableUtil {
 	
+	/** 生成的查询表语句和字段字符串,key为tableId加查询位置,表配置重新加载时清空 */
+	private static final Map<String, String> tableSqlCache = new ConcurrentHashMap<String, String>();
+	
+	/**
+	 * 清空缓存的查询表语句
+	 */
+	public static void clearCache(){
+		tableSqlCache.clear();
+	}
+	
+	/**
+	 * 是否启用了归档,未启用时所有查询位置都只查询运行表
+	 * @return
+	 */
+	public static boolean isArchiveEnabled(){
+		ProcessEngineConfigurationImpl processEngineConfigurationImpl = ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration();
+		return StringUtil.getBoolean(processEngineConfigurationImpl.getPigeonholeConfig().getIsEnable());
+	}
+	
 	/**
 	 * 获取查询查询表名，run his run_his
 	 * @param tableId
@@ -38,6 +60,16 @@ public class QueryTableUtil {
 	 * @return
 	 */
 	public static String getTableSelect(String tableId,QueryLocation queryLocation){
+		String cacheKey = tableId + "|" + queryLocation;
+		String tableName = tableSqlCache.get(cacheKey);
+		if(tableName == null){
+			tableName = createTableSelect(tableId, queryLocation);
+			tableSqlCache.put(cacheKey, tableName);
+		}
+		return tableName;
+	}
+	
+	private static String createTableSelect(String tableId,QueryLocation queryLocation){
 		ProcessEngineConfigurationImpl processEngineConfigurationImpl = ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration();
 		DataBaseTable dataBaseTable = processEngineConfigurationImpl.getDataBaseTable(tableId);
 		if(dataBaseTable == null){
@@ -125,6 +157,16 @@ public class QueryTableUtil {
 	}
 	
 	public static String getColumnStringWithOutArchiveTime(String tableId){
+		String cacheKey = tableId + "|columnWithOutArchiveTime";
+		String columnString = tableSqlCache.get(cacheKey);
+		if(columnString == null){
+			columnString = createColumnStringWithOutArchiveTime(tableId);
+			tableSqlCache.put(cacheKey, columnString);
+		}
+		return columnString;
+	}
+	
+	private static String createColumnStringWithOutArchiveTime(String tableId){
 		ProcessEngineConfigurationImpl processEngineConfigurationImpl = ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration();
 		DataBaseTable dataBaseTable = processEngineConfigurationImpl.getDataBaseTable(tableId);
 		if(dataBaseTable == null){
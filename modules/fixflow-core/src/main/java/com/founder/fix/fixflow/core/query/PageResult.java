@@ -0,0 +1,79 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.query;
+
+import java.util.List;
+
+/**
+ * 分页查询结果,包含当前页的数据和总行数
+ * 
+ * @param <U> 数据类型
+ */
+public class PageResult<U> {
+
+	protected List<U> rows;
+
+	protected long total;
+
+	protected boolean hasMore;
+
+	protected String continuationToken;
+
+	public PageResult(List<U> rows, long total, boolean hasMore) {
+		this.rows = rows;
+		this.total = total;
+		this.hasMore = hasMore;
+	}
+
+	public PageResult(List<U> rows, boolean hasMore, String continuationToken) {
+		this(rows, -1, hasMore);
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * 当前页的数据
+	 * @return
+	 */
+	public List<U> getRows() {
+		return rows;
+	}
+
+	/**
+	 * 总行数,使用{@link Query#listPageWithHasMore(int, int)}和{@link Query#listPageAfter(String, int)}查询时为-1
+	 * @return
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * 当前页之后是否还有数据
+	 * @return
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * 查询下一页的游标,只有{@link Query#listPageAfter(String, int)}查询并且还有数据时不为空
+	 * @return
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+}
@@ -77,6 +77,38 @@ public interface Query<T extends Query<?, ?>, U extends Object> {
 	 */
 	List<U> listPagination(int pageNum, int rowNum);
 	
+	/**
+	 * 获取查询数据分页列表和总行数
+	 * <p>
+	 * 数据库支持窗口函数时总行数和数据在同一条语句中取得,否则在同一个命令中再查询一次总行数;
+	 * 当前页不满时直接由行数推算总行数。
+	 * 
+	 * @param pageNum 页码数
+	 * @param rowNum 显示行数
+	 * @return 分页列表和总行数
+	 */
+	PageResult<U> listPageWithTotal(int pageNum, int rowNum);
+	
+	/**
+	 * 获取查询数据分页列表,不查询总行数,只判断后面是否还有数据
+	 * 
+	 * @param pageNum 页码数
+	 * @param rowNum 显示行数
+	 * @return 分页列表,总行数为-1
+	 */
+	PageResult<U> listPageWithHasMore(int pageNum, int rowNum);
+	
+	/**
+	 * 游标分页查询,以上一页最后一行的排序字段值定位,翻页深度不影响查询性能
+	 * <p>
+	 * 排序后总是加上主键排序,游标只能用于排序条件相同的查询。
+	 * 
+	 * @param continuationToken 上一页返回的{@link PageResult#getContinuationToken()},为空时查询第一页
+	 * @param rowNum 显示行数
+	 * @return 分页列表和下一页的游标,总行数为-1
+	 */
+	PageResult<U> listPageAfter(String continuationToken, int rowNum);
+	
 	/**
 	 * 扩展查询
 	 * @param queryExpandTo
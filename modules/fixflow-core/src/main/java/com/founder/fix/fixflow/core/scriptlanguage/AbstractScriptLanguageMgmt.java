@@ -18,11 +18,13 @@
 package com.founder.fix.fixflow.core.scriptlanguage;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.founder.fix.fixflow.core.impl.Context;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.DataVariableBehavior;
 import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
 import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
@@ -113,6 +115,23 @@ public abstract class AbstractScriptLanguageMgmt {
 	 */
 	public abstract Object getVariable(String variableName);
 	
+	/**
+	 * 脚本环境中是否已经有这个变量,默认按变量值不为null判断
+	 * @param variableName 变量名称
+	 * @return
+	 */
+	public boolean hasVariable(String variableName) {
+		return getVariable(variableName) != null;
+	}
+	
+	/**
+	 * 从脚本环境中移除变量,默认把变量值置为null,能够移除变量的脚本语言应该覆盖这个方法
+	 * @param variableName 变量名称
+	 */
+	public void removeVariable(String variableName) {
+		setVariable(variableName, null);
+	}
+	
 	/**
 	 * 执行表达式
 	 * @param scriptText 表达式字符串
@@ -121,6 +140,104 @@ public abstract class AbstractScriptLanguageMgmt {
 	 */
 	public abstract Object execute(String scriptText, ExecutionContext executionContext);
 	
+	/**
+	 * 执行预编译的表达式模板
+	 * <p>
+	 * 简单的比较和逻辑表达式由{@link SimpleExpression}直接求值,返回{@link SimpleExpression#UNSUPPORTED}
+	 * 或者不在支持的子集内时交给{@link #executeScript(ExpressionTemplate, ExecutionContext)}由脚本引擎执行。
+	 * @param expressionTemplate 表达式模板
+	 * @param executionContext 流程上下文
+	 * @return
+	 */
+	public Object execute(ExpressionTemplate expressionTemplate, ExecutionContext executionContext) {
+		if (expressionTemplate.getExpressionText() == null) {
+			return null;
+		}
+		SimpleExpression simpleExpression = expressionTemplate.getSimpleExpression();
+		if (simpleExpression != null && isSimpleExpressionEnabled()) {
+			dataVariableCalculate(expressionTemplate, executionContext);
+			// 和脚本引擎执行前绑定相同的变量
+			setVariable("bizData", Context.getProcessEngineConfiguration().getBizData());
+			if (executionContext != null) {
+				setVariable("processInfo", executionContext);
+			}
+			Object resultObj = simpleExpression.evaluate(getScriptVariables(simpleExpression));
+			if (resultObj != SimpleExpression.UNSUPPORTED) {
+				return resultObj;
+			}
+		}
+		return executeScript(expressionTemplate, executionContext);
+	}
+	
+	/**
+	 * 由脚本引擎执行表达式模板,默认按原始表达式文本执行,支持模板的脚本语言应该覆盖这个方法。
+	 * @param expressionTemplate 表达式模板
+	 * @param executionContext 流程上下文
+	 * @return
+	 */
+	protected Object executeScript(ExpressionTemplate expressionTemplate, ExecutionContext executionContext) {
+		return execute(expressionTemplate.getExpressionText(), executionContext);
+	}
+	
+	/**
+	 * 是否使用{@link SimpleExpression}直接求值。SimpleExpression按Groovy的语义求值,
+	 * 比较运算语义不同的脚本语言应该覆盖这个方法返回false
+	 * @return
+	 */
+	protected boolean isSimpleExpressionEnabled() {
+		return true;
+	}
+	
+	/**
+	 * 简单表达式求值使用的变量,默认从脚本环境中取出表达式引用到的变量,
+	 * 能直接提供变量集合的脚本语言可以覆盖这个方法
+	 * @param simpleExpression 简单表达式
+	 * @return
+	 */
+	protected Map<?, ?> getScriptVariables(SimpleExpression simpleExpression) {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		for (String variableName : simpleExpression.getVariableNames()) {
+			if (hasVariable(variableName)) {
+				variables.put(variableName, getVariable(variableName));
+			}
+		}
+		return variables;
+	}
+	
+	/**
+	 * 使用本次执行专用的变量绑定执行表达式,变量只在本次执行中可见,不会留在脚本环境里。
+	 * 默认实现临时放入变量,执行后还原原有的变量并移除原来没有的变量,支持独立绑定的脚本语言应该覆盖这个方法。
+	 * @param scriptText 表达式文本
+	 * @param bindings 本次执行的变量,为null时按没有变量执行
+	 * @return
+	 */
+	public Object execute(String scriptText, Map<String, Object> bindings) {
+		if (bindings == null || bindings.isEmpty()) {
+			return execute(scriptText);
+		}
+		Map<String, Object> oldVariables = new HashMap<String, Object>();
+		List<String> newVariables = new ArrayList<String>();
+		for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+			String variableName = binding.getKey();
+			if (hasVariable(variableName)) {
+				oldVariables.put(variableName, getVariable(variableName));
+			} else {
+				newVariables.add(variableName);
+			}
+			setVariable(variableName, binding.getValue());
+		}
+		try {
+			return execute(scriptText);
+		} finally {
+			for (Map.Entry<String, Object> oldVariable : oldVariables.entrySet()) {
+				setVariable(oldVariable.getKey(), oldVariable.getValue());
+			}
+			for (String variableName : newVariables) {
+				removeVariable(variableName);
+			}
+		}
+	}
+	
 	/**
 	 * 脚本管理器初始化方法
 	 */
@@ -128,12 +245,15 @@ public abstract class AbstractScriptLanguageMgmt {
 	
 	public abstract void close();
 	
+	/**
+	 * 数据变量引用${var}的正则,只编译一次
+	 */
+	private static final Pattern DATA_VARIABLE_PATTERN = Pattern.compile("\\$\\{[^}{]+\\}");
+	
 	public static List<String> getDataVariableList(String scriptText) {
 		String inexp = scriptText;
 		// ${test} afdfs ${test1}erewr ${test3}
-		String regex = "\\$\\{[^}{]+\\}";
-		Pattern regexExpType = Pattern.compile(regex);
-		Matcher mType = regexExpType.matcher(inexp);
+		Matcher mType = DATA_VARIABLE_PATTERN.matcher(inexp);
 		String expType = inexp;
 		List<String> list = new ArrayList<String>();
 		while (mType.find()) {
@@ -144,13 +264,9 @@ public abstract class AbstractScriptLanguageMgmt {
 		return list;
 	}
 
-	private static String __REGEX_SIGNS = "\\$\\{[^}{]+\\}";
-
 	public static String getExpressionAll(String inexp) {
 		String str = null;
-		String regex = __REGEX_SIGNS;
-		Pattern regexExpType = Pattern.compile(regex);
-		Matcher mType = regexExpType.matcher(inexp);
+		Matcher mType = DATA_VARIABLE_PATTERN.matcher(inexp);
 		String expType = inexp;
 		StringBuffer sb = new StringBuffer();
 		while (mType.find()) {
@@ -165,30 +281,50 @@ public abstract class AbstractScriptLanguageMgmt {
 	
 	
 	public static void dataVariableCalculate(String scriptText, ExecutionContext executionContext){
-		DataVariableMgmtInstance dataVariableMgmtInstance = executionContext.getProcessInstance().getDataVariableMgmtInstance();
-
-		List<String> dataVariableList = getDataVariableList(scriptText);
+		
+		ProcessDefinitionBehavior processDefinition = executionContext.getProcessInstance().getProcessDefinition();
+		dataVariableCalculate(ExpressionTemplate.compile(scriptText, processDefinition), executionContext);
+		
+	}
+	
+	/**
+	 * 计算表达式模板中引用到的数据变量,变量定义在模板编译时已经找好,这里只创建变量实例并执行
+	 * @param expressionTemplate 表达式模板
+	 * @param executionContext 流程上下文
+	 */
+	public static void dataVariableCalculate(ExpressionTemplate expressionTemplate, ExecutionContext executionContext){
 
+		List<String> dataVariableList = expressionTemplate.getDataVariableIds();
+		
+		if (dataVariableList.isEmpty()) {
+			return;
+		}
+		
+		DataVariableMgmtInstance dataVariableMgmtInstance = executionContext.getProcessInstance().getDataVariableMgmtInstance();
+		
+		// 先收集表达式中用到的持久化变量名,合并成一次查询从数据库取回
+		List<String> persistedVariableNames = new ArrayList<String>();
 		for (String expressionId : dataVariableList) {
-
 			if (dataVariableMgmtInstance.getDataVariableByExpressionId(expressionId) == null) {
+				for (DataVariableBehavior dataVariableBehavior : expressionTemplate.getDataVariableBehaviors(expressionId)) {
+					if (dataVariableBehavior.isPersistence()) {
+						persistedVariableNames.add(dataVariableBehavior.getId());
+					}
+				}
+			}
+		}
+		if (!persistedVariableNames.isEmpty()) {
+			dataVariableMgmtInstance.loadPersistedVariables(persistedVariableNames);
+		}
 
-				List<DataVariableBehavior> dataVariableBehaviors = dataVariableMgmtInstance.getProcessInstance().getProcessDefinition().getDataVariableMgmtDefinition()
-						.getDataVariableBehaviorsByProcess();
-				for (DataVariableBehavior dataVariableBehavior : dataVariableBehaviors) {
-
+		for (String expressionId : dataVariableList) {
 
-					if (dataVariableBehavior.getId().equals(expressionId)) {
+			if (dataVariableMgmtInstance.getDataVariableByExpressionId(expressionId) == null) {
 
-						DataVariableEntity dataVariableEntity = dataVariableMgmtInstance.createDataVariableInstance(dataVariableBehavior);
-						dataVariableEntity.executeExpression(executionContext);
+				for (DataVariableBehavior dataVariableBehavior : expressionTemplate.getDataVariableBehaviors(expressionId)) {
 
-					}else{
-						if(dataVariableBehavior.getBizType()!=null&&!dataVariableBehavior.getBizType().equals("")&&dataVariableBehavior.getBizType().equals(DataVariableEntity.QUERY_DATA_KEY)){
-							DataVariableEntity dataVariableEntity = dataVariableMgmtInstance.createDataVariableInstance(dataVariableBehavior);
-							dataVariableEntity.executeExpression(executionContext);
-						}
-					}
+					DataVariableEntity dataVariableEntity = dataVariableMgmtInstance.createDataVariableInstance(dataVariableBehavior);
+					dataVariableEntity.executeExpression(executionContext);
 
 				}
 
@@ -0,0 +1,166 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.scriptlanguage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.DataVariableBehavior;
+import com.founder.fix.fixflow.core.impl.bpmn.behavior.ProcessDefinitionBehavior;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+
+/**
+ * 预编译的表达式模板。
+ * <p>
+ * 表达式在部署(或第一次执行)时解析一次:提取引用的数据变量编号${var}、生成替换后的脚本文本,
+ * 并找出每个变量编号需要计算的数据变量定义。模板创建后不再修改,可以缓存在线条、连接器、任务等元素上,
+ * 运行时只需要绑定变量并执行。
+ * </p>
+ */
+public final class ExpressionTemplate {
+
+	/**
+	 * 原始表达式文本
+	 */
+	private final String expressionText;
+
+	/**
+	 * 替换掉${}之后的脚本文本
+	 */
+	private final String scriptText;
+
+	/**
+	 * 表达式中引用的数据变量编号,按出现顺序
+	 */
+	private final List<String> dataVariableIds;
+
+	/**
+	 * 每个变量编号第一次使用时需要计算的数据变量定义
+	 */
+	private final Map<String, List<DataVariableBehavior>> dataVariableBehaviors;
+
+	/**
+	 * 脚本文本在简单表达式子集内时的语法树,否则为null
+	 */
+	private final SimpleExpression simpleExpression;
+
+	private ExpressionTemplate(String expressionText, String scriptText, List<String> dataVariableIds,
+			Map<String, List<DataVariableBehavior>> dataVariableBehaviors) {
+		this.expressionText = expressionText;
+		this.scriptText = scriptText;
+		this.dataVariableIds = dataVariableIds;
+		this.dataVariableBehaviors = dataVariableBehaviors;
+		this.simpleExpression = SimpleExpression.parse(scriptText);
+	}
+
+	/**
+	 * 解析表达式,生成表达式模板
+	 * @param expressionText 表达式文本
+	 * @param processDefinition 表达式所属的流程定义,用来查找表达式引用的数据变量定义
+	 * @return
+	 */
+	public static ExpressionTemplate compile(String expressionText, ProcessDefinitionBehavior processDefinition) {
+
+		if (expressionText == null) {
+			return new ExpressionTemplate(null, null, Collections.<String> emptyList(), Collections.<String, List<DataVariableBehavior>> emptyMap());
+		}
+
+		List<String> dataVariableIds = AbstractScriptLanguageMgmt.getDataVariableList(expressionText);
+		String scriptText = dataVariableIds.isEmpty() ? expressionText : AbstractScriptLanguageMgmt.getExpressionAll(expressionText);
+
+		Map<String, List<DataVariableBehavior>> dataVariableBehaviors = new LinkedHashMap<String, List<DataVariableBehavior>>();
+		if (!dataVariableIds.isEmpty() && processDefinition != null && processDefinition.getDataVariableMgmtDefinition() != null) {
+			List<DataVariableBehavior> processDataVariableBehaviors = processDefinition.getDataVariableMgmtDefinition().getDataVariableBehaviorsByProcess();
+			for (String dataVariableId : dataVariableIds) {
+				if (dataVariableBehaviors.containsKey(dataVariableId)) {
+					continue;
+				}
+				// 与变量编号相同的数据变量,以及所有业务查询变量
+				List<DataVariableBehavior> behaviors = new ArrayList<DataVariableBehavior>();
+				for (DataVariableBehavior dataVariableBehavior : processDataVariableBehaviors) {
+					if (dataVariableBehavior.getId().equals(dataVariableId)
+							|| DataVariableEntity.QUERY_DATA_KEY.equals(dataVariableBehavior.getBizType())) {
+						behaviors.add(dataVariableBehavior);
+					}
+				}
+				dataVariableBehaviors.put(dataVariableId, Collections.unmodifiableList(behaviors));
+			}
+		}
+
+		return new ExpressionTemplate(expressionText, scriptText, Collections.unmodifiableList(dataVariableIds),
+				Collections.unmodifiableMap(dataVariableBehaviors));
+	}
+
+	/**
+	 * 获取原始表达式文本
+	 * @return
+	 */
+	public String getExpressionText() {
+		return expressionText;
+	}
+
+	/**
+	 * 获取替换掉${}之后可以直接执行的脚本文本
+	 * @return
+	 */
+	public String getScriptText() {
+		return scriptText;
+	}
+
+	/**
+	 * 获取表达式中引用的数据变量编号
+	 * @return
+	 */
+	public List<String> getDataVariableIds() {
+		return dataVariableIds;
+	}
+
+	/**
+	 * 获取变量编号对应的需要计算的数据变量定义
+	 * @param dataVariableId 变量编号
+	 * @return
+	 */
+	public List<DataVariableBehavior> getDataVariableBehaviors(String dataVariableId) {
+		List<DataVariableBehavior> behaviors = dataVariableBehaviors.get(dataVariableId);
+		if (behaviors == null) {
+			return Collections.emptyList();
+		}
+		return behaviors;
+	}
+
+	/**
+	 * 获取简单表达式的语法树,可以不经过脚本引擎直接求值
+	 * @return 表达式不在简单表达式子集内时返回null
+	 */
+	public SimpleExpression getSimpleExpression() {
+		return simpleExpression;
+	}
+
+	/**
+	 * 表达式文本是否与模板一致,用于判断缓存的模板是否还能使用
+	 * @param expressionText 表达式文本
+	 * @return
+	 */
+	public boolean isTemplateOf(String expressionText) {
+		return this.expressionText == null ? expressionText == null : this.expressionText.equals(expressionText);
+	}
+
+}
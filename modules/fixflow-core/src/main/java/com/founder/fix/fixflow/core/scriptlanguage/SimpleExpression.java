@@ -0,0 +1,542 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.scriptlanguage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 简单表达式求值器。
+ * <p>
+ * 线条条件大多是 ${amount} > 1000 && ${dept} == 'HR' 这样的简单比较,这里解析其中的安全子集:
+ * 字面量(数字、字符串、true、false、null)、变量引用、比较运算(== != > >= < <=)、
+ * 逻辑运算(&& || !)和括号。解析结果是不可变的语法树,缓存在{@link ExpressionTemplate}中,
+ * 执行时不经过脚本引擎。
+ * </p>
+ * <p>
+ * 子集之外的表达式{@link #parse(String)}返回null;执行时遇到无法保证与脚本引擎结果一致的情况
+ * (变量不存在、类型不同、非布尔值参与逻辑运算等){@link #evaluate(Map)}返回{@link #UNSUPPORTED},
+ * 调用方应该交给脚本引擎执行。
+ * </p>
+ */
+public final class SimpleExpression {
+
+	/**
+	 * 表示本次无法求值,需要交给脚本引擎执行
+	 */
+	public static final Object UNSUPPORTED = new Object();
+
+	private final Node root;
+
+	private final List<String> variableNames;
+
+	private SimpleExpression(Node root, List<String> variableNames) {
+		this.root = root;
+		this.variableNames = Collections.unmodifiableList(variableNames);
+	}
+
+	/**
+	 * 解析表达式
+	 * @param scriptText 已经替换过${}的脚本文本
+	 * @return 表达式不在支持的子集内时返回null
+	 */
+	public static SimpleExpression parse(String scriptText) {
+		if (scriptText == null) {
+			return null;
+		}
+		List<Token> tokens = tokenize(scriptText.trim());
+		if (tokens == null || tokens.isEmpty()) {
+			return null;
+		}
+		Parser parser = new Parser(tokens);
+		Node root = parser.parseOr();
+		if (root == null || !parser.isEnd()) {
+			return null;
+		}
+		List<String> variableNames = new ArrayList<String>();
+		for (Token token : tokens) {
+			if (token.type == VARIABLE && !variableNames.contains(token.text)) {
+				variableNames.add(token.text);
+			}
+		}
+		return new SimpleExpression(root, variableNames);
+	}
+
+	/**
+	 * 执行表达式
+	 * @param variables 脚本环境中的变量
+	 * @return 表达式的值,无法求值时返回{@link #UNSUPPORTED}
+	 */
+	public Object evaluate(Map<?, ?> variables) {
+		return root.evaluate(variables);
+	}
+
+	/**
+	 * 表达式中引用的变量名称,按出现顺序,不重复
+	 * @return
+	 */
+	public List<String> getVariableNames() {
+		return variableNames;
+	}
+
+	// 词法分析
+	// //////////////////////////////////////////////////////
+
+	private static final int LITERAL = 0;
+	private static final int VARIABLE = 1;
+	private static final int OPERATOR = 2;
+
+	private static class Token {
+		final int type;
+		final String text;
+		final Object value;
+
+		Token(int type, String text, Object value) {
+			this.type = type;
+			this.text = text;
+			this.value = value;
+		}
+	}
+
+	private static List<Token> tokenize(String text) {
+		List<Token> tokens = new ArrayList<Token>();
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (c == ' ' || c == '\t') {
+				i++;
+			} else if (c == '(' || c == ')') {
+				tokens.add(new Token(OPERATOR, String.valueOf(c), null));
+				i++;
+			} else if (c == '&' || c == '|') {
+				if (i + 1 >= length || text.charAt(i + 1) != c) {
+					return null;
+				}
+				tokens.add(new Token(OPERATOR, text.substring(i, i + 2), null));
+				i += 2;
+			} else if (c == '=' || c == '!' || c == '<' || c == '>') {
+				if (i + 1 < length && text.charAt(i + 1) == '=') {
+					tokens.add(new Token(OPERATOR, text.substring(i, i + 2), null));
+					i += 2;
+				} else if (c == '=') {
+					// 赋值
+					return null;
+				} else {
+					tokens.add(new Token(OPERATOR, String.valueOf(c), null));
+					i++;
+				}
+			} else if (c == '\'' || c == '"') {
+				int end = text.indexOf(c, i + 1);
+				if (end < 0) {
+					return null;
+				}
+				String value = text.substring(i + 1, end);
+				// 转义字符和GString插值交给脚本引擎处理
+				if (value.indexOf('\\') >= 0 || (c == '"' && value.indexOf('$') >= 0)) {
+					return null;
+				}
+				tokens.add(new Token(LITERAL, text.substring(i, end + 1), value));
+				i = end + 1;
+			} else if (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(text.charAt(i + 1)) && isOperandExpected(tokens))) {
+				int start = i;
+				i++;
+				while (i < length && Character.isDigit(text.charAt(i))) {
+					i++;
+				}
+				// 0开头的整数是八进制
+				int digitStart = text.charAt(start) == '-' ? start + 1 : start;
+				if (text.charAt(digitStart) == '0' && i - digitStart > 1) {
+					return null;
+				}
+				boolean decimal = false;
+				if (i + 1 < length && text.charAt(i) == '.' && Character.isDigit(text.charAt(i + 1))) {
+					decimal = true;
+					i++;
+					while (i < length && Character.isDigit(text.charAt(i))) {
+						i++;
+					}
+				}
+				// 数字后缀、科学计数法等交给脚本引擎处理
+				if (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '.' || text.charAt(i) == '_')) {
+					return null;
+				}
+				String number = text.substring(start, i);
+				tokens.add(new Token(LITERAL, number, decimal ? new BigDecimal(number) : integerValue(number)));
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = i;
+				while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+					i++;
+				}
+				if (i < length && text.charAt(i) == '$') {
+					return null;
+				}
+				String identifier = text.substring(start, i);
+				if (identifier.equals("true")) {
+					tokens.add(new Token(LITERAL, identifier, Boolean.TRUE));
+				} else if (identifier.equals("false")) {
+					tokens.add(new Token(LITERAL, identifier, Boolean.FALSE));
+				} else if (identifier.equals("null")) {
+					tokens.add(new Token(LITERAL, identifier, null));
+				} else {
+					tokens.add(new Token(VARIABLE, identifier, null));
+				}
+			} else {
+				// 换行、分号、属性访问、方法调用等都不在支持范围内
+				return null;
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isOperandExpected(List<Token> tokens) {
+		if (tokens.isEmpty()) {
+			return true;
+		}
+		Token last = tokens.get(tokens.size() - 1);
+		return last.type == OPERATOR && !last.text.equals(")");
+	}
+
+	private static Number integerValue(String number) {
+		BigInteger value = new BigInteger(number);
+		if (value.bitLength() < 32) {
+			return Integer.valueOf(value.intValue());
+		}
+		if (value.bitLength() < 64) {
+			return Long.valueOf(value.longValue());
+		}
+		return value;
+	}
+
+	// 语法分析
+	// //////////////////////////////////////////////////////
+
+	private static class Parser {
+
+		private final List<Token> tokens;
+		private int position;
+
+		Parser(List<Token> tokens) {
+			this.tokens = tokens;
+		}
+
+		boolean isEnd() {
+			return position == tokens.size();
+		}
+
+		private boolean nextIs(String operator) {
+			if (isEnd()) {
+				return false;
+			}
+			Token token = tokens.get(position);
+			return token.type == OPERATOR && token.text.equals(operator);
+		}
+
+		Node parseOr() {
+			Node left = parseAnd();
+			while (left != null && nextIs("||")) {
+				position++;
+				Node right = parseAnd();
+				if (right == null) {
+					return null;
+				}
+				left = new LogicalNode(false, left, right);
+			}
+			return left;
+		}
+
+		private Node parseAnd() {
+			Node left = parseEquality();
+			while (left != null && nextIs("&&")) {
+				position++;
+				Node right = parseEquality();
+				if (right == null) {
+					return null;
+				}
+				left = new LogicalNode(true, left, right);
+			}
+			return left;
+		}
+
+		private Node parseEquality() {
+			Node left = parseRelational();
+			if (left != null && (nextIs("==") || nextIs("!="))) {
+				String operator = tokens.get(position++).text;
+				Node right = parseRelational();
+				if (right == null) {
+					return null;
+				}
+				left = new CompareNode(operator, left, right);
+			}
+			return left;
+		}
+
+		private Node parseRelational() {
+			Node left = parseUnary();
+			if (left != null && (nextIs("<") || nextIs("<=") || nextIs(">") || nextIs(">="))) {
+				String operator = tokens.get(position++).text;
+				Node right = parseUnary();
+				if (right == null) {
+					return null;
+				}
+				left = new CompareNode(operator, left, right);
+			}
+			return left;
+		}
+
+		private Node parseUnary() {
+			if (nextIs("!")) {
+				position++;
+				Node operand = parseUnary();
+				return operand == null ? null : new NotNode(operand);
+			}
+			return parsePrimary();
+		}
+
+		private Node parsePrimary() {
+			if (isEnd()) {
+				return null;
+			}
+			Token token = tokens.get(position);
+			if (token.type == LITERAL) {
+				position++;
+				return new LiteralNode(token.value);
+			}
+			if (token.type == VARIABLE) {
+				position++;
+				return new VariableNode(token.text);
+			}
+			if (nextIs("(")) {
+				position++;
+				Node node = parseOr();
+				if (node == null || !nextIs(")")) {
+					return null;
+				}
+				position++;
+				return node;
+			}
+			return null;
+		}
+	}
+
+	// 语法树
+	// //////////////////////////////////////////////////////
+
+	private static abstract class Node {
+		abstract Object evaluate(Map<?, ?> variables);
+	}
+
+	private static class LiteralNode extends Node {
+		private final Object value;
+
+		LiteralNode(Object value) {
+			this.value = value;
+		}
+
+		Object evaluate(Map<?, ?> variables) {
+			return value;
+		}
+	}
+
+	private static class VariableNode extends Node {
+		private final String name;
+
+		VariableNode(String name) {
+			this.name = name;
+		}
+
+		Object evaluate(Map<?, ?> variables) {
+			if (variables == null || !variables.containsKey(name)) {
+				return UNSUPPORTED;
+			}
+			return variables.get(name);
+		}
+	}
+
+	private static class NotNode extends Node {
+		private final Node operand;
+
+		NotNode(Node operand) {
+			this.operand = operand;
+		}
+
+		Object evaluate(Map<?, ?> variables) {
+			Object value = operand.evaluate(variables);
+			if (!(value instanceof Boolean)) {
+				return UNSUPPORTED;
+			}
+			return Boolean.valueOf(!((Boolean) value).booleanValue());
+		}
+	}
+
+	private static class LogicalNode extends Node {
+		private final boolean and;
+		private final Node left;
+		private final Node right;
+
+		LogicalNode(boolean and, Node left, Node right) {
+			this.and = and;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate(Map<?, ?> variables) {
+			Object leftValue = left.evaluate(variables);
+			if (!(leftValue instanceof Boolean)) {
+				return UNSUPPORTED;
+			}
+			// 与脚本引擎一样短路求值
+			if (((Boolean) leftValue).booleanValue() != and) {
+				return leftValue;
+			}
+			Object rightValue = right.evaluate(variables);
+			if (!(rightValue instanceof Boolean)) {
+				return UNSUPPORTED;
+			}
+			return rightValue;
+		}
+	}
+
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int GE = 5;
+
+	private static class CompareNode extends Node {
+		private final int operator;
+		private final Node left;
+		private final Node right;
+
+		CompareNode(String operator, Node left, Node right) {
+			if (operator.equals("==")) {
+				this.operator = EQ;
+			} else if (operator.equals("!=")) {
+				this.operator = NE;
+			} else if (operator.equals("<")) {
+				this.operator = LT;
+			} else if (operator.equals("<=")) {
+				this.operator = LE;
+			} else if (operator.equals(">")) {
+				this.operator = GT;
+			} else {
+				this.operator = GE;
+			}
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate(Map<?, ?> variables) {
+			Object leftValue = left.evaluate(variables);
+			if (leftValue == UNSUPPORTED) {
+				return UNSUPPORTED;
+			}
+			Object rightValue = right.evaluate(variables);
+			if (rightValue == UNSUPPORTED) {
+				return UNSUPPORTED;
+			}
+
+			boolean equality = operator == EQ || operator == NE;
+			if (equality && (leftValue == null || rightValue == null)) {
+				boolean equals = leftValue == rightValue;
+				return Boolean.valueOf(operator == EQ ? equals : !equals);
+			}
+
+			int result;
+			if (isIntegral(leftValue) && isIntegral(rightValue)) {
+				long leftLong = ((Number) leftValue).longValue();
+				long rightLong = ((Number) rightValue).longValue();
+				result = leftLong < rightLong ? -1 : (leftLong > rightLong ? 1 : 0);
+			} else if (isSupportedNumber(leftValue) && isSupportedNumber(rightValue)) {
+				Integer numberResult = compareNumber((Number) leftValue, (Number) rightValue);
+				if (numberResult == null) {
+					return UNSUPPORTED;
+				}
+				result = numberResult.intValue();
+			} else if (leftValue instanceof String && rightValue instanceof String) {
+				result = ((String) leftValue).compareTo((String) rightValue);
+			} else if (equality && leftValue instanceof Boolean && rightValue instanceof Boolean) {
+				result = leftValue.equals(rightValue) ? 0 : 1;
+			} else {
+				return UNSUPPORTED;
+			}
+
+			boolean value;
+			switch (operator) {
+			case EQ:
+				value = result == 0;
+				break;
+			case NE:
+				value = result != 0;
+				break;
+			case LT:
+				value = result < 0;
+				break;
+			case LE:
+				value = result <= 0;
+				break;
+			case GT:
+				value = result > 0;
+				break;
+			default:
+				value = result >= 0;
+			}
+			return Boolean.valueOf(value);
+		}
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+
+	private static boolean isSupportedNumber(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+				|| value instanceof BigInteger || value instanceof BigDecimal || value instanceof Double || value instanceof Float;
+	}
+
+	/**
+	 * 按脚本引擎的规则比较数字:有浮点数时按double比较,否则按精确值比较
+	 */
+	private static Integer compareNumber(Number left, Number right) {
+		if (left instanceof Double || left instanceof Float || right instanceof Double || right instanceof Float) {
+			double leftDouble = left.doubleValue();
+			double rightDouble = right.doubleValue();
+			if (Double.isNaN(leftDouble) || Double.isNaN(rightDouble)) {
+				return null;
+			}
+			return Integer.valueOf(leftDouble < rightDouble ? -1 : (leftDouble > rightDouble ? 1 : 0));
+		}
+		return Integer.valueOf(toBigDecimal(left).compareTo(toBigDecimal(right)));
+	}
+
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		if (number instanceof BigInteger) {
+			return new BigDecimal((BigInteger) number);
+		}
+		return BigDecimal.valueOf(number.longValue());
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.core.variable;
+
+/**
+ * 流程变量的编码器
+ * <p>
+ * 持久化变量时依次询问已注册的编码器,由第一个能编码该值的编码器把值转换为字节保存在VARIABLE_VALUE中,
+ * 编码器的类型标识保存在VARIABLE_CLASSNAME中,读取时按类型标识找回编码器解码。
+ * 在fixflowconfig.xml的expandClassConfig中配置classId以VariableCodec开头的扩展类即可注册自定义编码器,
+ * 自定义编码器优先于内置编码器。
+ */
+public interface VariableCodec {
+
+	/**
+	 * 类型标识,保存在VARIABLE_CLASSNAME中,不能与其它编码器重复,长度不超过30
+	 * @return
+	 */
+	String getTypeTag();
+
+	/**
+	 * 是否能编码并无损还原这个值
+	 * @param value 变量值,可能为null
+	 * @return
+	 */
+	boolean canEncode(Object value);
+
+	/**
+	 * 编码变量值
+	 * @param value 变量值
+	 * @return 字节
+	 */
+	byte[] encode(Object value);
+
+	/**
+	 * 解码变量值
+	 * @param bytes encode返回的字节
+	 * @return 变量值
+	 */
+	Object decode(byte[] bytes);
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.database;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.founder.fix.bpmn2extensions.coreconfig.DBType;
+import com.founder.fix.bpmn2extensions.coreconfig.DataBase;
+import com.founder.fix.bpmn2extensions.coreconfig.FixFlowConfig;
+import com.founder.fix.fixflow.core.ConnectionManagement;
+import com.founder.fix.fixflow.core.ProcessEngineManagement;
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.FixConnectionResult;
+import com.founder.fix.fixflow.core.impl.db.pool.FixConnectionPool;
+
+/**
+ * 基于连接池的连接管理
+ * <p>
+ * 每个数据库配置对应一个FixConnectionPool,池的最大连接数、最大空闲数和获取超时时间
+ * 取自dataBase节点的maxActive、maxIdle、maxWait属性。
+ * <p>
+ * dataBase节点没有的池参数从engine.properties读取,以数据库配置ID区分:
+ * dataBase.&lt;id&gt;.minIdle、dataBase.&lt;id&gt;.validationQuery、
+ * dataBase.&lt;id&gt;.validationIntervalMillis、dataBase.&lt;id&gt;.leakThresholdMillis。
+ * <p>
+ * 连接池属于这个管理器实例,每个引擎创建自己的实例,引擎关闭时只关闭自己的连接池。
+ */
+public class PooledConnectionManagement extends ConnectionManagement {
+
+	public static final String PROPERTY_PREFIX = "dataBase.";
+
+	protected final Map<String, FixConnectionPool> connectionPools = new ConcurrentHashMap<String, FixConnectionPool>();
+
+	@Override
+	public FixConnectionResult getFixConnectionResult() {
+
+		String defaultId = ConnectionManagement.defaultDataBaseId;
+
+		return getFixConnectionResult(defaultId);
+	}
+
+	@Override
+	public FixConnectionResult getFixConnectionResult(String dbId) {
+		FixConnectionResult fixConnectionResult = new PooledConnectionResultImpl(dbId, getConnectionPool(dbId));
+
+		return fixConnectionResult;
+	}
+
+	@Override
+	public void setFixConnectionResult(String dbId, FixConnectionResult fixConnectionResult) {
+		Context.setFixConnectionResult(dbId, fixConnectionResult);
+	}
+
+	@Override
+	public void setFixConnection(String dbId, Connection connection) {
+		FixConnectionResult fixConnectionResult = new GeneralConnectionResultImpl(dbId, connection);
+		Context.setFixConnectionResult(dbId, fixConnectionResult);
+	}
+
+	/**
+	 * 获取数据库对应的连接池,不存在时根据数据库配置创建
+	 * @param dbId 数据库编号
+	 * @return 连接池
+	 */
+	public FixConnectionPool getConnectionPool(String dbId) {
+		FixConnectionPool connectionPool = connectionPools.get(dbId);
+		if (connectionPool != null) {
+			return connectionPool;
+		}
+		synchronized (connectionPools) {
+			connectionPool = connectionPools.get(dbId);
+			if (connectionPool == null) {
+				connectionPool = createConnectionPool(dbId);
+				connectionPools.put(dbId, connectionPool);
+			}
+			return connectionPool;
+		}
+	}
+
+	/**
+	 * 引擎关闭时关闭这个引擎的连接池
+	 */
+	@Override
+	public void close() {
+		closeConnectionPools();
+	}
+
+	/**
+	 * 关闭这个管理器创建的连接池,已借出的连接归还时直接关闭
+	 */
+	public void closeConnectionPools() {
+		synchronized (connectionPools) {
+			for (FixConnectionPool connectionPool : connectionPools.values()) {
+				connectionPool.close();
+			}
+			connectionPools.clear();
+		}
+	}
+
+	/**
+	 * 根据数据库配置创建连接池
+	 * @param dbId 数据库编号
+	 * @return 连接池
+	 */
+	protected FixConnectionPool createConnectionPool(String dbId) {
+		return createConnectionPool(getDataBase(dbId));
+	}
+
+	protected DataBase getDataBase(String dbId) {
+		FixFlowConfig fixFlowConfig = getProcessEngineConfiguration().getFixFlowConfig();
+		for (DataBase dataBase : fixFlowConfig.getDataBaseConfig().getDataBase()) {
+			if (dataBase.getId().equals(dbId)) {
+				return dataBase;
+			}
+		}
+		throw new FixFlowDbException("没有找到ID为" + dbId + "的数据库配置!");
+	}
+
+	protected FixConnectionPool createConnectionPool(DataBase dataBase) {
+		FixConnectionPool connectionPool = new FixConnectionPool(dataBase.getId(), dataBase.getDriverClassName(), dataBase.getUrl(),
+				dataBase.getUsername(), dataBase.getPassword());
+		int maxActive = parseInt(dataBase.getMaxActive(), connectionPool.getMaxActive());
+		connectionPool.setMaxActive(maxActive);
+		// 空闲连接数不能超过最大连接数
+		connectionPool.setMaxIdle(Math.min(parseInt(dataBase.getMaxIdle(), connectionPool.getMaxIdle()), maxActive));
+		connectionPool.setMaxWait(parseInt(dataBase.getMaxWait(), (int) connectionPool.getMaxWait()));
+		ProcessEngineConfigurationImpl engineConfiguration = getProcessEngineConfiguration();
+		String prefix = PROPERTY_PREFIX + dataBase.getId() + ".";
+		connectionPool.setValidationQuery(engineConfiguration.getEngineProperty(prefix + "validationQuery",
+				getValidationQuery(dataBase.getDbtype())));
+		connectionPool.setValidationInterval(engineConfiguration.getEngineProperty(prefix + "validationIntervalMillis",
+				connectionPool.getValidationInterval()));
+		connectionPool.setLeakDetectionThreshold(engineConfiguration.getEngineProperty(prefix + "leakThresholdMillis",
+				connectionPool.getLeakDetectionThreshold()));
+		// 最小空闲连接数不能超过最大空闲连接数
+		int minIdle = (int) engineConfiguration.getEngineProperty(prefix + "minIdle", connectionPool.getMinIdle());
+		connectionPool.setMinIdle(Math.max(0, Math.min(minIdle, connectionPool.getMaxIdle())));
+		connectionPool.fillMinIdle();
+		return connectionPool;
+	}
+
+	/**
+	 * 没有通过引擎配置创建的管理器使用默认引擎的配置
+	 */
+	@Override
+	public ProcessEngineConfigurationImpl getProcessEngineConfiguration() {
+		if (processEngineConfiguration != null) {
+			return processEngineConfiguration;
+		}
+		return ProcessEngineManagement.getDefaultProcessEngine().getProcessEngineConfiguration();
+	}
+
+	protected static String getValidationQuery(DBType dbType) {
+		if (dbType == DBType.ORACLE) {
+			return "select 1 from dual";
+		}
+		if (dbType == DBType.DB2) {
+			return "select 1 from sysibm.sysdummy1";
+		}
+		return "select 1";
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+}
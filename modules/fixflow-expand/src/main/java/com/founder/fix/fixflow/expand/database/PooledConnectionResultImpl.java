@@ -0,0 +1,94 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import com.founder.fix.fixflow.core.exception.FixFlowDbException;
+import com.founder.fix.fixflow.core.impl.db.FixConnectionResult;
+import com.founder.fix.fixflow.core.impl.db.pool.FixConnectionPool;
+
+/**
+ * 从连接池借出连接的连接结果,colseConnection时把连接归还到池中
+ */
+public class PooledConnectionResultImpl implements FixConnectionResult {
+
+	protected String dbId;
+
+	protected FixConnectionPool connectionPool;
+
+	protected Connection connection;
+
+	public PooledConnectionResultImpl(String dbId, FixConnectionPool connectionPool) {
+		this.dbId = dbId;
+		this.connectionPool = connectionPool;
+	}
+
+	public Connection getConnection() {
+		if (this.connection == null) {
+			try {
+				Connection connection = connectionPool.getConnection();
+				connection.setAutoCommit(false);
+				this.connection = connection;
+			} catch (SQLException e) {
+				throw new FixFlowDbException("ID为" + this.dbId + "的数据库连接获取失败!", e);
+			}
+		}
+		return this.connection;
+	}
+
+	public void colseConnection() {
+		if (this.connection == null) {
+			return;
+		}
+		try {
+			// 代理连接的close会把连接归还到池中
+			this.connection.close();
+		} catch (SQLException e) {
+			throw new FixFlowDbException(e.getMessage(), e);
+		} finally {
+			this.connection = null;
+		}
+	}
+
+	public void commitConnection() {
+		try {
+			this.connection.commit();
+		} catch (SQLException e) {
+			throw new FixFlowDbException(e.getMessage(), e);
+		}
+	}
+
+	public void rollBackConnection() {
+		try {
+			this.connection.rollback();
+		} catch (SQLException e) {
+			throw new FixFlowDbException(e.getMessage(), e);
+		}
+	}
+
+	public void openConnection() {
+		getConnection();
+	}
+
+	public String getDataBaseId() {
+		return this.dbId;
+	}
+
+}
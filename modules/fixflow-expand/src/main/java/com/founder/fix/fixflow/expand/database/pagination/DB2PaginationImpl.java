@@ -17,13 +17,21 @@
  */
 package com.founder.fix.fixflow.expand.database.pagination;
 
-import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
-public class DB2PaginationImpl implements Pagination{
+public class DB2PaginationImpl extends AbstractPagination{
 	protected static final String SQL_END_DELIMITER = ";";
 
 	public String getPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, false);
+	}
+	
+	public String getPaginationWithTotalSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, true);
+	}
+	
+	private String buildPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy, boolean withTotal) {
 		sql = trim(sql);
     	String inFiled = fields;
     	if(StringUtil.isNotEmpty(fields)){
@@ -32,7 +40,11 @@ public class DB2PaginationImpl implements Pagination{
     	}
         StringBuffer sb = new StringBuffer(sql.length() + 20);
         sb.append("(");
-        sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", rownumber() over() as RN_ FROM (");
+        sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", rownumber() over() as RN_");
+        if (withTotal) {
+        	sb.append(", count(*) over() as "+TOTAL_COLUMN);
+        }
+        sb.append(" FROM (");
         sb.append(sql);
         sb.append(" )A");
         sb.append(" )b WHERE b.RN_ <=");
@@ -50,6 +62,25 @@ public class DB2PaginationImpl implements Pagination{
         return sb.toString();
 	}
 
+	public String getKeysetPaginationSql(String sql, String seekCondition, int maxResults, String fields, String orderBy) {
+		sql = trim(sql);
+		if(StringUtil.isEmpty(fields)){
+			fields="*";
+		}
+		StringBuffer sb = new StringBuffer(sql.length() + 20);
+		sb.append("SELECT "+fields+" FROM (");
+		sb.append(sql);
+		sb.append(" )A");
+		if(StringUtil.isNotEmpty(seekCondition)){
+			sb.append(" WHERE "+seekCondition);
+		}
+		if(StringUtil.isNotEmpty(orderBy)){
+			sb.append( orderBy);
+		}
+		sb.append(" FETCH FIRST "+maxResults+" ROWS ONLY");
+		return sb.toString();
+	}
+
 	public String getIsNullLocalismSql(String sql) {
 		return "COALESCE("+sql+")";
 	}
@@ -17,13 +17,32 @@
  */
 package com.founder.fix.fixflow.expand.database.pagination;
 
-import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import java.util.Properties;
+
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
-public class MySqlPaginationImpl implements Pagination {
+public class MySqlPaginationImpl extends AbstractPagination {
 	protected static final String SQL_END_DELIMITER = ";";
+	
+	/**
+	 * 默认用SQL_CALC_FOUND_ROWS/FOUND_ROWS()取得总行数,MySQL 5.x可用;
+	 * MySQL 8.0及以上可配置引擎参数dataBase.<id>.windowFunctions=true,改用count(*) over()带出总行数
+	 */
+	protected boolean windowFunctions = false;
+
+	public void configure(Properties engineProperties, String propertyPrefix) {
+		String value = engineProperties.getProperty(propertyPrefix + "windowFunctions");
+		if (StringUtil.isNotEmpty(value)) {
+			windowFunctions = StringUtil.getBoolean(value.trim());
+		}
+	}
 
 	public String getPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return getPaginationSql(sql, firstResult, maxResults, fields, orderBy, false);
+	}
+
+	private String getPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy, boolean withTotal) {
 		sql = trim(sql);
     	if(StringUtil.isEmpty(fields)){
     		fields="*";
@@ -31,7 +50,15 @@ public class MySqlPaginationImpl implements Pagination {
         
     	StringBuffer sb = new StringBuffer(sql.length() + 20);
     	sb.append("(");
-        sb.append("SELECT "+fields+" FROM (select A.* from(");
+        sb.append("SELECT ");
+        if (withTotal && !windowFunctions) {
+        	sb.append("SQL_CALC_FOUND_ROWS ");
+        }
+        sb.append(fields+" FROM (select A.*");
+        if (withTotal && windowFunctions) {
+        	sb.append(", count(*) over() as "+TOTAL_COLUMN);
+        }
+        sb.append(" from(");
         sb.append(sql);
         if(StringUtil.isNotEmpty(orderBy)){
         	sb.append( orderBy);
@@ -46,6 +73,56 @@ public class MySqlPaginationImpl implements Pagination {
         return sb.toString();
 	}
 
+	/**
+	 * 支持窗口函数时用count(*) over()带出总行数,否则用SQL_CALC_FOUND_ROWS,之后由{@link #getFoundRowsSql()}取得总行数
+	 */
+	public String getPaginationWithTotalSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return getPaginationSql(sql, firstResult, maxResults, fields, orderBy, true);
+	}
+
+	public String getFoundRowsSql() {
+		if (windowFunctions) {
+			return null;
+		}
+		return "SELECT FOUND_ROWS()";
+	}
+
+	public String getKeysetPaginationSql(String sql, String seekCondition, int maxResults, String fields, String orderBy) {
+		sql = trim(sql);
+		if(StringUtil.isEmpty(fields)){
+			fields="*";
+		}
+		StringBuffer sb = new StringBuffer(sql.length() + 20);
+		sb.append("(");
+		sb.append("SELECT "+fields+" FROM (");
+		sb.append(sql);
+		sb.append(" )A");
+		if(StringUtil.isNotEmpty(seekCondition)){
+			sb.append(" WHERE "+seekCondition);
+		}
+		if(StringUtil.isNotEmpty(orderBy)){
+			sb.append( orderBy);
+		}
+		sb.append(" LIMIT ");
+		sb.append(maxResults);
+		sb.append(")");
+		return sb.toString();
+	}
+
+	/**
+	 * 升序时空值排在最前
+	 */
+	public boolean isNullsFirst() {
+		return true;
+	}
+
+	/**
+	 * 默认排序规则不区分大小写,比较时忽略末尾空格
+	 */
+	public int compareString(String value1, String value2) {
+		return compareIgnoreCasePadSpace(value1, value2);
+	}
+
 	public String getIsNullLocalismSql(String sql) {
 		return "ISNULL("+sql+")";
 	}
@@ -18,12 +18,12 @@
 package com.founder.fix.fixflow.expand.database.pagination;
 
 
-import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
 
 
-public class OraclePaginationImpl implements Pagination {
+public class OraclePaginationImpl extends AbstractPagination {
 
 	protected static final String SQL_END_DELIMITER = ";";
 	
@@ -39,6 +39,14 @@ public class OraclePaginationImpl implements Pagination {
 	
 	
 	public String getPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, false);
+	}
+	
+	public String getPaginationWithTotalSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, true);
+	}
+	
+	private String buildPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy, boolean withTotal) {
 		sql = trim(sql);
     	String inFiled = fields;
     	if(StringUtil.isEmpty(fields)){
@@ -46,7 +54,11 @@ public class OraclePaginationImpl implements Pagination {
     	}
     	inFiled="A.*";
         StringBuffer sb = new StringBuffer(sql.length() + 20);
-        sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROWNUM as RN_ FROM (");
+        sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROWNUM as RN_");
+        if (withTotal) {
+        	sb.append(", COUNT(1) OVER() as "+TOTAL_COLUMN);
+        }
+        sb.append(" FROM (");
         sb.append(sql);
         if(StringUtil.isNotEmpty(orderBy)){
         	sb.append( orderBy);
@@ -64,6 +76,28 @@ public class OraclePaginationImpl implements Pagination {
 
 
 
+	public String getKeysetPaginationSql(String sql, String seekCondition, int maxResults, String fields, String orderBy) {
+		sql = trim(sql);
+		if(StringUtil.isEmpty(fields)){
+			fields="*";
+		}
+		StringBuffer sb = new StringBuffer(sql.length() + 20);
+		sb.append("SELECT "+fields+" FROM (SELECT A.* FROM (");
+		sb.append(sql);
+		sb.append(" )A");
+		if(StringUtil.isNotEmpty(seekCondition)){
+			sb.append(" WHERE "+seekCondition);
+		}
+		if(StringUtil.isNotEmpty(orderBy)){
+			sb.append( orderBy);
+		}
+		sb.append(" )b WHERE ROWNUM <=");
+		sb.append(maxResults);
+		return sb.toString();
+	}
+
+
+
 	public String getIsNullLocalismSql(String sql) {
 		return "nvl("+sql+")";
 	}
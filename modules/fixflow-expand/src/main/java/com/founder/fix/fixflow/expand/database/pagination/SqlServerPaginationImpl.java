@@ -18,12 +18,20 @@
 package com.founder.fix.fixflow.expand.database.pagination;
 
 
-import com.founder.fix.fixflow.core.db.pagination.Pagination;
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 
-public class SqlServerPaginationImpl implements Pagination {
+public class SqlServerPaginationImpl extends AbstractPagination {
 
 	public String getPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, false);
+	}
+	
+	public String getPaginationWithTotalSql(String sql, int firstResult, int maxResults, String fields, String orderBy) {
+		return buildPaginationSql(sql, firstResult, maxResults, fields, orderBy, true);
+	}
+	
+	private String buildPaginationSql(String sql, int firstResult, int maxResults, String fields, String orderBy, boolean withTotal) {
 		sql = trim(sql);
     	String inFiled = fields;
     	if(fields==null||fields.equals("")){
@@ -31,9 +39,10 @@ public class SqlServerPaginationImpl implements Pagination {
     		inFiled="A.*";
     	}
         StringBuffer sb = new StringBuffer(sql.length() + 20);
+        String totalField = withTotal ? ", COUNT(1) OVER() as "+TOTAL_COLUMN : "";
         
         if(orderBy==null || orderBy.equals("")) {
-	    	sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROW_NUMBER() OVER(order by tt_) as RN_ FROM ( select ts.*,'1' as tt_ from (");
+	    	sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROW_NUMBER() OVER(order by tt_) as RN_"+totalField+" FROM ( select ts.*,'1' as tt_ from (");
 	        sb.append(sql);
 	        sb.append(" ) ts )A )b WHERE b.RN_ <=");
 	        sb.append(maxResults);
@@ -45,7 +54,7 @@ public class SqlServerPaginationImpl implements Pagination {
 	        	sb.append( orderBy);
 	        }
 		}else{
-			sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROW_NUMBER() OVER( " + orderBy + " ) as RN_ FROM (");
+			sb.append("SELECT "+fields+" FROM (SELECT "+inFiled+", ROW_NUMBER() OVER( " + orderBy + " ) as RN_"+totalField+" FROM (");
 	        sb.append(sql);
 	        sb.append(" )A )b WHERE b.RN_ <=");
 	        sb.append(maxResults);
@@ -77,6 +86,40 @@ public class SqlServerPaginationImpl implements Pagination {
 
 
 
+	public String getKeysetPaginationSql(String sql, String seekCondition, int maxResults, String fields, String orderBy) {
+		sql = trim(sql);
+		if(fields==null||fields.equals("")){
+			fields="*";
+		}
+		StringBuffer sb = new StringBuffer(sql.length() + 20);
+		sb.append("SELECT TOP "+maxResults+" "+fields+" FROM (");
+		sb.append(sql);
+		sb.append(" )A");
+		if(StringUtil.isNotEmpty(seekCondition)){
+			sb.append(" WHERE "+seekCondition);
+		}
+		if(StringUtil.isNotEmpty(orderBy)){
+			sb.append( orderBy);
+		}
+		return sb.toString();
+	}
+
+
+
+	/**
+	 * 升序时空值排在最前
+	 */
+	public boolean isNullsFirst() {
+		return true;
+	}
+
+	/**
+	 * 默认排序规则不区分大小写,比较时忽略末尾空格
+	 */
+	public int compareString(String value1, String value2) {
+		return compareIgnoreCasePadSpace(value1, value2);
+	}
+
 	public String getIsNullLocalismSql(String sql) {
 		return "ISNULL("+sql+")";
 	}
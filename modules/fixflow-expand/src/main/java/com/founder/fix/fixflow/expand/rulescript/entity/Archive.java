@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.founder.fix.fixflow.core.ProcessEngineManagement;
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.exception.FixFlowException;
 import com.founder.fix.fixflow.core.impl.Context;
@@ -57,6 +58,11 @@ public class Archive implements BusinessRulesScript {
 		String processInstSql="select processinstance_id from " +QueryTableUtil.getDefaultTableName("fixflow_run_processinstance") +" where 1=1 ";
 		String whereSql = processInstSql + tmpWhereSql;
 		
+		//分批归档
+		if(paraMap.containsKey("CHUNK_SIZE")){
+			return archiveChunk(whereSql, whereObject, StringUtil.getInt(paraMap.get("CHUNK_SIZE")), sqlCommand);
+		}
+		
 		//流程实例表的归档
 		String commonWhereSql =  " processInstance_id in("+whereSql+")";
 		String processInstanceInsertSql = getInsertSqlString("fixflow_run_processinstance", commonWhereSql);
@@ -98,6 +104,55 @@ public class Archive implements BusinessRulesScript {
 		return null;
 	}
 	
+	/**
+	 * 归档一批流程实例,先按编号顺序取出本批的流程实例编号,再用编号作为条件归档各表,
+	 * 每条语句只涉及本批的行,不会长时间锁住运行表
+	 * @param whereSql 查询需要归档的流程实例编号的语句
+	 * @param whereObject 查询参数
+	 * @param chunkSize 每批最多归档的流程实例数
+	 * @param sqlCommand
+	 * @return 本批归档的流程实例编号
+	 */
+	private List<String> archiveChunk(String whereSql, List<Object> whereObject, int chunkSize, SqlCommand sqlCommand){
+		Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
+		String chunkSql = AbstractPagination.keysetPaginationSql(pagination, whereSql, null, chunkSize, "*", " order by PROCESSINSTANCE_ID");
+		List<Map<String, Object>> dataObj = sqlCommand.queryForList(chunkSql, whereObject);
+		List<String> processInstanceIds = new ArrayList<String>();
+		for (Map<String, Object> row : dataObj) {
+			Object processInstanceId = row.get("PROCESSINSTANCE_ID");
+			if(processInstanceId == null){
+				processInstanceId = row.get("processinstance_id");
+			}
+			processInstanceIds.add(StringUtil.getString(processInstanceId));
+		}
+		if(processInstanceIds.isEmpty()){
+			return processInstanceIds;
+		}
+		log.debug("归档本批流程实例：{}",processInstanceIds);
+		
+		StringBuffer inSql = new StringBuffer();
+		for (int i = 0; i < processInstanceIds.size(); i++) {
+			inSql.append(i == 0 ? "?" : ",?");
+		}
+		Object[] params = processInstanceIds.toArray();
+		String commonWhereSql = " processinstance_id in(" + inSql + ")";
+		String taskidentitylinkWhereSql = " taskinstance_id in (select taskinstance_id from " + QueryTableUtil.getDefaultTableName("fixflow_run_taskinstance")
+				+ " T WHERE T.PROCESSINSTANCE_ID IN (" + inSql + "))";
+		
+		sqlCommand.execute(getInsertSqlString("fixflow_run_processinstance", commonWhereSql), params);
+		sqlCommand.execute(getInsertSqlString("fixflow_run_taskinstance", commonWhereSql), params);
+		sqlCommand.execute(getInsertSqlString("fixflow_run_token", commonWhereSql), params);
+		sqlCommand.execute(getInsertSqlString("fixflow_run_variable", commonWhereSql), params);
+		sqlCommand.execute(getInsertSqlString("fixflow_run_taskidentitylink", taskidentitylinkWhereSql), params);
+		
+		sqlCommand.execute(getDeleteSqlString("fixflow_run_token", commonWhereSql), params);
+		sqlCommand.execute(getDeleteSqlString("fixflow_run_variable", commonWhereSql), params);
+		sqlCommand.execute(getDeleteSqlString("fixflow_run_taskidentitylink", taskidentitylinkWhereSql), params);
+		sqlCommand.execute(getDeleteSqlString("fixflow_run_taskinstance", commonWhereSql), params);
+		sqlCommand.execute(getDeleteSqlString("fixflow_run_processinstance", commonWhereSql), params);
+		return processInstanceIds;
+	}
+	
 	private String getInsertSqlString(String tableId,String whereSql){
 		
 		Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
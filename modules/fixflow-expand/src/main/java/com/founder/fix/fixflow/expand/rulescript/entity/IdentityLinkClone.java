@@ -0,0 +1,46 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.task.IdentityLinkEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class IdentityLinkClone implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		IdentityLinkEntity identityLink=(IdentityLinkEntity)parameter;
+		
+		// 直接拷贝字段,不再经过持久化Map转换一次
+		IdentityLinkEntity identityLinkEntity = new IdentityLinkEntity();
+		identityLinkEntity.cloneInit(processEngineConfiguration.getResultMap("identityLinkResultMap"), identityLink);
+		identityLinkEntity.setId(identityLink.getId());
+		identityLinkEntity.setType(identityLink.getType());
+		identityLinkEntity.setUserId(identityLink.getUserId());
+		identityLinkEntity.setGroupId(identityLink.getGroupId());
+		identityLinkEntity.setGroupType(identityLink.getGroupType());
+		identityLinkEntity.setTaskId(identityLink.getTaskId());
+		identityLinkEntity.setIncludeExclusion(identityLink.getIncludeExclusion());
+		identityLinkEntity.setArchiveTime(identityLink.getArchiveTime());
+		return identityLinkEntity;
+		
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class ProcessInstanceClone implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		ProcessInstanceEntity processInstance=(ProcessInstanceEntity)parameter;
+		
+		// 直接拷贝字段,不再经过持久化Map转换一次
+		ProcessInstanceEntity processInstanceEntity = new ProcessInstanceEntity();
+		processInstanceEntity.cloneInit(processEngineConfiguration.getResultMap("processInstanceResultMap"), processInstance);
+		processInstanceEntity.setId(processInstance.getId());
+		processInstanceEntity.setSubject(processInstance.getSubject());
+		processInstanceEntity.setProcessDefinitionId(processInstance.getProcessDefinitionId());
+		processInstanceEntity.setProcessDefinitionKey(processInstance.getProcessDefinitionKey());
+		processInstanceEntity.setDefinitionId(processInstance.getDefinitionId());
+		processInstanceEntity.setRootTokenId(processInstance.getRootTokenId());
+		processInstanceEntity.setParentProcessInstanceId(processInstance.getParentProcessInstanceId());
+		processInstanceEntity.setParentProcessInstanceTokenId(processInstance.getParentProcessInstanceTokenId());
+		processInstanceEntity.setStartAuthor(processInstance.getStartAuthor());
+		processInstanceEntity.setInitiator(processInstance.getInitiator());
+		processInstanceEntity.setBizKey(processInstance.getBizKey());
+		processInstanceEntity.setStartTime(processInstance.getStartTime());
+		processInstanceEntity.setEndTime(processInstance.getEndTime());
+		processInstanceEntity.setUpdateTime(processInstance.getUpdateTime());
+		processInstanceEntity.setArchiveTime(processInstance.getArchiveTime());
+		processInstanceEntity.setInstanceType(processInstance.getInstanceType());
+		processInstanceEntity.setProcessLocation(processInstance.getProcessLocation());
+		processInstanceEntity.setSuspended(processInstance.getSuspended());
+		return processInstanceEntity;
+		
+	}
+
+}
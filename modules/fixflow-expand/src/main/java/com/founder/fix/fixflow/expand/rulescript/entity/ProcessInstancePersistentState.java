@@ -0,0 +1,62 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class ProcessInstancePersistentState implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		ProcessInstanceEntity processInstance=(ProcessInstanceEntity)parameter;
+		
+		Map<String, Object> persistentState = new HashMap<String, Object>();
+		persistentState.put("processInstanceId", processInstance.getId());
+		persistentState.put("subject", processInstance.getSubject());
+		persistentState.put("processDefinitionKey", processInstance.getProcessDefinitionKey());
+		persistentState.put("processDefinitionId", processInstance.getProcessDefinitionId());
+		persistentState.put("rootTokenId", processInstance.getRootTokenId());
+		persistentState.put("definitionId", processInstance.getDefinitionId());
+		persistentState.put("parentProcessInstanceId", processInstance.getParentProcessInstanceId());
+		persistentState.put("parentProcessInstanceTokenId", processInstance.getParentProcessInstanceTokenId());
+		persistentState.put("initiator", processInstance.getInitiator());
+		persistentState.put("startAuthor", processInstance.getStartAuthor());
+		persistentState.put("bizKey", processInstance.getBizKey());
+		persistentState.put("startTime", processInstance.getStartTime());
+		persistentState.put("endTime", processInstance.getEndTime());
+		persistentState.put("updateTime", processInstance.getUpdateTime());
+		persistentState.put("archiveTime", processInstance.getArchiveTime());
+		persistentState.put("isSuspended", processInstance.isSuspended());
+		persistentState.put("processLocation", processInstance.getProcessLocation());
+		persistentState.put("instanceStatus", processInstance.getInstanceType());
+		
+		Map<String, Object> persistenceExtensionFields=processInstance.getPersistenceExtensionFields();
+		for (String key : persistenceExtensionFields.keySet()) {
+			persistentState.put(key, persistenceExtensionFields.get(key));
+		}
+		return persistentState;
+		
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.task.TaskInstanceEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class TaskInstanceClone implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		TaskInstanceEntity taskInstance=(TaskInstanceEntity)parameter;
+		
+		// 直接拷贝字段,不再经过持久化Map转换一次
+		TaskInstanceEntity taskInstanceEntityNew = new TaskInstanceEntity();
+		taskInstanceEntityNew.cloneInit(processEngineConfiguration.getResultMap("taskResultMap"), taskInstance);
+		taskInstanceEntityNew.setId(taskInstance.getId());
+		taskInstanceEntityNew.setName(taskInstance.getName());
+		taskInstanceEntityNew.setDescription(taskInstance.getDescription());
+		taskInstanceEntityNew.setProcessInstanceId(taskInstance.getProcessInstanceId());
+		taskInstanceEntityNew.setProcessDefinitionId(taskInstance.getProcessDefinitionId());
+		taskInstanceEntityNew.setProcessDefinitionKey(taskInstance.getProcessDefinitionKey());
+		taskInstanceEntityNew.setProcessDefinitionName(taskInstance.getProcessDefinitionName());
+		taskInstanceEntityNew.setVersion(taskInstance.getVersion());
+		taskInstanceEntityNew.setTokenId(taskInstance.getTokenId());
+		taskInstanceEntityNew.setNodeId(taskInstance.getNodeId());
+		taskInstanceEntityNew.setNodeName(taskInstance.getNodeName());
+		taskInstanceEntityNew.setParentTaskInstanceId(taskInstance.getParentTaskInstanceId());
+		taskInstanceEntityNew.setAssignee(taskInstance.getAssignee());
+		taskInstanceEntityNew.setClaimTime(taskInstance.getClaimTime());
+		taskInstanceEntityNew.setCreateTime(taskInstance.getCreateTime());
+		taskInstanceEntityNew.setStartTime(taskInstance.getStartTime());
+		taskInstanceEntityNew.setEndTime(taskInstance.getEndTime());
+		taskInstanceEntityNew.setDueDate(taskInstance.getDueDate());
+		taskInstanceEntityNew.setBlocking(taskInstance.isBlocking());
+		taskInstanceEntityNew.setPriority(taskInstance.getPriority());
+		taskInstanceEntityNew.setCategory(taskInstance.getCategory());
+		taskInstanceEntityNew.setOwner(taskInstance.getOwner());
+		taskInstanceEntityNew.setDelegationState(taskInstance.getDelegationState());
+		taskInstanceEntityNew.setBizKey(taskInstance.getBizKey());
+		taskInstanceEntityNew.setTaskComment(taskInstance.getTaskComment());
+		taskInstanceEntityNew.setFormUri(taskInstance.getFormUri());
+		taskInstanceEntityNew.setFormUriView(taskInstance.getFormUriView());
+		taskInstanceEntityNew.setTaskGroup(taskInstance.getTaskGroup());
+		taskInstanceEntityNew.setTaskInstanceType(taskInstance.getTaskInstanceType());
+		taskInstanceEntityNew.setCancelled(taskInstance.isCancelled());
+		taskInstanceEntityNew.setSuspended(taskInstance.isSuspended());
+		taskInstanceEntityNew.setOpen(taskInstance.isOpen());
+		taskInstanceEntityNew.setDraft(taskInstance.isDraft());
+		taskInstanceEntityNew.setExpectedExecutionTime(taskInstance.getExpectedExecutionTime());
+		taskInstanceEntityNew.setAgent(taskInstance.getAgent());
+		taskInstanceEntityNew.setAdmin(taskInstance.getAdmin());
+		taskInstanceEntityNew.setCallActivityInstanceId(taskInstance.getCallActivityInstanceId());
+		taskInstanceEntityNew.setPendingTaskId(taskInstance.getPendingTaskId());
+		taskInstanceEntityNew.setArchiveTime(taskInstance.getArchiveTime());
+		taskInstanceEntityNew.setCommandId(taskInstance.getCommandId());
+		taskInstanceEntityNew.setCommandType(taskInstance.getCommandType());
+		taskInstanceEntityNew.setCommandMessage(taskInstance.getCommandMessage());
+		return taskInstanceEntityNew;
+		
+	}
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.runtime.TokenEntity;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class TokenClone implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		TokenEntity token=(TokenEntity)parameter;
+		
+		// 直接拷贝字段,不再经过持久化Map转换一次
+		TokenEntity tokenEntity = new TokenEntity();
+		tokenEntity.cloneInit(processEngineConfiguration.getResultMap("tokenResultMap"), token);
+		tokenEntity.setId(token.getId());
+		tokenEntity.setName(token.getName());
+		tokenEntity.setProcessInstanceId(token.getProcessInstanceId());
+		tokenEntity.setNodeId(token.getNodeId());
+		tokenEntity.setParentTokenId(token.getParentTokenId());
+		tokenEntity.setParentFreeTokenId(token.getParentFreeTokenId());
+		tokenEntity.setStartTime(token.getStartTime());
+		tokenEntity.setEndTime(token.getEndTime());
+		tokenEntity.setNodeEnterTime(token.getNodeEnterTime());
+		tokenEntity.setArchiveTime(token.getArchiveTime());
+		tokenEntity.setLocked(token.getlock());
+		tokenEntity.setSuspended(token.isSuspended());
+		tokenEntity.setSubProcessRootToken(token.isSubProcessRootToken());
+		tokenEntity.setAbleToReactivateParent(token.isAbleToReactivateParent());
+		tokenEntity.setFreeToken(token.isFreeToken());
+		return tokenEntity;
+		
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.datavariable.VariableCodecRegistry;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
+
+public class VariableClone implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		DataVariableEntity dataVariable=(DataVariableEntity)parameter;
+		
+		// 直接拷贝字段,不再经过持久化Map转换一次
+		DataVariableEntity dataVariableEntityNew = new DataVariableEntity();
+		dataVariableEntityNew.cloneInit(processEngineConfiguration.getResultMap("variableResultMap"), dataVariable);
+		dataVariableEntityNew.setProcessInstanceId(dataVariable.getProcessInstanceId());
+		dataVariableEntityNew.setVariableKey(dataVariable.getVariableKey());
+		dataVariableEntityNew.setTaskInstanceId(dataVariable.getTaskInstanceId());
+		dataVariableEntityNew.setTokenId(dataVariable.getTokenId());
+		dataVariableEntityNew.setNodeId(dataVariable.getNodeId());
+		dataVariableEntityNew.setVariableType(dataVariable.getVariableType());
+		dataVariableEntityNew.setBizData(dataVariable.getBizData());
+		dataVariableEntityNew.setPersistence(dataVariable.isPersistence());
+		dataVariableEntityNew.setArchiveTime(dataVariable.getArchiveTime());
+		
+		// 变量值取表达式中的当前值,和持久化时使用同一个编码器
+		Object variableValue = dataVariable.getExpressionValue();
+		VariableCodecRegistry variableCodecRegistry = DataVariableEntity.getVariableCodecRegistry();
+		VariableCodec variableCodec = variableCodecRegistry.findCodec(variableValue);
+		if (variableCodec != null) {
+			dataVariableEntityNew.setVariableValue(variableCodec.encode(variableValue));
+			dataVariableEntityNew.setVariableClassName(variableCodecRegistry.getTypeName(variableCodec));
+		} else {
+			// 没有编码器能保存的值与持久化时一样保存为空值
+			dataVariableEntityNew.setVariableClassName(variableValue.getClass().getCanonicalName());
+		}
+		return dataVariableEntityNew;
+		
+	}
+
+}
@@ -22,9 +22,11 @@ import java.util.Map;
 
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.datavariable.VariableCodecRegistry;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
 import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+import com.founder.fix.fixflow.core.variable.VariableCodec;
 
 public class VariablePersistentDbMap implements BusinessRulesScript {
 
@@ -34,14 +36,20 @@ public class VariablePersistentDbMap implements BusinessRulesScript {
 		DataVariableEntity dataVariable=(DataVariableEntity)parameter;
 		
 		Object variableValue=dataVariable.getExpressionValue();
-		byte[] variableValueDb = DataVariableEntity.ObjectToBytes(variableValue);
-		
-		String variableType = dataVariable.getVariableType();
-		
+		// 按值的类型选择编码器,VARIABLE_CLASSNAME中保存编码器的类型标识
+		VariableCodecRegistry variableCodecRegistry = DataVariableEntity.getVariableCodecRegistry();
+		VariableCodec variableCodec = variableCodecRegistry.findCodec(variableValue);
+		byte[] variableValueDb = null;
 		String variableClassName = null;
-		if (variableValue != null) {
+		if (variableCodec != null) {
+			variableValueDb = variableCodec.encode(variableValue);
+			variableClassName = variableCodecRegistry.getTypeName(variableCodec);
+		} else {
+			// 没有编码器能保存的值(不能序列化的对象)与以前一样保存为空值,类名仍然写入
 			variableClassName = variableValue.getClass().getCanonicalName();
 		}
+		
+		String variableType = dataVariable.getVariableType();
 	
 		Map<String, Object> objectParam = new HashMap<String, Object>();
 		objectParam.put("PROCESSINSTANCE_ID", dataVariable.getProcessInstanceId());		
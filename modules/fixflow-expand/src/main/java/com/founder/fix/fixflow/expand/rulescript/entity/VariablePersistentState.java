@@ -0,0 +1,54 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.rulescript.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.datavariable.DataVariableEntity;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.scriptlanguage.BusinessRulesScript;
+
+public class VariablePersistentState implements BusinessRulesScript {
+
+	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
+		
+		DataVariableEntity dataVariable=(DataVariableEntity)parameter;
+		
+		Map<String, Object> persistentState = new HashMap<String, Object>();
+		persistentState.put("processInstanceId", dataVariable.getProcessInstanceId());
+		persistentState.put("variableKey", dataVariable.getVariableKey());
+		persistentState.put("variableValue", dataVariable.getVariableValue());
+		persistentState.put("variableClassName", dataVariable.getVariableClassName());
+		persistentState.put("taskInstanceId", dataVariable.getTaskInstanceId());
+		persistentState.put("tokenId", dataVariable.getTokenId());
+		persistentState.put("nodeId", dataVariable.getNodeId());
+		persistentState.put("variableType", dataVariable.getVariableType());
+		persistentState.put("bizData", dataVariable.getBizData());
+		persistentState.put("archive_time", dataVariable.getArchiveTime());
+		
+		Map<String, Object> extensionFields=dataVariable.getExtensionFields();
+		for (String key : extensionFields.keySet()) {
+			persistentState.put(key, extensionFields.get(key));
+		}
+		return persistentState;
+		
+	}
+
+}
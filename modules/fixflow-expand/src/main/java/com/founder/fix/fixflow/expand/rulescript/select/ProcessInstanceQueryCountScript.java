@@ -26,6 +26,8 @@ import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceQueryImpl;
+import com.founder.fix.fixflow.core.impl.util.QueryTableUtil;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
 import com.founder.fix.fixflow.core.scriptlanguage.SelectRulesScript;
 
 public class ProcessInstanceQueryCountScript implements SelectRulesScript {
@@ -50,6 +52,17 @@ public class ProcessInstanceQueryCountScript implements SelectRulesScript {
 	 * @return
 	 */
 	public long selectProcessInstanceCountByQueryCriteria(ProcessInstanceQueryImpl processInstanceQuery) {
+		if (QueryLocation.RUN_HIS.equals(processInstanceQuery.getQueryLocation()) && QueryTableUtil.isArchiveEnabled()) {
+			// 运行表和归档表分别统计
+			try {
+				processInstanceQuery.setQueryLocation(QueryLocation.RUN);
+				long runCount = selectProcessInstanceCountByQueryCriteria(processInstanceQuery);
+				processInstanceQuery.setQueryLocation(QueryLocation.HIS);
+				return runCount + selectProcessInstanceCountByQueryCriteria(processInstanceQuery);
+			} finally {
+				processInstanceQuery.setQueryLocation(QueryLocation.RUN_HIS);
+			}
+		}
 		String sqlString = " select count(*) ";
 		List<Object> objectParamWhere = new ArrayList<Object>();
 		
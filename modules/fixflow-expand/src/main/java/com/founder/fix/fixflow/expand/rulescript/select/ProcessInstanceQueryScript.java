@@ -21,15 +21,19 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.KeysetPage;
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.db.ListQueryParameterObject;
+import com.founder.fix.fixflow.core.impl.db.RunHisQueryExecutor;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.runtime.ProcessInstanceQueryImpl;
 import com.founder.fix.fixflow.core.impl.util.QueryTableUtil;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
 import com.founder.fix.fixflow.core.scriptlanguage.SelectRulesScript;
 
 public class ProcessInstanceQueryScript implements SelectRulesScript {
@@ -53,7 +57,20 @@ public class ProcessInstanceQueryScript implements SelectRulesScript {
 	 * @param page 页数
 	 * @return 
 	 */
-	public List<Map<String, Object>> selectProcessInstanceByQueryCriteria(ProcessInstanceQueryImpl processInstanceQuery, Page page,SqlCommand sqlCommand) {
+	public List<Map<String, Object>> selectProcessInstanceByQueryCriteria(final ProcessInstanceQueryImpl processInstanceQuery, Page page,final SqlCommand sqlCommand) {
+		if (QueryLocation.RUN_HIS.equals(processInstanceQuery.getQueryLocation()) && QueryTableUtil.isArchiveEnabled()) {
+			// 运行表和归档表分开查询后归并,不使用union all子查询
+			return new RunHisQueryExecutor() {
+				protected List<Map<String, Object>> executeQuery(QueryLocation queryLocation, Page sidePage) {
+					processInstanceQuery.setQueryLocation(queryLocation);
+					try {
+						return selectProcessInstanceByQueryCriteria(processInstanceQuery, sidePage, sqlCommand);
+					} finally {
+						processInstanceQuery.setQueryLocation(QueryLocation.RUN_HIS);
+					}
+				}
+			}.execute(processInstanceQuery.getOrderBy(), page);
+		}
 		String sqlString = " select " + Context.getProcessEngineConfiguration().getDbConfig().getDbSqlMap().get("topOrderBy") + " E.* ";
 		if(processInstanceQuery.getQueryExpandTo()!=null && processInstanceQuery.getQueryExpandTo().getFieldSql()!=null&&!processInstanceQuery.getQueryExpandTo().getFieldSql().equals("")){
 			sqlString=sqlString+" , "+processInstanceQuery.getQueryExpandTo().getFieldSql();
@@ -88,9 +105,21 @@ public class ProcessInstanceQueryScript implements SelectRulesScript {
 		}
 		
 		
-		if (page != null) {
+		if (page instanceof KeysetPage) {
+			KeysetPage keysetPage = (KeysetPage) page;
+			String seekCondition = keysetPage.getSeekCondition(objectParamWhere);
+			sqlString = AbstractPagination.keysetPaginationSql(pagination, sqlString, seekCondition, keysetPage.getMaxResults(), "*", keysetPage.getOrderBySql());
+		}
+		else if (page != null) {
 			Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
-			sqlString = pagination.getPaginationSql(sqlString, page.getFirstResult(), page.getMaxResults(), "*",orderByString);
+			String paginationSql = null;
+			if (page.isTotalRequired()) {
+				paginationSql = AbstractPagination.paginationWithTotalSql(pagination, sqlString, page.getFirstResult(), page.getMaxResults(), "*",orderByString);
+			}
+			if (paginationSql == null) {
+				paginationSql = pagination.getPaginationSql(sqlString, page.getFirstResult(), page.getMaxResults(), "*",orderByString);
+			}
+			sqlString = paginationSql;
 		}
 		else{
 			if (processInstanceQuery.getOrderBy() != null) {
@@ -116,7 +145,12 @@ public class ProcessInstanceQueryScript implements SelectRulesScript {
 			}
 		}*/
 		List<Map<String, Object>> dataObj = sqlCommand.queryForList(sqlString, objectParamWhere);
-		
+		if (page != null && page.isTotalRequired()) {
+			page.readTotal(dataObj, sqlCommand, pagination);
+		}
+		if (page instanceof KeysetPage) {
+			((KeysetPage) page).readLastValues(dataObj);
+		}
 		
 		
 		return dataObj;
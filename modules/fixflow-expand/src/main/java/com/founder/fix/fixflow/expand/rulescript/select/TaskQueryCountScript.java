@@ -26,6 +26,8 @@ import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.task.TaskQueryImpl;
+import com.founder.fix.fixflow.core.impl.util.QueryTableUtil;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
 import com.founder.fix.fixflow.core.scriptlanguage.SelectRulesScript;
 
 public class TaskQueryCountScript implements SelectRulesScript {
@@ -46,6 +48,17 @@ public class TaskQueryCountScript implements SelectRulesScript {
 	
 	
 	public long findTaskCountByQueryCriteria(TaskQueryImpl taskQuery) {
+		if (QueryLocation.RUN_HIS.equals(taskQuery.getQueryLocation()) && QueryTableUtil.isArchiveEnabled()) {
+			// 运行表和归档表分别统计
+			try {
+				taskQuery.setQueryLocation(QueryLocation.RUN);
+				long runCount = findTaskCountByQueryCriteria(taskQuery);
+				taskQuery.setQueryLocation(QueryLocation.HIS);
+				return runCount + findTaskCountByQueryCriteria(taskQuery);
+			} finally {
+				taskQuery.setQueryLocation(QueryLocation.RUN_HIS);
+			}
+		}
 		String selectTaskByQueryCriteriaSql = "";
 		List<Object> objectParamWhere = new ArrayList<Object>();
 		String agentOldAssignee=null;
@@ -59,10 +72,14 @@ public class TaskQueryCountScript implements SelectRulesScript {
 				taskQuery.taskCandidateUser(taskQuery.getAgentId());
 			}
 		}
-		selectTaskByQueryCriteriaSql = "select count(distinct T.TASKINSTANCE_ID) ";
-		
 		TaskQueryScript taskQueryScript=new TaskQueryScript();
 		
+		if(taskQueryScript.isDistinctRequired(taskQuery)){
+			selectTaskByQueryCriteriaSql = "select count(distinct T.TASKINSTANCE_ID) ";
+		}else{
+			selectTaskByQueryCriteriaSql = "select count(1) ";
+		}
+		
 		
 		selectTaskByQueryCriteriaSql = taskQueryScript.selectTaskByQueryCriteriaSql(selectTaskByQueryCriteriaSql, taskQuery, objectParamWhere,sqlCommand);
 		if(taskQuery.getIsAgent()){
@@ -18,24 +18,36 @@
 package com.founder.fix.fixflow.expand.rulescript.select;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.founder.fix.fixflow.core.db.pagination.AbstractPagination;
 import com.founder.fix.fixflow.core.db.pagination.Pagination;
 import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.KeysetPage;
 import com.founder.fix.fixflow.core.impl.Page;
 import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
 import com.founder.fix.fixflow.core.impl.db.ListQueryParameterObject;
+import com.founder.fix.fixflow.core.impl.db.RunHisQueryExecutor;
 import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.identity.GroupTo;
 import com.founder.fix.fixflow.core.impl.task.TaskQueryImpl;
 import com.founder.fix.fixflow.core.impl.util.QueryTableUtil;
 import com.founder.fix.fixflow.core.impl.util.StringUtil;
+import com.founder.fix.fixflow.core.runtime.QueryLocation;
 import com.founder.fix.fixflow.core.scriptlanguage.SelectRulesScript;
 import com.founder.fix.fixflow.core.task.TaskInstanceType;
 
 public class TaskQueryScript implements SelectRulesScript {
 
+	/**
+	 * 候选组IN列表的最大长度,超过时拆成多个IN列表
+	 */
+	protected static final int MAX_IN_LIST_SIZE = 512;
+
 	Pagination pagination = Context.getProcessEngineConfiguration().getDbConfig().getPagination();
 	
 	public Object execute(Object parameter, SqlCommand sqlCommand, ProcessEngineConfigurationImpl processEngineConfiguration) {
@@ -49,7 +61,20 @@ public class TaskQueryScript implements SelectRulesScript {
 		return findTasksByQueryCriteria(taskQuery,page,sqlCommand);
 	}
 
-	public List<Map<String, Object>> findTasksByQueryCriteria(TaskQueryImpl taskQuery,Page page,SqlCommand sqlCommand) {
+	public List<Map<String, Object>> findTasksByQueryCriteria(final TaskQueryImpl taskQuery,Page page,final SqlCommand sqlCommand) {
+		if (QueryLocation.RUN_HIS.equals(taskQuery.getQueryLocation()) && QueryTableUtil.isArchiveEnabled()) {
+			// 运行表和归档表分开查询后归并,不使用union all子查询
+			return new RunHisQueryExecutor() {
+				protected List<Map<String, Object>> executeQuery(QueryLocation queryLocation, Page sidePage) {
+					taskQuery.setQueryLocation(queryLocation);
+					try {
+						return findTasksByQueryCriteria(taskQuery, sidePage, sqlCommand);
+					} finally {
+						taskQuery.setQueryLocation(QueryLocation.RUN_HIS);
+					}
+				}
+			}.execute(taskQuery.getOrderBy(), page);
+		}
 		String selectTaskByQueryCriteriaSql = "";
 		List<Object> objectParamWhere = new ArrayList<Object>();
 		String agentOldAssignee = null;
@@ -63,8 +88,8 @@ public class TaskQueryScript implements SelectRulesScript {
 				taskQuery.taskCandidateUser(taskQuery.getAgentId());
 			}
 		}
-		selectTaskByQueryCriteriaSql = "select distinct " + Context.getProcessEngineConfiguration().getDbConfig().getDbSqlMap().get("topOrderBy")
-				+ " T.* ";
+		selectTaskByQueryCriteriaSql = (isDistinctRequired(taskQuery) ? "select distinct " : "select ")
+				+ Context.getProcessEngineConfiguration().getDbConfig().getDbSqlMap().get("topOrderBy") + " T.* ";
 		if (taskQuery.getQueryExpandTo() != null && taskQuery.getQueryExpandTo().getFieldSql() != null
 				&& !taskQuery.getQueryExpandTo().getFieldSql().equals("")) {
 			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql
@@ -111,9 +136,22 @@ public class TaskQueryScript implements SelectRulesScript {
 			}
 		}
 
-		if (page != null) {
-			selectTaskByQueryCriteriaSql = pagination.getPaginationSql(selectTaskByQueryCriteriaSql, page.getFirstResult(), page.getMaxResults(),
-					"*", orderByString);
+		if (page instanceof KeysetPage) {
+			KeysetPage keysetPage = (KeysetPage) page;
+			String seekCondition = keysetPage.getSeekCondition(objectParamWhere);
+			selectTaskByQueryCriteriaSql = AbstractPagination.keysetPaginationSql(pagination, selectTaskByQueryCriteriaSql, seekCondition,
+					keysetPage.getMaxResults(), "*", keysetPage.getOrderBySql());
+		} else if (page != null) {
+			String paginationSql = null;
+			if (page.isTotalRequired()) {
+				paginationSql = AbstractPagination.paginationWithTotalSql(pagination, selectTaskByQueryCriteriaSql, page.getFirstResult(), page.getMaxResults(),
+						"*", orderByString);
+			}
+			if (paginationSql == null) {
+				paginationSql = pagination.getPaginationSql(selectTaskByQueryCriteriaSql, page.getFirstResult(), page.getMaxResults(),
+						"*", orderByString);
+			}
+			selectTaskByQueryCriteriaSql = paginationSql;
 		}else{
 			if (taskQuery.getOrderBy() != null) {
 				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " order by " + taskQuery.getOrderBy().toString();
@@ -136,6 +174,12 @@ public class TaskQueryScript implements SelectRulesScript {
 		
 		
 		List<Map<String, Object>> dataObj = sqlCommand.queryForList(selectTaskByQueryCriteriaSql, objectParamWhere);
+		if (page != null && page.isTotalRequired()) {
+			page.readTotal(dataObj, sqlCommand, pagination);
+		}
+		if (page instanceof KeysetPage) {
+			((KeysetPage) page).readLastValues(dataObj);
+		}
 
 		return dataObj;
 	}
@@ -143,21 +187,34 @@ public class TaskQueryScript implements SelectRulesScript {
 	public String selectTaskByQueryCriteriaSql(String selectTaskByQueryCriteriaSql,TaskQueryImpl taskQuery, List<Object> objectParamWhere,SqlCommand sqlCommand) {
 		selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " FROM " + QueryTableUtil.getTableSelect("fixflow_run_taskinstance", taskQuery.getQueryLocation())
 				+ " T ";
-		if (taskQuery.getCandidateUser() != null) {
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " left join " + QueryTableUtil.getTableSelect("fixflow_run_taskidentitylink", taskQuery.getQueryLocation())
-					+ " I on I.TASKINSTANCE_ID = T.TASKINSTANCE_ID ";
-		}
+		// 候选人查询不再关联任务分配表,原来写在关联条件上的条件放到exists子查询中
+		boolean candidateQuery = isCandidateQuery(taskQuery);
+		String identityLinkConditionSql = "";
+		List<Object> identityLinkConditionParams = new ArrayList<Object>();
 		// initiator
 		if (taskQuery.isAssigneeNotNull()) {
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.ASSIGNEE IS NOT NULL ";
+			if (candidateQuery) {
+				identityLinkConditionSql = identityLinkConditionSql + " and T.ASSIGNEE IS NOT NULL ";
+			} else {
+				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.ASSIGNEE IS NOT NULL ";
+			}
 		}
 		// 分类
 		if (taskQuery.getCategory() != null) {
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.CATEGORY =? ";
-			objectParamWhere.add(taskQuery.getCategory());
+			if (candidateQuery) {
+				identityLinkConditionSql = identityLinkConditionSql + " and T.CATEGORY =? ";
+				identityLinkConditionParams.add(taskQuery.getCategory());
+			} else {
+				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.CATEGORY =? ";
+				objectParamWhere.add(taskQuery.getCategory());
+			}
 		}
 		if (taskQuery.isCandidateNotNull()) {
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.ASSIGNEE IS NULL and I.TYPE = 'candidate' ";
+			if (candidateQuery) {
+				identityLinkConditionSql = identityLinkConditionSql + " and T.ASSIGNEE IS NULL ";
+			} else {
+				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.ASSIGNEE IS NULL and I.TYPE = 'candidate' ";
+			}
 		}
 		selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + "  LEFT JOIN  " + QueryTableUtil.getTableSelect("fixflow_run_processinstance", taskQuery.getQueryLocation())
 				+ " P on T.PROCESSINSTANCE_ID = P.PROCESSINSTANCE_ID ";
@@ -339,9 +396,12 @@ public class TaskQueryScript implements SelectRulesScript {
 			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and T.END_TIME " + taskQuery.getEnd() + " ";
 
 		}
-		if (taskQuery.getCandidateUser() != null || taskQuery.getCandidateGroup() != null) {
+		if (candidateQuery) {
 			List<GroupTo> candidateGroups = taskQuery.getCandidateGroups();
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and ((T.ASSIGNEE is null " + " and I.TYPE = 'candidate' " + " and ( ";
+			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " and ((T.ASSIGNEE is null and exists (select 1 from "
+					+ QueryTableUtil.getTableSelect("fixflow_run_taskidentitylink", taskQuery.getQueryLocation())
+					+ " I where I.TASKINSTANCE_ID = T.TASKINSTANCE_ID " + identityLinkConditionSql + " and I.TYPE = 'candidate' " + " and ( ";
+			objectParamWhere.addAll(identityLinkConditionParams);
 			if (taskQuery.getCandidateUser() != null) {
 				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " (I.USER_ID=? or I.USER_ID='fixflow_allusers')";
 				objectParamWhere.add(taskQuery.getCandidateUser());
@@ -351,20 +411,10 @@ public class TaskQueryScript implements SelectRulesScript {
 				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " or ";
 			}
 			if (candidateGroups != null && candidateGroups.size() > 0) {
-				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " (";
-				for (int i = 0; i < candidateGroups.size(); i++) {
-					if (i == 0) {
-						selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + "(group_id ='" + candidateGroups.get(i).getGroupId()
-								+ "' and group_type ='" + candidateGroups.get(i).getGroupType() + "' )";
-					} else {
-						selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " or (group_id ='" + candidateGroups.get(i).getGroupId()
-								+ "' and group_type ='" + candidateGroups.get(i).getGroupType() + "' )";
-					}
-				}
-				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " )";
+				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + candidateGroupSql(candidateGroups, objectParamWhere);
 			}
 			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " )";
-			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " ) ";
+			selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " )) ";
 			if (taskQuery.getAssignee() != null) {
 				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " or ( ";
 				selectTaskByQueryCriteriaSql = selectTaskByQueryCriteriaSql + " T.ASSIGNEE=? ";
@@ -381,6 +431,85 @@ public class TaskQueryScript implements SelectRulesScript {
 		return selectTaskByQueryCriteriaSql;
 	}
 	
+	/**
+	 * 是否是候选人(收件箱)查询,候选条件用exists子查询表达,不关联任务分配表
+	 * @param taskQuery
+	 * @return
+	 */
+	protected boolean isCandidateQuery(TaskQueryImpl taskQuery) {
+		return taskQuery.getCandidateUser() != null || taskQuery.getCandidateGroup() != null;
+	}
+
+	/**
+	 * 查询结果是否可能有重复行需要distinct
+	 * <p>
+	 * 任务分配表改为exists子查询后,只有自定义的关联和运行表、归档表合并查询会产生重复行。
+	 * @param taskQuery
+	 * @return
+	 */
+	public boolean isDistinctRequired(TaskQueryImpl taskQuery) {
+		if (taskQuery.getQueryExpandTo() != null && taskQuery.getQueryExpandTo().getLeftJoinSql() != null
+				&& !taskQuery.getQueryExpandTo().getLeftJoinSql().equals("")) {
+			return true;
+		}
+		if (taskQuery.getQueryLocation() != null && !QueryLocation.RUN.equals(taskQuery.getQueryLocation())) {
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 生成候选组条件
+	 * <p>
+	 * 候选组按组类型合并为 GROUP_TYPE=? and GROUP_ID in (?,..) 的参数化条件,
+	 * IN列表的长度补齐到2的幂(重复最后一个组编号),不同用户组数量不同时生成的语句也只有少数几种,
+	 * 可以复用语句缓存和数据库的执行计划,并使用(GROUP_TYPE, GROUP_ID, TYPE)索引。
+	 * @param candidateGroups 候选组
+	 * @param objectParamWhere 参数列表
+	 * @return 条件语句
+	 */
+	protected String candidateGroupSql(List<GroupTo> candidateGroups, List<Object> objectParamWhere) {
+		Map<String, Set<String>> groupIdsByType = new LinkedHashMap<String, Set<String>>();
+		for (GroupTo candidateGroup : candidateGroups) {
+			Set<String> groupIds = groupIdsByType.get(candidateGroup.getGroupType());
+			if (groupIds == null) {
+				groupIds = new LinkedHashSet<String>();
+				groupIdsByType.put(candidateGroup.getGroupType(), groupIds);
+			}
+			groupIds.add(candidateGroup.getGroupId());
+		}
+		StringBuffer groupSql = new StringBuffer(" (");
+		boolean first = true;
+		for (Map.Entry<String, Set<String>> entry : groupIdsByType.entrySet()) {
+			List<String> groupIds = new ArrayList<String>(entry.getValue());
+			for (int start = 0; start < groupIds.size(); start += MAX_IN_LIST_SIZE) {
+				List<String> chunk = groupIds.subList(start, Math.min(start + MAX_IN_LIST_SIZE, groupIds.size()));
+				if (!first) {
+					groupSql.append(" or ");
+				}
+				first = false;
+				groupSql.append("(I.GROUP_TYPE =? and I.GROUP_ID in (");
+				objectParamWhere.add(entry.getKey());
+				int size = paddedSize(chunk.size());
+				for (int i = 0; i < size; i++) {
+					groupSql.append(i == 0 ? "?" : ",?");
+					objectParamWhere.add(chunk.get(Math.min(i, chunk.size() - 1)));
+				}
+				groupSql.append("))");
+			}
+		}
+		groupSql.append(" )");
+		return groupSql.toString();
+	}
+
+	private static int paddedSize(int size) {
+		int paddedSize = 1;
+		while (paddedSize < size) {
+			paddedSize = paddedSize << 1;
+		}
+		return Math.min(paddedSize, MAX_IN_LIST_SIZE);
+	}
+	
 	private void getSubProcessId(String processInstanceId,StringBuffer processInstanceIdList,SqlCommand sqlCommand,TaskQueryImpl taskQuery){
 		//这个地方需要用到递归去寻找所有的子流程
 		List<Object> dataList=new ArrayList<Object>();
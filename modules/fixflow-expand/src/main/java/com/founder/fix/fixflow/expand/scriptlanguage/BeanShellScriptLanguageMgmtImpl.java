@@ -139,6 +139,23 @@ public class BeanShellScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt
 		return null;
 	}
 
+	/**
+	 * BeanShell的==按Java语义比较引用,和SimpleExpression的Groovy语义不同,不使用简单表达式求值
+	 */
+	@Override
+	protected boolean isSimpleExpressionEnabled() {
+		return false;
+	}
+
+	@Override
+	public void removeVariable(String variableName) {
+		try {
+			interpreter.unset(variableName);
+		} catch (EvalError e) {
+			throw new FixFlowException("移除变量错误! 错误信息: " + e.getErrorText(), e);
+		}
+	}
+
 	@Override
 	public Object execute(String scriptText, ExecutionContext executionContext) {
 		if (scriptText == null) {
@@ -0,0 +1,165 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.scriptlanguage;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.Script;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import com.founder.fix.fixflow.core.exception.FixFlowException;
+import com.founder.fix.fixflow.core.impl.cache.CacheRegion;
+
+/**
+ * Groovy编译脚本缓存
+ * <p>
+ * 以规范化后的脚本文本为键缓存编译好的脚本类,所有线程共享。每个脚本使用独立的类加载器编译,
+ * 被淘汰的脚本类可以随类加载器一起卸载,避免长时间运行后元空间持续增长。
+ * 并发未命中同一个脚本时只有一个线程编译,其余线程等待编译结果。
+ */
+public class GroovyScriptCache {
+
+	/**
+	 * 默认最多缓存的脚本数量
+	 */
+	public static final int DEFAULT_MAX_SIZE = 2000;
+
+	private static final GroovyScriptCache INSTANCE = new GroovyScriptCache(DEFAULT_MAX_SIZE);
+
+	protected CacheRegion scriptClassRegion;
+
+	/** 正在编译的脚本,保证同一个脚本同时只编译一次 */
+	protected ConcurrentHashMap<String, FutureTask<Class<? extends Script>>> compilingScripts = new ConcurrentHashMap<String, FutureTask<Class<? extends Script>>>();
+
+	protected AtomicLong compileCount = new AtomicLong();
+
+	protected AtomicLong scriptNameCounter = new AtomicLong();
+
+	public GroovyScriptCache(int maxSize) {
+		this.scriptClassRegion = new CacheRegion("groovyScript", maxSize, 0);
+	}
+
+	public static GroovyScriptCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 获取脚本对应的编译类,缓存中没有时编译并放入缓存
+	 * @param scriptText 已经替换过${}的脚本文本
+	 * @return 脚本类
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends Script> getScriptClass(final String scriptText) {
+		Class<? extends Script> scriptClass = (Class<? extends Script>) scriptClassRegion.get(scriptText);
+		if (scriptClass != null) {
+			return scriptClass;
+		}
+		FutureTask<Class<? extends Script>> newTask = new FutureTask<Class<? extends Script>>(new Callable<Class<? extends Script>>() {
+			public Class<? extends Script> call() throws Exception {
+				// 登记前其它线程可能刚刚编译完成
+				Class<? extends Script> compiledClass = (Class<? extends Script>) scriptClassRegion.get(scriptText);
+				if (compiledClass == null) {
+					compiledClass = compile(scriptText);
+					scriptClassRegion.put(scriptText, compiledClass);
+				}
+				return compiledClass;
+			}
+		});
+		FutureTask<Class<? extends Script>> task = compilingScripts.putIfAbsent(scriptText, newTask);
+		if (task == null) {
+			task = newTask;
+			try {
+				newTask.run();
+			} finally {
+				compilingScripts.remove(scriptText, newTask);
+			}
+		}
+		return getCompileResult(task);
+	}
+
+	protected Class<? extends Script> getCompileResult(FutureTask<Class<? extends Script>> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FixFlowException("脚本编译被中断", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new FixFlowException("脚本编译失败", cause);
+		}
+	}
+
+	/**
+	 * 使用给定的变量绑定执行脚本,每次执行都创建新的脚本对象
+	 * @param scriptText 已经替换过${}的脚本文本
+	 * @param binding 变量绑定
+	 * @return 执行结果
+	 */
+	public Object run(String scriptText, Binding binding) {
+		Script script = InvokerHelper.createScript(getScriptClass(scriptText), binding);
+		return script.run();
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Class<? extends Script> compile(String scriptText) {
+		ClassLoader parentClassLoader = Thread.currentThread().getContextClassLoader();
+		if (parentClassLoader == null) {
+			parentClassLoader = GroovyScriptCache.class.getClassLoader();
+		}
+		GroovyClassLoader groovyClassLoader = new GroovyClassLoader(parentClassLoader);
+		String scriptName = "FixFlowScript" + scriptNameCounter.incrementAndGet() + ".groovy";
+		GroovyCodeSource groovyCodeSource = new GroovyCodeSource(scriptText, scriptName, "/groovy/shell");
+		Class<?> scriptClass = groovyClassLoader.parseClass(groovyCodeSource, false);
+		compileCount.incrementAndGet();
+		return (Class<? extends Script>) scriptClass;
+	}
+
+	public void clear() {
+		scriptClassRegion.clear();
+	}
+
+	/**
+	 * 脚本编译次数
+	 */
+	public long getCompileCount() {
+		return compileCount.get();
+	}
+
+	public double getHitRate() {
+		return scriptClassRegion.getHitRate();
+	}
+
+	public CacheRegion getScriptClassRegion() {
+		return scriptClassRegion;
+	}
+
+}
@@ -17,8 +17,10 @@
  */
 package com.founder.fix.fixflow.expand.scriptlanguage;
 
+import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +33,8 @@ import com.founder.fix.fixflow.core.impl.db.SqlCommand;
 import com.founder.fix.fixflow.core.impl.expression.ExpressionMgmt;
 import com.founder.fix.fixflow.core.runtime.ExecutionContext;
 import com.founder.fix.fixflow.core.scriptlanguage.AbstractScriptLanguageMgmt;
+import com.founder.fix.fixflow.core.scriptlanguage.ExpressionTemplate;
+import com.founder.fix.fixflow.core.scriptlanguage.SimpleExpression;
 
 public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 
@@ -50,6 +54,16 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 
 	}
 
+	/**
+	 * 从编译脚本缓存中取出脚本类执行,每次执行使用新的Binding,变量仍然保存在当前线程的groovyShell中
+	 * @param scriptText 已经替换过${}的脚本文本
+	 * @return
+	 */
+	protected Object evaluate(String scriptText) {
+		Binding binding = new Binding(groovyShell.getContext().getVariables());
+		return GroovyScriptCache.getInstance().run(scriptText, binding);
+	}
+
 	@Override
 	public Object execute(String scriptText, ProcessDefinitionBehavior processDefinition) {
 
@@ -83,7 +97,7 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 		String scriptTextTemp = getExpressionAll(scriptText);
 
 		Object resultObj;
-		resultObj = groovyShell.evaluate(scriptTextTemp);
+		resultObj = evaluate(scriptTextTemp);
 
 		return resultObj;
 	}
@@ -111,13 +125,30 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 
 	}
 
+	@Override
+	public boolean hasVariable(String variableName) {
+		return groovyShell.getContext().hasVariable(variableName);
+	}
+
+	@Override
+	public void removeVariable(String variableName) {
+		groovyShell.getContext().getVariables().remove(variableName);
+	}
+
 	@Override
 	public Object execute(String scriptText, ExecutionContext executionContext) {
 		if (scriptText == null) {
 			return null;
 		}
 
-		dataVariableCalculate(scriptText, executionContext);
+		// 没有缓存模板的表达式,临时解析一次
+		ExpressionTemplate expressionTemplate = ExpressionTemplate.compile(scriptText, executionContext.getProcessInstance().getProcessDefinition());
+		return execute(expressionTemplate, executionContext);
+	}
+
+	@Override
+	protected Object executeScript(ExpressionTemplate expressionTemplate, ExecutionContext executionContext) {
+		dataVariableCalculate(expressionTemplate, executionContext);
 
 		Object resultObj = false;
 
@@ -127,15 +158,51 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 		if (executionContext != null) {
 			groovyShell.setVariable("processInfo", executionContext);
 		}
-		String scriptTextTemp = getExpressionAll(scriptText);
-		resultObj = groovyShell.evaluate(scriptTextTemp);
+
+		resultObj = evaluate(expressionTemplate.getScriptText());
 
 		return resultObj;
 	}
 
+	/**
+	 * 简单表达式直接读取GroovyShell上的变量,不复制
+	 */
+	@Override
+	protected Map<?, ?> getScriptVariables(SimpleExpression simpleExpression) {
+		return groovyShell.getContext().getVariables();
+	}
+
 	@Override
 	public Object execute(String scriptText) {
-		 return groovyShell.evaluate(scriptText);
+		 return evaluate(scriptText);
+	}
+
+	@Override
+	public Object execute(String scriptText, Map<String, Object> bindings) {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		Map<String, Object> globalVariables = Context.getProcessEngineConfiguration().getScriptGlobalVariables();
+		if (globalVariables != null) {
+			variables.putAll(globalVariables);
+		}
+		if (bindings != null) {
+			variables.putAll(bindings);
+		}
+		return GroovyScriptCache.getInstance().run(scriptText, new Binding(variables));
+	}
+
+	/**
+	 * 业务规则执行使用的变量
+	 * <p>
+	 * 规则脚本看不到线程GroovyShell上的变量(processInfo、数据变量等),需要的值通过configMap传入
+	 */
+	protected Map<String, Object> createRuleBindings(Object parameter, Map<String, Object> configMap) {
+		Map<String, Object> bindings = new HashMap<String, Object>();
+		bindings.put("parameter", parameter);
+		bindings.put("sqlCommand", new SqlCommand(Context.getDbConnection()));
+		if (configMap != null) {
+			bindings.putAll(configMap);
+		}
+		return bindings;
 	}
 
 	@Override
@@ -149,18 +216,8 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 	public <T> T executeBusinessRules(String ruleId, Object parameter,T classReturn, Map<String, Object> configMap) {
 		
 		ProcessEngineConfigurationImpl processEngineConfiguration=Context.getProcessEngineConfiguration();
-		groovyShell.setVariable("sysRulesConfig", Context.getProcessEngineConfiguration());
-		groovyShell.setVariable("parameter", parameter);
-		groovyShell.setVariable("sqlCommand", new SqlCommand(Context.getDbConnection()));
-		if(configMap!=null){
-			
-			for (String mapKey : configMap.keySet()) {
-				groovyShell.setVariable(mapKey, configMap.get(mapKey));
-			}
-			
-		}
 		Rule rule = processEngineConfiguration.getRule(ruleId);
-		T returnObj =  (T)groovyShell.evaluate(rule.getSqlValue());
+		T returnObj =  (T)execute(rule.getSqlValue(), createRuleBindings(parameter, configMap));
 		return returnObj;
 	}
 
@@ -172,18 +229,8 @@ public class GroovyScriptLanguageMgmtImpl extends AbstractScriptLanguageMgmt {
 	@Override
 	public Object executeBusinessRules(String ruleId, Object parameter, Map<String, Object> configMap) {
 		ProcessEngineConfigurationImpl processEngineConfiguration=Context.getProcessEngineConfiguration();
-		groovyShell.setVariable("sysRulesConfig", Context.getProcessEngineConfiguration());
-		groovyShell.setVariable("parameter", parameter);
-		groovyShell.setVariable("sqlCommand", new SqlCommand(Context.getDbConnection()));
-		if(configMap!=null){
-			
-			for (String mapKey : configMap.keySet()) {
-				groovyShell.setVariable(mapKey, configMap.get(mapKey));
-			}
-			
-		}
 		Rule rule = processEngineConfiguration.getRule(ruleId);
-		Object returnObj =  groovyShell.evaluate(rule.getSqlValue());
+		Object returnObj =  execute(rule.getSqlValue(), createRuleBindings(parameter, configMap));
 		return returnObj;
 	}
 
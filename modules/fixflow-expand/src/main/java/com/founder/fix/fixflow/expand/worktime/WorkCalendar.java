@@ -0,0 +1,379 @@
+/**
+ * Copyright 1996-2013 Founder International Co.,Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * @author kenshin
+ */
+package com.founder.fix.fixflow.expand.worktime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import com.founder.fix.fixflow.core.cache.CacheHandler;
+import com.founder.fix.fixflow.core.impl.Context;
+import com.founder.fix.fixflow.core.impl.ProcessEngineConfigurationImpl;
+import com.founder.fix.fixflow.core.impl.db.SqlCommand;
+import com.founder.fix.fixflow.core.impl.util.StringUtil;
+
+/**
+ * 工作日历索引
+ * <p>
+ * 一次性把FIXFLOW_WORKDATE_DETAIL加载成按日期排序的工作日数组,每个工作日保存上班时间段(当天的秒数),
+ * 并记录每个工作日之前累计的工作秒数。"加N个工作日/工作时间"用二分查找定位,不再每次计算都扫描整张日历表。
+ * <p>
+ * 工作日历放在流程引擎的缓存(CacheHandler)中,每个引擎(数据库)一份。
+ * 每隔{@link #getCheckInterval()}毫秒(引擎参数workCalendar.checkInterval)重新读取日历表,
+ * 按各行日期、上下班时间的校验值判断是否修改,修改后才重建索引。
+ * 读取日历表时不加锁,同一时间只有一个线程检查,其余线程继续使用当前的日历。
+ * 维护日历的程序应在修改后调用{@link #invalidate()}立即失效,清理引擎缓存(cleanCache)也会使日历失效。
+ * 
+ * @author kenshin
+ */
+public class WorkCalendar {
+
+	private static final String SELECT_DETAIL_SQL = "select COMMOM_DATE,BEGIN_DATE,END_DATE,AM_PM,IS_WORK,MINUTES,RULE_ID"
+			+ " from FIXFLOW_WORKDATE_DETAIL order by COMMOM_DATE,BEGIN_DATE,END_DATE,AM_PM,RULE_ID";
+
+	/** 参与校验值计算的字段 */
+	private static final String[] SIGNATURE_COLUMNS = { "COMMOM_DATE", "BEGIN_DATE", "END_DATE", "AM_PM", "IS_WORK", "MINUTES", "RULE_ID" };
+
+	private static final String CACHE_KEY = "WorkCalendar_";
+
+	/** 上班时间段按开始时间排序 */
+	private static final Comparator<int[]> RANGE_COMPARATOR = new Comparator<int[]>() {
+		public int compare(int[] range1, int[] range2) {
+			return range1[0] < range2[0] ? -1 : (range1[0] == range2[0] ? 0 : 1);
+		}
+	};
+
+	private static final String CHECK_INTERVAL_PROPERTY = "workCalendar.checkInterval";
+
+	/** 检查日历表是否修改的默认间隔(毫秒) */
+	private static long checkInterval = 60 * 1000L;
+
+	/** 工作日,yyyyMMdd格式的整数,升序 */
+	private final int[] days;
+
+	/** 每个工作日的上班时间段,{开始秒数,结束秒数} */
+	private final int[][][] ranges;
+
+	/** cumulativeSeconds[i]为第i个工作日之前累计的工作秒数,长度为工作日数+1 */
+	private final long[] cumulativeSeconds;
+
+	/** 加载时日历表各行的校验值,用来判断日历表是否修改 */
+	private final String signature;
+
+	/** 上次检查日历表的时间 */
+	private volatile long lastCheckTime;
+
+	/** 是否有线程正在检查日历表 */
+	private final AtomicBoolean checking = new AtomicBoolean();
+
+	private WorkCalendar(int[] days, int[][][] ranges, String signature) {
+		this.days = days;
+		this.ranges = ranges;
+		this.signature = signature;
+		this.cumulativeSeconds = new long[days.length + 1];
+		for (int i = 0; i < days.length; i++) {
+			long daySeconds = 0;
+			for (int[] range : ranges[i]) {
+				daySeconds += range[1] - range[0];
+			}
+			cumulativeSeconds[i + 1] = cumulativeSeconds[i] + daySeconds;
+		}
+	}
+
+	/**
+	 * 获取当前流程引擎的工作日历,第一次调用时加载,之后按检查间隔判断日历表是否修改
+	 * @param sqlCommand
+	 * @return
+	 */
+	public static WorkCalendar getInstance(SqlCommand sqlCommand) {
+		ProcessEngineConfigurationImpl processEngineConfiguration = Context.getProcessEngineConfiguration();
+		CacheHandler cacheHandler = processEngineConfiguration.getCacheHandler();
+		String cacheKey = getCacheKey(processEngineConfiguration);
+		long interval = processEngineConfiguration.getEngineProperty(CHECK_INTERVAL_PROPERTY, checkInterval);
+		WorkCalendar workCalendar = (WorkCalendar) cacheHandler.getCacheData(cacheKey);
+		long now = System.currentTimeMillis();
+		if (workCalendar != null && now - workCalendar.lastCheckTime < interval) {
+			return workCalendar;
+		}
+		// 已有日历时只让一个线程检查,其余线程不等待数据库
+		if (workCalendar != null && !workCalendar.checking.compareAndSet(false, true)) {
+			return workCalendar;
+		}
+		try {
+			List<Map<String, Object>> rows = sqlCommand.queryForList(SELECT_DETAIL_SQL);
+			String signature = sign(rows);
+			if (workCalendar != null && workCalendar.signature.equals(signature)) {
+				workCalendar.lastCheckTime = now;
+				return workCalendar;
+			}
+			WorkCalendar loadedCalendar = load(rows, signature);
+			loadedCalendar.lastCheckTime = now;
+			cacheHandler.putCacheData(cacheKey, loadedCalendar);
+			return loadedCalendar;
+		} finally {
+			if (workCalendar != null) {
+				workCalendar.checking.set(false);
+			}
+		}
+	}
+
+	/**
+	 * 日历表修改后调用,当前流程引擎的工作日历立即失效,事务提交后再失效一次,
+	 * 提交前其他线程加载的旧日历不会留在缓存中
+	 */
+	public static void invalidate() {
+		final ProcessEngineConfigurationImpl processEngineConfiguration = Context.getProcessEngineConfiguration();
+		processEngineConfiguration.getCacheHandler().removeCacheData(getCacheKey(processEngineConfiguration));
+		Context.addCommitListener(new Runnable() {
+			public void run() {
+				processEngineConfiguration.getCacheHandler().removeCacheData(getCacheKey(processEngineConfiguration));
+			}
+		});
+	}
+
+	/**
+	 * 日历表在流程引擎的数据库中,按数据库区分
+	 */
+	private static String getCacheKey(ProcessEngineConfigurationImpl processEngineConfiguration) {
+		if (processEngineConfiguration.getSelectedDatabase() == null) {
+			return CACHE_KEY;
+		}
+		return CACHE_KEY + processEngineConfiguration.getSelectedDatabase().getId();
+	}
+
+	public static long getCheckInterval() {
+		return checkInterval;
+	}
+
+	public static void setCheckInterval(long checkInterval) {
+		WorkCalendar.checkInterval = checkInterval;
+	}
+
+	/**
+	 * 日历表各行的校验值,日期、上下班时间或是否工作日任何一项修改都会改变
+	 */
+	private static String sign(List<Map<String, Object>> rows) {
+		if (rows == null) {
+			return "0";
+		}
+		CRC32 crc = new CRC32();
+		for (Map<String, Object> row : rows) {
+			for (String column : SIGNATURE_COLUMNS) {
+				String value = StringUtil.getString(getValue(row, column));
+				crc.update(String.valueOf(value).getBytes());
+				crc.update(0);
+			}
+		}
+		return rows.size() + ":" + crc.getValue();
+	}
+
+	/**
+	 * 按解析后的日期和时间建立索引,不依赖数据库对字符串字段的排序("9:00"排在"10:00"之后)
+	 */
+	private static WorkCalendar load(List<Map<String, Object>> rows, String signature) {
+		TreeMap<Integer, List<int[]>> dayRanges = new TreeMap<Integer, List<int[]>>();
+		if (rows != null) {
+			for (Map<String, Object> row : rows) {
+				String commomDate = StringUtil.getString(getValue(row, "COMMOM_DATE"));
+				int beginSeconds = parseSeconds(StringUtil.getString(getValue(row, "BEGIN_DATE")));
+				int endSeconds = parseSeconds(StringUtil.getString(getValue(row, "END_DATE")));
+				int day;
+				try {
+					day = Integer.parseInt(commomDate.replaceAll("-", "").trim());
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				List<int[]> rangeList = dayRanges.get(day);
+				if (rangeList == null) {
+					rangeList = new ArrayList<int[]>();
+					dayRanges.put(day, rangeList);
+				}
+				if (beginSeconds >= 0 && endSeconds > beginSeconds) {
+					rangeList.add(new int[] { beginSeconds, endSeconds });
+				}
+			}
+		}
+		int[] days = new int[dayRanges.size()];
+		int[][][] ranges = new int[dayRanges.size()][][];
+		int i = 0;
+		for (Map.Entry<Integer, List<int[]>> entry : dayRanges.entrySet()) {
+			days[i] = entry.getKey();
+			ranges[i] = mergeRanges(entry.getValue());
+			i++;
+		}
+		return new WorkCalendar(days, ranges, signature);
+	}
+
+	/**
+	 * 时间段按开始时间排序,重叠的合并(多个规则定义了同一天时)
+	 */
+	private static int[][] mergeRanges(List<int[]> dayRanges) {
+		Collections.sort(dayRanges, RANGE_COMPARATOR);
+		List<int[]> merged = new ArrayList<int[]>(dayRanges.size());
+		for (int[] range : dayRanges) {
+			if (!merged.isEmpty()) {
+				int[] last = merged.get(merged.size() - 1);
+				if (range[0] <= last[1]) {
+					last[1] = Math.max(last[1], range[1]);
+					continue;
+				}
+			}
+			merged.add(range);
+		}
+		return merged.toArray(new int[0][]);
+	}
+
+	private static Object getValue(Map<String, Object> row, String column) {
+		Object value = row.get(column);
+		if (value == null) {
+			value = row.get(column.toLowerCase());
+		}
+		return value;
+	}
+
+	/**
+	 * HH:mm:ss或HH:mm转换成当天的秒数
+	 * @return 格式不正确时返回-1
+	 */
+	private static int parseSeconds(String time) {
+		if (StringUtil.isEmpty(time)) {
+			return -1;
+		}
+		String[] parts = time.trim().split(":");
+		try {
+			int seconds = Integer.parseInt(parts[0].trim()) * 3600;
+			if (parts.length > 1) {
+				seconds += Integer.parseInt(parts[1].trim()) * 60;
+			}
+			if (parts.length > 2) {
+				seconds += Integer.parseInt(parts[2].trim());
+			}
+			return seconds;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 日历中是否有工作日
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return days.length == 0;
+	}
+
+	/**
+	 * 判断日期是不是工作日,只使用日期部分
+	 * @param date
+	 * @return
+	 */
+	public boolean isWorkDay(Date date) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		return Arrays.binarySearch(days, toDayKey(calendar)) >= 0;
+	}
+
+	/**
+	 * 判断时间是不是工作时间
+	 * @param date
+	 * @return
+	 */
+	public boolean isWorkTime(Date date) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		int index = Arrays.binarySearch(days, toDayKey(calendar));
+		if (index < 0) {
+			return false;
+		}
+		int seconds = calendar.get(Calendar.HOUR_OF_DAY) * 3600 + calendar.get(Calendar.MINUTE) * 60 + calendar.get(Calendar.SECOND);
+		for (int[] range : ranges[index]) {
+			if (seconds >= range[0] && seconds <= range[1]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 从指定日期起第days个工作日的上班时间开始,再加上workSeconds秒的工作时间,超出当天上班时间的部分顺延到之后的工作日
+	 * <p>
+	 * 指定日期不是工作日时从之后的第一个工作日开始计算。
+	 * @param date 开始日期(只使用日期部分)
+	 * @param days 工作日数
+	 * @param workSeconds 工作时间(秒)
+	 * @return 超出日历范围时返回null
+	 */
+	public Date addWorkTime(Date date, int days, long workSeconds) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		int index = Arrays.binarySearch(this.days, toDayKey(calendar));
+		if (index < 0) {
+			index = -index - 1;
+		}
+		index += days;
+		if (index >= this.days.length) {
+			return null;
+		}
+		long target = cumulativeSeconds[index] + workSeconds;
+		// 找到累计工作时间达到target的第一个工作日
+		int low = index;
+		int high = this.days.length - 1;
+		if (cumulativeSeconds[high + 1] < target) {
+			return null;
+		}
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulativeSeconds[mid + 1] >= target) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		long remaining = target - cumulativeSeconds[low];
+		int secondsOfDay = 0;
+		for (int[] range : ranges[low]) {
+			int length = range[1] - range[0];
+			if (remaining <= length) {
+				secondsOfDay = range[0] + (int) remaining;
+				break;
+			}
+			remaining -= length;
+		}
+		return toDate(this.days[low], secondsOfDay);
+	}
+
+	private static int toDayKey(Calendar calendar) {
+		return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+	}
+
+	private static Date toDate(int day, int secondsOfDay) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(day / 10000, day / 100 % 100 - 1, day % 100);
+		calendar.add(Calendar.SECOND, secondsOfDay);
+		return calendar.getTime();
+	}
+}